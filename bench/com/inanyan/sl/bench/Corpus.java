@@ -0,0 +1,97 @@
+package com.inanyan.sl.bench;
+
+// Generated SL programs for benchmarks. Every kind is valid, resolvable and runs without errors, except for
+// the output of broken().
+public class Corpus {
+    public enum Kind {
+        // Long chains of unary operators over int literals.
+        DEEP_UNARY,
+        // Mostly identifiers, all referring to builtin globals.
+        IDENTIFIERS,
+        // Long string literals with escapes.
+        LONG_STRINGS,
+        // Several comment lines per statement.
+        COMMENTS,
+        // Long left-associative chains of arithmetic and bitwise operators of mixed precedence.
+        OPERATOR_CHAINS
+    }
+
+    public static final int UNARY_DEPTH = 64;
+    public static final int CHAIN_LENGTH = 64;
+
+    // Divisors are the literal operand that follows, never zero.
+    private static final String[] CHAIN_OPERATORS = {
+            " + ", " * ", " - ", " / ", " & ", " | ", " ^ ", " << ", " >> ", " % "
+    };
+
+    private Corpus() {}
+
+    public static String generate(Kind kind, int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            switch (kind) {
+                case DEEP_UNARY -> {
+                    sb.append(i % 2 == 0 ? "print " : "");
+                    for (int depth = 0; depth < UNARY_DEPTH; depth++) {
+                        sb.append(switch (depth % 3) {
+                            case 0 -> "- ";
+                            case 1 -> "~";
+                            default -> "+";
+                        });
+                    }
+                    sb.append(100000 + i).append(";\n");
+                }
+                case IDENTIFIERS -> {
+                    switch (i % 4) {
+                        case 0 -> sb.append("print SL_VER_MAJOR;\n");
+                        case 1 -> sb.append("-SL_VER_MINOR;\n");
+                        case 2 -> sb.append("print SL_VER_STR; SL_VER_PATCH;\n");
+                        default -> sb.append("print ~SL_VER_PATCH; print -SL_VER_MAJOR;\n");
+                    }
+                }
+                case LONG_STRINGS -> {
+                    sb.append("print \"");
+                    for (int part = 0; part < 8; part++) {
+                        sb.append("the quick brown fox jumps over the lazy dog\\t").append(i).append("\\n");
+                    }
+                    sb.append("\";\n");
+                }
+                case COMMENTS -> {
+                    for (int line = 0; line < 8; line++) {
+                        sb.append("# comment line ").append(line)
+                                .append(" explaining the statement below in far too much detail\n");
+                    }
+                    sb.append("print ").append(i).append("; # trailing comment\n");
+                }
+                case OPERATOR_CHAINS -> {
+                    sb.append(i % 2 == 0 ? "print " : "").append(i);
+                    for (int op = 0; op < CHAIN_LENGTH; op++) {
+                        int index = op % CHAIN_OPERATORS.length;
+                        sb.append(CHAIN_OPERATORS[index]);
+                        if (index == 0) {
+                            sb.append("SL_VER_PATCH");
+                        } else {
+                            sb.append(1 + (op + i) % 7);
+                        }
+                    }
+                    sb.append(";\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // Same shape as the IDENTIFIERS kind, but every statement has a syntax error the parser must recover from.
+    public static String broken(int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            switch (i % 4) {
+                case 0 -> sb.append("print SL_VER_MAJOR\n");
+                case 1 -> sb.append("-;\n");
+                case 2 -> sb.append("print SL_VER_STR SL_VER_PATCH;\n");
+                default -> sb.append("print ~; print -SL_VER_MAJOR;\n");
+            }
+        }
+        return sb.toString();
+    }
+}
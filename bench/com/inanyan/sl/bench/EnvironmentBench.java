@@ -0,0 +1,143 @@
+package com.inanyan.sl.bench;
+
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Symbols;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+// Compares the array-backed Environment with the HashMap chain it replaced.
+// Run with: java -cp out com.inanyan.sl.bench.EnvironmentBench
+public class EnvironmentBench {
+    private static final int SCOPES = 100_000;
+    private static final int NAMES_PER_SCOPE = 4;
+    private static final int DEPTH = 8;
+    private static final int LOOKUPS = 20_000_000;
+
+    // The storage model Environment used before: one HashMap per scope.
+    private static class MapEnvironment {
+        private final MapEnvironment enclosing;
+        private final Map<String, Object> map = new HashMap<>();
+
+        MapEnvironment(MapEnvironment enclosing) {
+            this.enclosing = enclosing;
+        }
+
+        Object lookup(String key) {
+            Object res = map.get(key);
+
+            if (res == null && enclosing != null) {
+                return enclosing.lookup(key);
+            }
+
+            return res;
+        }
+
+        boolean define(String key, Object obj) {
+            return map.put(key, obj) == null;
+        }
+    }
+
+    private static final String[] names = new String[NAMES_PER_SCOPE * DEPTH];
+    static {
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "name" + i;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Object sink;
+
+    private static void memoryPerScope() {
+        Integer value = 42;
+
+        Object[] keep = new Object[SCOPES];
+        long before = allocatedBytes();
+        for (int i = 0; i < SCOPES; i++) {
+            MapEnvironment environment = new MapEnvironment(null);
+            for (int j = 0; j < NAMES_PER_SCOPE; j++) {
+                environment.define(names[j], value);
+            }
+            keep[i] = environment;
+        }
+        long mapBytes = allocatedBytes() - before;
+        sink = keep;
+
+        keep = new Object[SCOPES];
+        before = allocatedBytes();
+        for (int i = 0; i < SCOPES; i++) {
+            Environment environment = new Environment(null, NAMES_PER_SCOPE);
+            for (int j = 0; j < NAMES_PER_SCOPE; j++) {
+                environment.define(names[j], value);
+            }
+            keep[i] = environment;
+        }
+        long frameBytes = allocatedBytes() - before;
+        sink = keep;
+
+        System.out.printf("memory per scope with %d names: map chain %d B, frame %d B%n",
+                NAMES_PER_SCOPE, mapBytes / SCOPES, frameBytes / SCOPES);
+    }
+
+    private static void lookupTime() {
+        MapEnvironment mapChain = null;
+        Environment frameChain = null;
+        for (int depth = 0; depth < DEPTH; depth++) {
+            mapChain = new MapEnvironment(mapChain);
+            frameChain = new Environment(frameChain, NAMES_PER_SCOPE);
+            for (int j = 0; j < NAMES_PER_SCOPE; j++) {
+                mapChain.define(names[depth * NAMES_PER_SCOPE + j], depth);
+                frameChain.define(names[depth * NAMES_PER_SCOPE + j], depth);
+            }
+        }
+
+        // Names of the outermost scope: the worst case for a chain walk.
+        int[] symbols = new int[NAMES_PER_SCOPE];
+        for (int j = 0; j < NAMES_PER_SCOPE; j++) {
+            symbols[j] = Symbols.intern(names[j]);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            long mapTime = timeMapLookups(mapChain);
+            long symbolTime = timeSymbolLookups(frameChain, symbols);
+            long slotTime = timeSlotLookups(frameChain);
+
+            System.out.printf("lookup at depth %d: map chain %.2f ns, symbol id %.2f ns, (depth, slot) %.2f ns%n",
+                    DEPTH, (double) mapTime / LOOKUPS, (double) symbolTime / LOOKUPS, (double) slotTime / LOOKUPS);
+        }
+    }
+
+    private static long timeMapLookups(MapEnvironment chain) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            sink = chain.lookup(names[i & (NAMES_PER_SCOPE - 1)]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeSymbolLookups(Environment chain, int[] symbols) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            sink = chain.lookup(symbols[i & (NAMES_PER_SCOPE - 1)]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeSlotLookups(Environment chain) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            sink = chain.getAt(DEPTH - 1, i & (NAMES_PER_SCOPE - 1));
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        memoryPerScope();
+        lookupTime();
+    }
+}
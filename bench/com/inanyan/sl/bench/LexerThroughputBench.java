@@ -0,0 +1,69 @@
+package com.inanyan.sl.bench;
+
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.lang.management.ManagementFactory;
+
+// Lexer throughput in MB/s (of source chars) and allocation per source byte, for every Corpus kind.
+// Run with: java -cp out com.inanyan.sl.bench.LexerThroughputBench [statements]
+public class LexerThroughputBench {
+    private static final int ROUNDS = 10;
+    private static final long MIN_NANOS_PER_ROUND = 200_000_000L;
+
+    private static final ErrorListener errorListener = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+            throw new RuntimeException(line + ": " + msg);
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    };
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Object sink;
+
+    private interface Scan {
+        Object run(String src);
+    }
+
+    // Best round, so warm-up and GC pauses don't count.
+    private static void measure(String name, String src, Scan scan) {
+        double bestMbPerSecond = 0;
+        long bytesPerRound = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            long chars = 0;
+            long elapsed;
+            int runs = 0;
+            do {
+                sink = scan.run(src);
+                chars += src.length();
+                runs++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MIN_NANOS_PER_ROUND);
+            bytesPerRound = (allocatedBytes() - before) / runs;
+            bestMbPerSecond = Math.max(bestMbPerSecond, chars / 1e6 / (elapsed / 1e9));
+        }
+        System.out.printf("  %-12s %8.1f MB/s %8.2f B allocated per source byte%n",
+                name, bestMbPerSecond, (double) bytesPerRound / src.length());
+    }
+
+    public static void main(String[] args) {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        for (Corpus.Kind kind : Corpus.Kind.values()) {
+            String src = Corpus.generate(kind, statements);
+            System.out.printf("%s: %,d chars%n", kind, src.length());
+            measure("tokens", src, s -> new Lexer(errorListener, s).scanTokens());
+            measure("buffer", src, s -> new Lexer(errorListener, s).scanTokenBuffer());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.inanyan.sl.bench;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.nodes.NodeBuilder;
+import com.inanyan.sl.nodes.RootNode;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Allocation rate of numeric expressions on the tree interpreter, through evaluate(), which boxes the result,
+// and through the typed entry points, which don't, versus the nodes engine, which specializes them once.
+// Run with: java -cp out com.inanyan.sl.bench.NumericEvalBench
+public class NumericEvalBench {
+    private static final int ITERATIONS = 5_000_000;
+
+    private static final ErrorListener errorListener = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+            throw new RuntimeException(line + ": " + msg);
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    };
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Object sink;
+    private static long primitiveSink;
+
+    private static void measure(String src) {
+        List<Stmt> stmts = new Parser(errorListener, new Lexer(errorListener, src).scanTokens()).parse();
+        Stmt.Expression stmt = (Stmt.Expression) stmts.get(0);
+        Interpreter interpreter = new Interpreter(null);
+        RootNode root = new NodeBuilder((OutputSink) null).build(stmts);
+
+        for (int round = 0; round < 3; round++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink = interpreter.evaluate(stmt.expr);
+            }
+            long treeTime = System.nanoTime() - start;
+            long treeBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                if (sink instanceof Integer) {
+                    primitiveSink += interpreter.evaluateInt(stmt.expr);
+                } else if (sink instanceof Double) {
+                    primitiveSink += (long) interpreter.evaluateDouble(stmt.expr);
+                } else {
+                    primitiveSink += interpreter.evaluateBoolean(stmt.expr) ? 1 : 0;
+                }
+            }
+            long typedTime = System.nanoTime() - start;
+            long typedBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                root.execute(interpreter.getEnvironment());
+            }
+            long nodesTime = System.nanoTime() - start;
+            long nodesBytes = allocatedBytes() - before;
+
+            System.out.printf("%-32s tree: %6.1f B/op %6.1f ns/op   typed: %6.1f B/op %6.1f ns/op   "
+                    + "nodes: %6.1f B/op %6.1f ns/op%n", src,
+                    (double) treeBytes / ITERATIONS, (double) treeTime / ITERATIONS,
+                    (double) typedBytes / ITERATIONS, (double) typedTime / ITERATIONS,
+                    (double) nodesBytes / ITERATIONS, (double) nodesTime / ITERATIONS);
+        }
+    }
+
+    public static void main(String[] args) {
+        measure("-~-123456;");
+        measure("- - - - - - - -1000000;");
+        measure("-+-2.5;");
+        measure("!!!!true;");
+        measure("1000 * 1000 + 300 * 7 - 2;");
+        measure("1.5 * 2.5 + 0.25;");
+        measure("1000 * 1000 + 300 < 5000000;");
+    }
+}
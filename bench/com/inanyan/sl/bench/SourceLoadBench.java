@@ -0,0 +1,76 @@
+package com.inanyan.sl.bench;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.ErrorListener;
+import com.inanyan.sl.util.MappedSource;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Time to the first parsed statement of a large script: memory-mapped source versus Files.readString.
+// Run with: java -cp out com.inanyan.sl.bench.SourceLoadBench [megabytes]
+public class SourceLoadBench {
+    private static final ErrorListener errorListener = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+            throw new RuntimeException(line + ": " + msg);
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    };
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Object sink;
+
+    private static Path generate(long megabytes) throws IOException {
+        Path path = Files.createTempFile("sl-bench", ".sl");
+        path.toFile().deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            long written = 0;
+            for (int i = 0; written < megabytes * 1024 * 1024; i++) {
+                String line = "print -~" + i + "; # padding comment to make lines a bit longer\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+        return path;
+    }
+
+    private static Stmt firstStatement(CharSequence source) {
+        return new Parser(errorListener, new Lexer(errorListener, source)).parseNext();
+    }
+
+    public static void main(String[] args) throws IOException {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 64;
+        Path path = generate(megabytes);
+        System.out.printf("script: %d MB%n", megabytes);
+
+        for (int round = 0; round < 5; round++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            sink = firstStatement(MappedSource.open(path));
+            long mappedTime = System.nanoTime() - start;
+            long mappedBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            sink = firstStatement(Files.readString(path));
+            long readTime = System.nanoTime() - start;
+            long readBytes = allocatedBytes() - before;
+
+            System.out.printf("first statement: mapped %.2f ms / %,d B heap   readString %.2f ms / %,d B heap%n",
+                    mappedTime / 1e6, mappedBytes, readTime / 1e6, readBytes);
+        }
+    }
+}
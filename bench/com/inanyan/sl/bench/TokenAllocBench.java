@@ -0,0 +1,72 @@
+package com.inanyan.sl.bench;
+
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.TokenBuffer;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.lang.management.ManagementFactory;
+
+// Lexer and parser allocation with Token objects versus the offset-based TokenBuffer.
+// Run with: java -cp out com.inanyan.sl.bench.TokenAllocBench
+public class TokenAllocBench {
+    private static final int STATEMENTS = 200_000;
+
+    private static final ErrorListener errorListener = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+            throw new RuntimeException(line + ": " + msg);
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    };
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Object sink;
+
+    private static String corpus() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            switch (i % 4) {
+                case 0 -> sb.append("print -~").append(i).append(";\n");
+                case 1 -> sb.append("- - SL_VER_MAJOR;\n");
+                case 2 -> sb.append("print !true; # comment\n");
+                case 3 -> sb.append("print 'c'; print \"str\";\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) {
+        String src = corpus();
+        System.out.printf("corpus: %d chars, %d statements%n", src.length(), STATEMENTS);
+
+        for (int round = 0; round < 5; round++) {
+            long before = allocatedBytes();
+            sink = new Lexer(errorListener, src).scanTokens();
+            long tokensBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            TokenBuffer buffer = new Lexer(errorListener, src).scanTokenBuffer();
+            long bufferBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            sink = new Parser(errorListener, new Lexer(errorListener, src).scanTokens()).parse();
+            long tokensParseBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            sink = new Parser(errorListener, new Lexer(errorListener, src).scanTokenBuffer()).parse();
+            long bufferParseBytes = allocatedBytes() - before;
+            sink = buffer;
+
+            System.out.printf("lex: tokens %,d B, buffer %,d B (%.1fx)   lex+parse: tokens %,d B, buffer %,d B%n",
+                    tokensBytes, bufferBytes, (double) tokensBytes / bufferBytes, tokensParseBytes, bufferParseBytes);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of a call on the tree interpreter. CHAIN nests 'depth' calls, each with its own frame on the value
+// stack; CLOSURE calls a function that reads a captured value. Results are per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallBenchmark {
+    public enum Kind {
+        CHAIN, CLOSURE
+    }
+
+    @Param({"CHAIN", "CLOSURE"})
+    public Kind kind;
+
+    @Param({"32"})
+    public int depth;
+
+    private Interpreter interpreter;
+    private List<Stmt> setup;
+    private List<Stmt> stmts;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        if (kind == Kind.CHAIN) {
+            sb.append("fun f0(x) { return x; }\n");
+            for (int i = 1; i < depth; i++) {
+                sb.append("fun f").append(i).append("(x) { return f").append(i - 1).append("(x); }\n");
+            }
+        } else {
+            sb.append("fun make(v) { fun get() { return v; } return get; }\nvar get = make(1);\n");
+        }
+        String calls = kind == Kind.CHAIN ? "f" + (depth - 1) + "(1);\n" : "get();\n".repeat(depth);
+
+        Environment environment = new Environment(Builtins.createGlobalEnvironment());
+        setup = parse(sb.toString());
+        new Resolver(Errors.FAIL, environment).resolve(setup);
+        stmts = parse(calls);
+        new Resolver(Errors.FAIL, environment).resolve(stmts);
+
+        interpreter = new Interpreter(new PrintStream(OutputStream.nullOutputStream()), environment);
+        interpreter.run(setup);
+    }
+
+    private static List<Stmt> parse(String source) {
+        return new Parser(Errors.FAIL, new Lexer(Errors.FAIL, source)).parse();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(32)
+    public void call() {
+        interpreter.run(stmts);
+    }
+}
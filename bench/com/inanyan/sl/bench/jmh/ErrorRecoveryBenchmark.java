@@ -0,0 +1,66 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.bench.Corpus;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Program;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Error-heavy inputs against clean ones of the same size. The pairs should run at about the same speed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorRecoveryBenchmark {
+    @Param({"1000"})
+    public int statements;
+
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+    private String clean;
+    private String broken;
+    private Program passing;
+    private Program failing;
+
+    @Setup
+    public void setup() {
+        clean = Corpus.generate(Corpus.Kind.IDENTIFIERS, statements);
+        broken = Corpus.broken(statements);
+        passing = Program.compile(Errors.FAIL, "print -SL_VER_PATCH;");
+        failing = Program.compile(Errors.FAIL, "print -SL_VER_STR;");
+    }
+
+    @Benchmark
+    public List<Stmt> parseClean() {
+        return new Parser(Errors.FAIL, new Lexer(Errors.FAIL, clean)).parse();
+    }
+
+    @Benchmark
+    public List<Stmt> parseBroken() {
+        return new Parser(Errors.IGNORE, new Lexer(Errors.IGNORE, broken)).parse();
+    }
+
+    @Benchmark
+    public int runPassing() {
+        passing.run(out);
+        return 0;
+    }
+
+    @Benchmark
+    public int runFailing() {
+        try {
+            failing.run(out);
+            return 0;
+        } catch (Interpreter.Error e) {
+            return e.line;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.util.ErrorListener;
+
+// Benchmark corpora are valid, so any diagnostic means the benchmark itself is broken. IGNORE is for the
+// benchmarks that measure error handling.
+class Errors {
+    static final ErrorListener IGNORE = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    };
+
+    static final ErrorListener FAIL = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+            throw new IllegalStateException("benchmark input error at line " + line + ": " + msg);
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+            throw new IllegalStateException("benchmark input warning at line " + line + ": " + msg);
+        }
+    };
+}
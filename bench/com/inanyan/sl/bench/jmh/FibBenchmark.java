@@ -0,0 +1,52 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Naive recursive fib(n) on the tree interpreter: calls, comparisons and int arithmetic, about 1.6 million
+// calls for n = 30.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FibBenchmark {
+    @Param({"30"})
+    public int n;
+
+    private Interpreter interpreter;
+    private List<Stmt> stmts;
+
+    @Setup
+    public void setup() {
+        Environment environment = new Environment(Builtins.createGlobalEnvironment());
+        List<Stmt> setup = parse("fun fib(n) {\n  if (n < 2) return n;\n  return fib(n - 1) + fib(n - 2);\n}");
+        new Resolver(Errors.FAIL, environment).resolve(setup);
+        stmts = parse("fib(" + n + ");");
+        new Resolver(Errors.FAIL, environment).resolve(stmts);
+
+        interpreter = new Interpreter(new PrintStream(OutputStream.nullOutputStream()), environment);
+        interpreter.run(setup);
+    }
+
+    private static List<Stmt> parse(String source) {
+        return new Parser(Errors.FAIL, new Lexer(Errors.FAIL, source)).parse();
+    }
+
+    @Benchmark
+    public void fib() {
+        interpreter.run(stmts);
+    }
+}
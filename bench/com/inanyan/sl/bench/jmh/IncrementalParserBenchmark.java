@@ -0,0 +1,56 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.bench.Corpus;
+import com.inanyan.sl.parsing.IncrementalParser;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A keystroke in the middle of a file: typing a digit and deleting it again, incrementally and from scratch.
+// The time of the edits alone should stay flat as the file grows; getStmts() copies a list of all statements.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalParserBenchmark {
+    @Param({"1000", "100000"})
+    public int statements;
+
+    private IncrementalParser parser;
+    private int offset;
+
+    @Setup
+    public void setup() {
+        String source = Corpus.generate(Corpus.Kind.IDENTIFIERS, statements);
+        parser = new IncrementalParser(source);
+        offset = source.indexOf(';', source.length() / 2);
+    }
+
+    @Benchmark
+    public int incremental() {
+        parser.edit(offset, 0, "1");
+        parser.edit(offset, 1, "");
+        return parser.getReparsedCount();
+    }
+
+    @Benchmark
+    public List<Stmt> incrementalWithStmts() {
+        parser.edit(offset, 0, "1");
+        parser.edit(offset, 1, "");
+        return parser.getStmts();
+    }
+
+    @Benchmark
+    public List<Stmt> full() {
+        String source = parser.getSource();
+        new Parser(Errors.IGNORE, new Lexer(Errors.IGNORE, source.substring(0, offset) + "1"
+                + source.substring(offset))).parse();
+        return new Parser(Errors.FAIL, new Lexer(Errors.FAIL, source)).parse();
+    }
+}
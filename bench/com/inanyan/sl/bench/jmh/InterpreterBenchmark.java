@@ -0,0 +1,97 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.bench.Corpus;
+import com.inanyan.sl.jit.JitCompiler;
+import com.inanyan.sl.jit.JitScript;
+import com.inanyan.sl.lang.Budget;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.nodes.NodeBuilder;
+import com.inanyan.sl.nodes.RootNode;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.vm.Chunk;
+import com.inanyan.sl.vm.Compiler;
+import com.inanyan.sl.vm.VM;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs an already parsed and resolved program, so only execution is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+    public enum Engine {
+        TREE, NODES, VM, JIT
+    }
+
+    @Param({"DEEP_UNARY", "IDENTIFIERS", "LONG_STRINGS", "COMMENTS", "OPERATOR_CHAINS"})
+    public Corpus.Kind kind;
+
+    @Param({"1000"})
+    public int statements;
+
+    @Param({"TREE", "NODES", "VM", "JIT"})
+    public Engine engine;
+
+    // With a fresh budget per run, as a server gives every request. The JIT has no budget checks.
+    @Param({"false", "true"})
+    public boolean limited;
+
+    private static final Limits LIMITS = new Limits(1_000_000_000, 60_000);
+
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+    private Environment environment;
+    private Interpreter interpreter;
+    private List<Stmt> stmts;
+    private RootNode root;
+    private VM vm;
+    private Chunk chunk;
+    private JitScript script;
+
+    @Setup
+    public void setup() {
+        String source = Corpus.generate(kind, statements);
+        stmts = new Parser(Errors.FAIL, new Lexer(Errors.FAIL, source)).parse();
+
+        environment = new Environment(Builtins.createGlobalEnvironment());
+        new Resolver(Errors.FAIL, environment).resolve(stmts);
+
+        interpreter = new Interpreter(out, environment);
+        root = new NodeBuilder(out).build(stmts);
+        vm = new VM(out, environment);
+        chunk = new Compiler().compile(stmts);
+        script = new JitCompiler().compile(stmts);
+    }
+
+    @Benchmark
+    public void run() {
+        Budget budget = limited ? LIMITS.newBudget() : null;
+        interpreter.setBudget(budget);
+        vm.setBudget(budget);
+
+        switch (engine) {
+            case TREE -> interpreter.run(stmts);
+            case NODES -> {
+                if (budget == null) {
+                    root.execute(environment);
+                } else {
+                    root.execute(environment, budget);
+                }
+            }
+            case VM -> vm.run(chunk);
+            case JIT -> script.run(environment, out);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.bench.Corpus;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Token;
+import com.inanyan.sl.parsing.TokenBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+    @Param({"DEEP_UNARY", "IDENTIFIERS", "LONG_STRINGS", "COMMENTS", "OPERATOR_CHAINS"})
+    public Corpus.Kind kind;
+
+    @Param({"1000"})
+    public int statements;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = Corpus.generate(kind, statements);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Lexer(Errors.FAIL, source).scanTokens();
+    }
+
+    @Benchmark
+    public TokenBuffer scanTokenBuffer() {
+        return new Lexer(Errors.FAIL, source).scanTokenBuffer();
+    }
+}
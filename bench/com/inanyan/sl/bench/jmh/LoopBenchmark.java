@@ -0,0 +1,78 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Long-running loops on the tree interpreter, with hot loops compiled (see CompiledLoop) and without. The
+// interpreter is kept between invocations, so the loop is already known to be hot after the first one.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopBenchmark {
+    public enum Kind {
+        // A bare counter.
+        COUNT("fun loop(n) { var i = 0; while (i < n) i = i + 1; return i; }"),
+        // Int accumulation with a condition, in a for loop.
+        SUM("fun loop(n) {\n  var s = 0;\n  for (var i = 0; i < n; i = i + 1) {\n"
+                + "    if (i % 3 == 0) s = s + i; else s = s - 1;\n  }\n  return s;\n}"),
+        // Float accumulation.
+        FLOAT_SUM("fun loop(n) { var s = 0.0; var x = 0.5; for (var i = 0; i < n; i = i + 1) s = s + x * 2.0;"
+                + " return s; }"),
+        // Globals instead of locals, as in a script that runs at the top level.
+        GLOBAL_COUNT("var i = 0;\nfun loop(n) { i = 0; while (i < n) i = i + 1; return i; }");
+
+        final String source;
+
+        Kind(String source) {
+            this.source = source;
+        }
+    }
+
+    @Param({"COUNT", "SUM", "FLOAT_SUM", "GLOBAL_COUNT"})
+    public Kind kind;
+
+    @Param({"1000000"})
+    public int iterations;
+
+    @Param({"true", "false"})
+    public boolean compileLoops;
+
+    private Interpreter interpreter;
+    private List<Stmt> stmts;
+
+    @Setup
+    public void setup() {
+        Environment environment = new Environment(Builtins.createGlobalEnvironment());
+        List<Stmt> setup = parse(kind.source);
+        new Resolver(Errors.FAIL, environment).resolve(setup);
+        stmts = parse("loop(" + iterations + ");");
+        new Resolver(Errors.FAIL, environment).resolve(stmts);
+
+        interpreter = new Interpreter(new PrintStream(OutputStream.nullOutputStream()), environment);
+        interpreter.setCompileLoops(compileLoops);
+        interpreter.run(setup);
+    }
+
+    private static List<Stmt> parse(String source) {
+        return new Parser(Errors.FAIL, new Lexer(Errors.FAIL, source)).parse();
+    }
+
+    @Benchmark
+    public void loop() {
+        interpreter.run(stmts);
+    }
+}
@@ -0,0 +1,53 @@
+package com.inanyan.sl.bench.jmh;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.bench.Corpus;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.Token;
+import com.inanyan.sl.parsing.TokenBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"DEEP_UNARY", "IDENTIFIERS", "LONG_STRINGS", "COMMENTS", "OPERATOR_CHAINS"})
+    public Corpus.Kind kind;
+
+    @Param({"1000"})
+    public int statements;
+
+    private String source;
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+
+    @Setup
+    public void setup() {
+        source = Corpus.generate(kind, statements);
+        tokens = new Lexer(Errors.FAIL, source).scanTokens();
+        buffer = new Lexer(Errors.FAIL, source).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public List<Stmt> parseTokens() {
+        return new Parser(Errors.FAIL, tokens).parse();
+    }
+
+    @Benchmark
+    public List<Stmt> parseTokenBuffer() {
+        return new Parser(Errors.FAIL, buffer).parse();
+    }
+
+    // Lexing and parsing together, with tokens streamed from the lexer.
+    @Benchmark
+    public List<Stmt> lexAndParse() {
+        return new Parser(Errors.FAIL, new Lexer(Errors.FAIL, source)).parse();
+    }
+}
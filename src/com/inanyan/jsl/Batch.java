@@ -0,0 +1,141 @@
+package com.inanyan.jsl;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.cache.ScriptCache;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.opt.PassManager;
+import com.inanyan.sl.util.MappedSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+// Checks or runs many files at once. Every file gets its own session and its own output buffer, so files
+// are processed in parallel while the output is printed in path order, the same on every run.
+public class Batch {
+    static final String EXTENSION = ".sl";
+
+    private final Session.Engine engine;
+    private final PassManager passManager;
+    private final Limits limits;
+    private final ScriptCache cache;
+    private final boolean execute;
+    private final PrintStream out;
+
+    private static class Result {
+        final String output;
+        final boolean ok;
+
+        Result(String output, boolean ok) {
+            this.output = output;
+            this.ok = ok;
+        }
+    }
+
+    // The cache is optional, may be null.
+    public Batch(Session.Engine engine, PassManager passManager, Limits limits, ScriptCache cache, boolean execute,
+          PrintStream out) {
+        this.engine = engine;
+        this.passManager = passManager;
+        this.limits = limits;
+        this.cache = cache;
+        this.execute = execute;
+        this.out = out;
+    }
+
+    // Directories are searched recursively for *.sl files. Returns the number of files that failed.
+    public int run(List<String> paths, int jobs) {
+        List<Path> files = new ArrayList<>();
+        int failed = 0;
+
+        for (String path : paths) {
+            try {
+                collect(Path.of(path), files);
+            } catch (IOException | InvalidPathException e) {
+                out.println(path + ": error: can't read file: " + e.getMessage() + ".");
+                failed++;
+            }
+        }
+
+        files.sort(null);
+
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(pool.submit(() -> process(file)));
+            }
+
+            // Printing in submission order as results arrive keeps the output streaming and deterministic.
+            for (ForkJoinTask<Result> task : tasks) {
+                Result result = task.join();
+                out.print(result.output);
+                if (!result.ok) failed++;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        out.println((execute ? "Ran " : "Checked ") + files.size() + " file(s), " + failed + " failed.");
+        return failed;
+    }
+
+    private static void collect(Path path, List<Path> files) throws IOException {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.filter(p -> p.toString().endsWith(EXTENSION) && Files.isRegularFile(p)).forEach(files::add);
+        }
+    }
+
+    private Result process(Path file) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream fileOut = new PrintStream(buffer, false);
+        Diagnostics diagnostics = new Diagnostics(file.toString(), fileOut);
+        if (execute) {
+            fileOut.println("==> " + file + " <==");
+        }
+
+        boolean ok;
+        try {
+            Session session = new Session(engine, passManager, diagnostics,
+                    OutputSink.of(fileOut, OutputSink.FlushPolicy.SIZE));
+            session.setLimits(limits);
+            if (cache != null) {
+                List<Stmt> stmts = cache.load(file, diagnostics);
+                if (stmts != null && execute) {
+                    session.run(stmts);
+                } else if (stmts != null) {
+                    session.resolve(stmts);
+                }
+            } else if (execute) {
+                session.run(MappedSource.open(file));
+            } else {
+                session.check(MappedSource.open(file));
+            }
+            ok = !diagnostics.hadError();
+        } catch (IOException e) {
+            fileOut.println(file + ": error: can't read file: " + e.getMessage() + ".");
+            ok = false;
+        } catch (RuntimeException | StackOverflowError e) {
+            // One broken file fails on its own, the rest of the batch goes on.
+            fileOut.println(file + ": error: internal error: " + e + ".");
+            ok = false;
+        }
+
+        fileOut.flush();
+        return new Result(buffer.toString(), ok);
+    }
+}
@@ -0,0 +1,47 @@
+package com.inanyan.jsl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+// Sends one script to a running Server and copies its answer to out. See Server for the protocol.
+public class Client {
+    private Client() {}
+
+    // Returns the status sent by the server.
+    public static int run(Path socket, String name, byte[] source, PrintStream out) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeUTF(name);
+            request.writeInt(source.length);
+            request.write(source);
+            request.flush();
+
+            DataInputStream answer = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte tag = answer.readByte();
+                int length = answer.readInt();
+                if (tag == Server.EXIT) {
+                    out.flush();
+                    return answer.readInt();
+                } else if (tag != Server.OUTPUT || length < 0) {
+                    throw new IOException("unexpected answer from server");
+                }
+
+                if (length > buffer.length) {
+                    buffer = new byte[length];
+                }
+                answer.readFully(buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.inanyan.jsl;
+
+import com.inanyan.sl.util.ErrorListener;
+
+import java.io.PrintStream;
+
+// Prints diagnostics as "source:line: error: msg." and remembers whether any error was reported.
+// Safe to share between threads, every report is printed as a whole line.
+class Diagnostics implements ErrorListener {
+    private final PrintStream out;
+    private String source;
+    private boolean hadError = false;
+
+    Diagnostics(String source, PrintStream out) {
+        this.source = source;
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void reportError(int line, String msg) {
+        report(line, "error", msg);
+        hadError = true;
+    }
+
+    @Override
+    public synchronized void reportWarning(int line, String msg) {
+        report(line, "warning", msg);
+    }
+
+    private void report(int line, String what, String msg) {
+        out.println(source + ":" + line + ": " + what + ": " + msg + ".");
+    }
+
+    synchronized void reset(String source) {
+        this.source = source;
+        hadError = false;
+    }
+
+    synchronized String getSource() {
+        return source;
+    }
+
+    synchronized boolean hadError() {
+        return hadError;
+    }
+}
@@ -1,52 +1,156 @@
 package com.inanyan.jsl;
 
 import com.inanyan.sl.ast.Stmt;
-import com.inanyan.sl.lang.Interpreter;
-import com.inanyan.sl.parsing.Lexer;
-import com.inanyan.sl.parsing.Parser;
-import com.inanyan.sl.parsing.Token;
-import com.inanyan.sl.util.ErrorListener;
+import com.inanyan.sl.cache.ScriptCache;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.opt.Pass;
+import com.inanyan.sl.opt.PassManager;
+import com.inanyan.sl.util.MappedSource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
-    private static boolean hadError = false;
-    private static String currentSource;
-    private final static ErrorListener errorListener = new ErrorListener() {
-
-        @Override
-        public void reportError(int line, String msg) {
-            report(line, "error", msg);
-            hadError = true;
+    private enum Mode {
+        SINGLE, CHECK, RUN_ALL, SERVE, CONNECT
+    }
+
+    private static Session.Engine engine = Session.Engine.TREE;
+    private static Mode mode = Mode.SINGLE;
+    private static int jobs = Runtime.getRuntime().availableProcessors();
+    private final static PassManager passManager = PassManager.createDefault();
+    private final static Diagnostics diagnostics = new Diagnostics("<repl>", System.out);
+    private static Session session;
+    private static ScriptCache cache;
+    private static Path socket;
+    private static long fuel = Limits.UNLIMITED;
+    private static long timeoutMillis = Limits.UNLIMITED;
+    private static long allocation = 0;
+    private static Limits limits;
+
+    public static void main(String[] args) {
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--vm")) {
+                engine = Session.Engine.VM;
+            } else if (arg.equals("--nodes")) {
+                engine = Session.Engine.NODES;
+            } else if (arg.equals("--jit")) {
+                engine = Session.Engine.JIT;
+            } else if (arg.equals("--tree")) {
+                engine = Session.Engine.TREE;
+            } else if (arg.equals("--check")) {
+                mode = Mode.CHECK;
+            } else if (arg.equals("--run-all")) {
+                mode = Mode.RUN_ALL;
+            } else if (arg.startsWith("--serve=") || arg.startsWith("--connect=")) {
+                mode = arg.startsWith("--serve=") ? Mode.SERVE : Mode.CONNECT;
+                try {
+                    socket = Path.of(arg.substring(arg.indexOf('=') + 1));
+                } catch (InvalidPathException e) {
+                    printUsage();
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--jobs=")) {
+                try {
+                    jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    printUsage();
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--fuel=") || arg.startsWith("--timeout=") || arg.startsWith("--max-alloc=")) {
+                long value;
+                try {
+                    value = Long.parseLong(arg.substring(arg.indexOf('=') + 1));
+                } catch (NumberFormatException e) {
+                    value = 0;
+                }
+                if (value <= 0) {
+                    printUsage();
+                    System.exit(1);
+                }
+                if (arg.startsWith("--fuel=")) {
+                    fuel = value;
+                } else if (arg.startsWith("--timeout=")) {
+                    timeoutMillis = value;
+                } else {
+                    allocation = value;
+                }
+            } else if (arg.startsWith("--cache-dir=")) {
+                try {
+                    cache = new ScriptCache(Path.of(arg.substring("--cache-dir=".length())));
+                } catch (InvalidPathException e) {
+                    printUsage();
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--no-")) {
+                if (!passManager.setEnabled(arg.substring("--no-".length()), false)) {
+                    printUsage();
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--")) {
+                printUsage();
+                System.exit(1);
+            } else {
+                files.add(arg);
+            }
         }
 
-        @Override
-        public void reportWarning(int line, String msg) {
-            report(line, "warning", msg);
+        // A run that is limited at all is limited in memory too, or the limits are as good as none.
+        if (allocation == 0) {
+            allocation = fuel == Limits.UNLIMITED && timeoutMillis == Limits.UNLIMITED ? Limits.UNLIMITED
+                    : Limits.DEFAULT_ALLOCATION;
         }
+        limits = new Limits(fuel, timeoutMillis, allocation);
+
+        if (mode == Mode.SERVE || mode == Mode.CONNECT) {
+            if (files.size() > (mode == Mode.CONNECT ? 1 : 0)) {
+                printUsage();
+                System.exit(1);
+            }
 
-        private void report(int line, String what, String msg) {
-            System.out.println(currentSource + ":" + String.valueOf(line) + ": " + what + ": " + msg + ".");
+            if (mode == Mode.SERVE) {
+                serve();
+            } else {
+                connect(files.isEmpty() ? null : files.get(0));
+            }
+            return;
         }
-    };
 
-    private final static Interpreter interpreter = new Interpreter(System.out);
+        if (mode != Mode.SINGLE) {
+            if (files.isEmpty()) {
+                printUsage();
+                System.exit(1);
+            }
 
-    public static void main(String[] args) {
-        if (args.length > 1) {
-            // TODO: '<main>' name
-            System.out.println("Usage: <main> filename - runs the file");
-            System.out.println("   or  <main>          - runs a REPL");
+            Batch batch = new Batch(engine, passManager, limits, cache, mode == Mode.RUN_ALL, System.out);
+            if (batch.run(files, jobs) != 0) {
+                System.exit(2);
+            }
+            return;
+        }
+
+        session = new Session(engine, passManager, diagnostics, OutputSink.stdout());
+        session.setLimits(limits);
+
+        if (files.size() > 1) {
+            printUsage();
             System.exit(1);
-        } else if (args.length == 1){
-            if (!loadFile(args[0])) {
+        } else if (files.size() == 1){
+            if (!loadFile(files.get(0))) {
                 System.out.println("Errors occurred while file was loading. Exiting...");
                 System.exit(2);
             }
-            // TODO: Load file
         } else {
             printWelcomeMsg();
 
@@ -57,9 +161,84 @@ public class Main {
         }
     }
 
+    private static void printUsage() {
+        // TODO: '<main>' name
+        System.out.println("Usage: <main> [options] filename - runs the file");
+        System.out.println("   or  <main> [options]          - runs a REPL");
+        System.out.println("   or  <main> [options] --check path...   - parses and resolves every file, in parallel");
+        System.out.println("   or  <main> [options] --run-all path... - runs every file in a fresh session, in parallel");
+        System.out.println("   or  <main> [options] --serve=SOCKET    - runs scripts sent to the Unix socket SOCKET");
+        System.out.println("   or  <main> --connect=SOCKET [filename] - runs the file, or stdin, on a server");
+        System.out.println("Directories are searched for *" + Batch.EXTENSION + " files.");
+        System.out.println("Options:");
+        System.out.println("  --tree  execute by walking the syntax tree (default)");
+        System.out.println("  --nodes execute on self-specializing tree nodes");
+        System.out.println("  --vm    compile to bytecode and execute on the stack VM");
+        System.out.println("  --jit   compile to a JVM class and execute it");
+        System.out.println("  --cache-dir=DIR keep parsed scripts in DIR and reuse them while the file is unchanged");
+        System.out.println("  --fuel=N stop every run after N statements");
+        System.out.println("  --timeout=MS stop every run after MS milliseconds");
+        System.out.println("  --max-alloc=N stop every run after it made N string chars and closure slots");
+        System.out.println("                (default with --fuel or --timeout: " + Limits.DEFAULT_ALLOCATION + ")");
+        System.out.println("  --jobs=N process N files at once in batch mode (default: number of cores)");
+        for (Pass pass : passManager.getPasses()) {
+            System.out.println("  --no-" + pass.getName() + " disable the '" + pass.getName() + "' optimization pass");
+        }
+    }
+
+    private static void serve() {
+        try {
+            new Server(engine, passManager, limits).serve(socket);
+        } catch (IOException e) {
+            System.out.println(socket + ": error: can't serve: " + e.getMessage() + ".");
+            System.exit(1);
+        }
+    }
+
+    // Reads stdin when path is null.
+    private static void connect(String path) {
+        byte[] source;
+        try {
+            source = path == null ? System.in.readAllBytes() : Files.readAllBytes(Path.of(path));
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(path + ": error: can't read file: " + e.getMessage() + ".");
+            System.exit(2);
+            return;
+        }
+
+        int status;
+        try {
+            status = Client.run(socket, path == null ? "<stdin>" : path, source, System.out);
+        } catch (IOException e) {
+            System.out.println(socket + ": error: can't reach server: " + e.getMessage() + ".");
+            System.exit(1);
+            return;
+        }
+
+        if (status != 0) {
+            System.out.println("Errors occurred while file was loading. Exiting...");
+            System.exit(status);
+        }
+    }
+
     private static boolean loadFile(String path) {
-        currentSource = path;
-        throw new RuntimeException("Unimplemented loadFile");
+        diagnostics.reset(path);
+
+        try {
+            if (cache != null) {
+                List<Stmt> stmts = cache.load(Path.of(path), diagnostics);
+                if (stmts != null) {
+                    session.run(stmts);
+                }
+            } else {
+                session.run(MappedSource.open(Path.of(path)));
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(path + ": error: can't read file: " + e.getMessage() + ".");
+            return false;
+        }
+
+        return !diagnostics.hadError();
     }
 
     private static void printWelcomeMsg() {
@@ -72,8 +251,7 @@ public class Main {
     private static boolean startRepl() {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
-        currentSource = "<repl>";
-        hadError = false;
+        diagnostics.reset("<repl>");
 
         while (true) {
             System.out.print("> ");
@@ -87,24 +265,12 @@ public class Main {
                         return true;
                 }
 
-                runStr(line);
-                hadError = false;
+                session.run(line);
+                diagnostics.reset("<repl>");
             } catch (IOException e) {
                 // TODO: Print e?
                 return false;
             }
         }
     }
-
-    private static void runStr(String str) {
-        Lexer lexer = new Lexer(errorListener, str);
-        List<Token> tokens = lexer.scanTokens();
-        if (hadError) return;
-
-        Parser parser = new Parser(errorListener, tokens);
-        List<Stmt> stmts = parser.parse();
-        if (hadError) return;
-
-        interpreter.run(stmts);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package com.inanyan.jsl;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.cache.MemoryCache;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.opt.PassManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs scripts for clients on a Unix domain socket, in a JVM that is started and warmed up already. Every
+// connection gets its own session, with its own globals and interpreter, on its own thread. Parsed scripts
+// are shared by all of them.
+//
+// A request is a source name (DataOutput.writeUTF), an int length and that many bytes of UTF-8 source. The
+// answer is a series of frames, each a tag byte, an int length and the payload: OUTPUT frames carry printed
+// values and diagnostics, an EXIT frame with an int status ends it. The status is 0, or 2 if there were
+// errors, as for a local run. A connection can carry any number of requests, later ones see the definitions
+// of earlier ones. A source over MAX_SOURCE_BYTES is refused and ends the connection.
+public class Server {
+    public static final byte OUTPUT = 'O';
+    public static final byte EXIT = 'X';
+    private static final int CACHE_CAPACITY = 256;
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFSOCK = 0140000;
+    // The length of a request comes from the client, it is not trusted with the memory of the shared JVM.
+    public static final int MAX_SOURCE_BYTES = 16 * 1024 * 1024;
+
+    private final Session.Engine engine;
+    private final PassManager passManager;
+    private final Limits limits;
+    private final MemoryCache cache = new MemoryCache(CACHE_CAPACITY);
+
+    // The limits apply to every request on their own, so one runaway script can't hold a thread for long.
+    public Server(Session.Engine engine, PassManager passManager, Limits limits) {
+        this.engine = engine;
+        this.passManager = passManager;
+        this.limits = limits;
+    }
+
+    // Serves until the process is killed, or until the thread is interrupted, which ends serve() with
+    // ClosedByInterruptException and lets the connections being served finish. A socket left behind by a
+    // server that is gone is replaced, anything else at the path is left alone and is an error.
+    public void serve(Path socket) throws IOException {
+        removeStaleSocket(socket);
+        ExecutorService executor = newPerTaskExecutor();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Replaced by the next server anyway.
+                }
+            }));
+
+            while (true) {
+                SocketChannel client = server.accept();
+                executor.execute(() -> handle(client));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void removeStaleSocket(Path socket) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(socket, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!isSocket(socket, attributes)) {
+            throw new IOException("the path exists and isn't a socket");
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+        } catch (ConnectException e) {
+            // Refused: no one is listening any more.
+            Files.delete(socket);
+            return;
+        }
+        throw new IOException("a server is running on it already");
+    }
+
+    // By the file type in its mode where the file system has one, otherwise anything that isn't a regular file,
+    // a directory or a link is taken for a socket.
+    private static boolean isSocket(Path path, BasicFileAttributes attributes) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & S_IFMT) == S_IFSOCK;
+        } catch (UnsupportedOperationException e) {
+            return attributes.isOther();
+        }
+    }
+
+    // Virtual threads where the runtime has them, that is JDK 21, or 19 and 20 with --enable-preview. They
+    // are looked up reflectively, so that the code still builds and runs on 17 with a thread per connection.
+    private static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            Frames frames = new Frames(Channels.newOutputStream(channel));
+            PrintStream text = new PrintStream(frames, false, StandardCharsets.UTF_8);
+            Diagnostics diagnostics = new Diagnostics("<client>", text);
+            Session session = new Session(engine, passManager, diagnostics,
+                    OutputSink.of(text, OutputSink.FlushPolicy.SIZE));
+            session.setLimits(limits);
+
+            while (true) {
+                String name;
+                try {
+                    name = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                int length = in.readInt();
+                if (length < 0) {
+                    return;
+                } else if (length > MAX_SOURCE_BYTES) {
+                    // The source isn't read, so the connection can't go on after it.
+                    text.println(name + ": error: source is over " + MAX_SOURCE_BYTES + " bytes.");
+                    text.flush();
+                    frames.exit(2);
+                    return;
+                }
+                byte[] source = new byte[length];
+                in.readFully(source);
+
+                diagnostics.reset(name);
+                boolean failed = false;
+                try {
+                    List<Stmt> stmts = cache.load(new String(source, StandardCharsets.UTF_8), name, diagnostics);
+                    if (stmts != null) {
+                        session.run(stmts);
+                    }
+                } catch (RuntimeException | StackOverflowError e) {
+                    // Fails this request only, the session and its connection stay.
+                    text.println(name + ": error: internal error: " + e + ".");
+                    failed = true;
+                }
+                text.flush();
+                frames.exit(failed || diagnostics.hadError() ? 2 : 0);
+            }
+        } catch (IOException e) {
+            // The client went away, there is no one left to answer.
+        }
+    }
+
+    // Every write becomes an OUTPUT frame. Frames are buffered until the answer is complete or the
+    // buffer fills up.
+    private static class Frames extends OutputStream {
+        private final DataOutputStream out;
+
+        Frames(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            out.writeByte(OUTPUT);
+            out.writeInt(len);
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            // Only whole answers are sent, see exit().
+        }
+
+        void exit(int status) throws IOException {
+            out.writeByte(EXIT);
+            out.writeInt(Integer.BYTES);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.inanyan.jsl;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jit.JitCompiler;
+import com.inanyan.sl.jfr.Recorder;
+import com.inanyan.sl.jit.JitScript;
+import com.inanyan.sl.lang.Budget;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.nodes.NodeBuilder;
+import com.inanyan.sl.nodes.RootNode;
+import com.inanyan.sl.opt.PassManager;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.vm.Chunk;
+import com.inanyan.sl.vm.Compiler;
+import com.inanyan.sl.vm.VM;
+
+import java.util.List;
+
+// One engine with its own globals. Sources run in the same session share their definitions, like
+// the lines of a REPL. A session is used by one thread at a time; the batch mode creates one per file.
+// The class and Engine are public for the tests of Batch and Server, the rest stays package-private.
+public class Session {
+    public enum Engine {
+        TREE, NODES, VM, JIT
+    }
+
+    private final Engine engine;
+    private final PassManager passManager;
+    private final Diagnostics diagnostics;
+    private final OutputSink out;
+    private final Environment environment;
+    private final Interpreter interpreter;
+    private final VM vm;
+    private Limits limits = Limits.NONE;
+
+    Session(Engine engine, PassManager passManager, Diagnostics diagnostics, OutputSink out) {
+        this.engine = engine;
+        this.passManager = passManager;
+        this.diagnostics = diagnostics;
+        this.out = out;
+
+        environment = new Environment(Builtins.globals());
+        vm = engine == Engine.VM ? new VM(out, environment) : null;
+
+        // The tree interpreter shares the globals of the session, the JIT falls back to it.
+        this.interpreter = new Interpreter(out, environment);
+    }
+
+    // Every run gets a fresh budget from these. A run that exceeds them stops between two statements and
+    // is reported like a runtime error; the session stays usable.
+    void setLimits(Limits limits) {
+        this.limits = limits;
+    }
+
+    // Parses and resolves the source, returns null if there were errors.
+    List<Stmt> check(CharSequence source) {
+        // Tokens are pulled by the parser as it goes, the source is never copied into a token list.
+        Lexer lexer = new Lexer(diagnostics, source, diagnostics.getSource());
+        Parser parser = new Parser(diagnostics, lexer);
+        List<Stmt> stmts = parser.parse();
+        if (diagnostics.hadError()) return null;
+
+        return resolve(stmts) ? stmts : null;
+    }
+
+    boolean resolve(List<Stmt> stmts) {
+        Resolver resolver = new Resolver(diagnostics, environment, diagnostics.getSource());
+        resolver.resolve(stmts);
+        return !diagnostics.hadError();
+    }
+
+    void run(CharSequence source) {
+        List<Stmt> stmts = check(source);
+        if (stmts != null) {
+            execute(stmts);
+        }
+    }
+
+    // For statements that were parsed already, e.g. loaded from a ScriptCache.
+    void run(List<Stmt> stmts) {
+        if (resolve(stmts)) {
+            execute(stmts);
+        }
+    }
+
+    private void execute(List<Stmt> stmts) {
+        stmts = passManager.run(stmts);
+
+        Interpreter.Error error = null;
+        try {
+            dispatch(stmts);
+        } catch (Interpreter.Error e) {
+            Recorder.runtimeError(e.line, e.msg);
+            error = e;
+        }
+
+        // Diagnostics don't go through the sink, flushing first keeps them in order with the output.
+        out.flush();
+        if (error != null) {
+            diagnostics.reportError(error.line, error.msg);
+        }
+    }
+
+    private void dispatch(List<Stmt> stmts) {
+        Budget budget = limits.isUnlimited() ? null : limits.newBudget();
+        interpreter.setSourceName(diagnostics.getSource());
+        interpreter.setBudget(budget);
+        // Compiled classes have no place to check a budget, limited runs are interpreted.
+        if (engine == Engine.TREE || engine == Engine.JIT && budget != null) {
+            // Records its own events, down to single statements.
+            interpreter.run(stmts);
+            return;
+        }
+
+        Object event = Recorder.beginExecute();
+        switch (engine) {
+            case VM -> {
+                Chunk chunk;
+                try {
+                    chunk = new Compiler().compile(stmts);
+                } catch (Compiler.Unsupported e) {
+                    interpretInstead(stmts, e.getMessage());
+                    break;
+                }
+                vm.setBudget(budget);
+                vm.run(chunk);
+            }
+            case JIT -> {
+                JitScript script;
+                try {
+                    script = new JitCompiler().compile(stmts);
+                } catch (JitCompiler.Unsupported e) {
+                    interpretInstead(stmts, e.getMessage());
+                    break;
+                }
+                script.execute(environment, out);
+            }
+            case NODES -> {
+                RootNode root;
+                try {
+                    root = new NodeBuilder(out).build(stmts);
+                } catch (NodeBuilder.Unsupported e) {
+                    interpretInstead(stmts, e.getMessage());
+                    break;
+                }
+                if (budget == null) {
+                    root.execute(environment);
+                } else {
+                    root.execute(environment, budget);
+                }
+            }
+        }
+
+        Recorder.endExecute(event, diagnostics.getSource(), engine.name().toLowerCase(), stmts.size());
+    }
+
+    // The interpreter shares the globals, so this only costs speed.
+    private void interpretInstead(List<Stmt> stmts, String reason) {
+        diagnostics.reportWarning(stmts.get(0).line, "can't compile (" + reason + "), interpreting instead");
+        interpreter.run(stmts);
+    }
+}
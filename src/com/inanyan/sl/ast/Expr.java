@@ -1,5 +1,8 @@
 package com.inanyan.sl.ast;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public abstract class Expr extends Node {
     public abstract <R> R accept(Visitor<R> visitor);
 
@@ -162,7 +165,28 @@ public abstract class Expr extends Node {
             return comp.line == this.line && comp.text.equals(this.text);
         }
 
+        public boolean isResolved() {
+            return depth != -1;
+        }
+
+        // A resolved variable of the global environment chain, not of a function frame.
+        public boolean isGlobal() {
+            return depth >= 0;
+        }
+
         public String text;
+
+        // Depths of variables that live in a function call rather than in the environment chain: a slot of
+        // the frame, or the index of a value captured by the closure. The CELL ones hold the value in a cell,
+        // shared by the frame and its closures.
+        public static final int LOCAL = -2;
+        public static final int CAPTURED = -3;
+        public static final int LOCAL_CELL = -4;
+        public static final int CAPTURED_CELL = -5;
+
+        // Filled in by Resolver.
+        public int depth = -1;
+        public int slot = -1;
     }
 
     public static class Unary extends Expr {
@@ -196,6 +220,164 @@ public abstract class Expr extends Node {
         public Expr expr;
     }
 
+    public static class Binary extends Expr {
+        public Binary(int line, Op op, Expr left, Expr right) {
+            super(line);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBinary(this);
+        }
+
+        @Override
+        public boolean fullyCompareTo(Object stmt) {
+            Expr node = this;
+            Object other = stmt;
+            while (node instanceof Binary binary && other instanceof Binary comp) {
+                if (comp.line != binary.line || comp.op != binary.op || !comp.right.fullyCompareTo(binary.right)) {
+                    return false;
+                }
+                node = binary.left;
+                other = comp.left;
+            }
+            return !(node instanceof Binary) && node.fullyCompareTo(other);
+        }
+
+        // This node and the binary nodes down its left side, outermost first. The parser folds operator
+        // chains into left-deep trees; passes walk such a chain through this list rather than recursing
+        // once per operator, which would overflow the Java stack on a long one.
+        public List<Binary> leftSpine() {
+            List<Binary> spine = new ArrayList<>();
+            for (Expr node = this; node instanceof Binary binary; node = binary.left) {
+                spine.add(binary);
+            }
+            return spine;
+        }
+
+        public static enum Op {
+            ADD, SUBTRACT, MULTIPLY, DIVIDE, REMAINDER,
+
+            LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL, NOT_EQUAL,
+
+            BITWISE_AND, BITWISE_OR, BITWISE_XOR, SHIFT_LEFT, SHIFT_RIGHT
+        }
+
+        public Op op;
+        public Expr left;
+        public Expr right;
+    }
+
+    // '&&' and '||': the right operand is only evaluated when the left one doesn't decide the result.
+    public static class Logical extends Expr {
+        public Logical(int line, Op op, Expr left, Expr right) {
+            super(line);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitLogical(this);
+        }
+
+        @Override
+        public boolean fullyCompareTo(Object stmt) {
+            Expr node = this;
+            Object other = stmt;
+            while (node instanceof Logical logical && other instanceof Logical comp) {
+                if (comp.line != logical.line || comp.op != logical.op || !comp.right.fullyCompareTo(logical.right)) {
+                    return false;
+                }
+                node = logical.left;
+                other = comp.left;
+            }
+            return !(node instanceof Logical) && node.fullyCompareTo(other);
+        }
+
+        // Like Binary.leftSpine(), for chains of '&&' or '||'.
+        public List<Logical> leftSpine() {
+            List<Logical> spine = new ArrayList<>();
+            for (Expr node = this; node instanceof Logical logical; node = logical.left) {
+                spine.add(logical);
+            }
+            return spine;
+        }
+
+        public static enum Op {
+            AND, OR
+        }
+
+        public Op op;
+        public Expr left;
+        public Expr right;
+    }
+
+    public static class Call extends Expr {
+        public Call(int line, Expr callee, List<Expr> args) {
+            super(line);
+            this.callee = callee;
+            this.args = args;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitCall(this);
+        }
+
+        @Override
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof Call comp)) {
+                return false;
+            }
+            if (comp.line != this.line || !comp.callee.fullyCompareTo(this.callee)
+                    || comp.args.size() != this.args.size()) {
+                return false;
+            }
+            for (int i = 0; i < args.size(); i++) {
+                if (!comp.args.get(i).fullyCompareTo(this.args.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public final Expr callee;
+        public final List<Expr> args;
+    }
+
+    // 'target = value', an expression whose value is the value assigned. Resolver fills in the address of the
+    // target like for any other variable.
+    public static class Assign extends Expr {
+        public Assign(int line, Var target, Expr value) {
+            super(line);
+            this.target = target;
+            this.value = value;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitAssign(this);
+        }
+
+        @Override
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof Assign comp)) {
+                return false;
+            }
+
+            return comp.line == this.line && comp.target.fullyCompareTo(this.target)
+                    && comp.value.fullyCompareTo(this.value);
+        }
+
+        public final Var target;
+        public final Expr value;
+    }
+
     public interface Visitor<R> {
         R visitIntLiteral(IntLiteral expr);
         R visitFloatLiteral(FloatLiteral expr);
@@ -205,5 +387,9 @@ public abstract class Expr extends Node {
         R visitNilLiteral(NilLiteral expr);
         R visitVar(Var expr);
         R visitUnary(Unary expr);
+        R visitBinary(Binary expr);
+        R visitLogical(Logical expr);
+        R visitCall(Call expr);
+        R visitAssign(Assign expr);
     }
 }
@@ -1,5 +1,7 @@
 package com.inanyan.sl.ast;
 
+import java.util.List;
+
 public abstract class Stmt extends Node {
     public abstract <R> R accept(Visitor<R> visitor);
 
@@ -51,8 +53,208 @@ public abstract class Stmt extends Node {
         public final Expr expr;
     }
 
+    public static class Var extends Stmt {
+        public Var(int line, String name, Expr initializer) {
+            super(line);
+            this.name = name;
+            this.initializer = initializer;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitVar(this);
+        }
+
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof Var comp)) {
+                return false;
+            }
+
+            return comp.line == this.line && comp.name.equals(this.name)
+                    && (comp.initializer == null ? this.initializer == null
+                        : comp.initializer.fullyCompareTo(this.initializer));
+        }
+
+        public final String name;
+        // Null for 'var x;', which is nil.
+        public final Expr initializer;
+
+        // Filled in by Resolver: the frame slot of a function local, -1 for a global, and whether the slot
+        // holds a cell.
+        public int slot = -1;
+        public boolean cell = false;
+    }
+
+    public static class Function extends Stmt {
+        public Function(int line, String name, List<String> params, List<Stmt> body) {
+            super(line);
+            this.name = name;
+            this.params = params;
+            this.body = body;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitFunction(this);
+        }
+
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof Function comp)) {
+                return false;
+            }
+
+            return comp.line == this.line && comp.name.equals(this.name) && comp.params.equals(this.params)
+                    && Block.compareAll(comp.body, this.body);
+        }
+
+        // The same declaration with another body, e.g. an optimized one. Resolver results are kept.
+        public Function withBody(List<Stmt> body) {
+            Function function = new Function(line, name, params, body);
+            function.slot = slot;
+            function.frameSize = frameSize;
+            function.captures = captures;
+            function.cell = cell;
+            function.cellParams = cellParams;
+            return function;
+        }
+
+        public final String name;
+        public final List<String> params;
+        public final List<Stmt> body;
+
+        // Filled in by Resolver. Slot is where the function is stored, as for Var. A call needs frameSize
+        // slots, parameters first. Captures lists where each captured value comes from when the closure is
+        // made: a slot of the enclosing frame, or -1 - i for capture i of the enclosing function. Cell and
+        // cellParams tell which of the slot and the parameters hold cells.
+        public int slot = -1;
+        public int frameSize = 0;
+        public int[] captures = new int[0];
+        public boolean cell = false;
+        public int[] cellParams = new int[0];
+    }
+
+    public static class Return extends Stmt {
+        public Return(int line, Expr value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitReturn(this);
+        }
+
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof Return comp)) {
+                return false;
+            }
+
+            return comp.line == this.line
+                    && (comp.value == null ? this.value == null : comp.value.fullyCompareTo(this.value));
+        }
+
+        // Null for a bare 'return;', which returns nil.
+        public final Expr value;
+    }
+
+    public static class Block extends Stmt {
+        public Block(int line, List<Stmt> stmts) {
+            super(line);
+            this.stmts = stmts;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBlock(this);
+        }
+
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof Block comp)) {
+                return false;
+            }
+
+            return comp.line == this.line && compareAll(comp.stmts, this.stmts);
+        }
+
+        static boolean compareAll(List<Stmt> a, List<Stmt> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (int i = 0; i < a.size(); i++) {
+                if (!a.get(i).fullyCompareTo(b.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public final List<Stmt> stmts;
+    }
+
+    public static class If extends Stmt {
+        public If(int line, Expr condition, Stmt thenBranch, Stmt elseBranch) {
+            super(line);
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIf(this);
+        }
+
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof If comp)) {
+                return false;
+            }
+
+            return comp.line == this.line && comp.condition.fullyCompareTo(this.condition)
+                    && comp.thenBranch.fullyCompareTo(this.thenBranch)
+                    && (comp.elseBranch == null ? this.elseBranch == null
+                        : comp.elseBranch.fullyCompareTo(this.elseBranch));
+        }
+
+        public final Expr condition;
+        public final Stmt thenBranch;
+        // Null without an else.
+        public final Stmt elseBranch;
+    }
+
+    // 'for' loops are parsed into one of these, see Parser.
+    public static class While extends Stmt {
+        public While(int line, Expr condition, Stmt body) {
+            super(line);
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitWhile(this);
+        }
+
+        public boolean fullyCompareTo(Object stmt) {
+            if (!(stmt instanceof While comp)) {
+                return false;
+            }
+
+            return comp.line == this.line && comp.condition.fullyCompareTo(this.condition)
+                    && comp.body.fullyCompareTo(this.body);
+        }
+
+        public final Expr condition;
+        public final Stmt body;
+    }
+
     public interface Visitor<R> {
         R visitExpr(Expression stmt);
         R visitPrint(Print stmt);
+        R visitVar(Var stmt);
+        R visitFunction(Function stmt);
+        R visitReturn(Return stmt);
+        R visitBlock(Block stmt);
+        R visitIf(If stmt);
+        R visitWhile(While stmt);
     }
 }
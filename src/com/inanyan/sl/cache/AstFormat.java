@@ -0,0 +1,36 @@
+package com.inanyan.sl.cache;
+
+// Layout of serialized syntax trees:
+//   magic (i32), version, string table (count, then length-prefixed UTF-8), statement count, statements.
+// Counts, lengths and lines are varints, ints and doubles are big-endian.
+// A node is a tag byte, its line (varint) and its fields in declaration order; strings are varint indexes
+// into the table, lists are a count and the elements, a field that may be null is a 0 or 1 byte and then
+// the node if it is 1. Bump VERSION whenever a node or this layout changes, old cache entries are then ignored.
+final class AstFormat {
+    static final int MAGIC = 0x534c4153; // "SLAS"
+    static final int VERSION = 4;
+
+    static final byte STMT_EXPRESSION = 1;
+    static final byte STMT_PRINT = 2;
+    static final byte STMT_VAR = 3;
+    static final byte STMT_FUNCTION = 4;
+    static final byte STMT_RETURN = 5;
+    static final byte STMT_BLOCK = 6;
+    static final byte STMT_IF = 7;
+    static final byte STMT_WHILE = 8;
+
+    static final byte EXPR_INT = 16;
+    static final byte EXPR_FLOAT = 17;
+    static final byte EXPR_BOOL = 18;
+    static final byte EXPR_STRING = 19;
+    static final byte EXPR_CHAR = 20;
+    static final byte EXPR_NIL = 21;
+    static final byte EXPR_VAR = 22;
+    static final byte EXPR_UNARY = 23;
+    static final byte EXPR_CALL = 24;
+    static final byte EXPR_BINARY = 25;
+    static final byte EXPR_LOGICAL = 26;
+    static final byte EXPR_ASSIGN = 27;
+
+    private AstFormat() {}
+}
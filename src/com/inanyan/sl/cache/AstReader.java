@@ -0,0 +1,249 @@
+package com.inanyan.sl.cache;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads statements written by AstWriter. Malformed input of any kind is reported as Invalid.
+public class AstReader {
+    public static class Invalid extends Exception {
+        public Invalid(String msg) {
+            super(msg);
+        }
+    }
+
+    private static final Expr.Unary.Op[] OPS = Expr.Unary.Op.values();
+    private static final Expr.Binary.Op[] BINARY_OPS = Expr.Binary.Op.values();
+    private static final Expr.Logical.Op[] LOGICAL_OPS = Expr.Logical.Op.values();
+
+    private final byte[] bytes;
+    private int pos = 0;
+    private String[] strings;
+
+    private AstReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static List<Stmt> read(byte[] bytes) throws Invalid {
+        try {
+            return new AstReader(bytes).readAll();
+        } catch (IndexOutOfBoundsException e) {
+            throw new Invalid("truncated data");
+        }
+    }
+
+    private List<Stmt> readAll() throws Invalid {
+        if (int32() != AstFormat.MAGIC) {
+            throw new Invalid("not a syntax tree");
+        }
+        int version = varint();
+        if (version != AstFormat.VERSION) {
+            throw new Invalid("format version " + version + ", expected " + AstFormat.VERSION);
+        }
+
+        strings = new String[count()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = count();
+            strings[i] = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+        }
+
+        List<Stmt> stmts = stmts();
+
+        if (pos != bytes.length) {
+            throw new Invalid("trailing data");
+        }
+        return stmts;
+    }
+
+    private Stmt stmt() throws Invalid {
+        byte tag = bytes[pos++];
+        int line = varint();
+        return switch (tag) {
+            case AstFormat.STMT_EXPRESSION -> new Stmt.Expression(line, expr());
+            case AstFormat.STMT_PRINT -> new Stmt.Print(line, expr());
+            case AstFormat.STMT_VAR -> new Stmt.Var(line, string(), optionalExpr());
+            case AstFormat.STMT_FUNCTION -> {
+                String name = string();
+                int count = count();
+                List<String> params = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    params.add(string());
+                }
+                yield new Stmt.Function(line, name, params, stmts());
+            }
+            case AstFormat.STMT_RETURN -> new Stmt.Return(line, optionalExpr());
+            case AstFormat.STMT_BLOCK -> new Stmt.Block(line, stmts());
+            case AstFormat.STMT_IF -> {
+                Expr condition = expr();
+                Stmt thenBranch = stmt();
+                yield new Stmt.If(line, condition, thenBranch, present() ? stmt() : null);
+            }
+            case AstFormat.STMT_WHILE -> {
+                Expr condition = expr();
+                yield new Stmt.While(line, condition, stmt());
+            }
+            default -> throw new Invalid("unknown statement tag " + tag);
+        };
+    }
+
+    private List<Stmt> stmts() throws Invalid {
+        int count = count();
+        List<Stmt> stmts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            stmts.add(stmt());
+        }
+        return stmts;
+    }
+
+    private Expr optionalExpr() throws Invalid {
+        return present() ? expr() : null;
+    }
+
+    private boolean present() throws Invalid {
+        byte flag = bytes[pos++];
+        if (flag != 0 && flag != 1) {
+            throw new Invalid("malformed optional field");
+        }
+        return flag == 1;
+    }
+
+    private Expr expr() throws Invalid {
+        byte tag = bytes[pos++];
+        int line = varint();
+        return switch (tag) {
+            case AstFormat.EXPR_INT -> new Expr.IntLiteral(line, int32());
+            case AstFormat.EXPR_FLOAT -> {
+                long high = int32() & 0xffffffffL;
+                long low = int32() & 0xffffffffL;
+                yield new Expr.FloatLiteral(line, Double.longBitsToDouble(high << 32 | low));
+            }
+            case AstFormat.EXPR_BOOL -> new Expr.BoolLiteral(line, bytes[pos++] != 0);
+            case AstFormat.EXPR_STRING -> new Expr.StringLiteral(line, string());
+            case AstFormat.EXPR_CHAR -> new Expr.CharLiteral(line, (char) varint());
+            case AstFormat.EXPR_NIL -> new Expr.NilLiteral(line);
+            case AstFormat.EXPR_VAR -> new Expr.Var(line, string());
+            case AstFormat.EXPR_UNARY -> {
+                int op = bytes[pos++];
+                if (op < 0 || op >= OPS.length) {
+                    throw new Invalid("unknown unary operator " + op);
+                }
+                yield new Expr.Unary(line, OPS[op], expr());
+            }
+            case AstFormat.EXPR_BINARY -> binary(line);
+            case AstFormat.EXPR_LOGICAL -> logical(line);
+            case AstFormat.EXPR_CALL -> {
+                Expr callee = expr();
+                int count = count();
+                List<Expr> args = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    args.add(expr());
+                }
+                yield new Expr.Call(line, callee, args);
+            }
+            case AstFormat.EXPR_ASSIGN -> {
+                if (!(expr() instanceof Expr.Var target)) {
+                    throw new Invalid("assignment to something other than a variable");
+                }
+                yield new Expr.Assign(line, target, expr());
+            }
+            default -> throw new Invalid("unknown expression tag " + tag);
+        };
+    }
+
+    // A chain of operators is read in loops, not recursively: see AstWriter.visitBinary(), the nodes down its
+    // left side come first, then its innermost left operand, then the right operands from the inside out.
+    private Expr binary(int line) throws Invalid {
+        List<Expr.Binary> spine = new ArrayList<>();
+        spine.add(new Expr.Binary(line, binaryOp(), null, null));
+        while (bytes[pos] == AstFormat.EXPR_BINARY) {
+            pos++;
+            int next = varint();
+            spine.add(new Expr.Binary(next, binaryOp(), null, null));
+        }
+
+        Expr left = expr();
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Binary binary = spine.get(i);
+            binary.left = left;
+            binary.right = expr();
+            left = binary;
+        }
+        return left;
+    }
+
+    private Expr.Binary.Op binaryOp() throws Invalid {
+        int op = bytes[pos++];
+        if (op < 0 || op >= BINARY_OPS.length) {
+            throw new Invalid("unknown binary operator " + op);
+        }
+        return BINARY_OPS[op];
+    }
+
+    private Expr logical(int line) throws Invalid {
+        List<Expr.Logical> spine = new ArrayList<>();
+        spine.add(new Expr.Logical(line, logicalOp(), null, null));
+        while (bytes[pos] == AstFormat.EXPR_LOGICAL) {
+            pos++;
+            int next = varint();
+            spine.add(new Expr.Logical(next, logicalOp(), null, null));
+        }
+
+        Expr left = expr();
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Logical logical = spine.get(i);
+            logical.left = left;
+            logical.right = expr();
+            left = logical;
+        }
+        return left;
+    }
+
+    private Expr.Logical.Op logicalOp() throws Invalid {
+        int op = bytes[pos++];
+        if (op < 0 || op >= LOGICAL_OPS.length) {
+            throw new Invalid("unknown logical operator " + op);
+        }
+        return LOGICAL_OPS[op];
+    }
+
+    // Every element takes at least a byte, so a count past the end of the data is garbage, not a reason to
+    // allocate a huge array.
+    private int count() throws Invalid {
+        int count = varint();
+        if (count < 0 || count > bytes.length - pos) {
+            throw new Invalid("count out of range");
+        }
+        return count;
+    }
+
+    private String string() throws Invalid {
+        int index = varint();
+        if (index < 0 || index >= strings.length) {
+            throw new Invalid("string index out of range");
+        }
+        return strings[index];
+    }
+
+    private int varint() throws Invalid {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = bytes[pos++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new Invalid("malformed varint");
+    }
+
+    private int int32() {
+        int value = (bytes[pos] & 0xff) << 24 | (bytes[pos + 1] & 0xff) << 16
+                | (bytes[pos + 2] & 0xff) << 8 | (bytes[pos + 3] & 0xff);
+        pos += 4;
+        return value;
+    }
+}
@@ -0,0 +1,273 @@
+package com.inanyan.sl.cache;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Serializes parsed statements, see AstFormat. Every distinct string is stored once.
+public class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    public static byte[] toBytes(List<Stmt> stmts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new AstWriter().write(stmts, bytes);
+        } catch (IOException e) {
+            throw new AssertionError("memory streams don't throw", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public void write(List<Stmt> stmts, OutputStream out) throws IOException {
+        varint(tree, stmts.size());
+        for (Stmt stmt : stmts) {
+            stmt.accept(this);
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int32(header, AstFormat.MAGIC);
+        varint(header, AstFormat.VERSION);
+        varint(header, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            varint(header, bytes.length);
+            header.writeBytes(bytes);
+        }
+
+        header.writeTo(out);
+        tree.writeTo(out);
+        out.flush();
+    }
+
+    private static void varint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void int32(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void node(byte tag, int line) {
+        tree.write(tag);
+        varint(tree, line);
+    }
+
+    private void string(String value) {
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndexes.put(value, index);
+        }
+        varint(tree, index);
+    }
+
+    @Override
+    public Void visitExpr(Stmt.Expression stmt) {
+        node(AstFormat.STMT_EXPRESSION, stmt.line);
+        stmt.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitPrint(Stmt.Print stmt) {
+        node(AstFormat.STMT_PRINT, stmt.line);
+        stmt.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitIntLiteral(Expr.IntLiteral expr) {
+        node(AstFormat.EXPR_INT, expr.line);
+        int32(tree, expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitFloatLiteral(Expr.FloatLiteral expr) {
+        node(AstFormat.EXPR_FLOAT, expr.line);
+        long bits = Double.doubleToRawLongBits(expr.value);
+        int32(tree, (int) (bits >>> 32));
+        int32(tree, (int) bits);
+        return null;
+    }
+
+    @Override
+    public Void visitBoolLiteral(Expr.BoolLiteral expr) {
+        node(AstFormat.EXPR_BOOL, expr.line);
+        tree.write(expr.value ? 1 : 0);
+        return null;
+    }
+
+    @Override
+    public Void visitStringLiteral(Expr.StringLiteral expr) {
+        node(AstFormat.EXPR_STRING, expr.line);
+        string(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCharLiteral(Expr.CharLiteral expr) {
+        node(AstFormat.EXPR_CHAR, expr.line);
+        varint(tree, expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitNilLiteral(Expr.NilLiteral expr) {
+        node(AstFormat.EXPR_NIL, expr.line);
+        return null;
+    }
+
+    @Override
+    public Void visitVar(Expr.Var expr) {
+        node(AstFormat.EXPR_VAR, expr.line);
+        string(expr.text);
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary expr) {
+        node(AstFormat.EXPR_UNARY, expr.line);
+        tree.write(expr.op.ordinal());
+        expr.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary expr) {
+        // The same bytes as a recursive walk: the nodes down the left side, then the operands from the inside out.
+        List<Expr.Binary> spine = expr.leftSpine();
+        for (Expr.Binary binary : spine) {
+            node(AstFormat.EXPR_BINARY, binary.line);
+            tree.write(binary.op.ordinal());
+        }
+        spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            spine.get(i).right.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        for (Expr.Logical logical : spine) {
+            node(AstFormat.EXPR_LOGICAL, logical.line);
+            tree.write(logical.op.ordinal());
+        }
+        spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            spine.get(i).right.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Expr.Assign expr) {
+        node(AstFormat.EXPR_ASSIGN, expr.line);
+        expr.target.accept(this);
+        expr.value.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expr.Call expr) {
+        node(AstFormat.EXPR_CALL, expr.line);
+        expr.callee.accept(this);
+        varint(tree, expr.args.size());
+        for (Expr arg : expr.args) {
+            arg.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var stmt) {
+        node(AstFormat.STMT_VAR, stmt.line);
+        string(stmt.name);
+        optional(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function stmt) {
+        node(AstFormat.STMT_FUNCTION, stmt.line);
+        string(stmt.name);
+        varint(tree, stmt.params.size());
+        for (String param : stmt.params) {
+            string(param);
+        }
+        stmts(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return stmt) {
+        node(AstFormat.STMT_RETURN, stmt.line);
+        optional(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block stmt) {
+        node(AstFormat.STMT_BLOCK, stmt.line);
+        stmts(stmt.stmts);
+        return null;
+    }
+
+    @Override
+    public Void visitIf(Stmt.If stmt) {
+        node(AstFormat.STMT_IF, stmt.line);
+        stmt.condition.accept(this);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch == null) {
+            tree.write(0);
+        } else {
+            tree.write(1);
+            stmt.elseBranch.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While stmt) {
+        node(AstFormat.STMT_WHILE, stmt.line);
+        stmt.condition.accept(this);
+        stmt.body.accept(this);
+        return null;
+    }
+
+    private void optional(Expr expr) {
+        if (expr == null) {
+            tree.write(0);
+        } else {
+            tree.write(1);
+            expr.accept(this);
+        }
+    }
+
+    private void stmts(List<Stmt> stmts) {
+        varint(tree, stmts.size());
+        for (Stmt stmt : stmts) {
+            stmt.accept(this);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.inanyan.sl.cache;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.CountingErrorListener;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parsed scripts kept in memory for a process that runs the same sources over and over, keyed by the SHA-256
+// of the source, as in ScriptCache, and evicted least recently used first. The source itself isn't kept. Entries are stored serialized: resolving and optimizing change
+// the tree they work on, so every hit decodes fresh nodes. Safe to share between threads.
+public class MemoryCache {
+    private final Map<String, byte[]> entries;
+
+    public MemoryCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Same contract as ScriptCache.load(): null on syntax errors, and sources with diagnostics are not kept.
+    public List<Stmt> load(CharSequence source, String sourceName, ErrorListener errorListener) {
+        String key = ScriptCache.hash(StandardCharsets.UTF_8.encode(CharBuffer.wrap(source)));
+        byte[] entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            try {
+                return AstReader.read(entry);
+            } catch (AstReader.Invalid e) {
+                throw new AssertionError("cache entries are written by this process", e);
+            }
+        }
+
+        CountingErrorListener errors = new CountingErrorListener(errorListener);
+        List<Stmt> stmts = new Parser(errors, new Lexer(errors, source, sourceName)).parse();
+        if (errors.getErrorsCount() != 0) {
+            return null;
+        }
+
+        if (errors.getWarningsCount() == 0) {
+            byte[] bytes = AstWriter.toBytes(stmts);
+            synchronized (entries) {
+                entries.put(key, bytes);
+            }
+        }
+        return stmts;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.inanyan.sl.cache;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.CountingErrorListener;
+import com.inanyan.sl.util.ErrorListener;
+import com.inanyan.sl.util.MappedSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+// Parsed scripts stored in a directory, one file per distinct source content:
+// <sha-256 of the source bytes>.v<format version>.slast. Only parsing is cached; resolution depends on the
+// environment the script runs in and optimization on the enabled passes, so both still run every time.
+public class ScriptCache {
+    private static final String SUFFIX = ".v" + AstFormat.VERSION + ".slast";
+
+    private final Path directory;
+
+    public ScriptCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Returns the statements of the file, from the cache if possible. Returns null if the source has syntax
+    // errors, they are reported to errorListener. Sources with errors or warnings are not cached, so a cache
+    // hit never hides a diagnostic.
+    public List<Stmt> load(Path file, ErrorListener errorListener) throws IOException {
+        // Hashed and, on a miss, parsed from the same mapping: the file is read once, and the entry is stored
+        // under the hash of the very bytes that were parsed.
+        MappedByteBuffer bytes = MappedSource.map(file);
+        String key = hash(bytes.duplicate());
+
+        Path entry = directory.resolve(key + SUFFIX);
+        if (Files.isRegularFile(entry)) {
+            try {
+                return AstReader.read(Files.readAllBytes(entry));
+            } catch (AstReader.Invalid | IOException e) {
+                // A damaged entry is just a miss, it gets overwritten below.
+            }
+        }
+
+        CountingErrorListener errors = new CountingErrorListener(errorListener);
+        List<Stmt> stmts = new Parser(errors, new Lexer(errors, MappedSource.of(bytes), file.toString())).parse();
+        if (errors.getErrorsCount() != 0) {
+            return null;
+        }
+
+        if (errors.getWarningsCount() == 0) {
+            store(entry, stmts);
+        }
+        return stmts;
+    }
+
+    // Written to a temporary file first, so concurrent runs never see a half-written entry.
+    private void store(Path entry, List<Stmt> stmts) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            try {
+                Files.write(temp, AstWriter.toBytes(stmts));
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization, the script was parsed fine.
+        }
+    }
+
+    // The hex SHA-256 of the remaining bytes, which it consumes.
+    static String hash(ByteBuffer bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("every JVM has SHA-256", e);
+        }
+    }
+}
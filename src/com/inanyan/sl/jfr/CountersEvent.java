@@ -0,0 +1,29 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+@Description("Totals since the JVM started.")
+@Name("com.inanyan.sl.Counters")
+@Label("Counters")
+@Category("SL")
+@Period("1 s")
+@StackTrace(false)
+public class CountersEvent extends Event {
+    @Label("Runtime Errors")
+    public long runtimeErrors;
+
+    @Label("Parser Recoveries")
+    public long parserRecoveries;
+
+    @Label("Loop Tier-Ups")
+    public long loopTierUps;
+
+    @Label("Loop Deoptimizations")
+    public long loopDeoptimizations;
+}
@@ -0,0 +1,22 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("Executing a list of statements on one of the engines.")
+@Name("com.inanyan.sl.Execute")
+@Label("Execute")
+@Category("SL")
+public class ExecuteEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Engine")
+    public String engine;
+
+    @Label("Statements")
+    public int statements;
+}
@@ -0,0 +1,27 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("Scanning a whole source into tokens.")
+@Name("com.inanyan.sl.Lex")
+@Label("Lex")
+@Category("SL")
+public class LexEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Characters")
+    @Description("Length of the scanned source in characters.")
+    public long chars;
+
+    @Label("Streamed")
+    @Description("Tokens were handed to the parser one at a time, so the duration includes the parse.")
+    public boolean streamed;
+}
@@ -0,0 +1,26 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("A hot loop was compiled and the tree interpreter handed its remaining iterations over.")
+@Name("com.inanyan.sl.LoopTierUp")
+@Label("Loop Tier-Up")
+@Category("SL")
+public class LoopTierUpEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Back-Edges")
+    public int backEdges;
+
+    @Label("Specialized")
+    @Description("False once the loop was deoptimized too often and is compiled without type speculation.")
+    public boolean specialized;
+}
@@ -0,0 +1,26 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("Parsing a whole token stream into statements; with a streaming lexer this includes lexing.")
+@Name("com.inanyan.sl.Parse")
+@Label("Parse")
+@Category("SL")
+public class ParseEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Statements")
+    public int statements;
+
+    @Label("Recoveries")
+    @Description("Syntax errors the parser skipped past.")
+    public int recoveries;
+}
@@ -0,0 +1,19 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("The parser skipped ahead to the next statement after a syntax error.")
+@Name("com.inanyan.sl.ParserRecovery")
+@Label("Parser Recovery")
+@Category("SL")
+public class ParserRecoveryEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Line")
+    public int line;
+}
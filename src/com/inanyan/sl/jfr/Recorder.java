@@ -0,0 +1,189 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// The only way the rest of the code emits events. On JDK 17 loading the first jdk.jfr.Event subclass costs a
+// few hundred milliseconds even with recording off, too much for short runs, so no event class is touched
+// until JFR is running. Callers hold events as Object for the same reason; a begin method returns null when
+// there is nothing to record, and the end methods accept that null.
+public final class Recorder {
+    private static final LongAdder runtimeErrors = new LongAdder();
+    private static final LongAdder parserRecoveries = new LongAdder();
+    private static final LongAdder loopTierUps = new LongAdder();
+    private static final LongAdder loopDeoptimizations = new LongAdder();
+
+    private Recorder() {}
+
+    // One static field read once JFR is up; recordings started later through jcmd are picked up too.
+    public static boolean isActive() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        Periodic.ensureRegistered();
+        return true;
+    }
+
+    public static long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    public static long getParserRecoveries() {
+        return parserRecoveries.sum();
+    }
+
+    public static long getLoopTierUps() {
+        return loopTierUps.sum();
+    }
+
+    public static long getLoopDeoptimizations() {
+        return loopDeoptimizations.sum();
+    }
+
+    private static final class Periodic {
+        static {
+            FlightRecorder.addPeriodicEvent(CountersEvent.class, () -> {
+                CountersEvent event = new CountersEvent();
+                event.runtimeErrors = runtimeErrors.sum();
+                event.parserRecoveries = parserRecoveries.sum();
+                event.loopTierUps = loopTierUps.sum();
+                event.loopDeoptimizations = loopDeoptimizations.sum();
+                event.commit();
+            });
+        }
+
+        // Registration happens once, in the class initializer.
+        static void ensureRegistered() {
+        }
+    }
+
+    public static Object beginLex() {
+        if (!isActive()) return null;
+        LexEvent event = new LexEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endLex(Object handle, String source, int tokens, long chars, boolean streamed) {
+        if (handle == null) return;
+        LexEvent event = (LexEvent) handle;
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.tokens = tokens;
+            event.chars = chars;
+            event.streamed = streamed;
+            event.commit();
+        }
+    }
+
+    public static Object beginParse() {
+        if (!isActive()) return null;
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endParse(Object handle, String source, int tokens, int statements, int recoveries) {
+        if (handle == null) return;
+        ParseEvent event = (ParseEvent) handle;
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.tokens = tokens;
+            event.statements = statements;
+            event.recoveries = recoveries;
+            event.commit();
+        }
+    }
+
+    public static Object beginResolve() {
+        if (!isActive()) return null;
+        ResolveEvent event = new ResolveEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endResolve(Object handle, String source, int statements) {
+        if (handle == null) return;
+        ResolveEvent event = (ResolveEvent) handle;
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.statements = statements;
+            event.commit();
+        }
+    }
+
+    public static Object beginExecute() {
+        if (!isActive()) return null;
+        ExecuteEvent event = new ExecuteEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endExecute(Object handle, String source, String engine, int statements) {
+        if (handle == null) return;
+        ExecuteEvent event = (ExecuteEvent) handle;
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.engine = engine;
+            event.statements = statements;
+            event.commit();
+        }
+    }
+
+    public static Object beginStatement() {
+        if (!isActive()) return null;
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endStatement(Object handle, String source, int line) {
+        if (handle == null) return;
+        StatementEvent event = (StatementEvent) handle;
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.line = line;
+            event.commit();
+        }
+    }
+
+    public static void runtimeError(int line, String message) {
+        runtimeErrors.increment();
+        if (!isActive()) return;
+        RuntimeErrorEvent event = new RuntimeErrorEvent();
+        if (event.shouldCommit()) {
+            event.line = line;
+            event.message = message;
+            event.commit();
+        }
+    }
+
+    public static void parserRecovery(String source, int line) {
+        parserRecoveries.increment();
+        if (!isActive()) return;
+        ParserRecoveryEvent event = new ParserRecoveryEvent();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.line = line;
+            event.commit();
+        }
+    }
+
+    public static void loopTierUp(String source, int line, int backEdges, boolean specialized) {
+        loopTierUps.increment();
+        if (!isActive()) return;
+        LoopTierUpEvent event = new LoopTierUpEvent();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.line = line;
+            event.backEdges = backEdges;
+            event.specialized = specialized;
+            event.commit();
+        }
+    }
+
+    public static void loopDeoptimization() {
+        loopDeoptimizations.increment();
+    }
+}
@@ -0,0 +1,19 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("Resolving the variables of a list of statements.")
+@Name("com.inanyan.sl.Resolve")
+@Label("Resolve")
+@Category("SL")
+public class ResolveEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Statements")
+    public int statements;
+}
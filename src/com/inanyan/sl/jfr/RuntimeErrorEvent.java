@@ -0,0 +1,19 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Description("An Interpreter.Error was raised by any engine.")
+@Name("com.inanyan.sl.RuntimeError")
+@Label("Runtime Error")
+@Category("SL")
+public class RuntimeErrorEvent extends Event {
+    @Label("Line")
+    public int line;
+
+    @Label("Message")
+    public String message;
+}
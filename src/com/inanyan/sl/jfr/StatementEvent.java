@@ -0,0 +1,21 @@
+package com.inanyan.sl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Description("A single top-level statement that ran longer than the threshold, tree interpreter only.")
+@Name("com.inanyan.sl.Statement")
+@Label("Statement")
+@Category("SL")
+@Threshold("10 ms")
+public class StatementEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Line")
+    public int line;
+}
@@ -0,0 +1,258 @@
+package com.inanyan.sl.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal class file writer: methods with forward branches only, no stack map frames.
+class ClassWriter {
+    // Class files older than 50 are verified by type inference, so methods don't need StackMapTable.
+    private static final int MAJOR_VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<Integer> interfaces = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        for (String interfaceName : interfaceNames) {
+            interfaces.add(classRef(interfaceName));
+        }
+    }
+
+    private int entry(String key, int slots, PoolWriter writer) {
+        Integer index = poolIndices.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            writer.write(pool);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        int result = poolCount;
+        poolCount += slots;
+        if (poolCount > 0xffff) {
+            throw new JitCompiler.Unsupported("constant pool overflow");
+        }
+        poolIndices.put(key, result);
+        return result;
+    }
+
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // A constant holds at most 65535 bytes of modified UTF-8, writeUTF() would fail on anything longer.
+    int utf8(String str) {
+        long bytes = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            bytes += ch != 0 && ch < 0x80 ? 1 : ch < 0x800 ? 2 : 3;
+        }
+        if (bytes > 0xffff) {
+            throw new JitCompiler.Unsupported("constants over 65535 bytes");
+        }
+        return entry("U" + str, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(str);
+        });
+    }
+
+    int classRef(String name) {
+        int nameIndex = utf8(name);
+        return entry("C" + name, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int string(String str) {
+        int index = utf8(str);
+        return entry("S" + str, 1, out -> {
+            out.writeByte(8);
+            out.writeShort(index);
+        });
+    }
+
+    int integer(int value) {
+        return entry("I" + value, 1, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int doubleValue(double value) {
+        return entry("D" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(6);
+            out.writeDouble(value);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return entry("N" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int classIndex = classRef(owner);
+        int natIndex = nameAndType(name, descriptor);
+        return entry("M" + owner + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(10);
+            out.writeShort(classIndex);
+            out.writeShort(natIndex);
+        });
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(codeIndex);
+            out.writeInt(12 + code.size());
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(code.size());
+            out.write(code.bytes(), 0, code.size());
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.size());
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static class Code {
+        static final int MAX_SIZE = 0xffff;
+
+        private byte[] code = new byte[256];
+        private int size = 0;
+        private int stack = 0;
+        int maxStack = 0;
+        int maxLocals;
+
+        Code(int maxLocals) {
+            this.maxLocals = maxLocals;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] bytes() {
+            return code;
+        }
+
+        private void put(int b) {
+            if (size == code.length) {
+                if (size == MAX_SIZE) {
+                    throw new JitCompiler.Unsupported("method code too large");
+                }
+                code = java.util.Arrays.copyOf(code, Math.min(size * 2, MAX_SIZE));
+            }
+            code[size++] = (byte) b;
+        }
+
+        void op(int opcode, int stackDelta) {
+            put(opcode);
+            adjust(stackDelta);
+        }
+
+        void op1(int opcode, int operand, int stackDelta) {
+            put(opcode);
+            put(operand);
+            adjust(stackDelta);
+        }
+
+        void op2(int opcode, int operand, int stackDelta) {
+            put(opcode);
+            put(operand >> 8);
+            put(operand);
+            adjust(stackDelta);
+        }
+
+        // A branch whose target is filled in by land(). Returns its position.
+        int jump(int opcode, int stackDelta) {
+            int at = size;
+            op2(opcode, 0, stackDelta);
+            return at;
+        }
+
+        // Points the branch at position 'at' to the next instruction.
+        void land(int at) {
+            int offset = size - at;
+            if (offset > Short.MAX_VALUE) {
+                throw new JitCompiler.Unsupported("branch too long");
+            }
+            code[at + 1] = (byte) (offset >> 8);
+            code[at + 2] = (byte) offset;
+        }
+
+        private void adjust(int stackDelta) {
+            stack += stackDelta;
+            if (stack > maxStack) {
+                maxStack = stack;
+            }
+        }
+    }
+}
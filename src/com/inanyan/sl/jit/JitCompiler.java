@@ -0,0 +1,460 @@
+package com.inanyan.sl.jit;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Rules;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+// Compiles statements into a hidden class implementing JitScript. Expressions whose type is known at
+// compile time are kept unboxed on the JVM stack, everything else goes through JitRuntime.
+public class JitCompiler implements Expr.Visitor<JitCompiler.Kind>, Stmt.Visitor<Void> {
+    private static final String CLASS_NAME = "com/inanyan/sl/jit/Script";
+    private static final String RUNTIME = "com/inanyan/sl/jit/JitRuntime";
+    private static final String SINK = "Lcom/inanyan/sl/lang/OutputSink;";
+    private static final String SEGMENT_DESCRIPTOR = "(Lcom/inanyan/sl/lang/Environment;" + SINK + ")V";
+    private static final int SEGMENT_LIMIT = 0x8000;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP = 0x59;
+    private static final int DUP_X2 = 0x5b;
+    private static final int SWAP = 0x5f;
+    private static final int IADD = 0x60;
+    private static final int DADD = 0x63;
+    private static final int ISUB = 0x64;
+    private static final int DSUB = 0x67;
+    private static final int IMUL = 0x68;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DREM = 0x73;
+    private static final int INEG = 0x74;
+    private static final int DNEG = 0x77;
+    private static final int ISHL = 0x78;
+    private static final int ISHR = 0x7a;
+    private static final int IAND = 0x7e;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int IF_ICMPEQ = 0x9f;
+    private static final int IF_ICMPNE = 0xa0;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int IF_ICMPGT = 0xa3;
+    private static final int IF_ICMPLE = 0xa4;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    public static class Unsupported extends RuntimeException {
+        public Unsupported(String msg) {
+            super(msg);
+        }
+    }
+
+    enum Kind {
+        INT, DOUBLE, BOOL, OBJECT
+    }
+
+    private ClassWriter writer;
+    private ClassWriter.Code code;
+
+    public JitScript compile(List<Stmt> stmts) {
+        byte[] bytes = generate(stmts);
+
+        try {
+            // Not STRONG: the class can be unloaded as soon as the returned script is unreachable.
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true);
+            return (JitScript) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            throw new RuntimeException("failed to load compiled script", e);
+        }
+    }
+
+    byte[] generate(List<Stmt> stmts) {
+        writer = new ClassWriter(CLASS_NAME, "java/lang/Object", "com/inanyan/sl/jit/JitScript");
+
+        ClassWriter.Code init = new ClassWriter.Code(1);
+        init.op(ALOAD_0, 1);
+        init.op2(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"), -1);
+        init.op(RETURN, 0);
+        writer.addMethod(ClassWriter.ACC_PUBLIC, "<init>", "()V", init);
+
+        ClassWriter.Code run = new ClassWriter.Code(3);
+        int segments = 0;
+        code = null;
+        for (Stmt stmt : stmts) {
+            if (code == null) {
+                code = new ClassWriter.Code(2);
+            }
+
+            stmt.accept(this);
+
+            if (code.size() >= SEGMENT_LIMIT) {
+                endSegment(run, segments++);
+            }
+        }
+        if (code != null) {
+            endSegment(run, segments);
+        }
+
+        run.op(RETURN, 0);
+        writer.addMethod(ClassWriter.ACC_PUBLIC, "execute", SEGMENT_DESCRIPTOR, run);
+
+        return writer.toByteArray();
+    }
+
+    // Large programs are split into several methods to stay below the JVM method size limit.
+    private void endSegment(ClassWriter.Code run, int index) {
+        String name = "segment" + index;
+        code.op(RETURN, 0);
+        writer.addMethod(ClassWriter.ACC_STATIC, name, SEGMENT_DESCRIPTOR, code);
+        code = null;
+
+        run.op(ALOAD_1, 1);
+        run.op(ALOAD_2, 1);
+        run.op2(INVOKESTATIC, writer.methodRef(CLASS_NAME, name, SEGMENT_DESCRIPTOR), -2);
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.op1(BIPUSH, value, 1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.op2(SIPUSH, value, 1);
+        } else {
+            code.op2(LDC_W, writer.integer(value), 1);
+        }
+    }
+
+    private void invokeStatic(String owner, String name, String descriptor, int stackDelta) {
+        code.op2(INVOKESTATIC, writer.methodRef(owner, name, descriptor), stackDelta);
+    }
+
+    private void box(Kind kind) {
+        switch (kind) {
+            case INT -> invokeStatic("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", 0);
+            case DOUBLE -> invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+            case BOOL -> invokeStatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+            case OBJECT -> {}
+        }
+    }
+
+    private Kind callRuntime(String name, Kind operand, int line) {
+        box(operand);
+        pushInt(line);
+        invokeStatic(RUNTIME, name, "(Ljava/lang/Object;I)Ljava/lang/Object;", -1);
+        return Kind.OBJECT;
+    }
+
+    // Boxes both operands of a binary operator, the right one being on top of the stack.
+    private void boxOperands(Kind left, Kind right) {
+        box(right);
+        if (left == Kind.OBJECT) {
+            return;
+        }
+        if (left == Kind.DOUBLE) {
+            code.op(DUP_X2, 1);
+            code.op(POP, -1);
+        } else {
+            code.op(SWAP, 0);
+        }
+        box(left);
+        code.op(SWAP, 0);
+    }
+
+    // Turns the outcome of a conditional jump that pops 'popped' words into a bool, 1 or 0.
+    private void pushCondition(int jumpOpcode, int popped) {
+        int jump = code.jump(jumpOpcode, -popped);
+        code.op(ICONST_0, 1);
+        int skip = code.jump(GOTO, 0);
+        code.land(jump);
+        // Not counted: only one of the two constants is ever pushed.
+        code.op(ICONST_0 + 1, 0);
+        code.land(skip);
+    }
+
+    // An operand of '&&' or '||' as a JVM boolean, failing if it isn't a bool.
+    private void condition(Kind kind, int line) {
+        if (kind == Kind.BOOL) {
+            return;
+        }
+        box(kind);
+        pushInt(line);
+        invokeStatic(RUNTIME, "condition", "(Ljava/lang/Object;I)Z", -1);
+    }
+
+    @Override
+    public Kind visitIntLiteral(Expr.IntLiteral expr) {
+        pushInt(expr.value);
+        return Kind.INT;
+    }
+
+    @Override
+    public Kind visitFloatLiteral(Expr.FloatLiteral expr) {
+        code.op2(LDC2_W, writer.doubleValue(expr.value), 2);
+        return Kind.DOUBLE;
+    }
+
+    @Override
+    public Kind visitBoolLiteral(Expr.BoolLiteral expr) {
+        pushInt(expr.value ? 1 : 0);
+        return Kind.BOOL;
+    }
+
+    @Override
+    public Kind visitStringLiteral(Expr.StringLiteral expr) {
+        code.op2(LDC_W, writer.string(expr.value), 1);
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visitCharLiteral(Expr.CharLiteral expr) {
+        pushInt(expr.value);
+        invokeStatic("java/lang/Character", "valueOf", "(C)Ljava/lang/Character;", 0);
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visitNilLiteral(Expr.NilLiteral expr) {
+        code.op(ACONST_NULL, 1);
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visitVar(Expr.Var expr) {
+        if (expr.isResolved()) {
+            code.op(ALOAD_0, 1);
+            pushInt(expr.depth);
+            pushInt(expr.slot);
+            pushInt(expr.line);
+            invokeStatic(RUNTIME, "lookupAt", "(Lcom/inanyan/sl/lang/Environment;III)Ljava/lang/Object;", -3);
+            return Kind.OBJECT;
+        }
+
+        code.op(ALOAD_0, 1);
+        code.op2(LDC_W, writer.string(expr.text), 1);
+        pushInt(expr.line);
+        invokeStatic(RUNTIME, "lookup", "(Lcom/inanyan/sl/lang/Environment;Ljava/lang/String;I)Ljava/lang/Object;", -2);
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visitUnary(Expr.Unary expr) {
+        Kind operand = expr.expr.accept(this);
+
+        return switch (expr.op) {
+            case NOT -> {
+                if (operand == Kind.BOOL) {
+                    pushInt(1);
+                    code.op(IXOR, -1);
+                    yield Kind.BOOL;
+                }
+                yield callRuntime("not", operand, expr.line);
+            }
+            case NEGATE -> {
+                if (operand == Kind.INT) {
+                    code.op(INEG, 0);
+                    yield Kind.INT;
+                } else if (operand == Kind.DOUBLE) {
+                    code.op(DNEG, 0);
+                    yield Kind.DOUBLE;
+                }
+                yield callRuntime("negate", operand, expr.line);
+            }
+            case PLUS -> {
+                if (operand == Kind.INT || operand == Kind.DOUBLE) {
+                    yield operand;
+                }
+                yield callRuntime("plus", operand, expr.line);
+            }
+            case BITWISE_NOT -> {
+                if (operand == Kind.INT) {
+                    pushInt(-1);
+                    code.op(IXOR, -1);
+                    yield Kind.INT;
+                }
+                yield callRuntime("bitwiseNot", operand, expr.line);
+            }
+        };
+    }
+
+    @Override
+    public Kind visitBinary(Expr.Binary expr) {
+        // A chain is compiled from its innermost operator out, without recursing down its left side.
+        List<Expr.Binary> spine = expr.leftSpine();
+        Kind left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Binary binary = spine.get(i);
+            left = binary(binary, left, binary.right.accept(this));
+        }
+        return left;
+    }
+
+    private Kind binary(Expr.Binary expr, Kind left, Kind right) {
+        if (left == Kind.INT && right == Kind.INT) {
+            switch (expr.op) {
+                case ADD -> code.op(IADD, -1);
+                case SUBTRACT -> code.op(ISUB, -1);
+                case MULTIPLY -> code.op(IMUL, -1);
+                case DIVIDE, REMAINDER -> {
+                    pushInt(expr.line);
+                    String name = expr.op == Expr.Binary.Op.DIVIDE ? "divide" : "remainder";
+                    invokeStatic(RUNTIME, name, "(III)I", -2);
+                }
+                case BITWISE_AND -> code.op(IAND, -1);
+                case BITWISE_OR -> code.op(IOR, -1);
+                case BITWISE_XOR -> code.op(IXOR, -1);
+                case SHIFT_LEFT -> code.op(ISHL, -1);
+                case SHIFT_RIGHT -> code.op(ISHR, -1);
+                case LESS -> pushCondition(IF_ICMPLT, 2);
+                case LESS_EQUAL -> pushCondition(IF_ICMPLE, 2);
+                case GREATER -> pushCondition(IF_ICMPGT, 2);
+                case GREATER_EQUAL -> pushCondition(IF_ICMPGE, 2);
+                case EQUAL -> pushCondition(IF_ICMPEQ, 2);
+                case NOT_EQUAL -> pushCondition(IF_ICMPNE, 2);
+            }
+            return Rules.isComparison(expr.op) ? Kind.BOOL : Kind.INT;
+        }
+
+        if (left == Kind.DOUBLE && right == Kind.DOUBLE && !Rules.isBitwise(expr.op)) {
+            // NaN makes every comparison false but '!=': DCMPG gives 1 for it and DCMPL -1.
+            switch (expr.op) {
+                case ADD -> code.op(DADD, -2);
+                case SUBTRACT -> code.op(DSUB, -2);
+                case MULTIPLY -> code.op(DMUL, -2);
+                case DIVIDE -> code.op(DDIV, -2);
+                case REMAINDER -> code.op(DREM, -2);
+                case LESS -> compareDoubles(DCMPG, IFLT);
+                case LESS_EQUAL -> compareDoubles(DCMPG, IFLE);
+                case GREATER -> compareDoubles(DCMPL, IFGT);
+                case GREATER_EQUAL -> compareDoubles(DCMPL, IFGE);
+                case EQUAL -> compareDoubles(DCMPL, IFEQ);
+                case NOT_EQUAL -> compareDoubles(DCMPL, IFNE);
+                default -> throw new IllegalStateException(expr.op.name());
+            }
+            return Rules.isComparison(expr.op) ? Kind.BOOL : Kind.DOUBLE;
+        }
+
+        boxOperands(left, right);
+        pushInt(expr.op.ordinal());
+        pushInt(expr.line);
+        invokeStatic(RUNTIME, "binary", "(Ljava/lang/Object;Ljava/lang/Object;II)Ljava/lang/Object;", -3);
+        return Kind.OBJECT;
+    }
+
+    private void compareDoubles(int compareOpcode, int jumpOpcode) {
+        code.op(compareOpcode, -3);
+        pushCondition(jumpOpcode, 1);
+    }
+
+    // The left operand is kept as the result when it decides it, so both paths end with one bool.
+    @Override
+    public Kind visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        Kind left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Logical logical = spine.get(i);
+            condition(left, logical.left.line);
+            code.op(DUP, 1);
+            int jump = code.jump(logical.op == Expr.Logical.Op.AND ? IFEQ : IFNE, -1);
+            code.op(POP, -1);
+            condition(logical.right.accept(this), logical.right.line);
+            code.land(jump);
+            left = Kind.BOOL;
+        }
+        return Kind.BOOL;
+    }
+
+    @Override
+    public Void visitExpr(Stmt.Expression stmt) {
+        Kind kind = stmt.expr.accept(this);
+        if (kind == Kind.DOUBLE) {
+            code.op(POP2, -2);
+        } else {
+            code.op(POP, -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrint(Stmt.Print stmt) {
+        code.op(ALOAD_1, 1);
+        // Known ints and booleans are formatted without boxing.
+        switch (stmt.expr.accept(this)) {
+            case INT -> invokeStatic(RUNTIME, "printInt", "(" + SINK + "I)V", -2);
+            case BOOL -> invokeStatic(RUNTIME, "printBoolean", "(" + SINK + "Z)V", -2);
+            case DOUBLE -> {
+                box(Kind.DOUBLE);
+                invokeStatic(RUNTIME, "print", "(" + SINK + "Ljava/lang/Object;)V", -2);
+            }
+            case OBJECT -> invokeStatic(RUNTIME, "print", "(" + SINK + "Ljava/lang/Object;)V", -2);
+        }
+        return null;
+    }
+
+    // Functions, loops and the statements that come with them are only run by the tree interpreter.
+
+    @Override
+    public Kind visitCall(Expr.Call expr) {
+        throw new Unsupported("function calls");
+    }
+
+    @Override
+    public Kind visitAssign(Expr.Assign expr) {
+        throw new Unsupported("assignments");
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var stmt) {
+        throw new Unsupported("variable declarations");
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function stmt) {
+        throw new Unsupported("functions");
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return stmt) {
+        throw new Unsupported("return statements");
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block stmt) {
+        throw new Unsupported("blocks");
+    }
+
+    @Override
+    public Void visitIf(Stmt.If stmt) {
+        throw new Unsupported("if statements");
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While stmt) {
+        throw new Unsupported("loops");
+    }
+}
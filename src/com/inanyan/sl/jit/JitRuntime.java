@@ -0,0 +1,75 @@
+package com.inanyan.sl.jit;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.lang.Rules;
+
+// Called from generated code. Operands come first so that they can be pushed in evaluation order.
+final class JitRuntime {
+    private static final Expr.Binary.Op[] BINARY_OPS = Expr.Binary.Op.values();
+
+    private JitRuntime() {}
+
+    static Object lookup(Environment environment, String name, int line) {
+        Object obj = environment.lookup(name);
+        if (obj == Environment.UNBOUND) {
+            throw new Interpreter.Error(line, "undefined reference to '" + name + "'");
+        }
+        return obj;
+    }
+
+    static Object lookupAt(Environment environment, int depth, int slot, int line) {
+        Object obj = environment.getAt(depth, slot);
+        if (obj == Environment.UNBOUND) {
+            throw new Interpreter.Error(line, "undefined reference to '" + environment.nameAt(depth, slot) + "'");
+        }
+        return obj;
+    }
+
+    static Object not(Object evaluated, int line) {
+        return Rules.not(line, evaluated);
+    }
+
+    static Object negate(Object evaluated, int line) {
+        return Rules.negate(line, evaluated);
+    }
+
+    static Object plus(Object evaluated, int line) {
+        return Rules.plus(line, evaluated);
+    }
+
+    static Object bitwiseNot(Object evaluated, int line) {
+        return Rules.bitwiseNot(line, evaluated);
+    }
+
+    static int divide(int left, int right, int line) {
+        return Rules.intDivide(line, left, right);
+    }
+
+    static int remainder(int left, int right, int line) {
+        return Rules.intRemainder(line, left, right);
+    }
+
+    // op is the ordinal of an Expr.Binary.Op.
+    static Object binary(Object left, Object right, int op, int line) {
+        return Rules.binary(line, BINARY_OPS[op], left, right);
+    }
+
+    static boolean condition(Object evaluated, int line) {
+        return Rules.condition(line, evaluated);
+    }
+
+    static void print(OutputSink out, Object obj) {
+        out.println(obj);
+    }
+
+    static void printInt(OutputSink out, int value) {
+        out.printlnInt(value);
+    }
+
+    static void printBoolean(OutputSink out, boolean value) {
+        out.printlnBoolean(value);
+    }
+}
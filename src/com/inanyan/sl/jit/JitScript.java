@@ -0,0 +1,20 @@
+package com.inanyan.sl.jit;
+
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.OutputSink;
+
+import java.io.PrintStream;
+
+public interface JitScript {
+    void execute(Environment environment, OutputSink out);
+
+    // Output is buffered for the whole run and flushed at the end, also when the script fails.
+    default void run(Environment environment, PrintStream out) {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.SIZE);
+        try {
+            execute(environment, sink);
+        } finally {
+            sink.flush();
+        }
+    }
+}
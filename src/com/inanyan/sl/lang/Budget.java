@@ -0,0 +1,80 @@
+package com.inanyan.sl.lang;
+
+// What is left of the Limits of one execution. Engines call tick() before every statement; the common case
+// is one decrement and one branch. Fuel is handed out in slices and the clock is only read when a slice runs
+// out, so a deadline can be overrun by at most one slice worth of statements.
+//
+// Fuel and time aren't charged in the middle of a statement, so an execution that runs out of them stops
+// between two statements and never leaves a global half updated. Allocations are charged by the tree
+// interpreter before the value is made, which can be mid-statement: that statement stores nothing it
+// computes afterwards. The other engines run single expressions, whose strings are bounded by their size.
+public final class Budget {
+    private static final int SLICE = 1024;
+
+    public enum Limit {
+        FUEL, TIME, ALLOCATION
+    }
+
+    // Stackless like any runtime error. Hosts that need to tell a runaway script from a failing one catch
+    // this before Interpreter.Error.
+    public static class Exceeded extends Interpreter.Error {
+        public final Limit limit;
+
+        Exceeded(int line, Limit limit, String msg) {
+            super(line, msg);
+            this.limit = limit;
+        }
+    }
+
+    private final Limits limits;
+    private final long deadline;
+    private long fuel;
+    private int slice;
+    private long allocated = 0;
+
+    Budget(Limits limits) {
+        this.limits = limits;
+        long timeout = limits.getTimeoutMillis();
+        // Timeouts of centuries don't fit System.nanoTime(), they are as good as none.
+        this.deadline = timeout >= Long.MAX_VALUE / 2_000_000 ? 0 : System.nanoTime() + timeout * 1_000_000;
+        this.fuel = limits.getFuel();
+    }
+
+    public void tick(int line) {
+        if (--slice < 0) {
+            nextSlice(line);
+        }
+    }
+
+    private void nextSlice(int line) {
+        if (fuel == 0) {
+            slice = 0;
+            throw new Exceeded(line, Limit.FUEL, "out of fuel after " + limits.getFuel() + " statements");
+        }
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            slice = 0;
+            throw new Exceeded(line, Limit.TIME, "time limit of " + limits.getTimeoutMillis() + " ms exceeded");
+        }
+
+        int next = (int) Math.min(fuel, SLICE);
+        fuel -= next;
+        slice = next - 1;
+    }
+
+    // Charges a string of size chars or a closure of size slots, before it is made.
+    public void allocate(int line, long size) {
+        allocated += size;
+        if (allocated > limits.getAllocation()) {
+            allocated = limits.getAllocation();
+            throw new Exceeded(line, Limit.ALLOCATION, "allocation limit of " + limits.getAllocation() + " exceeded");
+        }
+    }
+
+    public long getAllocated() {
+        return allocated;
+    }
+
+    public long getFuelUsed() {
+        return limits.getFuel() - fuel - slice;
+    }
+}
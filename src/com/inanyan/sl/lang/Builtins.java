@@ -1,8 +1,15 @@
 package com.inanyan.sl.lang;
 
 public class Builtins {
+    private static final Environment GLOBALS = createGlobalEnvironment().freeze();
+
+    // The builtins shared by every interpreter. Frozen, user definitions go into a layer above it.
+    public static Environment globals() {
+        return GLOBALS;
+    }
+
     public static Environment createGlobalEnvironment() {
-        Environment global = new Environment();
+        Environment global = new Environment(null, 4);
 
         global.define("SL_VER_MAJOR", 0);
         global.define("SL_VER_MINOR", 1);
@@ -0,0 +1,11 @@
+package com.inanyan.sl.lang;
+
+// Holds a local that closures capture and something assigns, so that the frame and every closure share one
+// variable. Never a value of the language: references to it are marked, and read through it.
+final class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,31 @@
+package com.inanyan.sl.lang;
+
+import com.inanyan.sl.ast.Stmt;
+
+// A function value. Flat: it holds copies of just the variables of enclosing functions that its body uses,
+// never a reference to their frames, which are gone once those calls return. A variable that is also
+// assigned is copied as its Cell, so the closure sees the assignments.
+public final class Closure {
+    final Stmt.Function function;
+    final Object[] captured;
+
+    Closure(Stmt.Function function) {
+        this.function = function;
+        this.captured = function.captures.length == 0 ? NO_CAPTURES : new Object[function.captures.length];
+    }
+
+    static final Object[] NO_CAPTURES = new Object[0];
+
+    public String getName() {
+        return function.name;
+    }
+
+    public int getArity() {
+        return function.params.size();
+    }
+
+    @Override
+    public String toString() {
+        return "<fun " + function.name + ">";
+    }
+}
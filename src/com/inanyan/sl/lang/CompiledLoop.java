@@ -0,0 +1,833 @@
+package com.inanyan.sl.lang;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+
+import java.util.List;
+
+// What the tree interpreter hands a hot loop to. The loop is rebuilt once as a tree of nodes bound to one
+// interpreter: variables are addressed directly, nodes are called directly instead of through a visitor,
+// and operators whose operands were ints or floats while the loop was interpreted compute on primitives,
+// without boxing what they pass to each other.
+//
+// Those types are speculated from the values in the frame and the environment when the loop is compiled.
+// A typed node whose operand turns out to be something else still computes the right value, generically
+// from then on, but invalidates the loop: run() hands control back to the interpreter at the next back-edge.
+//
+// A loop keeps all of its state in the frame and the environment, so nothing has to be carried over when
+// control changes hands between two iterations. Inner loops are compiled into the outer one. Calls,
+// function declarations, variables kept in cells and operator chains too long to nest Java calls for are
+// left to the interpreter.
+final class CompiledLoop {
+    private enum Kind {
+        INT, DOUBLE, BOOL, OTHER
+    }
+
+    // Stackless: it is how a typed node tells its parent that its value has another type.
+    private static class UnexpectedResult extends Exception {
+        final Object result;
+
+        UnexpectedResult(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+
+    // Values execute their operands by calling them, so a longer chain of operators is interpreted.
+    private static final int MAX_CHAIN = 1000;
+
+    private final Interpreter interpreter;
+    private final boolean specialize;
+    private final Value condition;
+    private final Code body;
+    private boolean invalidated = false;
+
+    private CompiledLoop(Interpreter interpreter, Stmt.While loop, boolean specialize) {
+        this.interpreter = interpreter;
+        this.specialize = specialize;
+        this.condition = value(loop.condition);
+        this.body = code(loop.body);
+    }
+
+    // Without specialize every operator is generic, so the loop is never invalidated.
+    static CompiledLoop compile(Interpreter interpreter, Stmt.While loop, boolean specialize) {
+        return new CompiledLoop(interpreter, loop, specialize);
+    }
+
+    // Runs the loop from its condition on. True once it is done or returned, false if it was invalidated:
+    // the interpreter goes on from the condition then.
+    boolean run() {
+        while (condition(condition)) {
+            body.run();
+            if (interpreter.returning) {
+                return true;
+            }
+            if (invalidated) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean condition(Value value) {
+        try {
+            return value.executeBoolean();
+        } catch (UnexpectedResult e) {
+            throw new Interpreter.Error(value.line, "expected bool, got '" + Interpreter.typeName(e.result) + "'");
+        }
+    }
+
+    private Kind kindOf(Object value) {
+        if (!specialize) {
+            return Kind.OTHER;
+        } else if (value instanceof Integer) {
+            return Kind.INT;
+        } else if (value instanceof Double) {
+            return Kind.DOUBLE;
+        } else if (value instanceof Boolean) {
+            return Kind.BOOL;
+        }
+        return Kind.OTHER;
+    }
+
+    private Value value(Expr expr) {
+        if (expr instanceof Expr.IntLiteral literal) {
+            return new IntConstant(literal.line, literal.value);
+        } else if (expr instanceof Expr.FloatLiteral literal) {
+            return new DoubleConstant(literal.line, literal.value);
+        } else if (expr instanceof Expr.BoolLiteral literal) {
+            return new BoolConstant(literal.line, literal.value);
+        } else if (expr instanceof Expr.StringLiteral literal) {
+            return new Constant(literal.line, literal.value);
+        } else if (expr instanceof Expr.CharLiteral literal) {
+            return new Constant(literal.line, literal.value);
+        } else if (expr instanceof Expr.NilLiteral literal) {
+            return new Constant(literal.line, null);
+        } else if (expr instanceof Expr.Var var) {
+            return variable(var);
+        } else if (expr instanceof Expr.Assign assign) {
+            Value value = value(assign.value);
+            if (assign.target.depth == Expr.Var.LOCAL) {
+                return new AssignLocal(assign.line, assign.target.slot, value);
+            } else if (assign.target.isGlobal() || !assign.target.isResolved()) {
+                return new AssignGlobal(assign, value);
+            }
+            return new InterpretedValue(assign);
+        } else if (expr instanceof Expr.Unary unary) {
+            return new Unary(unary.line, unary.op, value(unary.expr));
+        } else if (expr instanceof Expr.Binary binary) {
+            List<Expr.Binary> spine = binary.leftSpine();
+            if (spine.size() > MAX_CHAIN) {
+                return new InterpretedValue(binary);
+            }
+            Value left = value(spine.get(spine.size() - 1).left);
+            for (int i = spine.size() - 1; i >= 0; i--) {
+                left = binary(spine.get(i), left, value(spine.get(i).right));
+            }
+            return left;
+        } else if (expr instanceof Expr.Logical logical) {
+            List<Expr.Logical> spine = logical.leftSpine();
+            if (spine.size() > MAX_CHAIN) {
+                return new InterpretedValue(logical);
+            }
+            Value left = value(spine.get(spine.size() - 1).left);
+            for (int i = spine.size() - 1; i >= 0; i--) {
+                left = new Logical(spine.get(i).line, spine.get(i).op, left, value(spine.get(i).right));
+            }
+            return left;
+        }
+        return new InterpretedValue(expr);
+    }
+
+    private Value variable(Expr.Var var) {
+        if (var.depth == Expr.Var.LOCAL) {
+            return new Local(var.line, var.slot, kindOf(interpreter.stack[interpreter.fp + var.slot]));
+        } else if (var.depth == Expr.Var.CAPTURED) {
+            return new Captured(var.line, var.slot, kindOf(interpreter.captured[var.slot]));
+        } else if (var.depth == Expr.Var.LOCAL_CELL || var.depth == Expr.Var.CAPTURED_CELL) {
+            return new InterpretedValue(var);
+        }
+
+        Environment environment = interpreter.currentEnvironment;
+        Object current = var.isResolved() ? environment.getAt(var.depth, var.slot) : environment.lookup(var.text);
+        return new Global(var, kindOf(current));
+    }
+
+    private Value binary(Expr.Binary binary, Value left, Value right) {
+        boolean comparison = Rules.isComparison(binary.op);
+        if (left.kind == Kind.INT && right.kind == Kind.INT) {
+            return comparison ? new IntCompare(binary.line, binary.op, left, right)
+                    : new IntArithmetic(binary.line, binary.op, left, right);
+        } else if (left.kind == Kind.DOUBLE && right.kind == Kind.DOUBLE && !Rules.isBitwise(binary.op)) {
+            return comparison ? new DoubleCompare(binary.line, binary.op, left, right)
+                    : new DoubleArithmetic(binary.line, binary.op, left, right);
+        }
+        return new Binary(binary.line, binary.op, left, right, Kind.OTHER);
+    }
+
+    private Code code(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression expression) {
+            return new Expression(expression.line, value(expression.expr));
+        } else if (stmt instanceof Stmt.Print print) {
+            return new Print(print.line, value(print.expr));
+        } else if (stmt instanceof Stmt.Var var) {
+            return new Declaration(var, var.initializer == null ? null : value(var.initializer));
+        } else if (stmt instanceof Stmt.Return ret) {
+            return new Return(ret.line, ret.value == null ? null : value(ret.value));
+        } else if (stmt instanceof Stmt.Block block) {
+            return new Block(block.line, block.stmts);
+        } else if (stmt instanceof Stmt.If ifStmt) {
+            Value condition = value(ifStmt.condition);
+            Code thenBranch = code(ifStmt.thenBranch);
+            return new If(ifStmt.line, condition, thenBranch,
+                    ifStmt.elseBranch == null ? null : code(ifStmt.elseBranch));
+        } else if (stmt instanceof Stmt.While loop) {
+            Value condition = value(loop.condition);
+            return new Loop(loop.line, condition, code(loop.body));
+        }
+        return new InterpretedCode(stmt);
+    }
+
+    private abstract class Value {
+        final int line;
+        // The type the value had when the loop was compiled, OTHER if unknown.
+        final Kind kind;
+
+        Value(int line, Kind kind) {
+            this.line = line;
+            this.kind = kind;
+        }
+
+        abstract Object execute();
+
+        int executeInt() throws UnexpectedResult {
+            Object value = execute();
+            if (value instanceof Integer num) {
+                return num;
+            }
+            throw new UnexpectedResult(value);
+        }
+
+        double executeDouble() throws UnexpectedResult {
+            Object value = execute();
+            if (value instanceof Double num) {
+                return num;
+            }
+            throw new UnexpectedResult(value);
+        }
+
+        boolean executeBoolean() throws UnexpectedResult {
+            Object value = execute();
+            if (value instanceof Boolean bool) {
+                return bool;
+            }
+            throw new UnexpectedResult(value);
+        }
+    }
+
+    private class Constant extends Value {
+        private final Object value;
+
+        Constant(int line, Object value) {
+            super(line, Kind.OTHER);
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+
+    private class IntConstant extends Value {
+        private final int value;
+
+        IntConstant(int line, int value) {
+            super(line, Kind.INT);
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+
+        @Override
+        int executeInt() {
+            return value;
+        }
+    }
+
+    private class DoubleConstant extends Value {
+        private final double value;
+
+        DoubleConstant(int line, double value) {
+            super(line, Kind.DOUBLE);
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+
+        @Override
+        double executeDouble() {
+            return value;
+        }
+    }
+
+    private class BoolConstant extends Value {
+        private final boolean value;
+
+        BoolConstant(int line, boolean value) {
+            super(line, Kind.BOOL);
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+
+        @Override
+        boolean executeBoolean() {
+            return value;
+        }
+    }
+
+    // The stack may be reallocated by any call, so it is read from the interpreter every time.
+    private class Local extends Value {
+        private final int slot;
+
+        Local(int line, int slot, Kind kind) {
+            super(line, kind);
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute() {
+            return interpreter.stack[interpreter.fp + slot];
+        }
+    }
+
+    private class Captured extends Value {
+        private final int index;
+
+        Captured(int line, int index, Kind kind) {
+            super(line, kind);
+            this.index = index;
+        }
+
+        @Override
+        Object execute() {
+            return interpreter.captured[index];
+        }
+    }
+
+    private class Global extends Value {
+        private final Expr.Var var;
+
+        Global(Expr.Var var, Kind kind) {
+            super(var.line, kind);
+            this.var = var;
+        }
+
+        @Override
+        Object execute() {
+            return interpreter.global(var);
+        }
+    }
+
+    private class AssignLocal extends Value {
+        private final int slot;
+        private final Value value;
+
+        AssignLocal(int line, int slot, Value value) {
+            super(line, value.kind);
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            Object result = value.execute();
+            interpreter.stack[interpreter.fp + slot] = result;
+            return result;
+        }
+    }
+
+    private class AssignGlobal extends Value {
+        private final Expr.Assign assign;
+        private final Value value;
+
+        AssignGlobal(Expr.Assign assign, Value value) {
+            super(assign.line, value.kind);
+            this.assign = assign;
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            Object result = value.execute();
+            interpreter.setGlobal(assign, result);
+            return result;
+        }
+    }
+
+    private class Unary extends Value {
+        private final Expr.Unary.Op op;
+        private final Value operand;
+
+        Unary(int line, Expr.Unary.Op op, Value operand) {
+            super(line, Kind.OTHER);
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        Object execute() {
+            Object value = operand.execute();
+            return switch (op) {
+                case NOT -> Rules.not(line, value);
+                case NEGATE -> Rules.negate(line, value);
+                case PLUS -> Rules.plus(line, value);
+                case BITWISE_NOT -> Rules.bitwiseNot(line, value);
+            };
+        }
+    }
+
+    // Generic, and the base of the typed operators, which go generic for good once a guard fails.
+    private class Binary extends Value {
+        final Expr.Binary.Op op;
+        final Value left;
+        final Value right;
+        boolean deoptimized = false;
+
+        Binary(int line, Expr.Binary.Op op, Value left, Value right, Kind kind) {
+            super(line, kind);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            return Rules.binary(line, op, leftValue, right.execute(), interpreter.budget);
+        }
+
+        Object deoptimize(Object leftValue, Object rightValue) {
+            deoptimized = true;
+            invalidated = true;
+            return Rules.binary(line, op, leftValue, rightValue, interpreter.budget);
+        }
+
+        // The left operand failed its guard: the right one is still evaluated, generically.
+        Object deoptimizeLeft(Object leftValue) {
+            return deoptimize(leftValue, right.execute());
+        }
+    }
+
+    private class IntArithmetic extends Binary {
+        IntArithmetic(int line, Expr.Binary.Op op, Value left, Value right) {
+            super(line, op, left, right, Kind.INT);
+        }
+
+        @Override
+        Object execute() {
+            if (deoptimized) {
+                return super.execute();
+            }
+            try {
+                return executeInt();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        int executeInt() throws UnexpectedResult {
+            if (deoptimized) {
+                return super.executeInt();
+            }
+            int leftValue;
+            try {
+                leftValue = left.executeInt();
+            } catch (UnexpectedResult e) {
+                return expectInt(deoptimizeLeft(e.result));
+            }
+            int rightValue;
+            try {
+                rightValue = right.executeInt();
+            } catch (UnexpectedResult e) {
+                return expectInt(deoptimize(leftValue, e.result));
+            }
+            return Rules.intArithmetic(line, op, leftValue, rightValue);
+        }
+    }
+
+    private class IntCompare extends Binary {
+        IntCompare(int line, Expr.Binary.Op op, Value left, Value right) {
+            super(line, op, left, right, Kind.BOOL);
+        }
+
+        @Override
+        Object execute() {
+            if (deoptimized) {
+                return super.execute();
+            }
+            try {
+                return executeBoolean();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            if (deoptimized) {
+                return super.executeBoolean();
+            }
+            int leftValue;
+            try {
+                leftValue = left.executeInt();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(deoptimizeLeft(e.result));
+            }
+            int rightValue;
+            try {
+                rightValue = right.executeInt();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(deoptimize(leftValue, e.result));
+            }
+            return Rules.intCompare(op, leftValue, rightValue);
+        }
+    }
+
+    private class DoubleArithmetic extends Binary {
+        DoubleArithmetic(int line, Expr.Binary.Op op, Value left, Value right) {
+            super(line, op, left, right, Kind.DOUBLE);
+        }
+
+        @Override
+        Object execute() {
+            if (deoptimized) {
+                return super.execute();
+            }
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        double executeDouble() throws UnexpectedResult {
+            if (deoptimized) {
+                return super.executeDouble();
+            }
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult e) {
+                return expectDouble(deoptimizeLeft(e.result));
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult e) {
+                return expectDouble(deoptimize(leftValue, e.result));
+            }
+            return Rules.doubleArithmetic(op, leftValue, rightValue);
+        }
+    }
+
+    private class DoubleCompare extends Binary {
+        DoubleCompare(int line, Expr.Binary.Op op, Value left, Value right) {
+            super(line, op, left, right, Kind.BOOL);
+        }
+
+        @Override
+        Object execute() {
+            if (deoptimized) {
+                return super.execute();
+            }
+            try {
+                return executeBoolean();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            if (deoptimized) {
+                return super.executeBoolean();
+            }
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(deoptimizeLeft(e.result));
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(deoptimize(leftValue, e.result));
+            }
+            return Rules.doubleCompare(op, leftValue, rightValue);
+        }
+    }
+
+    private static int expectInt(Object result) throws UnexpectedResult {
+        if (result instanceof Integer num) {
+            return num;
+        }
+        throw new UnexpectedResult(result);
+    }
+
+    private static double expectDouble(Object result) throws UnexpectedResult {
+        if (result instanceof Double num) {
+            return num;
+        }
+        throw new UnexpectedResult(result);
+    }
+
+    private static boolean expectBoolean(Object result) throws UnexpectedResult {
+        if (result instanceof Boolean bool) {
+            return bool;
+        }
+        throw new UnexpectedResult(result);
+    }
+
+    // Both operands must be bools, there is nothing to speculate on.
+    private class Logical extends Value {
+        private final Expr.Logical.Op op;
+        private final Value left;
+        private final Value right;
+
+        Logical(int line, Expr.Logical.Op op, Value left, Value right) {
+            super(line, Kind.BOOL);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object execute() {
+            return executeBoolean();
+        }
+
+        @Override
+        boolean executeBoolean() {
+            boolean leftValue = operand(left);
+            if (op == Expr.Logical.Op.AND ? !leftValue : leftValue) {
+                return leftValue;
+            }
+            return operand(right);
+        }
+
+        private boolean operand(Value operand) {
+            try {
+                return operand.executeBoolean();
+            } catch (UnexpectedResult e) {
+                return Rules.condition(operand.line, e.result);
+            }
+        }
+    }
+
+    private class InterpretedValue extends Value {
+        private final Expr expr;
+
+        InterpretedValue(Expr expr) {
+            super(expr.line, Kind.OTHER);
+            this.expr = expr;
+        }
+
+        @Override
+        Object execute() {
+            return interpreter.evaluate(expr);
+        }
+    }
+
+    private abstract class Code {
+        final int line;
+
+        Code(int line) {
+            this.line = line;
+        }
+
+        // Charged like Interpreter.execute() charges a statement.
+        void run() {
+            Budget budget = interpreter.budget;
+            if (budget != null) {
+                budget.tick(line);
+            }
+            execute();
+        }
+
+        abstract void execute();
+    }
+
+    private class Expression extends Code {
+        private final Value value;
+
+        Expression(int line, Value value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        void execute() {
+            value.execute();
+        }
+    }
+
+    private class Print extends Code {
+        private final Value value;
+
+        Print(int line, Value value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        void execute() {
+            if (value.kind != Kind.INT) {
+                interpreter.out.println(value.execute());
+                return;
+            }
+            try {
+                interpreter.out.printlnInt(value.executeInt());
+            } catch (UnexpectedResult e) {
+                interpreter.out.println(e.result);
+            }
+        }
+    }
+
+    private class Declaration extends Code {
+        private final Stmt.Var var;
+        private final Value initializer;
+
+        Declaration(Stmt.Var var, Value initializer) {
+            super(var.line);
+            this.var = var;
+            this.initializer = initializer;
+        }
+
+        @Override
+        void execute() {
+            Object value = initializer == null ? null : initializer.execute();
+            if (var.cell) {
+                interpreter.stack[interpreter.fp + var.slot] = interpreter.newCell(var.line, value);
+            } else if (var.slot != -1) {
+                interpreter.stack[interpreter.fp + var.slot] = value;
+            } else {
+                interpreter.currentEnvironment.define(var.name, value);
+            }
+        }
+    }
+
+    private class Return extends Code {
+        private final Value value;
+
+        Return(int line, Value value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        void execute() {
+            interpreter.returnValue = value == null ? null : value.execute();
+            interpreter.returning = true;
+        }
+    }
+
+    private class Block extends Code {
+        private final Code[] stmts;
+
+        Block(int line, List<Stmt> stmts) {
+            super(line);
+            this.stmts = new Code[stmts.size()];
+            for (int i = 0; i < this.stmts.length; i++) {
+                this.stmts[i] = code(stmts.get(i));
+            }
+        }
+
+        @Override
+        void execute() {
+            for (Code stmt : stmts) {
+                stmt.run();
+                if (interpreter.returning) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private class If extends Code {
+        private final Value condition;
+        private final Code thenBranch;
+        private final Code elseBranch;
+
+        If(int line, Value condition, Code thenBranch, Code elseBranch) {
+            super(line);
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        void execute() {
+            if (condition(condition)) {
+                thenBranch.run();
+            } else if (elseBranch != null) {
+                elseBranch.run();
+            }
+        }
+    }
+
+    // An inner loop runs to its end here even once invalidated, its values are right all the same.
+    private class Loop extends Code {
+        private final Value condition;
+        private final Code body;
+
+        Loop(int line, Value condition, Code body) {
+            super(line);
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        void execute() {
+            while (condition(condition)) {
+                body.run();
+                if (interpreter.returning) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // Charged by the interpreter itself.
+    private class InterpretedCode extends Code {
+        private final Stmt stmt;
+
+        InterpretedCode(Stmt stmt) {
+            super(stmt.line);
+            this.stmt = stmt;
+        }
+
+        @Override
+        void run() {
+            interpreter.execute(stmt);
+        }
+
+        @Override
+        void execute() {
+            interpreter.execute(stmt);
+        }
+    }
+}
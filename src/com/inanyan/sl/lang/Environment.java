@@ -1,31 +1,172 @@
 package com.inanyan.sl.lang;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+// A scope is a flat frame: symbol IDs (see Symbols) and values side by side, sized at creation.
 public class Environment {
+    // Value of a slot that has no binding yet. Distinct from null, which is SL nil.
+    public static final Object UNBOUND = new Object() {
+        @Override
+        public String toString() {
+            return "<unbound>";
+        }
+    };
+
     private final Environment enclosing;
-    private final Map<String, Object> map = new HashMap<>();
+    private int[] symbols;
+    private Object[] values;
+    private int count = 0;
+    private boolean frozen = false;
 
     public Environment() {
-        this.enclosing = null;
+        this(null, 8);
     }
 
     public Environment(Environment enclosing) {
+        this(enclosing, 8);
+    }
+
+    public Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        this.symbols = new int[size];
+        this.values = new Object[size];
+        Arrays.fill(values, UNBOUND);
+    }
+
+    // No more definitions after this. A frozen frame is only read, so once it is safely published (e.g. through
+    // a final field) any number of threads can look names up in it without locking.
+    public Environment freeze() {
+        if (!frozen) {
+            symbols = Arrays.copyOf(symbols, count);
+            values = Arrays.copyOf(values, count);
+            frozen = true;
+        }
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public Environment getEnclosing() {
+        return enclosing;
+    }
+
+    public Object lookup(String key) {
+        int symbol = Symbols.find(key);
+        return symbol == -1 ? UNBOUND : lookup(symbol);
+    }
+
+    public Object lookup(int symbol) {
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            int slot = environment.slotOf(symbol);
+            if (slot != -1) {
+                return environment.values[slot];
+            }
+        }
+        return UNBOUND;
+    }
+
+    // Addresses come from Resolver, so they are trusted here.
+    public Object getAt(int depth, int slot) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
+        }
+        return environment.values[slot];
+    }
+
+    public void setAt(int depth, int slot, Object obj) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
+        }
+        environment.set(slot, obj);
     }
 
-    Object lookup(String key) {
-        Object res = map.get(key);
+    // Sets the name in the innermost frame that defines it. False if none does, nothing is defined then.
+    public boolean assign(String key, Object obj) {
+        int symbol = Symbols.find(key);
+        if (symbol == -1) {
+            return false;
+        }
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            int slot = environment.slotOf(symbol);
+            if (slot != -1) {
+                environment.set(slot, obj);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void set(int slot, Object obj) {
+        if (frozen) {
+            throw new IllegalStateException("can't assign '" + nameAt(slot) + "' in a frozen environment");
+        }
+        values[slot] = obj;
+    }
+
+    // -1 if the name is not defined in this frame; enclosing frames are not searched.
+    public int slotOf(String key) {
+        int symbol = Symbols.find(key);
+        return symbol == -1 ? -1 : slotOf(symbol);
+    }
+
+    // Frames are small, a linear scan over an int array beats hashing here.
+    int slotOf(int symbol) {
+        int[] symbols = this.symbols;
+        for (int i = 0; i < count; i++) {
+            if (symbols[i] == symbol) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-        if (res == null && enclosing != null) {
-            return enclosing.lookup(key);
+    // Number of names defined in this frame, in slots 0 to size() - 1.
+    public int size() {
+        return count;
+    }
+
+    public String nameAt(int slot) {
+        return Symbols.name(symbols[slot]);
+    }
+
+    public String nameAt(int depth, int slot) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
         }
+        return environment.nameAt(slot);
+    }
 
-        return res;
+    public Object valueAt(int slot) {
+        return values[slot];
     }
 
-    boolean define(String key, Object obj) {
-        return map.put(key, obj) == null;
+    public boolean define(String key, Object obj) {
+        if (frozen) {
+            throw new IllegalStateException("can't define '" + key + "' in a frozen environment");
+        }
+
+        int symbol = Symbols.intern(key);
+        int slot = slotOf(symbol);
+        if (slot != -1) {
+            values[slot] = obj;
+            return false;
+        }
+
+        if (count == symbols.length) {
+            int size = Math.max(count * 2, 4);
+            symbols = Arrays.copyOf(symbols, size);
+            values = Arrays.copyOf(values, size);
+            Arrays.fill(values, count, size, UNBOUND);
+        }
+
+        symbols[count] = symbol;
+        values[count] = obj;
+        count++;
+        return true;
     }
 }
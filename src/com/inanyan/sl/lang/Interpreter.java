@@ -2,41 +2,182 @@ package com.inanyan.sl.lang;
 
 import com.inanyan.sl.ast.Expr;
 import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jfr.Recorder;
 import com.inanyan.sl.util.ErrorListener;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+// Calls don't create environments: the arguments and locals of a call are a frame of consecutive slots in
+// one value stack, from fp up to sp, allocated once per interpreter and grown when a call needs more.
+// A return sets 'returning' and the statements of the function unwind normally, no exception is thrown.
+//
+// Loops count their back-edges. Once a loop is hot its remaining iterations are handed to a CompiledLoop,
+// which runs on the same frame and environment, so the switch happens between two iterations.
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    private final PrintStream out;
-    private Environment currentEnvironment;
+    // Deep recursion is stopped here, or earlier when the Java stack of the thread is full.
+    private static final int MAX_CALL_DEPTH = 1000;
+    // Back-edges, over all of its runs, after which a loop is compiled.
+    private static final int HOT_LOOP_BACK_EDGES = 1000;
+    // A loop deoptimized this often is compiled without speculating on types the next time.
+    private static final int MAX_LOOP_DEOPTIMIZATIONS = 3;
 
-    public Interpreter(PrintStream out, Environment environment) {
+    // The state CompiledLoop runs on is package-private.
+    final OutputSink out;
+    Environment currentEnvironment;
+    private String sourceName;
+    Budget budget;
+
+    Object[] stack = new Object[64];
+    int fp = 0;
+    private int sp = 0;
+    Object[] captured = Closure.NO_CAPTURES;
+    private int callDepth = 0;
+    private boolean compileLoops = true;
+    boolean returning = false;
+    Object returnValue;
+
+    // Operator chains are evaluated in a loop, from the innermost node of their left side out; the nodes are
+    // stacked here on the way down. Nested chains stack above the ones they are part of.
+    private Expr[] spine = new Expr[16];
+    private int spineTop = 0;
+
+    // Where compute() leaves its result: an int, float or bool stays unboxed in its field. 'boxed' is the result
+    // as an object when there already is one, such as the value of a variable, and null if it isn't boxed yet.
+    private enum Kind { INT, DOUBLE, BOOL, OBJECT }
+    private int intResult;
+    private double doubleResult;
+    private boolean boolResult;
+    private Object boxed;
+
+    // Kept here rather than in the syntax tree: a compiled loop belongs to this interpreter, and the same tree
+    // may be run by other interpreters on other threads.
+    private final Map<Stmt.While, LoopProfile> loopProfiles = new IdentityHashMap<>();
+
+    private static class LoopProfile {
+        int backEdges = 0;
+        int deoptimizations = 0;
+        CompiledLoop compiled;
+    }
+
+    public Interpreter(OutputSink out, Environment environment) {
         this.currentEnvironment = environment;
         this.out = out;
     }
+    public Interpreter(PrintStream out, Environment environment) {
+        this(OutputSink.of(out, OutputSink.FlushPolicy.LINE), environment);
+    }
     public Interpreter(PrintStream out) {
-        this.currentEnvironment = new Environment(Builtins.createGlobalEnvironment());
-        this.out = out;
+        this(out, new Environment(Builtins.globals()));
     }
 
+    // Stackless: the Java stack says nothing about the script and filling it in dominated error-heavy runs.
+    // The script-level trace is kept in frames instead, innermost first, added as the error unwinds.
     public static class Error extends RuntimeException {
         public final int line;
         public final String msg;
+        private List<String> frames = List.of();
+        private int frameLine;
+
         public Error(int line, String msg) {
-            super(msg);
+            super(msg, null, false, false);
             this.line = line;
             this.msg = msg;
+            this.frameLine = line;
+        }
+
+        // The frame of a function the error unwinds from: it was at frameLine, its caller at callLine.
+        void addCall(String name, int callLine) {
+            addFrame(name, frameLine);
+            frameLine = callLine;
+        }
+
+        public void addFrame(String name, int line) {
+            if (frames.isEmpty()) {
+                frames = new ArrayList<>();
+            }
+            frames.add(name + " (line " + line + ")");
         }
+
+        public List<String> getFrames() {
+            return frames;
+        }
+    }
+
+    public Environment getEnvironment() {
+        return currentEnvironment;
+    }
+
+    // Names the source in JFR events.
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    // Bounds every later run, null for none. A budget belongs to one execution, see Limits.newBudget().
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    // Off, every loop runs in the tree interpreter to its end, e.g. to compare against.
+    public void setCompileLoops(boolean compileLoops) {
+        this.compileLoops = compileLoops;
     }
 
     public void run(List<Stmt> stmts) {
+        Object event = Recorder.beginExecute();
+
+        if (event == null) {
+            for (Stmt stmt : stmts) {
+                executeTopLevel(stmt);
+            }
+            return;
+        }
+
+        // Only statements slower than the threshold of the statement event are kept.
         for (Stmt stmt : stmts) {
+            Object statementEvent = Recorder.beginStatement();
+            executeTopLevel(stmt);
+            Recorder.endStatement(statementEvent, sourceName, stmt.line);
+        }
+        Recorder.endExecute(event, sourceName, "tree", stmts.size());
+    }
+
+    private void executeTopLevel(Stmt stmt) {
+        try {
             execute(stmt);
+        } catch (Error e) {
+            e.addFrame("<script>", stmt.line);
+            throw e;
+        }
+    }
+
+    // Calls a function from outside of a script, e.g. for javax.script.Invocable.
+    public Object call(Closure closure, Object... args) {
+        Stmt.Function function = closure.function;
+        if (args.length != function.params.size()) {
+            throw arityError(function.line, closure, args.length);
+        }
+
+        int base = sp;
+        ensureStack(base + function.frameSize);
+        System.arraycopy(args, 0, stack, base, args.length);
+        sp = base + args.length;
+        try {
+            return invoke(closure, base);
+        } catch (Error e) {
+            e.addCall(function.name, function.line);
+            throw e;
         }
     }
 
     public void execute(Stmt stmt) {
+        if (budget != null) {
+            budget.tick(stmt.line);
+        }
         stmt.accept(this);
     }
 
@@ -44,6 +185,48 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return expr.accept(this);
     }
 
+    // Typed entry points: literals, unary and binary operators are computed on unboxed ints, floats and bools,
+    // see compute(), and the value has to be of the type asked for.
+
+    public int evaluateInt(Expr expr) {
+        Kind kind = compute(expr);
+        if (kind == Kind.INT) {
+            return intResult;
+        }
+        throw new Error(expr.line, "expected int, got '" + typeName(box(kind)) + "'");
+    }
+
+    public double evaluateDouble(Expr expr) {
+        Kind kind = compute(expr);
+        if (kind == Kind.DOUBLE) {
+            return doubleResult;
+        }
+        throw new Error(expr.line, "expected float, got '" + typeName(box(kind)) + "'");
+    }
+
+    public boolean evaluateBoolean(Expr expr) {
+        Kind kind = compute(expr);
+        if (kind == Kind.BOOL) {
+            return boolResult;
+        }
+        throw new Error(expr.line, "expected bool, got '" + typeName(box(kind)) + "'");
+    }
+
+    private void ensureStack(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        }
+    }
+
+    private static Error arityError(int line, Closure closure, int count) {
+        return new Error(line, "'" + closure.getName() + "' takes " + closure.getArity() + " argument(s), got "
+                + count);
+    }
+
+    static String typeName(Object value) {
+        return value == null ? "nil" : value.getClass().getName();
+    }
+
     @Override
     public Object visitIntLiteral(Expr.IntLiteral expr) {
         return expr.value;
@@ -76,65 +259,466 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVar(Expr.Var expr) {
+        if (expr.depth == Expr.Var.LOCAL) {
+            return stack[fp + expr.slot];
+        } else if (expr.depth == Expr.Var.CAPTURED) {
+            return captured[expr.slot];
+        } else if (expr.depth == Expr.Var.LOCAL_CELL) {
+            return ((Cell) stack[fp + expr.slot]).value;
+        } else if (expr.depth == Expr.Var.CAPTURED_CELL) {
+            return ((Cell) captured[expr.slot]).value;
+        }
+        return global(expr);
+    }
+
+    // A variable of the environment chain.
+    Object global(Expr.Var expr) {
+        if (expr.isResolved()) {
+            // Declared, but the declaration didn't run yet.
+            Object obj = currentEnvironment.getAt(expr.depth, expr.slot);
+            if (obj == Environment.UNBOUND) {
+                throw new Error(expr.line, "undefined reference to '" + expr.text + "'");
+            }
+            return obj;
+        }
+
         Object obj = currentEnvironment.lookup(expr.text);
-        if (obj == null) {
+        if (obj == Environment.UNBOUND) {
             throw new Error(expr.line, "undefined reference to '" + expr.text + "'");
         }
         return obj;
     }
 
+    @Override
+    public Object visitAssign(Expr.Assign expr) {
+        Object value = evaluate(expr.value);
+        if (expr.target.depth == Expr.Var.LOCAL) {
+            stack[fp + expr.target.slot] = value;
+        } else if (expr.target.depth == Expr.Var.LOCAL_CELL) {
+            ((Cell) stack[fp + expr.target.slot]).value = value;
+        } else if (expr.target.depth == Expr.Var.CAPTURED_CELL) {
+            ((Cell) captured[expr.target.slot]).value = value;
+        } else {
+            setGlobal(expr, value);
+        }
+        return value;
+    }
+
+    // Assigns a variable of the environment chain, which has to be defined and bound already.
+    void setGlobal(Expr.Assign expr, Object value) {
+        Expr.Var target = expr.target;
+        if (target.depth == Expr.Var.CAPTURED) {
+            // Resolver makes every captured local that is assigned a cell.
+            throw new IllegalStateException("captured '" + target.text + "' is assigned, but not a cell");
+        } else if (target.isResolved()) {
+            if (currentEnvironment.getAt(target.depth, target.slot) == Environment.UNBOUND) {
+                throw new Error(expr.line, "undefined reference to '" + target.text + "'");
+            }
+            currentEnvironment.setAt(target.depth, target.slot, value);
+        } else if (currentEnvironment.lookup(target.text) == Environment.UNBOUND
+                || !currentEnvironment.assign(target.text, value)) {
+            throw new Error(expr.line, "undefined reference to '" + target.text + "'");
+        }
+    }
+
     @Override
     public Object visitUnary(Expr.Unary expr) {
-        Object evaluated = evaluate(expr.expr);
+        return box(computeUnary(expr));
+    }
+
+    @Override
+    public Object visitBinary(Expr.Binary expr) {
+        return box(computeBinary(expr));
+    }
+
+    // Evaluates expr into the result fields. Operators on ints, floats and bools are applied to the unboxed values
+    // of their operands, any other operand goes through Rules as an object, so the values and the errors are the
+    // same either way. Only the value that leaves the operators is boxed, by box(), and only if it's needed.
+    private Kind compute(Expr expr) {
+        if (expr instanceof Expr.IntLiteral literal) {
+            intResult = literal.value;
+            boxed = null;
+            return Kind.INT;
+        } else if (expr instanceof Expr.FloatLiteral literal) {
+            doubleResult = literal.value;
+            boxed = null;
+            return Kind.DOUBLE;
+        } else if (expr instanceof Expr.BoolLiteral literal) {
+            boolResult = literal.value;
+            boxed = null;
+            return Kind.BOOL;
+        } else if (expr instanceof Expr.Unary unary) {
+            return computeUnary(unary);
+        } else if (expr instanceof Expr.Binary binary) {
+            return computeBinary(binary);
+        }
+        return classify(evaluate(expr));
+    }
+
+    private Kind classify(Object value) {
+        boxed = value;
+        if (value instanceof Integer num) {
+            intResult = num;
+            return Kind.INT;
+        } else if (value instanceof Double num) {
+            doubleResult = num;
+            return Kind.DOUBLE;
+        } else if (value instanceof Boolean bool) {
+            boolResult = bool;
+            return Kind.BOOL;
+        }
+        return Kind.OBJECT;
+    }
+
+    private Object box(Kind kind) {
+        return box(kind, intResult, doubleResult, boolResult, boxed);
+    }
 
-        return switch (expr.op) {
+    private static Object box(Kind kind, int intValue, double doubleValue, boolean boolValue, Object boxed) {
+        if (boxed != null || kind == Kind.OBJECT) {
+            return boxed;
+        } else if (kind == Kind.INT) {
+            return intValue;
+        } else if (kind == Kind.DOUBLE) {
+            return doubleValue;
+        }
+        return boolValue;
+    }
+
+    private Kind computeUnary(Expr.Unary expr) {
+        Kind kind = compute(expr.expr);
+        switch (expr.op) {
             case NOT -> {
-                if (evaluated instanceof Boolean bool) {
-                    yield !bool;
-                } else {
-                    throw new Error(expr.line, "can't negate '" + evaluated.getClass().getName() + "'");
+                if (kind == Kind.BOOL) {
+                    boolResult = !boolResult;
+                    boxed = null;
+                    return kind;
                 }
             }
             case NEGATE -> {
-                if (evaluated instanceof Integer num) {
-                    yield -num;
-                } else if (evaluated instanceof Double num) {
-                    yield -num;
-                } else {
-                    throw new Error(expr.line, "can't negate '" + evaluated.getClass().getName() + "'");
+                if (kind == Kind.INT) {
+                    intResult = -intResult;
+                    boxed = null;
+                    return kind;
+                } else if (kind == Kind.DOUBLE) {
+                    doubleResult = -doubleResult;
+                    boxed = null;
+                    return kind;
                 }
             }
             case PLUS -> {
-                if (evaluated instanceof Integer num) {
-                    yield +num;
-                } else if (evaluated instanceof Double num) {
-                    yield +num;
-                } else {
-                    throw new Error(expr.line, "can't do plus for '" + evaluated.getClass().getName() + "'");
+                if (kind == Kind.INT || kind == Kind.DOUBLE) {
+                    return kind;
                 }
             }
             case BITWISE_NOT -> {
-                if (evaluated instanceof Integer num) {
-                    yield ~num;
-                } else {
-                    throw new Error(expr.line, "can't perform bitwise not for '"
-                            + evaluated.getClass().getName() + "'");
+                if (kind == Kind.INT) {
+                    intResult = ~intResult;
+                    boxed = null;
+                    return kind;
                 }
             }
-        };
+        }
+        // The operand has the wrong type: Rules reports it.
+        Object evaluated = box(kind);
+        return classify(switch (expr.op) {
+            case NOT -> Rules.not(expr.line, evaluated);
+            case NEGATE -> Rules.negate(expr.line, evaluated);
+            case PLUS -> Rules.plus(expr.line, evaluated);
+            case BITWISE_NOT -> Rules.bitwiseNot(expr.line, evaluated);
+        });
+    }
+
+    private Kind computeBinary(Expr.Binary expr) {
+        int base = spineTop;
+        Expr left = expr;
+        while (left instanceof Expr.Binary binary) {
+            pushSpine(binary);
+            left = binary.left;
+        }
+        try {
+            Kind kind = compute(left);
+            while (spineTop > base) {
+                kind = applyBinary((Expr.Binary) spine[--spineTop], kind);
+            }
+            return kind;
+        } finally {
+            spineTop = base;
+        }
+    }
+
+    // Applies expr to its left operand, the result in the fields, and its right operand, which is computed here.
+    private Kind applyBinary(Expr.Binary expr, Kind leftKind) {
+        int leftInt = intResult;
+        double leftDouble = doubleResult;
+        boolean leftBool = boolResult;
+        Object leftBoxed = boxed;
+        Kind rightKind = compute(expr.right);
+
+        Expr.Binary.Op op = expr.op;
+        if (leftKind == Kind.INT && rightKind == Kind.INT) {
+            boxed = null;
+            if (Rules.isComparison(op)) {
+                boolResult = Rules.intCompare(op, leftInt, intResult);
+                return Kind.BOOL;
+            }
+            intResult = Rules.intArithmetic(expr.line, op, leftInt, intResult);
+            return Kind.INT;
+        } else if (isNumber(leftKind) && isNumber(rightKind) && !Rules.isBitwise(op)) {
+            double a = leftKind == Kind.INT ? leftInt : leftDouble;
+            double b = rightKind == Kind.INT ? intResult : doubleResult;
+            boxed = null;
+            if (Rules.isComparison(op)) {
+                boolResult = Rules.doubleCompare(op, a, b);
+                return Kind.BOOL;
+            }
+            doubleResult = Rules.doubleArithmetic(op, a, b);
+            return Kind.DOUBLE;
+        }
+        Object left = box(leftKind, leftInt, leftDouble, leftBool, leftBoxed);
+        return classify(Rules.binary(expr.line, op, left, box(rightKind), budget));
+    }
+
+    private static boolean isNumber(Kind kind) {
+        return kind == Kind.INT || kind == Kind.DOUBLE;
+    }
+
+    @Override
+    public Object visitLogical(Expr.Logical expr) {
+        int base = spineTop;
+        Expr left = expr;
+        while (left instanceof Expr.Logical logical) {
+            pushSpine(logical);
+            left = logical.left;
+        }
+        try {
+            boolean value = Rules.condition(left.line, evaluate(left));
+            while (spineTop > base) {
+                Expr.Logical logical = (Expr.Logical) spine[--spineTop];
+                if (logical.op == Expr.Logical.Op.AND ? value : !value) {
+                    value = Rules.condition(logical.right.line, evaluate(logical.right));
+                }
+            }
+            return value;
+        } finally {
+            spineTop = base;
+        }
+    }
+
+    private void pushSpine(Expr expr) {
+        if (spineTop == spine.length) {
+            spine = Arrays.copyOf(spine, spineTop * 2);
+        }
+        spine[spineTop++] = expr;
+    }
+
+    @Override
+    public Object visitCall(Expr.Call expr) {
+        Object callee = evaluate(expr.callee);
+        if (!(callee instanceof Closure closure)) {
+            throw new Error(expr.line, "can't call '" + typeName(callee) + "'");
+        }
+        Stmt.Function function = closure.function;
+        int count = expr.args.size();
+        if (count != function.params.size()) {
+            throw arityError(expr.line, closure, count);
+        }
+
+        // Arguments go straight into the new frame. sp moves past each one as it is stored, so that calls
+        // made while evaluating the next one build their frames above it.
+        int base = sp;
+        ensureStack(base + function.frameSize);
+        try {
+            for (int i = 0; i < count; i++) {
+                Object value = evaluate(expr.args.get(i));
+                stack[sp++] = value;
+            }
+        } catch (Error e) {
+            Arrays.fill(stack, base, sp, null);
+            sp = base;
+            throw e;
+        }
+
+        try {
+            return invoke(closure, base);
+        } catch (Error e) {
+            e.addCall(function.name, expr.line);
+            throw e;
+        }
+    }
+
+    // The arguments are in place from base up to sp.
+    private Object invoke(Closure closure, int base) {
+        Stmt.Function function = closure.function;
+        if (callDepth == MAX_CALL_DEPTH) {
+            Arrays.fill(stack, base, sp, null);
+            sp = base;
+            throw new Error(function.line, "stack overflow, more than " + MAX_CALL_DEPTH + " nested calls");
+        }
+
+        int savedFp = fp;
+        Object[] savedCaptured = captured;
+        fp = base;
+        sp = base + function.frameSize;
+        ensureStack(sp);
+        captured = closure.captured;
+        callDepth++;
+        try {
+            for (int param : function.cellParams) {
+                stack[base + param] = newCell(function.line, stack[base + param]);
+            }
+            for (Stmt stmt : function.body) {
+                execute(stmt);
+                if (returning) {
+                    returning = false;
+                    Object value = returnValue;
+                    returnValue = null;
+                    return value;
+                }
+            }
+            return null;
+        } catch (StackOverflowError e) {
+            throw new Error(function.line, "stack overflow");
+        } finally {
+            // Cleared, so that the stack doesn't keep dead values reachable.
+            Arrays.fill(stack, base, sp, null);
+            sp = base;
+            fp = savedFp;
+            captured = savedCaptured;
+            callDepth--;
+        }
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var stmt) {
+        Object value = stmt.initializer == null ? null : evaluate(stmt.initializer);
+        if (stmt.cell) {
+            stack[fp + stmt.slot] = newCell(stmt.line, value);
+        } else if (stmt.slot != -1) {
+            stack[fp + stmt.slot] = value;
+        } else {
+            currentEnvironment.define(stmt.name, value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function stmt) {
+        if (budget != null) {
+            budget.allocate(stmt.line, 1 + stmt.captures.length);
+        }
+        Closure closure = new Closure(stmt);
+        // Stored before the captures are copied: a local function that calls itself captures itself.
+        if (stmt.cell) {
+            stack[fp + stmt.slot] = newCell(stmt.line, closure);
+        } else if (stmt.slot != -1) {
+            stack[fp + stmt.slot] = closure;
+        } else {
+            currentEnvironment.define(stmt.name, closure);
+        }
+
+        int[] captures = stmt.captures;
+        for (int i = 0; i < captures.length; i++) {
+            int source = captures[i];
+            closure.captured[i] = source >= 0 ? stack[fp + source] : captured[-1 - source];
+        }
+        return null;
+    }
+
+    // A cell is charged as one slot, as in a closure.
+    Cell newCell(int line, Object value) {
+        if (budget != null) {
+            budget.allocate(line, 1);
+        }
+        return new Cell(value);
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return stmt) {
+        returnValue = stmt.value == null ? null : evaluate(stmt.value);
+        returning = true;
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block stmt) {
+        for (Stmt inner : stmt.stmts) {
+            execute(inner);
+            if (returning) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIf(Stmt.If stmt) {
+        if (evaluateBoolean(stmt.condition)) {
+            execute(stmt.thenBranch);
+        } else if (stmt.elseBranch != null) {
+            execute(stmt.elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While stmt) {
+        LoopProfile profile = loopProfiles.get(stmt);
+        if (profile == null) {
+            profile = new LoopProfile();
+            loopProfiles.put(stmt, profile);
+        }
+
+        if (compileLoops && profile.backEdges >= HOT_LOOP_BACK_EDGES && tierUp(stmt, profile)) {
+            return null;
+        }
+        while (evaluateBoolean(stmt.condition)) {
+            execute(stmt.body);
+            if (returning) {
+                break;
+            }
+            if (compileLoops && ++profile.backEdges >= HOT_LOOP_BACK_EDGES && tierUp(stmt, profile)) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    // Runs the loop compiled from its next condition check on. False if the compiled loop was invalidated on
+    // the way: the interpreter takes the next iteration, and the loop is compiled again once it is hot again.
+    private boolean tierUp(Stmt.While stmt, LoopProfile profile) {
+        if (profile.compiled == null) {
+            boolean specialize = profile.deoptimizations < MAX_LOOP_DEOPTIMIZATIONS;
+            Recorder.loopTierUp(sourceName, stmt.line, profile.backEdges, specialize);
+            profile.compiled = CompiledLoop.compile(this, stmt, specialize);
+        }
+        if (profile.compiled.run()) {
+            return true;
+        }
+
+        Recorder.loopDeoptimization();
+        profile.compiled = null;
+        profile.backEdges = 0;
+        profile.deoptimizations++;
+        return false;
     }
 
     @Override
     public Void visitExpr(Stmt.Expression stmt) {
-        evaluate(stmt.expr);
+        compute(stmt.expr);
         return null;
     }
 
     @Override
     public Void visitPrint(Stmt.Print stmt) {
-        Object result = evaluate(stmt.expr);
-        String str = Rules.stringify(result);
-        this.out.println(str);
+        Kind kind = compute(stmt.expr);
+        if (kind == Kind.INT) {
+            out.printlnInt(intResult);
+        } else if (kind == Kind.BOOL) {
+            out.printlnBoolean(boolResult);
+        } else {
+            out.println(box(kind));
+        }
         return null;
     }
 }
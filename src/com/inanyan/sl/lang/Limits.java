@@ -0,0 +1,50 @@
+package com.inanyan.sl.lang;
+
+// How much one execution may do: fuel is a count of statements, the timeout is wall-clock time from the
+// start of the execution, the allocation limit is a count of string chars and closure slots made by it in
+// total. Immutable, so one instance can be shared by every session of a server; each execution gets its own
+// Budget from it.
+public final class Limits {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final Limits NONE = new Limits(UNLIMITED, UNLIMITED, UNLIMITED);
+    // For hosts that limit time but have no better number for memory: some 128 MB of strings.
+    public static final long DEFAULT_ALLOCATION = 64L * 1024 * 1024;
+
+    private final long fuel;
+    private final long timeoutMillis;
+    private final long allocation;
+
+    public Limits(long fuel, long timeoutMillis) {
+        this(fuel, timeoutMillis, UNLIMITED);
+    }
+
+    public Limits(long fuel, long timeoutMillis, long allocation) {
+        if (fuel <= 0 || timeoutMillis <= 0 || allocation <= 0) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        this.fuel = fuel;
+        this.timeoutMillis = timeoutMillis;
+        this.allocation = allocation;
+    }
+
+    public long getFuel() {
+        return fuel;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public long getAllocation() {
+        return allocation;
+    }
+
+    public boolean isUnlimited() {
+        return fuel == UNLIMITED && timeoutMillis == UNLIMITED && allocation == UNLIMITED;
+    }
+
+    // Starts the clock.
+    public Budget newBudget() {
+        return new Budget(this);
+    }
+}
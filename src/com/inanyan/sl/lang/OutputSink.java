@@ -0,0 +1,229 @@
+package com.inanyan.sl.lang;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// Where print writes. Values are formatted straight into one reused byte buffer as UTF-8, and the buffer is
+// handed to the target as the FlushPolicy says. Meant for one interpreter at a time, but every print and
+// flush holds the lock of the sink, so the exit hook of stdout() never flushes half a line.
+public class OutputSink implements Flushable {
+    public enum FlushPolicy {
+        // After every line, for terminals and anything that reads the output while the script runs.
+        LINE,
+        // When the buffer is full; the owner flushes at the end.
+        SIZE,
+        // Like SIZE, and whatever is left is also flushed when the JVM exits. Only stdout() has it: the hook
+        // keeps its sink alive for good, which is fine for one per process and a leak for any more.
+        EXIT
+    }
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NIL = {'n', 'i', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_INT = String.valueOf(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final FlushPolicy policy;
+    private final byte[] buffer;
+    private final ByteBuffer channelBuffer;
+    private int count = 0;
+
+    private OutputSink(OutputStream stream, WritableByteChannel channel, FlushPolicy policy, int capacity) {
+        this.stream = stream;
+        this.channel = channel;
+        this.policy = policy;
+        // Room for the longest int and a line separator, so they never straddle a flush.
+        this.buffer = new byte[Math.max(capacity, 16)];
+        this.channelBuffer = channel != null ? ByteBuffer.wrap(buffer) : null;
+    }
+
+    public static OutputSink of(OutputStream stream, FlushPolicy policy) {
+        return of(stream, policy, DEFAULT_CAPACITY);
+    }
+
+    public static OutputSink of(OutputStream stream, FlushPolicy policy, int capacity) {
+        checkPolicy(policy);
+        return new OutputSink(stream, null, policy, capacity);
+    }
+
+    public static OutputSink of(WritableByteChannel channel, FlushPolicy policy, int capacity) {
+        checkPolicy(policy);
+        return new OutputSink(null, channel, policy, capacity);
+    }
+
+    private static void checkPolicy(FlushPolicy policy) {
+        if (policy == FlushPolicy.EXIT) {
+            throw new IllegalArgumentException("only stdout() flushes on exit");
+        }
+    }
+
+    // A terminal gets every line as soon as it is printed. Redirected output is written straight to the file
+    // descriptor in large blocks, bypassing System.out; flush before System.out is used again. That sink is
+    // one for the whole process, with one shutdown hook.
+    public static OutputSink stdout() {
+        if (System.console() != null) {
+            return of(System.out, FlushPolicy.LINE);
+        }
+        return RedirectedStdout.SINK;
+    }
+
+    private static final class RedirectedStdout {
+        static final OutputSink SINK = new OutputSink(null, new FileOutputStream(FileDescriptor.out).getChannel(),
+                FlushPolicy.EXIT, 64 * 1024);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(SINK::flush));
+        }
+    }
+
+    public FlushPolicy getPolicy() {
+        return policy;
+    }
+
+    // Same text as Rules.stringify(value).
+    public synchronized void println(Object value) {
+        if (value == null) {
+            write(NIL);
+        } else if (value instanceof Integer num) {
+            writeInt(num);
+        } else if (value instanceof Character ch) {
+            writeChar(ch);
+        } else if (value instanceof Boolean bool) {
+            write(bool ? TRUE : FALSE);
+        } else if (value instanceof String str) {
+            writeString(str);
+        } else {
+            writeString(Rules.stringify(value));
+        }
+        endLine();
+    }
+
+    public synchronized void printlnInt(int value) {
+        writeInt(value);
+        endLine();
+    }
+
+    public synchronized void printlnBoolean(boolean value) {
+        write(value ? TRUE : FALSE);
+        endLine();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (count == 0) {
+            return;
+        }
+        try {
+            if (channel != null) {
+                channelBuffer.clear().limit(count);
+                while (channelBuffer.hasRemaining()) {
+                    channel.write(channelBuffer);
+                }
+            } else {
+                stream.write(buffer, 0, count);
+                stream.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            count = 0;
+        }
+    }
+
+    private void endLine() {
+        write(NEWLINE);
+        if (policy == FlushPolicy.LINE) {
+            flush();
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (count + bytes > buffer.length) {
+            flush();
+        }
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    // Digits are produced backwards into their final place, no String is created.
+    private void writeInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            write(MIN_INT);
+            return;
+        }
+
+        int length = value < 0 ? 2 : 1;
+        for (int rest = Math.abs(value) / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+        ensure(length);
+
+        int pos = count + length;
+        int rest = Math.abs(value);
+        do {
+            buffer[--pos] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            buffer[--pos] = '-';
+        }
+        count += length;
+    }
+
+    private void writeChar(char ch) {
+        if (ch < 0x80) {
+            ensure(1);
+            buffer[count++] = (byte) ch;
+        } else {
+            writeString(String.valueOf(ch));
+        }
+    }
+
+    private void writeString(String str) {
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                if (count == buffer.length) {
+                    flush();
+                }
+                buffer[count++] = (byte) ch;
+            } else {
+                ensure(4);
+                if (ch < 0x800) {
+                    buffer[count++] = (byte) (0xc0 | ch >> 6);
+                    buffer[count++] = (byte) (0x80 | ch & 0x3f);
+                } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                        && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(ch, str.charAt(++i));
+                    buffer[count++] = (byte) (0xf0 | codePoint >> 18);
+                    buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                    buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+                } else if (Character.isSurrogate(ch)) {
+                    // Unpaired, replaced like String.getBytes() does.
+                    buffer[count++] = '?';
+                } else {
+                    buffer[count++] = (byte) (0xe0 | ch >> 12);
+                    buffer[count++] = (byte) (0x80 | ch >> 6 & 0x3f);
+                    buffer[count++] = (byte) (0x80 | ch & 0x3f);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.inanyan.sl.lang;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jfr.Recorder;
+import com.inanyan.sl.opt.PassManager;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.CountingErrorListener;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.io.PrintStream;
+import java.util.List;
+
+// A parsed, resolved and optimized script. Nothing changes it after compile(), so one instance can be run
+// by many threads at once. Every run gets its own Interpreter and local layer over Builtins.globals(), the
+// layout the program was resolved against: the slots of its own globals are reserved in the same order.
+public final class Program {
+    private final List<Stmt> stmts;
+    private final String[] globals;
+
+    private Program(List<Stmt> stmts, String[] globals) {
+        this.stmts = List.copyOf(stmts);
+        this.globals = globals;
+    }
+
+    // Returns null if there were errors, they are reported to errorListener.
+    public static Program compile(ErrorListener errorListener, CharSequence source, PassManager passManager) {
+        CountingErrorListener errors = new CountingErrorListener(errorListener);
+
+        List<Stmt> stmts = new Parser(errors, new Lexer(errors, source)).parse();
+        if (errors.getErrorsCount() != 0) return null;
+
+        Environment locals = newLocals(new String[0]);
+        new Resolver(errors, locals).resolve(stmts);
+        if (errors.getErrorsCount() != 0) return null;
+
+        String[] globals = new String[locals.size()];
+        for (int i = 0; i < globals.length; i++) {
+            globals[i] = locals.nameAt(i);
+        }
+        return new Program(passManager.run(stmts), globals);
+    }
+
+    public static Program compile(ErrorListener errorListener, CharSequence source) {
+        return compile(errorListener, source, new PassManager());
+    }
+
+    public List<Stmt> getStmts() {
+        return stmts;
+    }
+
+    // Cheap: one small frame and one Interpreter, the globals are shared.
+    public Interpreter newInterpreter(PrintStream out) {
+        return new Interpreter(out, newLocals(globals));
+    }
+
+    // Throws Interpreter.Error on runtime errors.
+    public void run(PrintStream out) {
+        run(out, Limits.NONE);
+    }
+
+    // Throws Budget.Exceeded when the run goes over the limits.
+    public void run(PrintStream out, Limits limits) {
+        Interpreter interpreter = newInterpreter(out);
+        if (!limits.isUnlimited()) {
+            interpreter.setBudget(limits.newBudget());
+        }
+        try {
+            interpreter.run(stmts);
+        } catch (Interpreter.Error e) {
+            Recorder.runtimeError(e.line, e.msg);
+            throw e;
+        }
+    }
+
+    private static Environment newLocals(String[] globals) {
+        Environment locals = new Environment(Builtins.globals(), Math.max(globals.length, 4));
+        for (String name : globals) {
+            locals.define(name, Environment.UNBOUND);
+        }
+        return locals;
+    }
+}
@@ -0,0 +1,370 @@
+package com.inanyan.sl.lang;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jfr.Recorder;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binds every variable reference to a (depth, slot) address in the environment chain it will be run in, or,
+// inside functions, to a slot of the call frame or a value captured by the closure.
+//
+// Declarations outside of functions are globals: their slots are reserved in the environment here, so that
+// later references resolve, and filled when the declaration runs. Inside functions a name that is not
+// defined yet is left unresolved and looked up when it runs, so functions can call functions declared
+// after them.
+//
+// Without an environment (null) only functions are laid out, references to globals are all left to be
+// looked up by name.
+//
+// A closure copies the values it captures when it is created. A local that is captured and also assigned,
+// anywhere, is kept in a Cell instead, and the closure copies the cell: its references are marked
+// LOCAL_CELL or CAPTURED_CELL once the function that declares it has been resolved whole.
+public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final ErrorListener errorListener;
+    private final Environment environment;
+    private final String sourceName;
+    private FunctionScope function;
+
+    // The frame layout of a function being resolved. Block scopes only hide names, every variable of a
+    // call gets its own slot.
+    private static class FunctionScope {
+        final FunctionScope enclosing;
+        final List<Map<String, Integer>> blocks = new ArrayList<>();
+        final Map<String, Integer> captureIndexes = new HashMap<>();
+        final List<Integer> captures = new ArrayList<>();
+        // By slot, and by capture index: the local each one is.
+        final List<Local> locals = new ArrayList<>();
+        final List<Local> captureLocals = new ArrayList<>();
+        int frameSize = 0;
+
+        FunctionScope(FunctionScope enclosing) {
+            this.enclosing = enclosing;
+            blocks.add(new HashMap<>());
+        }
+
+        int declare(String name, Stmt declaration) {
+            int slot = frameSize++;
+            blocks.get(blocks.size() - 1).put(name, slot);
+            locals.add(new Local(declaration));
+            return slot;
+        }
+
+        int local(String name) {
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                Integer slot = blocks.get(i).get(name);
+                if (slot != null) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // Index of the name among the values this function captures, added on first use; -1 if no enclosing
+        // function has it.
+        int capture(String name) {
+            Integer index = captureIndexes.get(name);
+            if (index != null) {
+                return index;
+            }
+            if (enclosing == null) {
+                return -1;
+            }
+
+            int source = enclosing.local(name);
+            Local local;
+            if (source != -1) {
+                local = enclosing.locals.get(source);
+                local.captured = true;
+            } else {
+                int outer = enclosing.capture(name);
+                if (outer == -1) {
+                    return -1;
+                }
+                source = -1 - outer;
+                local = enclosing.captureLocals.get(outer);
+            }
+
+            captures.add(source);
+            captureLocals.add(local);
+            captureIndexes.put(name, captures.size() - 1);
+            return captures.size() - 1;
+        }
+    }
+
+    // A variable of a function frame, with every reference to it, from its own function or a closure.
+    private static class Local {
+        // The Stmt.Var or Stmt.Function, null for a parameter.
+        final Stmt declaration;
+        final List<Expr.Var> references = new ArrayList<>();
+        boolean captured = false;
+        boolean assigned = false;
+
+        Local(Stmt declaration) {
+            this.declaration = declaration;
+        }
+    }
+
+    public Resolver(ErrorListener errorListener, Environment environment) {
+        this(errorListener, environment, null);
+    }
+
+    public Resolver(ErrorListener errorListener, Environment environment, String sourceName) {
+        this.errorListener = errorListener;
+        this.environment = environment;
+        this.sourceName = sourceName;
+    }
+
+    public void resolve(List<Stmt> stmts) {
+        Object event = Recorder.beginResolve();
+
+        for (Stmt stmt : stmts) {
+            stmt.accept(this);
+        }
+
+        Recorder.endResolve(event, sourceName, stmts.size());
+    }
+
+    @Override
+    public Void visitIntLiteral(Expr.IntLiteral expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitFloatLiteral(Expr.FloatLiteral expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitBoolLiteral(Expr.BoolLiteral expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitStringLiteral(Expr.StringLiteral expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitCharLiteral(Expr.CharLiteral expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitNilLiteral(Expr.NilLiteral expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitVar(Expr.Var expr) {
+        if (function != null) {
+            int slot = function.local(expr.text);
+            if (slot != -1) {
+                expr.depth = Expr.Var.LOCAL;
+                expr.slot = slot;
+                function.locals.get(slot).references.add(expr);
+                return null;
+            }
+            int index = function.capture(expr.text);
+            if (index != -1) {
+                expr.depth = Expr.Var.CAPTURED;
+                expr.slot = index;
+                function.captureLocals.get(index).references.add(expr);
+                return null;
+            }
+        }
+
+        int depth = 0;
+        for (Environment scope = environment; scope != null; scope = scope.getEnclosing()) {
+            int slot = scope.slotOf(expr.text);
+            if (slot != -1) {
+                expr.depth = depth;
+                expr.slot = slot;
+                return null;
+            }
+            depth++;
+        }
+
+        if (function == null && environment != null) {
+            errorListener.reportError(expr.line, "undefined reference to '" + expr.text + "'");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary expr) {
+        expr.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary expr) {
+        List<Expr.Binary> spine = expr.leftSpine();
+        spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            spine.get(i).right.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            spine.get(i).right.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Expr.Assign expr) {
+        expr.value.accept(this);
+        Expr.Var target = expr.target;
+        target.accept(this);
+
+        if (target.depth == Expr.Var.LOCAL) {
+            function.locals.get(target.slot).assigned = true;
+        } else if (target.depth == Expr.Var.CAPTURED) {
+            function.captureLocals.get(target.slot).assigned = true;
+        } else if (target.isGlobal() && frameAt(target.depth).isFrozen()) {
+            errorListener.reportError(expr.line, "can't assign builtin '" + target.text + "'");
+        }
+        return null;
+    }
+
+    private Environment frameAt(int depth) {
+        Environment scope = environment;
+        for (int i = 0; i < depth; i++) {
+            scope = scope.getEnclosing();
+        }
+        return scope;
+    }
+
+    @Override
+    public Void visitExpr(Stmt.Expression stmt) {
+        stmt.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitPrint(Stmt.Print stmt) {
+        stmt.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expr.Call expr) {
+        expr.callee.accept(this);
+        for (Expr arg : expr.args) {
+            arg.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            stmt.initializer.accept(this);
+        }
+        stmt.slot = declare(stmt.name, stmt);
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function stmt) {
+        // Declared first, so that the body can call itself.
+        stmt.slot = declare(stmt.name, stmt);
+
+        FunctionScope scope = new FunctionScope(function);
+        function = scope;
+        for (String param : stmt.params) {
+            scope.declare(param, null);
+        }
+        for (Stmt inner : stmt.body) {
+            inner.accept(this);
+        }
+        function = scope.enclosing;
+
+        // Decided once the whole body is seen: the closure may be declared after the assignment.
+        List<Integer> cellParams = new ArrayList<>();
+        for (int slot = 0; slot < scope.locals.size(); slot++) {
+            Local local = scope.locals.get(slot);
+            if (!local.captured || !local.assigned) {
+                continue;
+            }
+            for (Expr.Var reference : local.references) {
+                reference.depth = reference.depth == Expr.Var.LOCAL ? Expr.Var.LOCAL_CELL : Expr.Var.CAPTURED_CELL;
+            }
+            if (local.declaration instanceof Stmt.Var var) {
+                var.cell = true;
+            } else if (local.declaration instanceof Stmt.Function inner) {
+                inner.cell = true;
+            } else {
+                cellParams.add(slot);
+            }
+        }
+
+        stmt.frameSize = scope.frameSize;
+        stmt.captures = scope.captures.stream().mapToInt(Integer::intValue).toArray();
+        stmt.cellParams = cellParams.stream().mapToInt(Integer::intValue).toArray();
+        return null;
+    }
+
+    // A frame slot inside functions, -1 for a global: its slot is reserved in the innermost environment.
+    private int declare(String name, Stmt declaration) {
+        if (function != null) {
+            return function.declare(name, declaration);
+        }
+        if (environment != null && environment.slotOf(name) == -1) {
+            environment.define(name, Environment.UNBOUND);
+        }
+        return -1;
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return stmt) {
+        if (function == null) {
+            errorListener.reportError(stmt.line, "'return' outside of a function");
+        }
+        if (stmt.value != null) {
+            stmt.value.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block stmt) {
+        if (function != null) {
+            function.blocks.add(new HashMap<>());
+        }
+        for (Stmt inner : stmt.stmts) {
+            inner.accept(this);
+        }
+        if (function != null) {
+            function.blocks.remove(function.blocks.size() - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIf(Stmt.If stmt) {
+        stmt.condition.accept(this);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch != null) {
+            stmt.elseBranch.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While stmt) {
+        stmt.condition.accept(this);
+        stmt.body.accept(this);
+        return null;
+    }
+}
@@ -1,17 +1,25 @@
 package com.inanyan.sl.lang;
 
+import com.inanyan.sl.ast.Expr;
+
+import java.util.Objects;
+
 public class Rules {
     public static String stringify(Object object) {
         if (object == null) {
             return "nil";
         } else if (object instanceof Integer num) {
             return intToString(num);
+        } else if (object instanceof Double num) {
+            return String.valueOf(num);
         } else if (object instanceof Character ch) {
             return String.valueOf(ch);
         } else if (object instanceof Boolean bool) {
             return bool ? "true" : "false";
         } else if (object instanceof String str) {
             return str;
+        } else if (object instanceof Closure closure) {
+            return closure.toString();
         } else {
             throw new RuntimeException("Unimplemented object type stringify rule");
         }
@@ -20,4 +28,220 @@ public class Rules {
     public static String intToString(int num) {
         return String.valueOf(num);
     }
+
+    public static Object not(int line, Object evaluated) {
+        if (evaluated instanceof Boolean bool) {
+            return !bool;
+        } else {
+            throw new Interpreter.Error(line, "can't negate '" + typeName(evaluated) + "'");
+        }
+    }
+
+    public static Object negate(int line, Object evaluated) {
+        if (evaluated instanceof Integer num) {
+            return -num;
+        } else if (evaluated instanceof Double num) {
+            return -num;
+        } else {
+            throw new Interpreter.Error(line, "can't negate '" + typeName(evaluated) + "'");
+        }
+    }
+
+    public static Object plus(int line, Object evaluated) {
+        if (evaluated instanceof Integer num) {
+            return +num;
+        } else if (evaluated instanceof Double num) {
+            return +num;
+        } else {
+            throw new Interpreter.Error(line, "can't do plus for '" + typeName(evaluated) + "'");
+        }
+    }
+
+    public static Object bitwiseNot(int line, Object evaluated) {
+        if (evaluated instanceof Integer num) {
+            return ~num;
+        } else {
+            throw new Interpreter.Error(line, "can't perform bitwise not for '" + typeName(evaluated) + "'");
+        }
+    }
+
+    // Binary operators. Ints are 32-bit two's complement and wrap around on overflow, as in Java: an int
+    // operation always gives an int, never an error or a float. Int division truncates toward zero and fails
+    // on a zero divisor, shift counts are taken modulo 32. An int meeting a float is converted to float.
+    // '+' with a string on either side concatenates. '==' and '!=' take any values, numbers compare by value.
+    public static Object binary(int line, Expr.Binary.Op op, Object left, Object right) {
+        if (left instanceof Integer a && right instanceof Integer b) {
+            return isComparison(op) ? intCompare(op, a, b) : intArithmetic(line, op, a, b);
+        } else if (isNumber(left) && isNumber(right) && !isBitwise(op)) {
+            double a = toDouble(left);
+            double b = toDouble(right);
+            return isComparison(op) ? doubleCompare(op, a, b) : doubleArithmetic(op, a, b);
+        }
+
+        switch (op) {
+            case ADD -> {
+                if (left instanceof String || right instanceof String) {
+                    return stringify(left) + stringify(right);
+                }
+            }
+            case EQUAL -> {
+                return equal(left, right);
+            }
+            case NOT_EQUAL -> {
+                return !equal(left, right);
+            }
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> {
+                if (left instanceof Character a && right instanceof Character b) {
+                    return intCompare(op, a, b);
+                }
+            }
+            default -> {}
+        }
+        throw new Interpreter.Error(line, "can't apply '" + symbol(op) + "' to '" + typeName(left) + "' and '"
+                + typeName(right) + "'");
+    }
+
+    // binary() with the string a concatenation makes charged to the budget first, if there is one.
+    public static Object binary(int line, Expr.Binary.Op op, Object left, Object right, Budget budget) {
+        if (budget != null && op == Expr.Binary.Op.ADD && (left instanceof String || right instanceof String)) {
+            String a = stringify(left);
+            String b = stringify(right);
+            budget.allocate(line, (long) a.length() + b.length());
+            return a + b;
+        }
+        return binary(line, op, left, right);
+    }
+
+    // The operators that give a bool.
+    public static boolean isComparison(Expr.Binary.Op op) {
+        return switch (op) {
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL, NOT_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    // The operators that only take ints.
+    public static boolean isBitwise(Expr.Binary.Op op) {
+        return switch (op) {
+            case BITWISE_AND, BITWISE_OR, BITWISE_XOR, SHIFT_LEFT, SHIFT_RIGHT -> true;
+            default -> false;
+        };
+    }
+
+    // Any operator that isn't a comparison.
+    public static int intArithmetic(int line, Expr.Binary.Op op, int a, int b) {
+        return switch (op) {
+            case ADD -> a + b;
+            case SUBTRACT -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> intDivide(line, a, b);
+            case REMAINDER -> intRemainder(line, a, b);
+            case BITWISE_AND -> a & b;
+            case BITWISE_OR -> a | b;
+            case BITWISE_XOR -> a ^ b;
+            case SHIFT_LEFT -> a << b;
+            case SHIFT_RIGHT -> a >> b;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    public static int intDivide(int line, int a, int b) {
+        if (b == 0) {
+            throw new Interpreter.Error(line, "division by zero");
+        }
+        return a / b;
+    }
+
+    public static int intRemainder(int line, int a, int b) {
+        if (b == 0) {
+            throw new Interpreter.Error(line, "division by zero");
+        }
+        return a % b;
+    }
+
+    public static boolean intCompare(Expr.Binary.Op op, int a, int b) {
+        return switch (op) {
+            case LESS -> a < b;
+            case LESS_EQUAL -> a <= b;
+            case GREATER -> a > b;
+            case GREATER_EQUAL -> a >= b;
+            case EQUAL -> a == b;
+            case NOT_EQUAL -> a != b;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    // Arithmetic operators only, IEEE 754: a zero divisor gives an infinity or NaN.
+    public static double doubleArithmetic(Expr.Binary.Op op, double a, double b) {
+        return switch (op) {
+            case ADD -> a + b;
+            case SUBTRACT -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> a / b;
+            case REMAINDER -> a % b;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    public static boolean doubleCompare(Expr.Binary.Op op, double a, double b) {
+        return switch (op) {
+            case LESS -> a < b;
+            case LESS_EQUAL -> a <= b;
+            case GREATER -> a > b;
+            case GREATER_EQUAL -> a >= b;
+            case EQUAL -> a == b;
+            case NOT_EQUAL -> a != b;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    public static boolean equal(Object left, Object right) {
+        if (left instanceof Integer a && right instanceof Integer b) {
+            return a.intValue() == b.intValue();
+        } else if (isNumber(left) && isNumber(right)) {
+            return toDouble(left) == toDouble(right);
+        }
+        return Objects.equals(left, right);
+    }
+
+    // An operand of '&&' or '||'.
+    public static boolean condition(int line, Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        throw new Interpreter.Error(line, "expected bool, got '" + typeName(value) + "'");
+    }
+
+    public static String symbol(Expr.Binary.Op op) {
+        return switch (op) {
+            case ADD -> "+";
+            case SUBTRACT -> "-";
+            case MULTIPLY -> "*";
+            case DIVIDE -> "/";
+            case REMAINDER -> "%";
+            case LESS -> "<";
+            case LESS_EQUAL -> "<=";
+            case GREATER -> ">";
+            case GREATER_EQUAL -> ">=";
+            case EQUAL -> "==";
+            case NOT_EQUAL -> "!=";
+            case BITWISE_AND -> "&";
+            case BITWISE_OR -> "|";
+            case BITWISE_XOR -> "^";
+            case SHIFT_LEFT -> "<<";
+            case SHIFT_RIGHT -> ">>";
+        };
+    }
+
+    private static boolean isNumber(Object value) {
+        return value instanceof Integer || value instanceof Double;
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Integer num ? num : (Double) value;
+    }
+
+    private static String typeName(Object value) {
+        return value == null ? "nil" : value.getClass().getName();
+    }
 }
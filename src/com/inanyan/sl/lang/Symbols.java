@@ -0,0 +1,48 @@
+package com.inanyan.sl.lang;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Global intern table mapping identifier names to dense int IDs.
+public class Symbols {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int count = 0;
+
+    private Symbols() {}
+
+    public static int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (Symbols.class) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+
+            String[] current = names;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+            }
+            current[count] = name;
+            names = current;
+            ids.put(name, count);
+            return count++;
+        }
+    }
+
+    // -1 for a name that was never interned. Lookups go through here, so that names that are looked up but
+    // never defined, e.g. misspelled ones, don't grow the table.
+    public static int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public static String name(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,241 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Rules;
+
+// A binary operator starts Uninitialized and rewrites itself for the operand types it sees first: two ints
+// or two floats get a node that computes on primitives, anything else goes Generic. A specialized node
+// falls back to Generic for good once a guard fails, with the operands it already has.
+public abstract class BinaryNode extends ExprNode {
+    final Expr.Binary.Op op;
+    ExprNode left;
+    ExprNode right;
+
+    BinaryNode(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+        super(line);
+        this.op = op;
+        this.left = adopt(left);
+        this.right = adopt(right);
+    }
+
+    public ExprNode getLeft() {
+        return left;
+    }
+
+    public ExprNode getRight() {
+        return right;
+    }
+
+    @Override
+    void replaceChild(ExecNode child, ExecNode replacement) {
+        if (child == left) {
+            this.left = (ExprNode) replacement;
+        } else {
+            this.right = (ExprNode) replacement;
+        }
+    }
+
+    Object generic(Object leftValue, Object rightValue) {
+        return Rules.binary(line, op, leftValue, rightValue);
+    }
+
+    Object deoptimize(Object leftValue, Object rightValue) {
+        replace(new Generic(line, op, left, right));
+        return generic(leftValue, rightValue);
+    }
+
+    // The left operand failed its guard: the right one is still evaluated, generically.
+    Object deoptimizeLeft(Object leftValue, Environment environment) {
+        return deoptimize(leftValue, right.execute(environment));
+    }
+
+    static int expectInt(Object result) throws UnexpectedResultException {
+        if (result instanceof Integer num) {
+            return num;
+        }
+        throw new UnexpectedResultException(result);
+    }
+
+    static double expectDouble(Object result) throws UnexpectedResultException {
+        if (result instanceof Double num) {
+            return num;
+        }
+        throw new UnexpectedResultException(result);
+    }
+
+    static boolean expectBoolean(Object result) throws UnexpectedResultException {
+        if (result instanceof Boolean bool) {
+            return bool;
+        }
+        throw new UnexpectedResultException(result);
+    }
+
+    public static class Uninitialized extends BinaryNode {
+        Uninitialized(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+            super(line, op, left, right);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            Object leftValue = left.execute(environment);
+            Object rightValue = right.execute(environment);
+
+            BinaryNode specialized;
+            if (leftValue instanceof Integer && rightValue instanceof Integer) {
+                specialized = Rules.isComparison(op) ? new IntCompare(line, op, left, right)
+                        : new IntArithmetic(line, op, left, right);
+            } else if (leftValue instanceof Double && rightValue instanceof Double && !Rules.isBitwise(op)) {
+                specialized = Rules.isComparison(op) ? new DoubleCompare(line, op, left, right)
+                        : new DoubleArithmetic(line, op, left, right);
+            } else {
+                specialized = new Generic(line, op, left, right);
+            }
+            replace(specialized);
+
+            return generic(leftValue, rightValue);
+        }
+    }
+
+    // The typed execute method does the work, execute() only boxes its result.
+
+    public static class IntArithmetic extends BinaryNode {
+        IntArithmetic(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+            super(line, op, left, right);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public int executeInt(Environment environment) throws UnexpectedResultException {
+            int leftValue;
+            try {
+                leftValue = left.executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                return expectInt(deoptimizeLeft(e.result, environment));
+            }
+            int rightValue;
+            try {
+                rightValue = right.executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                return expectInt(deoptimize(leftValue, e.result));
+            }
+            return Rules.intArithmetic(line, op, leftValue, rightValue);
+        }
+    }
+
+    public static class IntCompare extends BinaryNode {
+        IntCompare(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+            super(line, op, left, right);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return executeBoolean(environment);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Environment environment) throws UnexpectedResultException {
+            int leftValue;
+            try {
+                leftValue = left.executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                return expectBoolean(deoptimizeLeft(e.result, environment));
+            }
+            int rightValue;
+            try {
+                rightValue = right.executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                return expectBoolean(deoptimize(leftValue, e.result));
+            }
+            return Rules.intCompare(op, leftValue, rightValue);
+        }
+    }
+
+    public static class DoubleArithmetic extends BinaryNode {
+        DoubleArithmetic(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+            super(line, op, left, right);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public double executeDouble(Environment environment) throws UnexpectedResultException {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                return expectDouble(deoptimizeLeft(e.result, environment));
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                return expectDouble(deoptimize(leftValue, e.result));
+            }
+            return Rules.doubleArithmetic(op, leftValue, rightValue);
+        }
+    }
+
+    public static class DoubleCompare extends BinaryNode {
+        DoubleCompare(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+            super(line, op, left, right);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return executeBoolean(environment);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Environment environment) throws UnexpectedResultException {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                return expectBoolean(deoptimizeLeft(e.result, environment));
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                return expectBoolean(deoptimize(leftValue, e.result));
+            }
+            return Rules.doubleCompare(op, leftValue, rightValue);
+        }
+    }
+
+    public static class Generic extends BinaryNode {
+        Generic(int line, Expr.Binary.Op op, ExprNode left, ExprNode right) {
+            super(line, op, left, right);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            Object leftValue = left.execute(environment);
+            return generic(leftValue, right.execute(environment));
+        }
+    }
+}
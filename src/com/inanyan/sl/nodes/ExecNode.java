@@ -0,0 +1,26 @@
+package com.inanyan.sl.nodes;
+
+// Base of the executable tree. Nodes may rewrite themselves in place through their parent, so a tree
+// must be executed by one thread at a time.
+public abstract class ExecNode {
+    public final int line;
+    ExecNode parent;
+
+    ExecNode(int line) {
+        this.line = line;
+    }
+
+    <T extends ExecNode> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    void replace(ExecNode replacement) {
+        parent.replaceChild(this, replacement);
+        replacement.parent = parent;
+    }
+
+    void replaceChild(ExecNode child, ExecNode replacement) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no replaceable children");
+    }
+}
@@ -0,0 +1,145 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+
+public abstract class ExprNode extends ExecNode {
+    ExprNode(int line) {
+        super(line);
+    }
+
+    public abstract Object execute(Environment environment);
+
+    public int executeInt(Environment environment) throws UnexpectedResultException {
+        Object value = execute(environment);
+        if (value instanceof Integer num) {
+            return num;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    public double executeDouble(Environment environment) throws UnexpectedResultException {
+        Object value = execute(environment);
+        if (value instanceof Double num) {
+            return num;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    public boolean executeBoolean(Environment environment) throws UnexpectedResultException {
+        Object value = execute(environment);
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    public static class Literal extends ExprNode {
+        private final Object value;
+
+        Literal(int line, Object value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            return value;
+        }
+    }
+
+    public static class IntLiteral extends ExprNode {
+        private final int value;
+
+        IntLiteral(int line, int value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            return value;
+        }
+
+        @Override
+        public int executeInt(Environment environment) {
+            return value;
+        }
+    }
+
+    public static class FloatLiteral extends ExprNode {
+        private final double value;
+
+        FloatLiteral(int line, double value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            return value;
+        }
+
+        @Override
+        public double executeDouble(Environment environment) {
+            return value;
+        }
+    }
+
+    public static class BoolLiteral extends ExprNode {
+        private final boolean value;
+
+        BoolLiteral(int line, boolean value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            return value;
+        }
+
+        @Override
+        public boolean executeBoolean(Environment environment) {
+            return value;
+        }
+    }
+
+    public static class Var extends ExprNode {
+        private final String name;
+
+        Var(int line, String name) {
+            super(line);
+            this.name = name;
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            Object obj = environment.lookup(name);
+            if (obj == Environment.UNBOUND) {
+                throw new Interpreter.Error(line, "undefined reference to '" + name + "'");
+            }
+            return obj;
+        }
+    }
+
+    public static class ResolvedVar extends ExprNode {
+        private final int depth;
+        private final int slot;
+
+        ResolvedVar(int line, int depth, int slot) {
+            super(line);
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            Object obj = environment.getAt(depth, slot);
+            if (obj == Environment.UNBOUND) {
+                throw new Interpreter.Error(line, "undefined reference to '" + environment.nameAt(depth, slot) + "'");
+            }
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Rules;
+
+// Both operands must be bools, so there is nothing to specialize: the operands are asked for one directly.
+public class LogicalNode extends ExprNode {
+    final Expr.Logical.Op op;
+    ExprNode left;
+    ExprNode right;
+
+    LogicalNode(int line, Expr.Logical.Op op, ExprNode left, ExprNode right) {
+        super(line);
+        this.op = op;
+        this.left = adopt(left);
+        this.right = adopt(right);
+    }
+
+    @Override
+    void replaceChild(ExecNode child, ExecNode replacement) {
+        if (child == left) {
+            this.left = (ExprNode) replacement;
+        } else {
+            this.right = (ExprNode) replacement;
+        }
+    }
+
+    private static boolean condition(ExprNode operand, Environment environment) {
+        try {
+            return operand.executeBoolean(environment);
+        } catch (UnexpectedResultException e) {
+            return Rules.condition(operand.line, e.result);
+        }
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+        return executeBoolean(environment);
+    }
+
+    @Override
+    public boolean executeBoolean(Environment environment) {
+        boolean leftValue = condition(left, environment);
+        if (op == Expr.Logical.Op.AND ? !leftValue : leftValue) {
+            return leftValue;
+        }
+        return condition(right, environment);
+    }
+}
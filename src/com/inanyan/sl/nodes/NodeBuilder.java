@@ -0,0 +1,163 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.OutputSink;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Turns the syntax tree into a self-specializing executable tree.
+public class NodeBuilder implements Expr.Visitor<ExprNode>, Stmt.Visitor<StmtNode> {
+    public static class Unsupported extends RuntimeException {
+        public Unsupported(String msg) {
+            super(msg);
+        }
+    }
+
+    // A node executes its operands by calling them, so a chain of operators takes as much Java stack as it is
+    // long. Longer chains are left to the tree interpreter, which walks them in a loop.
+    static final int MAX_CHAIN = 1000;
+
+    private final OutputSink out;
+
+    public NodeBuilder(OutputSink out) {
+        this.out = out;
+    }
+
+    public NodeBuilder(PrintStream out) {
+        this(OutputSink.of(out, OutputSink.FlushPolicy.LINE));
+    }
+
+    public RootNode build(List<Stmt> stmts) {
+        List<StmtNode> nodes = new ArrayList<>(stmts.size());
+        for (Stmt stmt : stmts) {
+            nodes.add(stmt.accept(this));
+        }
+        return new RootNode(nodes);
+    }
+
+    @Override
+    public ExprNode visitIntLiteral(Expr.IntLiteral expr) {
+        return new ExprNode.IntLiteral(expr.line, expr.value);
+    }
+
+    @Override
+    public ExprNode visitFloatLiteral(Expr.FloatLiteral expr) {
+        return new ExprNode.FloatLiteral(expr.line, expr.value);
+    }
+
+    @Override
+    public ExprNode visitBoolLiteral(Expr.BoolLiteral expr) {
+        return new ExprNode.BoolLiteral(expr.line, expr.value);
+    }
+
+    @Override
+    public ExprNode visitStringLiteral(Expr.StringLiteral expr) {
+        return new ExprNode.Literal(expr.line, expr.value);
+    }
+
+    @Override
+    public ExprNode visitCharLiteral(Expr.CharLiteral expr) {
+        return new ExprNode.Literal(expr.line, expr.value);
+    }
+
+    @Override
+    public ExprNode visitNilLiteral(Expr.NilLiteral expr) {
+        return new ExprNode.Literal(expr.line, null);
+    }
+
+    @Override
+    public ExprNode visitVar(Expr.Var expr) {
+        if (expr.isResolved()) {
+            return new ExprNode.ResolvedVar(expr.line, expr.depth, expr.slot);
+        }
+        return new ExprNode.Var(expr.line, expr.text);
+    }
+
+    @Override
+    public ExprNode visitUnary(Expr.Unary expr) {
+        return new UnaryNode.Uninitialized(expr.line, expr.op, expr.expr.accept(this));
+    }
+
+    @Override
+    public ExprNode visitBinary(Expr.Binary expr) {
+        List<Expr.Binary> spine = expr.leftSpine();
+        if (spine.size() > MAX_CHAIN) {
+            throw new Unsupported("operator chains longer than " + MAX_CHAIN);
+        }
+        ExprNode left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Binary binary = spine.get(i);
+            left = new BinaryNode.Uninitialized(binary.line, binary.op, left, binary.right.accept(this));
+        }
+        return left;
+    }
+
+    @Override
+    public ExprNode visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        if (spine.size() > MAX_CHAIN) {
+            throw new Unsupported("operator chains longer than " + MAX_CHAIN);
+        }
+        ExprNode left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Logical logical = spine.get(i);
+            left = new LogicalNode(logical.line, logical.op, left, logical.right.accept(this));
+        }
+        return left;
+    }
+
+    @Override
+    public StmtNode visitExpr(Stmt.Expression stmt) {
+        return new StmtNode.Expression(stmt.line, stmt.expr.accept(this));
+    }
+
+    @Override
+    public StmtNode visitPrint(Stmt.Print stmt) {
+        return new StmtNode.Print(stmt.line, stmt.expr.accept(this), out);
+    }
+
+    // Functions, loops and the statements that come with them are only run by the tree interpreter.
+
+    @Override
+    public ExprNode visitCall(Expr.Call expr) {
+        throw new Unsupported("function calls");
+    }
+
+    @Override
+    public ExprNode visitAssign(Expr.Assign expr) {
+        throw new Unsupported("assignments");
+    }
+
+    @Override
+    public StmtNode visitVar(Stmt.Var stmt) {
+        throw new Unsupported("variable declarations");
+    }
+
+    @Override
+    public StmtNode visitFunction(Stmt.Function stmt) {
+        throw new Unsupported("functions");
+    }
+
+    @Override
+    public StmtNode visitReturn(Stmt.Return stmt) {
+        throw new Unsupported("return statements");
+    }
+
+    @Override
+    public StmtNode visitBlock(Stmt.Block stmt) {
+        throw new Unsupported("blocks");
+    }
+
+    @Override
+    public StmtNode visitIf(Stmt.If stmt) {
+        throw new Unsupported("if statements");
+    }
+
+    @Override
+    public StmtNode visitWhile(Stmt.While stmt) {
+        throw new Unsupported("loops");
+    }
+}
@@ -0,0 +1,35 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.lang.Budget;
+import com.inanyan.sl.lang.Environment;
+
+import java.util.List;
+
+public class RootNode extends ExecNode {
+    private final StmtNode[] stmts;
+
+    RootNode(List<StmtNode> stmts) {
+        super(0);
+        this.stmts = stmts.toArray(new StmtNode[0]);
+        for (StmtNode stmt : this.stmts) {
+            adopt(stmt);
+        }
+    }
+
+    public StmtNode getStmt(int index) {
+        return stmts[index];
+    }
+
+    public void execute(Environment environment) {
+        for (StmtNode stmt : stmts) {
+            stmt.execute(environment);
+        }
+    }
+
+    public void execute(Environment environment, Budget budget) {
+        for (StmtNode stmt : stmts) {
+            budget.tick(stmt.line);
+            stmt.execute(environment);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.OutputSink;
+
+public abstract class StmtNode extends ExecNode {
+    ExprNode expr;
+
+    StmtNode(int line, ExprNode expr) {
+        super(line);
+        this.expr = adopt(expr);
+    }
+
+    public abstract void execute(Environment environment);
+
+    public ExprNode getExpr() {
+        return expr;
+    }
+
+    @Override
+    void replaceChild(ExecNode child, ExecNode replacement) {
+        this.expr = (ExprNode) replacement;
+    }
+
+    public static class Expression extends StmtNode {
+        Expression(int line, ExprNode expr) {
+            super(line, expr);
+        }
+
+        @Override
+        public void execute(Environment environment) {
+            expr.execute(environment);
+        }
+    }
+
+    public static class Print extends StmtNode {
+        private final OutputSink out;
+
+        Print(int line, ExprNode expr, OutputSink out) {
+            super(line, expr);
+            this.out = out;
+        }
+
+        @Override
+        public void execute(Environment environment) {
+            out.println(expr.execute(environment));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.inanyan.sl.nodes;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Rules;
+
+// A unary operator starts Uninitialized, rewrites itself into a node specialized for the first operand
+// type it sees, and falls back to Generic for good once a guard fails.
+public abstract class UnaryNode extends ExprNode {
+    final Expr.Unary.Op op;
+    ExprNode child;
+
+    UnaryNode(int line, Expr.Unary.Op op, ExprNode child) {
+        super(line);
+        this.op = op;
+        this.child = adopt(child);
+    }
+
+    public ExprNode getChild() {
+        return child;
+    }
+
+    @Override
+    void replaceChild(ExecNode child, ExecNode replacement) {
+        this.child = (ExprNode) replacement;
+    }
+
+    Object generic(Object value) {
+        return switch (op) {
+            case NOT -> Rules.not(line, value);
+            case NEGATE -> Rules.negate(line, value);
+            case PLUS -> Rules.plus(line, value);
+            case BITWISE_NOT -> Rules.bitwiseNot(line, value);
+        };
+    }
+
+    Object deoptimize(Object value) {
+        replace(new Generic(line, op, child));
+        return generic(value);
+    }
+
+    public static class Uninitialized extends UnaryNode {
+        Uninitialized(int line, Expr.Unary.Op op, ExprNode child) {
+            super(line, op, child);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            Object value = child.execute(environment);
+
+            UnaryNode specialized = switch (op) {
+                case NEGATE -> {
+                    if (value instanceof Integer) {
+                        yield new IntNegate(line, child);
+                    } else if (value instanceof Double) {
+                        yield new DoubleNegate(line, child);
+                    }
+                    yield new Generic(line, op, child);
+                }
+                case NOT -> value instanceof Boolean ? new BoolNot(line, child) : new Generic(line, op, child);
+                default -> new Generic(line, op, child);
+            };
+            replace(specialized);
+
+            return generic(value);
+        }
+    }
+
+    public static class IntNegate extends UnaryNode {
+        IntNegate(int line, ExprNode child) {
+            super(line, Expr.Unary.Op.NEGATE, child);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return -child.executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                return deoptimize(e.result);
+            }
+        }
+
+        @Override
+        public int executeInt(Environment environment) throws UnexpectedResultException {
+            try {
+                return -child.executeInt(environment);
+            } catch (UnexpectedResultException e) {
+                Object result = deoptimize(e.result);
+                if (result instanceof Integer num) {
+                    return num;
+                }
+                throw new UnexpectedResultException(result);
+            }
+        }
+    }
+
+    public static class DoubleNegate extends UnaryNode {
+        DoubleNegate(int line, ExprNode child) {
+            super(line, Expr.Unary.Op.NEGATE, child);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return -child.executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                return deoptimize(e.result);
+            }
+        }
+
+        @Override
+        public double executeDouble(Environment environment) throws UnexpectedResultException {
+            try {
+                return -child.executeDouble(environment);
+            } catch (UnexpectedResultException e) {
+                Object result = deoptimize(e.result);
+                if (result instanceof Double num) {
+                    return num;
+                }
+                throw new UnexpectedResultException(result);
+            }
+        }
+    }
+
+    public static class BoolNot extends UnaryNode {
+        BoolNot(int line, ExprNode child) {
+            super(line, Expr.Unary.Op.NOT, child);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            try {
+                return !child.executeBoolean(environment);
+            } catch (UnexpectedResultException e) {
+                return deoptimize(e.result);
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Environment environment) throws UnexpectedResultException {
+            try {
+                return !child.executeBoolean(environment);
+            } catch (UnexpectedResultException e) {
+                Object result = deoptimize(e.result);
+                if (result instanceof Boolean bool) {
+                    return bool;
+                }
+                throw new UnexpectedResultException(result);
+            }
+        }
+    }
+
+    public static class Generic extends UnaryNode {
+        Generic(int line, Expr.Unary.Op op, ExprNode child) {
+            super(line, op, child);
+        }
+
+        @Override
+        public Object execute(Environment environment) {
+            return generic(child.execute(environment));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.inanyan.sl.nodes;
+
+// Thrown by a type-specialized execute method when the value has another type. Carries the value so that
+// the caller can continue on the generic path without evaluating the node again.
+public class UnexpectedResultException extends Exception {
+    public final Object result;
+
+    public UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+}
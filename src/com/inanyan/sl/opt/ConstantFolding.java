@@ -0,0 +1,278 @@
+package com.inanyan.sl.opt;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Evaluates operators on literal operands at compile time. An operation that would fail is left in place,
+// so the runtime error is still raised, at the same line.
+public class ConstantFolding implements Pass, Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    @Override
+    public String getName() {
+        return "fold";
+    }
+
+    @Override
+    public List<Stmt> run(List<Stmt> stmts) {
+        List<Stmt> result = new ArrayList<>(stmts.size());
+        for (Stmt stmt : stmts) {
+            result.add(stmt.accept(this));
+        }
+        return result;
+    }
+
+    // The same list if nothing in it changed.
+    private List<Stmt> fold(List<Stmt> stmts) {
+        List<Stmt> result = run(stmts);
+        for (int i = 0; i < stmts.size(); i++) {
+            if (result.get(i) != stmts.get(i)) {
+                return result;
+            }
+        }
+        return stmts;
+    }
+
+    private static boolean isLiteral(Expr expr) {
+        return expr instanceof Expr.IntLiteral || expr instanceof Expr.FloatLiteral
+                || expr instanceof Expr.BoolLiteral || expr instanceof Expr.StringLiteral
+                || expr instanceof Expr.CharLiteral || expr instanceof Expr.NilLiteral;
+    }
+
+    private static Object valueOf(Expr expr) {
+        if (expr instanceof Expr.IntLiteral literal) {
+            return literal.value;
+        } else if (expr instanceof Expr.FloatLiteral literal) {
+            return literal.value;
+        } else if (expr instanceof Expr.BoolLiteral literal) {
+            return literal.value;
+        } else if (expr instanceof Expr.StringLiteral literal) {
+            return literal.value;
+        } else if (expr instanceof Expr.CharLiteral literal) {
+            return literal.value;
+        } else {
+            return null;
+        }
+    }
+
+    private static Expr toLiteral(int line, Object value) {
+        if (value instanceof Integer num) {
+            return new Expr.IntLiteral(line, num);
+        } else if (value instanceof Double num) {
+            return new Expr.FloatLiteral(line, num);
+        } else if (value instanceof Boolean bool) {
+            return new Expr.BoolLiteral(line, bool);
+        } else if (value instanceof String str) {
+            return new Expr.StringLiteral(line, str);
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public Expr visitIntLiteral(Expr.IntLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitFloatLiteral(Expr.FloatLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitBoolLiteral(Expr.BoolLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitStringLiteral(Expr.StringLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitCharLiteral(Expr.CharLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitNilLiteral(Expr.NilLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitVar(Expr.Var expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnary(Expr.Unary expr) {
+        Expr operand = expr.expr.accept(this);
+
+        if (isLiteral(operand)) {
+            Object value = valueOf(operand);
+            Object result;
+            try {
+                result = switch (expr.op) {
+                    case NOT -> Rules.not(expr.line, value);
+                    case NEGATE -> Rules.negate(expr.line, value);
+                    case PLUS -> Rules.plus(expr.line, value);
+                    case BITWISE_NOT -> Rules.bitwiseNot(expr.line, value);
+                };
+            } catch (RuntimeException e) {
+                result = null;
+            }
+
+            Expr folded = toLiteral(expr.line, result);
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        return operand == expr.expr ? expr : new Expr.Unary(expr.line, expr.op, operand);
+    }
+
+    @Override
+    public Expr visitBinary(Expr.Binary expr) {
+        // Chains are folded from the innermost operator out, without recursing down the left side.
+        List<Expr.Binary> spine = expr.leftSpine();
+        Expr left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Binary binary = spine.get(i);
+            left = fold(binary, left, binary.right.accept(this));
+        }
+        return left;
+    }
+
+    private Expr fold(Expr.Binary expr, Expr left, Expr right) {
+        if (isLiteral(left) && isLiteral(right)) {
+            Object result;
+            try {
+                result = Rules.binary(expr.line, expr.op, valueOf(left), valueOf(right));
+            } catch (RuntimeException e) {
+                result = null;
+            }
+
+            Expr folded = toLiteral(expr.line, result);
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        return left == expr.left && right == expr.right ? expr : new Expr.Binary(expr.line, expr.op, left, right);
+    }
+
+    // Only a literal left operand is folded: 'true && x' can't become 'x' before x is known to be a bool.
+    @Override
+    public Expr visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        Expr left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Logical logical = spine.get(i);
+            left = fold(logical, left, logical.right.accept(this));
+        }
+        return left;
+    }
+
+    private Expr fold(Expr.Logical expr, Expr left, Expr right) {
+        if (left instanceof Expr.BoolLiteral literal) {
+            // The right operand is never evaluated.
+            if (literal.value == (expr.op == Expr.Logical.Op.OR)) {
+                return new Expr.BoolLiteral(expr.line, literal.value);
+            } else if (right instanceof Expr.BoolLiteral result) {
+                return new Expr.BoolLiteral(expr.line, result.value);
+            }
+        }
+
+        return left == expr.left && right == expr.right ? expr : new Expr.Logical(expr.line, expr.op, left, right);
+    }
+
+    @Override
+    public Stmt visitExpr(Stmt.Expression stmt) {
+        Expr expr = stmt.expr.accept(this);
+        return expr == stmt.expr ? stmt : new Stmt.Expression(stmt.line, expr);
+    }
+
+    @Override
+    public Stmt visitPrint(Stmt.Print stmt) {
+        Expr expr = stmt.expr.accept(this);
+        return expr == stmt.expr ? stmt : new Stmt.Print(stmt.line, expr);
+    }
+
+    @Override
+    public Expr visitCall(Expr.Call expr) {
+        Expr callee = expr.callee.accept(this);
+        List<Expr> args = new ArrayList<>(expr.args.size());
+        boolean changed = callee != expr.callee;
+        for (Expr arg : expr.args) {
+            Expr folded = arg.accept(this);
+            changed |= folded != arg;
+            args.add(folded);
+        }
+        return changed ? new Expr.Call(expr.line, callee, args) : expr;
+    }
+
+    @Override
+    public Expr visitAssign(Expr.Assign expr) {
+        Expr value = expr.value.accept(this);
+        return value == expr.value ? expr : new Expr.Assign(expr.line, expr.target, value);
+    }
+
+    @Override
+    public Stmt visitVar(Stmt.Var stmt) {
+        if (stmt.initializer == null) {
+            return stmt;
+        }
+        Expr initializer = stmt.initializer.accept(this);
+        if (initializer == stmt.initializer) {
+            return stmt;
+        }
+        Stmt.Var folded = new Stmt.Var(stmt.line, stmt.name, initializer);
+        folded.slot = stmt.slot;
+        folded.cell = stmt.cell;
+        return folded;
+    }
+
+    @Override
+    public Stmt visitFunction(Stmt.Function stmt) {
+        List<Stmt> body = fold(stmt.body);
+        return body == stmt.body ? stmt : stmt.withBody(body);
+    }
+
+    @Override
+    public Stmt visitReturn(Stmt.Return stmt) {
+        if (stmt.value == null) {
+            return stmt;
+        }
+        Expr value = stmt.value.accept(this);
+        return value == stmt.value ? stmt : new Stmt.Return(stmt.line, value);
+    }
+
+    @Override
+    public Stmt visitBlock(Stmt.Block stmt) {
+        List<Stmt> stmts = fold(stmt.stmts);
+        return stmts == stmt.stmts ? stmt : new Stmt.Block(stmt.line, stmts);
+    }
+
+    @Override
+    public Stmt visitIf(Stmt.If stmt) {
+        Expr condition = stmt.condition.accept(this);
+        Stmt thenBranch = stmt.thenBranch.accept(this);
+        Stmt elseBranch = stmt.elseBranch == null ? null : stmt.elseBranch.accept(this);
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) {
+            return stmt;
+        }
+        return new Stmt.If(stmt.line, condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitWhile(Stmt.While stmt) {
+        Expr condition = stmt.condition.accept(this);
+        Stmt body = stmt.body.accept(this);
+        if (condition == stmt.condition && body == stmt.body) {
+            return stmt;
+        }
+        return new Stmt.While(stmt.line, condition, body);
+    }
+}
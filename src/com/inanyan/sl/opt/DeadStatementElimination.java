@@ -0,0 +1,38 @@
+package com.inanyan.sl.opt;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Drops expression statements that can neither have a side effect nor fail. Operators are never treated as
+// pure here: the ones that can't fail on their operands are already literals after ConstantFolding.
+public class DeadStatementElimination implements Pass {
+    @Override
+    public String getName() {
+        return "dce";
+    }
+
+    @Override
+    public List<Stmt> run(List<Stmt> stmts) {
+        List<Stmt> result = new ArrayList<>(stmts.size());
+        for (Stmt stmt : stmts) {
+            if (!(stmt instanceof Stmt.Expression expression && isPure(expression.expr))) {
+                result.add(stmt);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isPure(Expr expr) {
+        if (expr instanceof Expr.Var var) {
+            // An unresolved reference may still fail with "undefined reference".
+            return var.isResolved();
+        }
+
+        return expr instanceof Expr.IntLiteral || expr instanceof Expr.FloatLiteral
+                || expr instanceof Expr.BoolLiteral || expr instanceof Expr.StringLiteral
+                || expr instanceof Expr.CharLiteral || expr instanceof Expr.NilLiteral;
+    }
+}
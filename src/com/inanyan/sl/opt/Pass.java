@@ -0,0 +1,13 @@
+package com.inanyan.sl.opt;
+
+import com.inanyan.sl.ast.Stmt;
+
+import java.util.List;
+
+public interface Pass {
+    // Short name used to toggle the pass, e.g. from the command line.
+    String getName();
+
+    // Must not mutate the given trees: a pass returns new nodes for everything it changes.
+    List<Stmt> run(List<Stmt> stmts);
+}
@@ -0,0 +1,55 @@
+package com.inanyan.sl.opt;
+
+import com.inanyan.sl.ast.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class PassManager {
+    private final List<Pass> passes = new ArrayList<>();
+    private final Set<String> disabled = new HashSet<>();
+
+    public static PassManager createDefault() {
+        PassManager manager = new PassManager();
+        manager.add(new ConstantFolding());
+        manager.add(new DeadStatementElimination());
+        return manager;
+    }
+
+    public void add(Pass pass) {
+        passes.add(pass);
+    }
+
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    public boolean setEnabled(String name, boolean enabled) {
+        for (Pass pass : passes) {
+            if (pass.getName().equals(name)) {
+                if (enabled) {
+                    disabled.remove(name);
+                } else {
+                    disabled.add(name);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEnabled(String name) {
+        return !disabled.contains(name);
+    }
+
+    public List<Stmt> run(List<Stmt> stmts) {
+        for (Pass pass : passes) {
+            if (isEnabled(pass.getName())) {
+                stmts = pass.run(stmts);
+            }
+        }
+        return stmts;
+    }
+}
@@ -0,0 +1,87 @@
+package com.inanyan.sl.parsing;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// Editable text with a gap at the last edit. An edit only moves the text between it and the previous one,
+// so typing in one place costs the same in a small file as in a large one.
+class GapBuffer implements CharSequence {
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    GapBuffer(CharSequence text) {
+        int length = text.length();
+        chars = new char[length + Math.max(16, length / 8)];
+        for (int i = 0; i < length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        gapStart = length;
+        gapEnd = chars.length;
+    }
+
+    void replace(int offset, int removed, CharSequence inserted) {
+        Objects.checkFromIndexSize(offset, removed, length());
+        moveGap(offset);
+        gapEnd += removed;
+
+        int count = inserted.length();
+        if (count > gapEnd - gapStart) {
+            grow(count);
+        }
+        for (int i = 0; i < count; i++) {
+            chars[gapStart++] = inserted.charAt(i);
+        }
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int count = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (offset > gapStart) {
+            int count = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    private void grow(int needed) {
+        int tail = chars.length - gapEnd;
+        int capacity = Math.max(chars.length * 2, length() + needed + 16);
+        char[] grown = Arrays.copyOf(chars, capacity);
+        System.arraycopy(chars, gapEnd, grown, capacity - tail, tail);
+        chars = grown;
+        gapEnd = capacity - tail;
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return index < gapStart ? chars[index] : chars[index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length());
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(charAt(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(length())
+                .append(chars, 0, gapStart)
+                .append(chars, gapEnd, chars.length - gapEnd)
+                .toString();
+    }
+}
@@ -0,0 +1,258 @@
+package com.inanyan.sl.parsing;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.util.Diagnostic;
+import com.inanyan.sl.util.ErrorListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Keeps a source that is being edited parsed, for editors that reparse on every keystroke. An edit re-lexes
+// and reparses from the statement it touches until the parse lines up with the old one at a statement
+// boundary past the edit; everything after that boundary is reused. Not thread-safe.
+public class IncrementalParser {
+    // What one parseNext() call went through: a statement, with the semicolons and broken statements the
+    // parser skipped in front of it, and what was reported meanwhile. The last span has no statement.
+    //
+    // The parser returns a statement with the token after it scanned already, e.g. to see whether an 'else'
+    // follows. That token belongs to the next span, and so do the lexer diagnostics of scanning it, as if
+    // the next span had been parsed on its own; but the statement depends on it, see extent.
+    private static class Span {
+        // Where scanning for the span began. Before the gap these are plain offsets and lines; from the gap
+        // on they are counted back from the end of the source, so that an edit leaves them valid.
+        int offset;
+        int line;
+        // How far from offset the source was looked at, up to and including the token after the statement.
+        final int extent;
+        Stmt stmt;
+        List<Diagnostic> diagnostics;
+        // The line the span started on when stmt and diagnostics were created.
+        int stmtLine;
+
+        Span(int offset, int line, int extent, Stmt stmt, List<Diagnostic> diagnostics) {
+            this.offset = offset;
+            this.line = line;
+            this.extent = extent;
+            this.stmt = stmt;
+            this.diagnostics = diagnostics;
+            this.stmtLine = line;
+        }
+    }
+
+    // Tells the diagnostics of scanning the latest token apart from the others, see Span.
+    private static class Collector implements ErrorListener, TokenSource {
+        private final Lexer lexer;
+        private List<Diagnostic> diagnostics = new ArrayList<>();
+        // The diagnostics of the latest token are [tokenStart, tokenEnd).
+        private int tokenStart, tokenEnd;
+
+        Collector(CharSequence source, int offset, int line) {
+            lexer = new Lexer(this, source, offset, line);
+        }
+
+        @Override
+        public Token nextToken() {
+            tokenStart = diagnostics.size();
+            Token token = lexer.nextToken();
+            tokenEnd = diagnostics.size();
+            return token;
+        }
+
+        // Everything reported so far but what belongs to the latest token, which is kept for the next span.
+        List<Diagnostic> takeButLatestToken() {
+            List<Diagnostic> latest = new ArrayList<>(diagnostics.subList(tokenStart, tokenEnd));
+            diagnostics.subList(tokenStart, tokenEnd).clear();
+            List<Diagnostic> result = diagnostics.isEmpty() ? List.of() : diagnostics;
+            diagnostics = latest;
+            tokenStart = 0;
+            tokenEnd = latest.size();
+            return result;
+        }
+
+        List<Diagnostic> takeAll() {
+            List<Diagnostic> result = diagnostics.isEmpty() ? List.of() : diagnostics;
+            diagnostics = new ArrayList<>();
+            return result;
+        }
+
+        @Override
+        public void reportError(int line, String msg) {
+            diagnostics.add(new Diagnostic(Diagnostic.Severity.ERROR, line, msg));
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+            diagnostics.add(new Diagnostic(Diagnostic.Severity.WARNING, line, msg));
+        }
+    }
+
+    private final GapBuffer source;
+    private String text;
+    private final List<Span> spans = new ArrayList<>();
+    // Edits tend to stay close together, so moving the gap to the next one only converts a few spans.
+    private int gap = 0;
+    private int lastLine;
+    private int reparsed;
+
+    public IncrementalParser(CharSequence source) {
+        this.source = new GapBuffer(source);
+        reparse(0, 0, 0, 0);
+    }
+
+    public String getSource() {
+        if (text == null) {
+            text = source.toString();
+        }
+        return text;
+    }
+
+    public List<Stmt> getStmts() {
+        List<Stmt> stmts = new ArrayList<>(spans.size());
+        for (int i = 0; i < spans.size(); i++) {
+            Span span = settle(i);
+            if (span.stmt != null) {
+                stmts.add(span.stmt);
+            }
+        }
+        return stmts;
+    }
+
+    // Lexer and parser diagnostics, in source order.
+    public List<Diagnostic> getDiagnostics() {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        for (int i = 0; i < spans.size(); i++) {
+            diagnostics.addAll(settle(i).diagnostics);
+        }
+        return diagnostics;
+    }
+
+    // How many statements the last edit parsed again, including the one with anything after the last statement.
+    public int getReparsedCount() {
+        return reparsed;
+    }
+
+    // Replaces removed characters at offset with inserted.
+    public void edit(int offset, int removed, CharSequence inserted) {
+        int oldLength = source.length();
+        Objects.checkFromIndexSize(offset, removed, oldLength);
+
+        int first = spanBefore(offset);
+        // The spans that looked at the edited text while scanning the token after their statement.
+        while (first > 0 && offsetOf(first - 1) + spans.get(first - 1).extent >= offset) {
+            first--;
+        }
+        int startOffset = offsetOf(first);
+        int startLine = lineOf(first);
+        moveGap(first);
+
+        source.replace(offset, removed, inserted);
+        text = null;
+        reparse(first, startOffset, startLine, oldLength - offset - removed);
+    }
+
+    private int offsetOf(int index) {
+        Span span = spans.get(index);
+        return index < gap ? span.offset : source.length() - span.offset;
+    }
+
+    private int lineOf(int index) {
+        Span span = spans.get(index);
+        return index < gap ? span.line : lastLine - span.line;
+    }
+
+    private void moveGap(int index) {
+        for (; gap < index; gap++) {
+            Span span = spans.get(gap);
+            span.offset = source.length() - span.offset;
+            span.line = lastLine - span.line;
+        }
+        for (; gap > index; gap--) {
+            Span span = spans.get(gap - 1);
+            span.offset = source.length() - span.offset;
+            span.line = lastLine - span.line;
+        }
+    }
+
+    // The last span that starts before offset, where scanning has to begin again.
+    private int spanBefore(int offset) {
+        int low = 0;
+        int high = spans.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsetOf(mid) < offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // Replaces the spans from first, which is at the gap and starts at offset and line, by parsing until a
+    // boundary lines up with an old span no further than unchanged characters from the end, after the edit.
+    private void reparse(int first, int offset, int line, int unchanged) {
+        Collector collector = new Collector(source, offset, line);
+        Lexer lexer = collector.lexer;
+        Parser parser = new Parser(collector, collector);
+        int length = source.length();
+
+        List<Span> parsed = new ArrayList<>();
+        int reusable = first + 1;
+        int resync = spans.size();
+        int spanOffset = offset;
+        int spanLine = line;
+        while (true) {
+            Stmt stmt = parser.parseNext();
+            int extent = lexer.getScanEnd() - spanOffset;
+            if (stmt == null) {
+                parsed.add(new Span(spanOffset, spanLine, extent, null, collector.takeAll()));
+                lastLine = lexer.getLine();
+                break;
+            }
+            parsed.add(new Span(spanOffset, spanLine, extent, stmt, collector.takeButLatestToken()));
+
+            spanOffset = lexer.getScanStart();
+            spanLine = lexer.getScanLine();
+            int offsetFromEnd = length - spanOffset;
+            while (reusable < spans.size() && spans.get(reusable).offset > offsetFromEnd) {
+                reusable++;
+            }
+            if (reusable < spans.size() && spans.get(reusable).offset == offsetFromEnd
+                    && offsetFromEnd <= unchanged) {
+                // The old span has the diagnostics of its first token already, the ones kept here are dropped.
+                resync = reusable;
+                lastLine = spanLine + spans.get(reusable).line;
+                break;
+            }
+        }
+
+        List<Span> replaced = spans.subList(first, resync);
+        replaced.clear();
+        replaced.addAll(parsed);
+        gap = first + parsed.size();
+        reparsed = parsed.size();
+    }
+
+    private Span settle(int index) {
+        Span span = spans.get(index);
+        int line = lineOf(index);
+        if (line == span.stmtLine) {
+            return span;
+        }
+
+        int delta = line - span.stmtLine;
+        if (span.stmt != null) {
+            span.stmt = LineShifter.shift(span.stmt, delta);
+        }
+        if (!span.diagnostics.isEmpty()) {
+            List<Diagnostic> shifted = new ArrayList<>(span.diagnostics.size());
+            for (Diagnostic diagnostic : span.diagnostics) {
+                shifted.add(new Diagnostic(diagnostic.severity, diagnostic.line + delta, diagnostic.msg));
+            }
+            span.diagnostics = shifted;
+        }
+        span.stmtLine = line;
+        return span;
+    }
+}
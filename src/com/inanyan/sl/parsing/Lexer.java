@@ -1,48 +1,183 @@
 package com.inanyan.sl.parsing;
 
+import com.inanyan.sl.jfr.Recorder;
 import com.inanyan.sl.util.ErrorListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class Lexer {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+public class Lexer implements TokenSource {
+    private final CharSequence source;
+    private final String sourceName;
+    private final int length;
     private final ErrorListener errorListener;
+    private Token scanned;
+    private TokenBuffer buffer;
+    private StringPool identifiers;
     private int start, current;
     private int line = 0;
+    // Where scanning of the last streamed token began, before any whitespace and comments in front of it.
+    private int scanStart, scanLine;
+    // The lex event of streaming mode, from the first token to EOF, and where the stream started.
+    private Object streamEvent;
+    private int streamed = 0;
+    private int streamOrigin;
+
+    public Lexer(ErrorListener errorListener, CharSequence source) {
+        this(errorListener, source, null);
+    }
 
-    public Lexer(ErrorListener errorListener, String source) {
+    public Lexer(ErrorListener errorListener, CharSequence source, String sourceName) {
         this.errorListener = errorListener;
         this.source = source;
+        this.sourceName = sourceName;
+        this.length = source.length();
         this.start = 0;
         this.current = 0;
     }
 
+    // Streams tokens from the middle of a source, for re-lexing an edited region.
+    Lexer(ErrorListener errorListener, CharSequence source, int offset, int line) {
+        this(errorListener, source, null);
+        this.start = offset;
+        this.current = offset;
+        this.line = line;
+    }
+
+    int getScanStart() {
+        return scanStart;
+    }
+
+    int getScanLine() {
+        return scanLine;
+    }
+
+    // Where scanning of the last streamed token stopped. To find its end, scanning looked at most at the char
+    // at this offset.
+    int getScanEnd() {
+        return current;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
     public List<Token> scanTokens() {
+        Object event = Recorder.beginLex();
+
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = scanNext();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+
+        Recorder.endLex(event, sourceName, tokens.size(), length, false);
+        return tokens;
+    }
+
+    // Zero-copy mode: records token ranges instead of creating Token objects and substrings.
+    public TokenBuffer scanTokenBuffer() {
+        Object event = Recorder.beginLex();
+
+        buffer = new TokenBuffer(source, sourceName);
         while (!isAtEnd()) {
             start = current;
             scanToken();
         }
+        buffer.add(TokenType.EOF, length, 0, line);
 
-        tokens.add(new Token(source.length(), TokenType.EOF, ""));
-        return tokens;
+        Recorder.endLex(event, sourceName, buffer.size(), length, false);
+        return buffer;
+    }
+
+    // Streaming mode: scans only as far as the next token. Returns EOF tokens once the source is exhausted.
+    // The lex event is committed with the first EOF; it spans the parsing done in between too.
+    @Override
+    public Token nextToken() {
+        if (streamed == 0) {
+            streamEvent = Recorder.beginLex();
+            streamOrigin = current;
+        }
+        Token token = scanNext();
+        if (streamed >= 0) {
+            streamed++;
+            if (token.type == TokenType.EOF) {
+                Recorder.endLex(streamEvent, sourceName, streamed, length - streamOrigin, true);
+                streamEvent = null;
+                streamed = -1;
+            }
+        }
+        return token;
+    }
+
+    private Token scanNext() {
+        scanStart = current;
+        scanLine = line;
+        scanned = null;
+        while (scanned == null && !isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+
+        if (scanned == null) {
+            return new Token(line, TokenType.EOF, "");
+        }
+        return scanned;
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= length;
     }
 
     private void scanToken() {
         char cur = advance();
         switch (cur) {
-            case ';': addToken(TokenType.SEMICOLON); break;
-            case '!': addToken(TokenType.BANG); break;
-            case '-': addToken(TokenType.MINUS); break;
-            case '+': addToken(TokenType.PLUS); break;
-            case '~': addToken(TokenType.TILDA); break;
+            case ';': addToken(TokenType.SEMICOLON, ";"); break;
+            case ',': addToken(TokenType.COMMA, ","); break;
+            case '(': addToken(TokenType.LEFT_PAREN, "("); break;
+            case ')': addToken(TokenType.RIGHT_PAREN, ")"); break;
+            case '{': addToken(TokenType.LEFT_BRACE, "{"); break;
+            case '}': addToken(TokenType.RIGHT_BRACE, "}"); break;
+            case '-': addToken(TokenType.MINUS, "-"); break;
+            case '+': addToken(TokenType.PLUS, "+"); break;
+            case '*': addToken(TokenType.STAR, "*"); break;
+            case '/': addToken(TokenType.SLASH, "/"); break;
+            case '%': addToken(TokenType.PERCENT, "%"); break;
+            case '~': addToken(TokenType.TILDA, "~"); break;
+            case '^': addToken(TokenType.CARET, "^"); break;
+
+            case '=':
+                if (match('=')) addToken(TokenType.EQUAL_EQUAL, "==");
+                else addToken(TokenType.EQUAL, "=");
+                break;
+            case '!':
+                if (match('=')) addToken(TokenType.BANG_EQUAL, "!=");
+                else addToken(TokenType.BANG, "!");
+                break;
+            case '<':
+                if (match('=')) addToken(TokenType.LESS_EQUAL, "<=");
+                else if (match('<')) addToken(TokenType.LESS_LESS, "<<");
+                else addToken(TokenType.LESS, "<");
+                break;
+            case '>':
+                if (match('=')) addToken(TokenType.GREATER_EQUAL, ">=");
+                else if (match('>')) addToken(TokenType.GREATER_GREATER, ">>");
+                else addToken(TokenType.GREATER, ">");
+                break;
+            case '&':
+                if (match('&')) addToken(TokenType.AMPERSAND_AMPERSAND, "&&");
+                else addToken(TokenType.AMPERSAND, "&");
+                break;
+            case '|':
+                if (match('|')) addToken(TokenType.PIPE_PIPE, "||");
+                else addToken(TokenType.PIPE, "|");
+                break;
 
             case '\n':
                 line++;
@@ -59,7 +194,7 @@ public class Lexer {
             default:
                 if (Rules.isDigit(cur)) {
                     number();
-                } else if (Rules.isAlphabetic(cur) || cur == '_') {
+                } else if (Rules.isIdentifierStart(cur)) {
                     identifierOrKeyword();
                 } else {
                     errorListener.reportError(line, "unexpected character");
@@ -71,7 +206,7 @@ public class Lexer {
     private char scanStringChar() {
         // TODO: What to do with literal new line in char or string?
         char ch = advance();
-        if (ch == '\\') {
+        if (ch == '\\' && !isAtEnd()) {
             return escape(advance());
         } else {
             return ch;
@@ -79,27 +214,51 @@ public class Lexer {
     }
 
     private char escape(char ch) {
+        if (!isKnownEscape(ch)) {
+            errorListener.reportWarning(line, "unknown escape sequence, leaving as is");
+        }
+        return escapeChar(ch);
+    }
+
+    private static boolean isKnownEscape(char ch) {
+        return switch (ch) {
+            case 't', 'n', 'r', '\\', '\'', '\"' -> true;
+            default -> false;
+        };
+    }
+
+    static char escapeChar(char ch) {
         switch (ch) {
             case 't':  return '\t';
             case 'n':  return '\n';
             case 'r':  return '\r';
+            default:   return ch;
+        }
+    }
 
-            case '\\':
-            case '\'':
-            case '\"':
-                return ch;
-
-            default:
-                errorListener.reportWarning(line, "unknown escape sequence, leaving as is");
-                return ch;
+    // Decodes the content of a string or character literal that was validated while scanning.
+    static String unescape(CharSequence source, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char ch = source.charAt(i);
+            if (ch == '\\' && i + 1 < end) {
+                ch = escapeChar(source.charAt(++i));
+            }
+            sb.append(ch);
         }
+        return sb.toString();
     }
 
     private void string() {
-        StringBuilder sb = new StringBuilder();
+        int contentStart = current;
+        StringBuilder sb = buffer == null ? new StringBuilder() : null;
         while (!isAtEnd() && peek() != '\"') {
-            sb.append(scanStringChar());
+            char ch = scanStringChar();
+            if (sb != null) {
+                sb.append(ch);
+            }
         }
+        int contentEnd = current;
 
         if (peek() != '\"') {
             errorListener.reportError(line, "unterminated string");
@@ -107,12 +266,23 @@ public class Lexer {
             advance();
         }
 
-        addToken(TokenType.STRING, sb.toString());
+        if (buffer != null) {
+            buffer.add(TokenType.STRING, contentStart, contentEnd - contentStart, line);
+        } else {
+            addToken(TokenType.STRING, sb.toString());
+        }
     }
 
     // TODO: Better. Make accepting as string, but to be error.
     private void character() {
+        if (isAtEnd()) {
+            errorListener.reportError(line, "unterminated character literal");
+            return;
+        }
+
+        int contentStart = current;
         char ch = scanStringChar();
+        int contentEnd = current;
 
         if (peek() != '\'') {
             errorListener.reportError(line, "unterminated character literal");
@@ -120,33 +290,92 @@ public class Lexer {
             advance();
         }
 
-        addToken(TokenType.CHARACTER, String.valueOf(ch));
+        if (buffer != null) {
+            buffer.add(TokenType.CHARACTER, contentStart, contentEnd - contentStart, line);
+        } else {
+            addToken(TokenType.CHARACTER, String.valueOf(ch));
+        }
     }
 
     private void identifierOrKeyword() {
-        while (Rules.isAlphaDigit(peek()) || peek() == '_') {
-            advance();
+        while (!isAtEnd() && Rules.isIdentifierPart(source.charAt(current))) {
+            current++;
         }
 
-        String text = source.substring(start, current);
-        tokens.add(new Token(line, isKeyword(text), text));
+        TokenType type = keywordAt(start, current);
+        if (buffer != null) {
+            buffer.add(type, start, current - start, line);
+        } else if (type != TokenType.IDENTIFIER) {
+            addToken(type, keywordText(type));
+        } else {
+            if (identifiers == null) {
+                identifiers = new StringPool();
+            }
+            addToken(type, identifiers.intern(source, start, current));
+        }
     }
 
-    private static final Map<String, TokenType> keywords = new HashMap<>();
-    static {
-        keywords.put("print", TokenType.PRINT);
-        keywords.put("nil", TokenType.NIL);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("false", TokenType.FALSE);
+    // Switches on length and first character, so most identifiers are ruled out without comparing a thing.
+    private TokenType keywordAt(int from, int to) {
+        switch (to - from) {
+            case 2:
+                if (regionEquals("if", from)) return TokenType.IF;
+                break;
+            case 3:
+                switch (source.charAt(from)) {
+                    case 'n': if (regionEquals("nil", from)) return TokenType.NIL; break;
+                    case 'f':
+                        if (regionEquals("fun", from)) return TokenType.FUN;
+                        if (regionEquals("for", from)) return TokenType.FOR;
+                        break;
+                    case 'v': if (regionEquals("var", from)) return TokenType.VAR; break;
+                }
+                break;
+            case 4:
+                switch (source.charAt(from)) {
+                    case 't': if (regionEquals("true", from)) return TokenType.TRUE; break;
+                    case 'e': if (regionEquals("else", from)) return TokenType.ELSE; break;
+                }
+                break;
+            case 5:
+                switch (source.charAt(from)) {
+                    case 'p': if (regionEquals("print", from)) return TokenType.PRINT; break;
+                    case 'f': if (regionEquals("false", from)) return TokenType.FALSE; break;
+                    case 'w': if (regionEquals("while", from)) return TokenType.WHILE; break;
+                }
+                break;
+            case 6:
+                if (regionEquals("return", from)) return TokenType.RETURN;
+                break;
+        }
+        return TokenType.IDENTIFIER;
     }
 
-    private TokenType isKeyword(String text) {
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            return TokenType.IDENTIFIER;
-        } else {
-            return type;
+    private static String keywordText(TokenType type) {
+        return switch (type) {
+            case NIL -> "nil";
+            case TRUE -> "true";
+            case FALSE -> "false";
+            case PRINT -> "print";
+            case FUN -> "fun";
+            case VAR -> "var";
+            case RETURN -> "return";
+            case IF -> "if";
+            case ELSE -> "else";
+            case WHILE -> "while";
+            case FOR -> "for";
+            default -> throw new IllegalArgumentException("not a keyword: " + type);
+        };
+    }
+
+    // The caller checked the length.
+    private boolean regionEquals(String text, int from) {
+        for (int i = 0; i < text.length(); i++) {
+            if (source.charAt(from + i) != text.charAt(i)) {
+                return false;
+            }
         }
+        return true;
     }
 
     private void collectNumbers() {
@@ -180,11 +409,20 @@ public class Lexer {
     }
 
     private void addToken(TokenType type) {
-        tokens.add(new Token(line, type, source.substring(start, current)));
+        if (buffer != null) {
+            buffer.add(type, start, current - start, line);
+            return;
+        }
+        scanned = new Token(line, type, source.subSequence(start, current).toString());
     }
 
+    // Lexemes that are constants or pooled strings are passed in, only literals need a substring.
     private void addToken(TokenType type, String str) {
-        tokens.add(new Token(line, type, str));
+        if (buffer != null) {
+            buffer.add(type, start, current - start, line);
+            return;
+        }
+        scanned = new Token(line, type, str);
     }
 
     private char peek() {
@@ -192,6 +430,14 @@ public class Lexer {
         else return source.charAt(current);
     }
 
+    private boolean match(char expected) {
+        if (isAtEnd() || source.charAt(current) != expected) {
+            return false;
+        }
+        current++;
+        return true;
+    }
+
     private char advance() {
         current++;
         return source.charAt(current - 1);
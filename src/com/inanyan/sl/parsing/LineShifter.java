@@ -0,0 +1,148 @@
+package com.inanyan.sl.parsing;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Copies a tree with every line moved by the same amount. Resolver results are not copied, copies are
+// unresolved like fresh parser output.
+class LineShifter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    private final int delta;
+
+    private LineShifter(int delta) {
+        this.delta = delta;
+    }
+
+    static Stmt shift(Stmt stmt, int delta) {
+        return stmt.accept(new LineShifter(delta));
+    }
+
+    @Override
+    public Stmt visitExpr(Stmt.Expression stmt) {
+        return new Stmt.Expression(stmt.line + delta, stmt.expr.accept(this));
+    }
+
+    @Override
+    public Stmt visitPrint(Stmt.Print stmt) {
+        return new Stmt.Print(stmt.line + delta, stmt.expr.accept(this));
+    }
+
+    @Override
+    public Stmt visitVar(Stmt.Var stmt) {
+        return new Stmt.Var(stmt.line + delta, stmt.name,
+                stmt.initializer == null ? null : stmt.initializer.accept(this));
+    }
+
+    @Override
+    public Stmt visitFunction(Stmt.Function stmt) {
+        return new Stmt.Function(stmt.line + delta, stmt.name, stmt.params, shiftAll(stmt.body));
+    }
+
+    @Override
+    public Stmt visitReturn(Stmt.Return stmt) {
+        return new Stmt.Return(stmt.line + delta, stmt.value == null ? null : stmt.value.accept(this));
+    }
+
+    @Override
+    public Stmt visitBlock(Stmt.Block stmt) {
+        return new Stmt.Block(stmt.line + delta, shiftAll(stmt.stmts));
+    }
+
+    @Override
+    public Stmt visitIf(Stmt.If stmt) {
+        return new Stmt.If(stmt.line + delta, stmt.condition.accept(this), stmt.thenBranch.accept(this),
+                stmt.elseBranch == null ? null : stmt.elseBranch.accept(this));
+    }
+
+    @Override
+    public Stmt visitWhile(Stmt.While stmt) {
+        return new Stmt.While(stmt.line + delta, stmt.condition.accept(this), stmt.body.accept(this));
+    }
+
+    private List<Stmt> shiftAll(List<Stmt> stmts) {
+        List<Stmt> result = new ArrayList<>(stmts.size());
+        for (Stmt stmt : stmts) {
+            result.add(stmt.accept(this));
+        }
+        return result;
+    }
+
+    @Override
+    public Expr visitIntLiteral(Expr.IntLiteral expr) {
+        return new Expr.IntLiteral(expr.line + delta, expr.value);
+    }
+
+    @Override
+    public Expr visitFloatLiteral(Expr.FloatLiteral expr) {
+        return new Expr.FloatLiteral(expr.line + delta, expr.value);
+    }
+
+    @Override
+    public Expr visitBoolLiteral(Expr.BoolLiteral expr) {
+        return new Expr.BoolLiteral(expr.line + delta, expr.value);
+    }
+
+    @Override
+    public Expr visitStringLiteral(Expr.StringLiteral expr) {
+        return new Expr.StringLiteral(expr.line + delta, expr.value);
+    }
+
+    @Override
+    public Expr visitCharLiteral(Expr.CharLiteral expr) {
+        return new Expr.CharLiteral(expr.line + delta, expr.value);
+    }
+
+    @Override
+    public Expr visitNilLiteral(Expr.NilLiteral expr) {
+        return new Expr.NilLiteral(expr.line + delta);
+    }
+
+    @Override
+    public Expr visitVar(Expr.Var expr) {
+        return new Expr.Var(expr.line + delta, expr.text);
+    }
+
+    @Override
+    public Expr visitUnary(Expr.Unary expr) {
+        return new Expr.Unary(expr.line + delta, expr.op, expr.expr.accept(this));
+    }
+
+    @Override
+    public Expr visitBinary(Expr.Binary expr) {
+        List<Expr.Binary> spine = expr.leftSpine();
+        Expr left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Binary binary = spine.get(i);
+            left = new Expr.Binary(binary.line + delta, binary.op, left, binary.right.accept(this));
+        }
+        return left;
+    }
+
+    @Override
+    public Expr visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        Expr left = spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Logical logical = spine.get(i);
+            left = new Expr.Logical(logical.line + delta, logical.op, left, logical.right.accept(this));
+        }
+        return left;
+    }
+
+    @Override
+    public Expr visitCall(Expr.Call expr) {
+        List<Expr> args = new ArrayList<>(expr.args.size());
+        for (Expr arg : expr.args) {
+            args.add(arg.accept(this));
+        }
+        return new Expr.Call(expr.line + delta, expr.callee.accept(this), args);
+    }
+
+    @Override
+    public Expr visitAssign(Expr.Assign expr) {
+        Expr.Var target = new Expr.Var(expr.target.line + delta, expr.target.text);
+        return new Expr.Assign(expr.line + delta, target, expr.value.accept(this));
+    }
+}
@@ -2,48 +2,304 @@ package com.inanyan.sl.parsing;
 
 import com.inanyan.sl.ast.Expr;
 import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jfr.Recorder;
+import com.inanyan.sl.util.Diagnostic;
 import com.inanyan.sl.util.ErrorListener;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+// Errors are signalled by results, not exceptions: a rule that fails reports once and returns null, and
+// every rule above it returns null in turn until parseNext() synchronizes. Throwing for each syntax error
+// made linting broken files several times slower than clean ones.
 public class Parser {
+    private static final EnumSet<TokenType> UNARY_OPERATORS =
+            EnumSet.of(TokenType.BANG, TokenType.MINUS, TokenType.PLUS, TokenType.TILDA);
+    private static final EnumSet<TokenType> BOOLEANS = EnumSet.of(TokenType.TRUE, TokenType.FALSE);
+
+    // Binary operators by token ordinal: how tightly each one binds, 0 for tokens that aren't one, and the
+    // operator it makes. '&&' and '||' have no Binary op, they make Logical nodes.
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+    private static final Expr.Binary.Op[] BINARY_OPS = new Expr.Binary.Op[TokenType.values().length];
+
+    static {
+        operator(TokenType.PIPE_PIPE, 1, null);
+        operator(TokenType.AMPERSAND_AMPERSAND, 2, null);
+        operator(TokenType.EQUAL_EQUAL, 3, Expr.Binary.Op.EQUAL);
+        operator(TokenType.BANG_EQUAL, 3, Expr.Binary.Op.NOT_EQUAL);
+        operator(TokenType.LESS, 4, Expr.Binary.Op.LESS);
+        operator(TokenType.LESS_EQUAL, 4, Expr.Binary.Op.LESS_EQUAL);
+        operator(TokenType.GREATER, 4, Expr.Binary.Op.GREATER);
+        operator(TokenType.GREATER_EQUAL, 4, Expr.Binary.Op.GREATER_EQUAL);
+        // Bitwise operators bind tighter than comparisons, unlike in C, so 'x & 1 == 0' tests the bit.
+        operator(TokenType.PIPE, 5, Expr.Binary.Op.BITWISE_OR);
+        operator(TokenType.CARET, 6, Expr.Binary.Op.BITWISE_XOR);
+        operator(TokenType.AMPERSAND, 7, Expr.Binary.Op.BITWISE_AND);
+        operator(TokenType.LESS_LESS, 8, Expr.Binary.Op.SHIFT_LEFT);
+        operator(TokenType.GREATER_GREATER, 8, Expr.Binary.Op.SHIFT_RIGHT);
+        operator(TokenType.PLUS, 9, Expr.Binary.Op.ADD);
+        operator(TokenType.MINUS, 9, Expr.Binary.Op.SUBTRACT);
+        operator(TokenType.STAR, 10, Expr.Binary.Op.MULTIPLY);
+        operator(TokenType.SLASH, 10, Expr.Binary.Op.DIVIDE);
+        operator(TokenType.PERCENT, 10, Expr.Binary.Op.REMAINDER);
+    }
+
+    private static void operator(TokenType type, int precedence, Expr.Binary.Op op) {
+        PRECEDENCE[type.ordinal()] = precedence;
+        BINARY_OPS[type.ordinal()] = op;
+    }
+
     private final ErrorListener errorListener;
-    private final List<Token> tokens;
-    private int pos = 0;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final Cursor cursor;
+    private final String sourceName;
+    private int tokensConsumed = 0;
+    private int recoveries = 0;
 
     public Parser(ErrorListener errorListener, List<Token> tokens) {
+        this(errorListener, new ListTokenSource(tokens));
+    }
+
+    public Parser(ErrorListener errorListener, TokenSource tokens) {
         this.errorListener = errorListener;
-        this.tokens = tokens;
+        this.cursor = new StreamCursor(tokens);
+        this.sourceName = tokens.getSourceName();
     }
 
-    private static class ParserError extends RuntimeException {}
+    public Parser(ErrorListener errorListener, TokenBuffer tokens) {
+        this.errorListener = errorListener;
+        this.cursor = new BufferCursor(tokens);
+        this.sourceName = tokens.getSourceName();
+    }
+
+    private static class ListTokenSource implements TokenSource {
+        private final List<Token> tokens;
+        private int pos = 0;
+
+        ListTokenSource(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public Token nextToken() {
+            Token token = tokens.get(pos);
+            if (pos < tokens.size() - 1) {
+                pos++;
+            }
+            return token;
+        }
+    }
+
+    // The parser only ever looks at the current and the previous token, through one of these.
+    private static abstract class Cursor {
+        abstract void advance();
+        abstract TokenType peekType();
+        abstract int peekLine();
+        abstract TokenType previousType();
+        abstract int previousLine();
+        abstract String previousText();
+        abstract int previousInt();
+        abstract double previousDouble();
+        abstract char previousChar();
+    }
+
+    private static class StreamCursor extends Cursor {
+        private final TokenSource tokens;
+        private Token previous;
+        private Token current;
+
+        StreamCursor(TokenSource tokens) {
+            this.tokens = tokens;
+            this.current = tokens.nextToken();
+        }
+
+        @Override
+        void advance() {
+            previous = current;
+            if (current.type != TokenType.EOF) {
+                current = tokens.nextToken();
+            }
+        }
+
+        @Override
+        TokenType peekType() {
+            return current.type;
+        }
+
+        @Override
+        int peekLine() {
+            return current.line;
+        }
+
+        @Override
+        TokenType previousType() {
+            return previous.type;
+        }
+
+        @Override
+        int previousLine() {
+            return previous.line;
+        }
+
+        @Override
+        String previousText() {
+            return previous.text;
+        }
+
+        @Override
+        int previousInt() {
+            return Integer.parseInt(previous.text);
+        }
+
+        @Override
+        double previousDouble() {
+            return Double.parseDouble(previous.text);
+        }
+
+        @Override
+        char previousChar() {
+            return previous.text.charAt(0);
+        }
+    }
+
+    private static class BufferCursor extends Cursor {
+        private final TokenBuffer tokens;
+        private int pos = 0;
+
+        BufferCursor(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        void advance() {
+            if (tokens.type(pos) != TokenType.EOF) {
+                pos++;
+            }
+        }
+
+        @Override
+        TokenType peekType() {
+            return tokens.type(pos);
+        }
+
+        @Override
+        int peekLine() {
+            return tokens.line(pos);
+        }
+
+        @Override
+        TokenType previousType() {
+            return tokens.type(pos - 1);
+        }
+
+        @Override
+        int previousLine() {
+            return tokens.line(pos - 1);
+        }
+
+        @Override
+        String previousText() {
+            return tokens.text(pos - 1);
+        }
+
+        @Override
+        int previousInt() {
+            return tokens.intValue(pos - 1);
+        }
+
+        @Override
+        double previousDouble() {
+            return tokens.doubleValue(pos - 1);
+        }
+
+        @Override
+        char previousChar() {
+            return tokens.charValue(pos - 1);
+        }
+    }
+
+    // Everything the parser reported so far, in order. Also passed on to the error listener as it happens.
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
 
     public List<Stmt> parse() {
+        Object event = Recorder.beginParse();
+        int tokensBefore = tokensConsumed;
+        int recoveriesBefore = recoveries;
+
         List<Stmt> result = new ArrayList<>();
 
-        while(!isAtEnd()) {
+        Stmt stmt;
+        while ((stmt = parseNext()) != null) {
+            result.add(stmt);
+        }
+
+        Recorder.endParse(event, sourceName, tokensConsumed - tokensBefore, result.size(),
+                recoveries - recoveriesBefore);
+        return result;
+    }
+
+    // Returns the next statement, or null once all tokens are consumed.
+    public Stmt parseNext() {
+        while (!isAtEnd()) {
             skipSemicolons();
 
             if (isAtEnd()) break;
 
-            try {
-                result.add(statement());
-            } catch (ParserError e) {
-                synchronize();
+            if (cursor.peekType() == TokenType.RIGHT_BRACE) {
+                errorAtPeek("unexpected '}'");
+                advance();
+                continue;
+            }
+
+            Stmt stmt = statement();
+            if (stmt != null) {
+                return stmt;
             }
+            synchronize();
         }
 
-        return result;
+        return null;
+    }
+
+    // Hands out statements one at a time, so that a whole program never has to be held in memory.
+    public Iterator<Stmt> statements() {
+        return new Iterator<>() {
+            private Stmt next = parseNext();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Stmt next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Stmt result = next;
+                next = parseNext();
+                return result;
+            }
+        };
     }
 
     // TODO: Test somehow
+    // Stops after a ';', or before a keyword that starts a statement or a '}' that may close the block
+    // the error is in.
     private void synchronize() {
-        if (!isAtEnd()) advance();
+        recoveries++;
+        Recorder.parserRecovery(sourceName, cursor.peekLine());
+
+        if (!isAtEnd() && cursor.peekType() != TokenType.RIGHT_BRACE) advance();
         while (true) {
-            if (previous().type == TokenType.SEMICOLON) return;
-            switch (peek().type) {
-                case PRINT, EOF -> {
+            if (cursor.previousType() == TokenType.SEMICOLON) return;
+            switch (cursor.peekType()) {
+                case PRINT, FUN, VAR, RETURN, IF, WHILE, FOR, RIGHT_BRACE, EOF -> {
                     return;
                 }
                 default -> advance();
@@ -53,36 +309,245 @@ public class Parser {
 
     private Stmt statement() {
         if (match(TokenType.PRINT)) return printStmt();
+        else if (match(TokenType.VAR)) return varStmt();
+        else if (match(TokenType.FUN)) return funStmt();
+        else if (match(TokenType.RETURN)) return returnStmt();
+        else if (match(TokenType.IF)) return ifStmt();
+        else if (match(TokenType.WHILE)) return whileStmt();
+        else if (match(TokenType.FOR)) return forStmt();
+        else if (match(TokenType.LEFT_BRACE)) return blockStmt();
         else return exprStmt();
     }
 
+    private Stmt.Var varStmt() {
+        int line = cursor.previousLine();
+        if (!require(TokenType.IDENTIFIER, "expected variable name after 'var'")) return null;
+        String name = cursor.previousText();
+
+        Expr initializer = null;
+        if (match(TokenType.EQUAL)) {
+            initializer = expression();
+            if (initializer == null) return null;
+        }
+
+        if (!require(TokenType.SEMICOLON, "expected ';' after variable declaration")) return null;
+        return new Stmt.Var(line, name, initializer);
+    }
+
+    private Stmt.Function funStmt() {
+        int line = cursor.previousLine();
+        if (!require(TokenType.IDENTIFIER, "expected function name after 'fun'")) return null;
+        String name = cursor.previousText();
+        if (!require(TokenType.LEFT_PAREN, "expected '(' after function name")) return null;
+
+        List<String> params = new ArrayList<>();
+        if (cursor.peekType() != TokenType.RIGHT_PAREN) {
+            do {
+                if (!require(TokenType.IDENTIFIER, "expected parameter name")) return null;
+                params.add(cursor.previousText());
+            } while (match(TokenType.COMMA));
+        }
+        if (!require(TokenType.RIGHT_PAREN, "expected ')' after parameters")) return null;
+
+        if (!require(TokenType.LEFT_BRACE, "expected '{' before function body")) return null;
+        List<Stmt> body = block();
+        if (body == null) return null;
+        return new Stmt.Function(line, name, params, body);
+    }
+
+    private Stmt.Return returnStmt() {
+        int line = cursor.previousLine();
+        Expr value = null;
+        if (cursor.peekType() != TokenType.SEMICOLON) {
+            value = expression();
+            if (value == null) return null;
+        }
+
+        if (!require(TokenType.SEMICOLON, "expected ';' after return statement")) return null;
+        return new Stmt.Return(line, value);
+    }
+
+    private Stmt.If ifStmt() {
+        int line = cursor.previousLine();
+        if (!require(TokenType.LEFT_PAREN, "expected '(' after 'if'")) return null;
+        Expr condition = expression();
+        if (condition == null || !require(TokenType.RIGHT_PAREN, "expected ')' after condition")) return null;
+
+        Stmt thenBranch = statement();
+        if (thenBranch == null) return null;
+        Stmt elseBranch = null;
+        if (match(TokenType.ELSE)) {
+            elseBranch = statement();
+            if (elseBranch == null) return null;
+        }
+        return new Stmt.If(line, condition, thenBranch, elseBranch);
+    }
+
+    private Stmt.While whileStmt() {
+        int line = cursor.previousLine();
+        if (!require(TokenType.LEFT_PAREN, "expected '(' after 'while'")) return null;
+        Expr condition = expression();
+        if (condition == null || !require(TokenType.RIGHT_PAREN, "expected ')' after condition")) return null;
+
+        Stmt body = statement();
+        if (body == null) return null;
+        return new Stmt.While(line, condition, body);
+    }
+
+    // 'for (initializer; condition; increment) body' becomes '{ initializer; while (condition) { body;
+    // increment; } }', so that the engines only ever see one kind of loop. Any of the three clauses may be
+    // left out, a missing condition is true.
+    private Stmt forStmt() {
+        int line = cursor.previousLine();
+        if (!require(TokenType.LEFT_PAREN, "expected '(' after 'for'")) return null;
+
+        Stmt initializer = null;
+        if (match(TokenType.VAR)) {
+            initializer = varStmt();
+            if (initializer == null) return null;
+        } else if (!match(TokenType.SEMICOLON)) {
+            initializer = exprStmt();
+            if (initializer == null) return null;
+        }
+
+        Expr condition = new Expr.BoolLiteral(line, true);
+        if (cursor.peekType() != TokenType.SEMICOLON) {
+            condition = expression();
+            if (condition == null) return null;
+        }
+        if (!require(TokenType.SEMICOLON, "expected ';' after loop condition")) return null;
+
+        Expr increment = null;
+        if (cursor.peekType() != TokenType.RIGHT_PAREN) {
+            increment = expression();
+            if (increment == null) return null;
+        }
+        if (!require(TokenType.RIGHT_PAREN, "expected ')' after for clauses")) return null;
+
+        Stmt body = statement();
+        if (body == null) return null;
+
+        if (increment != null) {
+            body = new Stmt.Block(line, List.of(body, new Stmt.Expression(increment.line, increment)));
+        }
+        Stmt loop = new Stmt.While(line, condition, body);
+        if (initializer != null) {
+            loop = new Stmt.Block(line, List.of(initializer, loop));
+        }
+        return loop;
+    }
+
+    private Stmt.Block blockStmt() {
+        int line = cursor.previousLine();
+        List<Stmt> stmts = block();
+        if (stmts == null) return null;
+        return new Stmt.Block(line, stmts);
+    }
+
+    // The statements up to the closing '}', the '{' is consumed already. A statement with errors is
+    // dropped and parsing goes on inside the block, so the '}' still closes it.
+    private List<Stmt> block() {
+        List<Stmt> stmts = new ArrayList<>();
+        while (true) {
+            skipSemicolons();
+            if (cursor.peekType() == TokenType.RIGHT_BRACE || isAtEnd()) break;
+
+            Stmt stmt = statement();
+            if (stmt != null) {
+                stmts.add(stmt);
+            } else {
+                synchronize();
+            }
+        }
+
+        if (!require(TokenType.RIGHT_BRACE, "expected '}' after block")) return null;
+        return stmts;
+    }
+
     private Stmt.Print printStmt() {
-        int line = previous().line;
+        int line = cursor.previousLine();
         Expr expr = expression();
-        require(TokenType.SEMICOLON, "expected ';' after print statement");
+        if (expr == null || !require(TokenType.SEMICOLON, "expected ';' after print statement")) return null;
         return new Stmt.Print(line, expr);
     }
 
     private Stmt.Expression exprStmt() {
-        int line = peek().line; // TODO: Like this?
+        int line = cursor.peekLine(); // TODO: Like this?
         Expr expr = expression();
-        require(TokenType.SEMICOLON, "expected ';' after expression statement");
+        if (expr == null || !require(TokenType.SEMICOLON, "expected ';' after expression statement")) return null;
         return new Stmt.Expression(line, expr);
     }
 
+    // Assignment binds loosest of all and groups to the right: 'a = b = 1' sets both.
     private Expr expression() {
-        return unary();
+        Expr expr = binary(1);
+        if (expr == null || !match(TokenType.EQUAL)) return expr;
+        int line = cursor.previousLine();
+
+        if (!(expr instanceof Expr.Var target)) {
+            error(line, "invalid assignment target");
+            return null;
+        }
+        Expr value = expression();
+        if (value == null) return null;
+        return new Expr.Assign(line, target, value);
+    }
+
+    // Precedence climbing: operators binding at least as tightly as minPrecedence are folded into the left
+    // operand in a loop, and only the right operand of one recurses, with a higher minimum. All binary
+    // operators are left-associative, so a chain like 'a + b + c' stays at the same depth however long it is.
+    private Expr binary(int minPrecedence) {
+        Expr left = unary();
+        while (left != null) {
+            TokenType type = cursor.peekType();
+            int precedence = PRECEDENCE[type.ordinal()];
+            if (precedence == 0 || precedence < minPrecedence) break;
+            advance();
+            int line = cursor.previousLine();
+
+            Expr right = binary(precedence + 1);
+            if (right == null) return null;
+
+            Expr.Binary.Op op = BINARY_OPS[type.ordinal()];
+            if (op != null) {
+                left = new Expr.Binary(line, op, left, right);
+            } else {
+                Expr.Logical.Op logical =
+                        type == TokenType.AMPERSAND_AMPERSAND ? Expr.Logical.Op.AND : Expr.Logical.Op.OR;
+                left = new Expr.Logical(line, logical, left, right);
+            }
+        }
+        return left;
     }
 
     private Expr unary() {
-        if (match(TokenType.BANG, TokenType.MINUS, TokenType.PLUS, TokenType.TILDA)) {
-            int line = previous().line;
-            Expr.Unary.Op op = tokenTypeToUnaryOp(previous().type);
+        if (match(UNARY_OPERATORS)) {
+            int line = cursor.previousLine();
+            Expr.Unary.Op op = tokenTypeToUnaryOp(cursor.previousType());
             Expr expr = unary();
+            if (expr == null) return null;
             return new Expr.Unary(line, op, expr);
         } else {
-            return primary();
+            return call();
+        }
+    }
+
+    private Expr call() {
+        Expr expr = primary();
+        while (expr != null && match(TokenType.LEFT_PAREN)) {
+            int line = cursor.previousLine();
+            List<Expr> args = new ArrayList<>();
+            if (cursor.peekType() != TokenType.RIGHT_PAREN) {
+                do {
+                    Expr arg = expression();
+                    if (arg == null) return null;
+                    args.add(arg);
+                } while (match(TokenType.COMMA));
+            }
+            if (!require(TokenType.RIGHT_PAREN, "expected ')' after arguments")) return null;
+            expr = new Expr.Call(line, expr, args);
         }
+        return expr;
     }
 
     public static Expr.Unary.Op tokenTypeToUnaryOp(TokenType type) {
@@ -100,92 +565,106 @@ public class Parser {
         else if (match(TokenType.FLOAT_NUMBER)) return floatNumber();
         else if (match(TokenType.IDENTIFIER)) return var();
         else if (match(TokenType.NIL)) return nil();
-        else if (match(TokenType.TRUE, TokenType.FALSE)) return bool();
+        else if (match(BOOLEANS)) return bool();
         else if (match(TokenType.CHARACTER)) return character();
         else if (match(TokenType.STRING)) return string();
+        else if (match(TokenType.LEFT_PAREN)) return grouping();
         else {
-            errorAtPeek("expected expression"); return null;
+            errorAtPeek("expected expression");
+            return null;
         }
     }
 
+    private Expr grouping() {
+        Expr expr = expression();
+        if (expr == null || !require(TokenType.RIGHT_PAREN, "expected ')' after expression")) return null;
+        return expr;
+    }
+
     private Expr var() {
-        return new Expr.Var(previous().line, previous().text);
+        return new Expr.Var(cursor.previousLine(), cursor.previousText());
     }
 
     private Expr intNumber() {
-        return new Expr.IntLiteral(previous().line, Integer.parseInt(previous().text));
+        // The lexer only checks that a literal is made of digits, not that it fits in an int.
+        try {
+            return new Expr.IntLiteral(cursor.previousLine(), cursor.previousInt());
+        } catch (NumberFormatException e) {
+            error(cursor.previousLine(), "integer literal out of range");
+            return null;
+        }
     }
 
     private Expr floatNumber() {
-        return new Expr.FloatLiteral(previous().line, Double.parseDouble(previous().text));
+        return new Expr.FloatLiteral(cursor.previousLine(), cursor.previousDouble());
     }
 
     private Expr nil() {
-        return new Expr.NilLiteral(previous().line);
+        return new Expr.NilLiteral(cursor.previousLine());
     }
 
     private Expr bool() {
-        return new Expr.BoolLiteral(previous().line, previous().type == TokenType.TRUE);
+        return new Expr.BoolLiteral(cursor.previousLine(), cursor.previousType() == TokenType.TRUE);
     }
 
     private Expr character() {
-        return new Expr.CharLiteral(previous().line, previous().text.charAt(0));
+        return new Expr.CharLiteral(cursor.previousLine(), cursor.previousChar());
     }
 
     private Expr string() {
-        return new Expr.StringLiteral(previous().line, previous().text);
+        return new Expr.StringLiteral(cursor.previousLine(), cursor.previousText());
     }
 
     private void skipSemicolons() {
-        while (!isAtEnd() && peek().type == TokenType.SEMICOLON) {
+        while (!isAtEnd() && cursor.peekType() == TokenType.SEMICOLON) {
             advance();
         }
     }
 
     private void error(int line, String msg) {
-        errorListener.reportError(line, msg);
-        throw new ParserError();
+        Diagnostic diagnostic = new Diagnostic(Diagnostic.Severity.ERROR, line, msg);
+        diagnostics.add(diagnostic);
+        diagnostic.reportTo(errorListener);
     }
 
     //private void errorAtPrevious(String msg) {
-    //  error(previous().line, msg);
+    //  error(cursor.previousLine(), msg);
     //}
 
     private void errorAtPeek(String msg) {
-        error(peek().line, msg);
+        error(cursor.peekLine(), msg);
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (peek().type == type) {
-                advance();
-                return true;
-            }
+    private boolean match(TokenType type) {
+        if (cursor.peekType() == type) {
+            advance();
+            return true;
         }
         return false;
     }
 
-    private Token require(TokenType type, String errorMsg) {
-        if (match(type)) {
-            return previous();
-        } else {
-            errorAtPeek(errorMsg); return null;
+    private boolean match(EnumSet<TokenType> types) {
+        if (types.contains(cursor.peekType())) {
+            advance();
+            return true;
         }
+        return false;
     }
 
-    private Token peek() {
-        return tokens.get(pos);
-    }
-
-    private Token previous() {
-        return tokens.get(pos - 1);
+    private boolean require(TokenType type, String errorMsg) {
+        if (!match(type)) {
+            errorAtPeek(errorMsg);
+            return false;
+        }
+        return true;
     }
 
     private void advance() {
-        pos++;
+        tokensConsumed++;
+        cursor.advance();
     }
 
     private boolean isAtEnd() {
-        return tokens.get(pos).type == TokenType.EOF;
+        return cursor.peekType() == TokenType.EOF;
     }
 }
@@ -1,15 +1,42 @@
 package com.inanyan.sl.parsing;
 
 public class Rules {
+    private static final byte DIGIT = 1;
+    private static final byte ALPHABETIC = 2;
+    private static final byte IDENTIFIER_START = 4;
+    private static final byte IDENTIFIER_PART = 8;
+
+    // Classes of the ASCII characters. Almost all source text is ASCII, one array load answers it;
+    // everything else falls back to Character and its Unicode tables.
+    private static final byte[] ASCII = new byte[128];
+    static {
+        for (char ch = '0'; ch <= '9'; ch++) {
+            ASCII[ch] = DIGIT | IDENTIFIER_PART;
+        }
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            ASCII[ch] = ALPHABETIC | IDENTIFIER_START | IDENTIFIER_PART;
+            ASCII[Character.toUpperCase(ch)] = ALPHABETIC | IDENTIFIER_START | IDENTIFIER_PART;
+        }
+        ASCII['_'] = IDENTIFIER_START | IDENTIFIER_PART;
+    }
+
     public static boolean isDigit(char ch) {
-        return Character.isDigit(ch);
+        return ch < 128 ? (ASCII[ch] & DIGIT) != 0 : Character.isDigit(ch);
     }
 
     public static boolean isAlphabetic(char ch) {
-        return Character.isAlphabetic(ch);
+        return ch < 128 ? (ASCII[ch] & ALPHABETIC) != 0 : Character.isAlphabetic(ch);
     }
 
     public static boolean isAlphaDigit(char ch) {
         return isDigit(ch) || isAlphabetic(ch);
     }
+
+    public static boolean isIdentifierStart(char ch) {
+        return ch < 128 ? (ASCII[ch] & IDENTIFIER_START) != 0 : Character.isAlphabetic(ch);
+    }
+
+    public static boolean isIdentifierPart(char ch) {
+        return ch < 128 ? (ASCII[ch] & IDENTIFIER_PART) != 0 : Character.isDigit(ch) || Character.isAlphabetic(ch);
+    }
 }
@@ -0,0 +1,67 @@
+package com.inanyan.sl.parsing;
+
+// Gives every distinct lexeme one String. Lookups take a region of the source, so a name that was seen
+// before costs no allocation. An open-addressing table, hashed like String.hashCode() so the stored strings'
+// cached hashes can be compared first.
+final class StringPool {
+    private String[] table = new String[64];
+    private int count = 0;
+
+    String intern(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = table.length - 1;
+        for (int index = spread(hash) & mask; ; index = (index + 1) & mask) {
+            String candidate = table[index];
+            if (candidate == null) {
+                String string = source.subSequence(start, end).toString();
+                table[index] = string;
+                if (++count * 2 > table.length) {
+                    grow();
+                }
+                return string;
+            }
+            if (candidate.hashCode() == hash && regionEquals(candidate, source, start, end)) {
+                return candidate;
+            }
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String string, CharSequence source, int start, int end) {
+        if (string.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String string : old) {
+            if (string != null) {
+                int index = spread(string.hashCode()) & mask;
+                while (table[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = string;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.inanyan.sl.parsing;
+
+import java.util.Arrays;
+
+// Compact token storage: primitive arrays of type, offset, length and line into the source. Text is only
+// created when a consumer asks for it. For STRING and CHARACTER tokens the range covers the literal's
+// content without the quotes, escapes are decoded on demand.
+public class TokenBuffer {
+    private static final TokenType[] types = TokenType.values();
+
+    private final CharSequence source;
+    private final String sourceName;
+    private byte[] type;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    private int size = 0;
+    private StringPool identifiers;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, (String) null);
+    }
+
+    public TokenBuffer(CharSequence source, String sourceName) {
+        // Typical code has a token every four to six characters; sizing up front avoids most regrowth.
+        this(source, sourceName, Math.max(16, source.length() / 4));
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this(source, null, capacity);
+    }
+
+    public TokenBuffer(CharSequence source, String sourceName, int capacity) {
+        this.source = source;
+        this.sourceName = sourceName;
+        this.type = new byte[capacity];
+        this.start = new int[capacity];
+        this.length = new int[capacity];
+        this.line = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        if (size == this.type.length) {
+            int capacity = size + (size >> 1) + 1;
+            this.type = Arrays.copyOf(this.type, capacity);
+            this.start = Arrays.copyOf(this.start, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+            this.line = Arrays.copyOf(this.line, capacity);
+        }
+
+        this.type[size] = (byte) type.ordinal();
+        this.start[size] = start;
+        this.length[size] = length;
+        this.line[size] = line;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public TokenType type(int index) {
+        return types[type[index]];
+    }
+
+    public int start(int index) {
+        return start[index];
+    }
+
+    public int length(int index) {
+        return length[index];
+    }
+
+    public int line(int index) {
+        return line[index];
+    }
+
+    public String text(int index) {
+        int from = start[index];
+        int to = from + length[index];
+        return switch (type(index)) {
+            case STRING, CHARACTER -> Lexer.unescape(source, from, to);
+            case IDENTIFIER -> {
+                if (identifiers == null) {
+                    identifiers = new StringPool();
+                }
+                yield identifiers.intern(source, from, to);
+            }
+            default -> source.subSequence(from, to).toString();
+        };
+    }
+
+    public int intValue(int index) {
+        return Integer.parseInt(source, start[index], start[index] + length[index], 10);
+    }
+
+    public double doubleValue(int index) {
+        // There is no allocation-free Double.parseDouble overload; floats are rare enough to pay for one.
+        return Double.parseDouble(source.subSequence(start[index], start[index] + length[index]).toString());
+    }
+
+    public char charValue(int index) {
+        char ch = source.charAt(start[index]);
+        return ch == '\\' && length[index] > 1 ? Lexer.escapeChar(source.charAt(start[index] + 1)) : ch;
+    }
+
+    public Token get(int index) {
+        return new Token(line(index), type(index), text(index));
+    }
+}
@@ -0,0 +1,11 @@
+package com.inanyan.sl.parsing;
+
+public interface TokenSource {
+    // Returns the next token, or an EOF token once there are no more.
+    Token nextToken();
+
+    // For diagnostics and JFR events, null if unknown.
+    default String getSourceName() {
+        return null;
+    }
+}
@@ -2,13 +2,20 @@ package com.inanyan.sl.parsing;
 
 public enum TokenType {
     // One-char length.
-    SEMICOLON,
+    SEMICOLON, COMMA, EQUAL,
+    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
 
     // Math
-    BANG, MINUS, PLUS,
+    BANG, MINUS, PLUS, STAR, SLASH, PERCENT,
+
+    // Comparison
+    LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL_EQUAL, BANG_EQUAL,
+
+    // Logical
+    AMPERSAND_AMPERSAND, PIPE_PIPE,
 
     // Bitwise operators
-    TILDA,
+    TILDA, AMPERSAND, PIPE, CARET, LESS_LESS, GREATER_GREATER,
 
     // Big.
     IDENTIFIER,
@@ -18,6 +25,7 @@ public enum TokenType {
     // Keywords.
     PRINT,
     NIL, TRUE, FALSE,
+    FUN, VAR, RETURN, IF, ELSE, WHILE, FOR,
 
     // Special.
     EOF
@@ -0,0 +1,114 @@
+package com.inanyan.sl.script;
+
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+
+import javax.script.Bindings;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Bindings that are an SL global frame over the builtins, not a copy of one: a put is a definition scripts
+// see right away, and whatever scripts define shows up here. SL can't undefine a name, so removal is not
+// supported. Compiling a script reserves slots for its globals before it runs; a slot is only a binding
+// once it has a value.
+public class EnvironmentBindings extends AbstractMap<String, Object> implements Bindings {
+    private final Environment environment;
+
+    public EnvironmentBindings() {
+        this.environment = new Environment(Builtins.globals());
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        checkName(name);
+        Object previous = get(name);
+        environment.define(name, Values.toSl(value));
+        return previous;
+    }
+
+    @Override
+    public Object get(Object key) {
+        checkName(key);
+        int slot = environment.slotOf((String) key);
+        return isBound(slot) ? Values.fromSl(environment.valueAt(slot)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        checkName(key);
+        return isBound(environment.slotOf((String) key));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw new UnsupportedOperationException("SL definitions can't be removed");
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int slot = 0; slot < environment.size(); slot++) {
+            if (isBound(slot)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int slot = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (slot < environment.size() && !isBound(slot)) {
+                            slot++;
+                        }
+                        return slot < environment.size();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        String name = environment.nameAt(slot);
+                        Object value = Values.fromSl(environment.valueAt(slot));
+                        slot++;
+                        return new SimpleImmutableEntry<>(name, value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return EnvironmentBindings.this.size();
+            }
+        };
+    }
+
+    private boolean isBound(int slot) {
+        return slot != -1 && environment.valueAt(slot) != Environment.UNBOUND;
+    }
+
+    // The Bindings contract: null keys are a NullPointerException, other bad keys an IllegalArgumentException.
+    private static void checkName(Object key) {
+        if (key == null) {
+            throw new NullPointerException("binding name is null");
+        }
+        if (!(key instanceof String name) || name.isEmpty()) {
+            throw new IllegalArgumentException("binding name must be a non-empty string");
+        }
+    }
+}
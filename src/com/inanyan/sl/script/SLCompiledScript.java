@@ -0,0 +1,82 @@
+package com.inanyan.sl.script;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Environment;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.List;
+
+// A parsed, resolved and optimized script: evaluating it again only runs it. Resolution addresses the
+// engine-scope bindings it was compiled for; with any other bindings an unresolved copy looks names up as
+// it goes, made once when first needed.
+class SLCompiledScript extends CompiledScript {
+    // What a script compiles to. The value of an eval is the value of a trailing expression statement,
+    // so that one is kept apart from the statements and the optimizer.
+    static class Code {
+        final List<Stmt> stmts;
+        final Expr result;
+
+        Code(List<Stmt> stmts, Expr result) {
+            this.stmts = stmts;
+            this.result = result;
+        }
+    }
+
+    private final SLScriptEngine engine;
+    private final String source;
+    private final String fileName;
+    private final Environment resolvedFor;
+    private final Code resolved;
+    private Code unresolved;
+
+    SLCompiledScript(SLScriptEngine engine, String source, String fileName, Environment resolvedFor, Code resolved) {
+        this.engine = engine;
+        this.source = source;
+        this.fileName = fileName;
+        this.resolvedFor = resolvedFor;
+        this.resolved = resolved;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (bindings instanceof EnvironmentBindings environmentBindings) {
+            Environment environment = environmentBindings.getEnvironment();
+            return run(environment == resolvedFor ? resolved : unresolved(), environment, context);
+        }
+
+        // Bindings from somewhere else, e.g. a SimpleBindings: the only case that copies, in and back out.
+        EnvironmentBindings copy = new EnvironmentBindings();
+        copy.putAll(bindings);
+        Object value = run(unresolved(), copy.getEnvironment(), context);
+        bindings.putAll(copy);
+        return value;
+    }
+
+    private Code unresolved() throws ScriptException {
+        if (resolved != null && resolvedFor == null) {
+            return resolved;
+        }
+        if (unresolved == null) {
+            unresolved = engine.compileCode(source, fileName, null);
+        }
+        return unresolved;
+    }
+
+    private Object run(Code code, Environment environment, ScriptContext context) throws ScriptException {
+        return SLScriptEngine.execute(environment, context, fileName, interpreter -> {
+            interpreter.run(code.stmts);
+            return code.result == null ? null : interpreter.evaluate(code.result);
+        });
+    }
+}
@@ -0,0 +1,256 @@
+package com.inanyan.sl.script;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jfr.Recorder;
+import com.inanyan.sl.lang.Closure;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.opt.PassManager;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.ErrorListener;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.function.Function;
+
+// An engine is one SL global scope, its engine-scope EnvironmentBindings. Scripts run right on that scope,
+// nothing is copied in or out around an eval. Global-scope bindings are not visible to scripts. Not
+// thread-safe, as the factory's THREADING parameter says.
+public class SLScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+    private static final ErrorListener IGNORE = new ErrorListener() {
+        @Override
+        public void reportError(int line, String msg) {
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    };
+
+    private final SLScriptEngineFactory factory;
+    private final PassManager passManager = PassManager.createDefault();
+
+    SLScriptEngine(SLScriptEngineFactory factory) {
+        super(new EnvironmentBindings());
+        this.factory = factory;
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new EnvironmentBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script, context).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(script, context);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script), context);
+    }
+
+    private SLCompiledScript compile(String script, ScriptContext context) throws ScriptException {
+        Object name = context.getAttribute(ScriptEngine.FILENAME);
+        String fileName = name == null ? null : name.toString();
+        Environment environment = context.getBindings(ScriptContext.ENGINE_SCOPE)
+                instanceof EnvironmentBindings bindings ? bindings.getEnvironment() : null;
+        return new SLCompiledScript(this, script, fileName, environment, compileCode(script, fileName, environment));
+    }
+
+    // Resolves against environment, names it doesn't have yet stay unresolved and are looked up by name when
+    // the script runs. With a null environment only functions are laid out.
+    SLCompiledScript.Code compileCode(String script, String fileName, Environment environment) throws ScriptException {
+        try {
+            FirstError errors = new FirstError();
+            List<Stmt> stmts = new Parser(errors, new Lexer(errors, script, fileName)).parse();
+            if (errors.msg != null) {
+                throw scriptException(errors.msg, fileName, errors.line, null);
+            }
+
+            new Resolver(IGNORE, environment, fileName).resolve(stmts);
+
+            Expr result = null;
+            if (!stmts.isEmpty() && stmts.get(stmts.size() - 1) instanceof Stmt.Expression last) {
+                result = last.expr;
+                stmts = stmts.subList(0, stmts.size() - 1);
+            }
+            return new SLCompiledScript.Code(passManager.run(stmts), result);
+        } catch (RuntimeException | StackOverflowError e) {
+            throw internalError(e, fileName);
+        }
+    }
+
+    // Runs action on an interpreter over environment that prints to the writer of the context. Runtime errors
+    // become ScriptExceptions, the result is converted for Java.
+    static Object execute(Environment environment, ScriptContext context, String fileName,
+                          Function<Interpreter, Object> action) throws ScriptException {
+        OutputSink out = OutputSink.of(new WriterStream(context.getWriter()), OutputSink.FlushPolicy.SIZE);
+        Interpreter interpreter = new Interpreter(out, environment);
+        interpreter.setSourceName(fileName);
+        try {
+            return Values.fromSl(action.apply(interpreter));
+        } catch (Interpreter.Error e) {
+            Recorder.runtimeError(e.line, e.msg);
+            throw scriptException(e.msg, fileName, e.line, e);
+        } catch (RuntimeException | StackOverflowError e) {
+            throw internalError(e, fileName);
+        } finally {
+            out.flush();
+        }
+    }
+
+    // SL counts lines from 0, javax.script from 1.
+    static ScriptException scriptException(String msg, String fileName, int line, Throwable cause) {
+        ScriptException exception = new ScriptException(msg, fileName, line + 1);
+        if (cause != null) {
+            exception.initCause(cause);
+        }
+        return exception;
+    }
+
+    // Failures of the implementation, e.g. a script nested too deeply for the Java stack, are ScriptExceptions
+    // too: javax.script hosts don't expect anything else out of an engine.
+    private static ScriptException internalError(Throwable e, String fileName) {
+        ScriptException exception = new ScriptException("internal error: " + e, fileName, -1);
+        exception.initCause(e);
+        return exception;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        try {
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return sb.toString();
+    }
+
+    private static class FirstError implements ErrorListener {
+        int line;
+        String msg;
+
+        @Override
+        public void reportError(int line, String msg) {
+            if (this.msg == null) {
+                this.line = line;
+                this.msg = msg;
+            }
+        }
+
+        @Override
+        public void reportWarning(int line, String msg) {
+        }
+    }
+
+    // Calls a function defined in the engine scope. Foreign bindings are copied for the call, as for eval.
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        if (name == null) {
+            throw new NullPointerException("function name is null");
+        }
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (!(bindings.get(name) instanceof Closure closure)) {
+            throw new NoSuchMethodException("no function '" + name + "'");
+        }
+        if (args == null) {
+            args = new Object[0];
+        }
+        Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = Values.toSl(args[i]);
+        }
+
+        EnvironmentBindings environment = bindings instanceof EnvironmentBindings own ? own : copyOf(bindings);
+        Object fileName = context.getAttribute(ScriptEngine.FILENAME);
+        return execute(environment.getEnvironment(), context, fileName == null ? null : fileName.toString(),
+                interpreter -> interpreter.call(closure, values));
+    }
+
+    private static EnvironmentBindings copyOf(Bindings bindings) {
+        EnvironmentBindings copy = new EnvironmentBindings();
+        copy.putAll(bindings);
+        return copy;
+    }
+
+    // SL values have no methods.
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args)
+            throws ScriptException, NoSuchMethodException {
+        if (thiz == null || name == null) {
+            throw new IllegalArgumentException("receiver and method name are required");
+        }
+        throw new NoSuchMethodException("SL values have no methods");
+    }
+
+    // Every abstract method is a call of the engine-scope function of the same name. Null if one of them is
+    // missing.
+    @Override
+    public <T> T getInterface(Class<T> type) {
+        if (type == null || !type.isInterface()) {
+            throw new IllegalArgumentException("not an interface: " + type);
+        }
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        for (Method method : type.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && !(bindings.get(method.getName()) instanceof Closure)) {
+                return null;
+            }
+        }
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "SL implementation of " + type.getName();
+                };
+            } else if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            return invokeFunction(method.getName(), args);
+        }));
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> type) {
+        throw new IllegalArgumentException("SL values have no methods");
+    }
+}
@@ -0,0 +1,96 @@
+package com.inanyan.sl.script;
+
+import com.inanyan.sl.lang.Builtins;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+// Makes SL available through javax.script, e.g. new ScriptEngineManager().getEngineByName("sl"). Registered
+// in META-INF/services.
+public class SLScriptEngineFactory implements ScriptEngineFactory {
+    private static final String VERSION = (String) Builtins.globals().lookup("SL_VER_STR");
+
+    @Override
+    public String getEngineName() {
+        return "jsl";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("sl");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-sl");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("sl", "SL", "jsl");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "SL";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> getEngineVersion();
+            case ScriptEngine.NAME -> getNames().get(0);
+            case ScriptEngine.LANGUAGE -> getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
+            // null: engines are not safe to use from several threads at once.
+            default -> null;
+        };
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        throw new UnsupportedOperationException("SL values have no methods");
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        StringBuilder sb = new StringBuilder("print \"");
+        for (int i = 0; i < toDisplay.length(); i++) {
+            char ch = toDisplay.charAt(i);
+            switch (ch) {
+                case '\n' -> sb.append("\\n");
+                case '\t' -> sb.append("\\t");
+                case '\r' -> sb.append("\\r");
+                case '"', '\\' -> sb.append('\\').append(ch);
+                default -> sb.append(ch);
+            }
+        }
+        return sb.append("\";").toString();
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder sb = new StringBuilder();
+        for (String statement : statements) {
+            sb.append(statement).append(";\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new SLScriptEngine(this);
+    }
+}
@@ -0,0 +1,28 @@
+package com.inanyan.sl.script;
+
+import com.inanyan.sl.lang.Environment;
+
+// Conversions at the boundary with Java code. SL has Integer ints and Double floats, narrower Java numbers
+// are widened on the way in. Anything else is passed through as it is.
+class Values {
+    private Values() {}
+
+    static Object toSl(Object value) {
+        if (value instanceof Byte || value instanceof Short) {
+            return ((Number) value).intValue();
+        } else if (value instanceof Long number) {
+            if (number != number.intValue()) {
+                throw new IllegalArgumentException("SL ints are 32 bit, " + number + " doesn't fit");
+            }
+            return number.intValue();
+        } else if (value instanceof Float number) {
+            return number.doubleValue();
+        }
+        return value;
+    }
+
+    // A slot that was never given a value reads as null, the same as SL nil.
+    static Object fromSl(Object value) {
+        return value == Environment.UNBOUND ? null : value;
+    }
+}
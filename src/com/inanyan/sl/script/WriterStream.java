@@ -0,0 +1,53 @@
+package com.inanyan.sl.script;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Lets an OutputSink, which produces UTF-8 bytes, print to the Writer of a ScriptContext. A character split
+// between two writes is held back until the rest of it arrives.
+class WriterStream extends OutputStream {
+    private final Writer writer;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    WriterStream(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(b, off, len);
+        if (pending.hasRemaining()) {
+            in = ByteBuffer.allocate(pending.remaining() + len).put(pending).put(in).flip();
+        }
+
+        // UTF-8 never decodes to more chars than there are bytes.
+        if (chars.capacity() < in.remaining()) {
+            chars = CharBuffer.allocate(in.remaining());
+        }
+        chars.clear();
+        decoder.decode(in, chars, false);
+        writer.write(chars.array(), 0, chars.position());
+
+        pending = in.hasRemaining() ? ByteBuffer.allocate(in.remaining()).put(in).flip() : ByteBuffer.allocate(0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,114 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.jsl.Batch;
+import com.inanyan.jsl.Session;
+import com.inanyan.sl.cache.ScriptCache;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.opt.PassManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchTest {
+    private String output;
+
+    private static Path write(Path directory, String name, String source) throws IOException {
+        Path file = directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+        return file;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private int run(Path directory, boolean execute, int jobs, ScriptCache cache) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true);
+        int failed = new Batch(Session.Engine.TREE, PassManager.createDefault(), Limits.NONE, cache, execute, out)
+                .run(List.of(directory.toString()), jobs);
+        output = buffer.toString();
+        return failed;
+    }
+
+    @Test
+    void outputIsInPathOrder() throws IOException {
+        Path directory = Files.createTempDirectory("sl-batch");
+        try {
+            // Written out of order, and the slow file sorts last, so it finishes last under several jobs.
+            write(directory, "d/z.sl", "var i = 0; while (i < 200000) i = i + 1; print \"z\";");
+            write(directory, "c.sl", "print \"c\";");
+            write(directory, "a.sl", "print \"a\";");
+            write(directory, "d/b.sl", "print \"b\";");
+            write(directory, "e.txt", "not a script");
+
+            String expected = "==> " + directory.resolve("a.sl") + " <==\na\n"
+                    + "==> " + directory.resolve("c.sl") + " <==\nc\n"
+                    + "==> " + directory.resolve("d/b.sl") + " <==\nb\n"
+                    + "==> " + directory.resolve("d/z.sl") + " <==\nz\n"
+                    + "Ran 4 file(s), 0 failed.\n";
+            assertEquals(0, run(directory, true, 4, null));
+            assertEquals(expected, output);
+            assertEquals(0, run(directory, true, 1, null));
+            assertEquals(expected, output);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void checkDoesNotRun() throws IOException {
+        Path directory = Files.createTempDirectory("sl-batch");
+        try {
+            write(directory, "ok.sl", "print \"ok\";");
+            Path failing = write(directory, "runtime.sl", "print -nil;");
+            Path broken = write(directory, "syntax.sl", "print ;");
+
+            assertEquals(1, run(directory, false, 2, null));
+            assertFalse(output.contains("ok\n"));
+            assertFalse(output.contains(failing.toString()));
+            assertTrue(output.startsWith(broken + ":"));
+            assertTrue(output.endsWith("Checked 3 file(s), 1 failed.\n"));
+
+            assertEquals(2, run(directory, true, 2, null));
+            assertTrue(output.contains(" <==\nok\n"));
+            assertTrue(output.contains(failing + ":"));
+            assertTrue(output.endsWith("Ran 3 file(s), 2 failed.\n"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void failingFileDoesNotStopTheOthers() throws IOException {
+        Path directory = Files.createTempDirectory("sl-batch");
+        try {
+            write(directory, "a.sl", "print 1;");
+            write(directory, "b.sl", "print 2;\nprint 1 / 0;\nprint 3;");
+            write(directory, "c.sl", "fun f() { return f(); }\nf();");
+            write(directory, "d.sl", "print 4;");
+
+            for (ScriptCache cache : new ScriptCache[] {null, new ScriptCache(directory.resolve("cache"))}) {
+                assertEquals(2, run(directory, true, 3, cache));
+                assertTrue(output.contains(" <==\n1\n"));
+                assertTrue(output.contains(" <==\n2\n"));
+                assertFalse(output.contains("3\n"));
+                assertTrue(output.contains(" <==\n4\n"));
+                assertTrue(output.endsWith("Ran 4 file(s), 2 failed.\n"));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+}
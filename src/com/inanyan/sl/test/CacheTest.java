@@ -0,0 +1,178 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.cache.AstReader;
+import com.inanyan.sl.cache.AstWriter;
+import com.inanyan.sl.cache.MemoryCache;
+import com.inanyan.sl.cache.ScriptCache;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+
+    private List<Stmt> parse(String src) {
+        errorListener.resetCounters();
+        Parser parser = new Parser(errorListener, new Lexer(errorListener, src));
+        List<Stmt> stmts = parser.parse();
+        assertEquals(0, errorListener.getErrorsCount());
+        return stmts;
+    }
+
+    private static boolean sameTrees(List<Stmt> expected, List<Stmt> actual) {
+        if (expected.size() != actual.size()) return false;
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.get(i).fullyCompareTo(actual.get(i))) return false;
+        }
+        return true;
+    }
+
+    private static List<Path> entries(Path directory) throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.toList();
+        }
+    }
+
+    @Test
+    void roundTrip() throws AstReader.Invalid {
+        String src = "print 123;\n-1.5;\nprint !true; false;\n\"str\\n\";\n'c'; print nil;\n"
+                + "print -~+SL_VER_MAJOR; SL_VER_MAJOR; \"str\\n\"; print \"\\u00e9\\u4e2d\"; print -2147483647;";
+        List<Stmt> stmts = parse(src);
+        assertTrue(sameTrees(stmts, AstReader.read(AstWriter.toBytes(stmts))));
+    }
+
+    @Test
+    void roundTripFunctionsAndOperators() throws AstReader.Invalid {
+        String src = "fun f(a, b) {\n  var c = a * (b - 1) << 2;\n  if (c >= 0 && !(a == b) || false) { return c % 3; }\n"
+                + "  else return;\n}\nprint f(1, 2.5) ^ 7 | 1 & 2;";
+        List<Stmt> stmts = parse(src);
+        assertTrue(sameTrees(stmts, AstReader.read(AstWriter.toBytes(stmts))));
+    }
+
+    @Test
+    void roundTripLoops() throws AstReader.Invalid {
+        String src = "var s = 0;\nfor (var i = 0; i < 10; i = i + 1) {\n  s = s + i;\n}\nwhile (s > 0) s = s - 7;";
+        List<Stmt> stmts = parse(src);
+        assertTrue(sameTrees(stmts, AstReader.read(AstWriter.toBytes(stmts))));
+    }
+
+    @Test
+    void roundTripLongChains() throws AstReader.Invalid {
+        String src = "print 0" + " + 1 * 2".repeat(100_000) + ";\nprint true" + " && false || x".repeat(100_000) + ";";
+        List<Stmt> stmts = parse(src);
+        assertTrue(sameTrees(stmts, AstReader.read(AstWriter.toBytes(stmts))));
+    }
+
+    @Test
+    void stringsAreStoredOnce() {
+        byte[] once = AstWriter.toBytes(parse("print \"a long string literal\";"));
+        byte[] twice = AstWriter.toBytes(parse("print \"a long string literal\"; print \"a long string literal\";"));
+        assertTrue(twice.length - once.length < "a long string literal".length());
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        byte[] bytes = AstWriter.toBytes(parse("print -SL_VER_MAJOR; print \"s\";"));
+
+        assertThrows(AstReader.Invalid.class, () -> AstReader.read(new byte[0]));
+        assertThrows(AstReader.Invalid.class, () -> AstReader.read(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(AstReader.Invalid.class, () -> AstReader.read(Arrays.copyOf(bytes, bytes.length + 1)));
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] ^= 1;
+        assertThrows(AstReader.Invalid.class, () -> AstReader.read(badMagic));
+
+        byte[] badVersion = bytes.clone();
+        badVersion[4] = 0x7f;
+        assertThrows(AstReader.Invalid.class, () -> AstReader.read(badVersion));
+    }
+
+    @Test
+    void loadsFromCacheWhenSourceIsUnchanged() throws IOException {
+        Path directory = Files.createTempDirectory("sl-cache");
+        Path script = Files.createTempFile("script", ".sl");
+        try {
+            Files.writeString(script, "print 1; print -SL_VER_MINOR;");
+            ScriptCache cache = new ScriptCache(directory.resolve("entries"));
+
+            List<Stmt> parsed = cache.load(script, errorListener);
+            assertTrue(sameTrees(parse("print 1; print -SL_VER_MINOR;"), parsed));
+            List<Path> entries = entries(cache.getDirectory());
+            assertEquals(1, entries.size());
+
+            // Planting a different tree under the same key proves the second load doesn't parse.
+            Files.write(entries.get(0), AstWriter.toBytes(parse("print 2;")));
+            assertTrue(sameTrees(parse("print 2;"), cache.load(script, errorListener)));
+
+            // A damaged entry is reparsed and replaced.
+            Files.write(entries.get(0), new byte[] {1, 2, 3});
+            assertTrue(sameTrees(parsed, cache.load(script, errorListener)));
+            assertTrue(sameTrees(parsed, cache.load(script, errorListener)));
+
+            Files.writeString(script, "print 3;");
+            assertTrue(sameTrees(parse("print 3;"), cache.load(script, errorListener)));
+            assertEquals(2, entries(cache.getDirectory()).size());
+        } finally {
+            try (Stream<Path> walk = Files.walk(directory)) {
+                walk.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+            Files.deleteIfExists(script);
+        }
+    }
+
+    @Test
+    void doesNotCacheErrors() throws IOException {
+        Path directory = Files.createTempDirectory("sl-cache");
+        Path script = Files.createTempFile("script", ".sl");
+        try {
+            Files.writeString(script, "print ;");
+            ScriptCache cache = new ScriptCache(directory);
+
+            errorListener.resetCounters();
+            assertNull(cache.load(script, errorListener));
+            assertEquals(1, errorListener.getErrorsCount());
+            assertEquals(0, entries(directory).size());
+        } finally {
+            Files.deleteIfExists(script);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void memoryCache() {
+        MemoryCache cache = new MemoryCache(2);
+        String src = "print -SL_VER_MAJOR; 'c';";
+
+        errorListener.resetCounters();
+        List<Stmt> first = cache.load(src, "a.sl", errorListener);
+        List<Stmt> second = cache.load(src, "a.sl", errorListener);
+        assertTrue(sameTrees(parse(src), first));
+        assertTrue(sameTrees(first, second));
+        assertNotSame(first.get(0), second.get(0));
+        assertEquals(1, cache.size());
+        // Keyed by content, whatever holds it.
+        assertTrue(sameTrees(first, cache.load(new StringBuilder(src), "a.sl", errorListener)));
+        assertEquals(1, cache.size());
+
+        errorListener.resetCounters();
+        assertNull(cache.load("print ;", "b.sl", errorListener));
+        assertEquals(1, errorListener.getErrorsCount());
+        assertNotNull(cache.load("print '\\q';", "c.sl", errorListener));
+        assertEquals(1, errorListener.getWarningsCount());
+        assertEquals(1, cache.size());
+
+        cache.load("1;", "d.sl", errorListener);
+        cache.load("2;", "e.sl", errorListener);
+        assertEquals(2, cache.size());
+    }
+}
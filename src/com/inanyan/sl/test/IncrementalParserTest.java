@@ -0,0 +1,178 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.parsing.IncrementalParser;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.Diagnostic;
+import com.inanyan.sl.util.ErrorListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalParserTest {
+    // Reparses the current source from scratch and checks that the incremental result is the same.
+    private void assertSameAsFullParse(IncrementalParser parser) {
+        List<String> expectedDiagnostics = new ArrayList<>();
+        ErrorListener listener = new ErrorListener() {
+            @Override
+            public void reportError(int line, String msg) {
+                expectedDiagnostics.add(line + ": error: " + msg);
+            }
+
+            @Override
+            public void reportWarning(int line, String msg) {
+                expectedDiagnostics.add(line + ": warning: " + msg);
+            }
+        };
+        List<Stmt> expected = new Parser(listener, new Lexer(listener, parser.getSource())).parse();
+
+        List<Stmt> actual = parser.getStmts();
+        assertEquals(expected.size(), actual.size(), parser.getSource());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).fullyCompareTo(actual.get(i)), parser.getSource());
+        }
+
+        List<String> actualDiagnostics = new ArrayList<>();
+        for (Diagnostic diagnostic : parser.getDiagnostics()) {
+            actualDiagnostics.add(diagnostic.toString());
+        }
+        assertEquals(expectedDiagnostics, actualDiagnostics, parser.getSource());
+    }
+
+    private static String lines(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("print -").append(i).append(";\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void initialParse() {
+        IncrementalParser parser = new IncrementalParser("print 1;\n-2; ;;\n+");
+        assertEquals(2, parser.getStmts().size());
+        assertEquals(1, parser.getDiagnostics().size());
+        assertSameAsFullParse(parser);
+    }
+
+    @Test
+    void editReparsesLittle() {
+        String source = lines(1000);
+        IncrementalParser parser = new IncrementalParser(source);
+        assertEquals(1001, parser.getReparsedCount());
+
+        int offset = source.indexOf("-500;") + 1;
+        parser.edit(offset, 3, "12345");
+        assertTrue(parser.getReparsedCount() <= 3);
+        assertSameAsFullParse(parser);
+        assertEquals(1000, parser.getStmts().size());
+    }
+
+    @Test
+    void unchangedStatementsAreReused() {
+        IncrementalParser parser = new IncrementalParser(lines(10));
+        List<Stmt> before = parser.getStmts();
+
+        parser.edit(parser.getSource().indexOf("5;"), 1, "6");
+        List<Stmt> after = parser.getStmts();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i != 5, before.get(i) == after.get(i));
+        }
+    }
+
+    @Test
+    void linesAreShifted() {
+        IncrementalParser parser = new IncrementalParser(lines(10));
+        parser.edit(parser.getSource().indexOf("print -3"), 0, "\n\n");
+        assertEquals(5, parser.getStmts().get(3).line);
+        assertEquals(11, parser.getStmts().get(9).line);
+        assertSameAsFullParse(parser);
+
+        parser.edit(0, parser.getSource().indexOf("print -3"), "");
+        assertEquals(7, parser.getStmts().size());
+        assertEquals(0, parser.getStmts().get(0).line);
+        assertSameAsFullParse(parser);
+    }
+
+    @Test
+    void diagnosticsFollowEdits() {
+        IncrementalParser parser = new IncrementalParser(lines(5));
+        parser.edit(parser.getSource().indexOf(";\nprint -2"), 1, "");
+        assertEquals(1, parser.getDiagnostics().size());
+        assertSameAsFullParse(parser);
+
+        parser.edit(0, 0, "\n$\n");
+        assertEquals(2, parser.getDiagnostics().size());
+        assertSameAsFullParse(parser);
+
+        parser.edit(parser.getSource().indexOf("print -2"), 0, ";");
+        parser.edit(1, 1, "");
+        assertTrue(parser.getDiagnostics().isEmpty());
+        assertSameAsFullParse(parser);
+    }
+
+    @Test
+    void tokenAfterStatementIsReparsed() {
+        // The 'if' was parsed with 'elsen' after it; that token changing to 'else' gives it an else branch.
+        IncrementalParser parser = new IncrementalParser("if (x) print 1; else print 2;");
+        parser.edit(20, 4, "");
+        parser.edit(21, 1, "");
+        parser.edit(20, 3, "#");
+        assertEquals("if (x) print 1; else#;", parser.getSource());
+        assertSameAsFullParse(parser);
+        assertTrue(parser.getStmts().isEmpty());
+    }
+
+    @Test
+    void diagnosticsOfTheNextTokenAreReportedOnce() {
+        IncrementalParser parser = new IncrementalParser("var x = 2;\n");
+        parser.edit(11, 0, "$");
+        parser.edit(0, 0, " ");
+        assertEquals(1, parser.getDiagnostics().size());
+        assertSameAsFullParse(parser);
+    }
+
+    @Test
+    void randomEditSequences() {
+        String[] pieces = {"print", "if", "else", "while", "for", "var", "fun", "return", "(", ")", "{", "}", ",",
+                "=", "+", "-", "<", "&&", "!", " ", "\n", ";", "1", "2.5", "x", "y", "f", "\"s\"", "\"", "'c'",
+                "# c\n", "$", "nil", "true"};
+        String[] programs = {"if (x) print 1; else print 2;\nvar y = x;\n",
+                "fun f(a, b) {\n  return a + b;\n}\nprint f(1, 2);\n",
+                "var i = 0;\nwhile (i < 3) { i = i + 1; }\nfor (;;) print i;\n",
+                "print 1; print 2;\n{ var x; x = 1 && true; }\nif (x) { print x; }\n"};
+        Random random = new Random(7);
+        for (int run = 0; run < 3000; run++) {
+            IncrementalParser parser = new IncrementalParser(programs[random.nextInt(programs.length)]);
+            for (int i = 0; i < 8; i++) {
+                int length = parser.getSource().length();
+                int offset = random.nextInt(length + 1);
+                int removed = random.nextInt(Math.min(4, length - offset) + 1);
+                String inserted = random.nextInt(3) == 0 ? "" : pieces[random.nextInt(pieces.length)];
+                parser.edit(offset, removed, inserted);
+                assertSameAsFullParse(parser);
+            }
+        }
+    }
+
+    @Test
+    void randomEdits() {
+        String[] pieces = {"print", " ", "\n", ";", "-", "~", "!", "1", "23", "x", "SL_VER_STR", "\"s\"", "'c'",
+                "\"", "# note\n", "$", "nil", "true"};
+        Random random = new Random(42);
+        IncrementalParser parser = new IncrementalParser(lines(20));
+        for (int i = 0; i < 2000; i++) {
+            int length = parser.getSource().length();
+            int offset = random.nextInt(length + 1);
+            int removed = random.nextInt(Math.min(4, length - offset) + 1);
+            String inserted = random.nextInt(3) == 0 ? "" : pieces[random.nextInt(pieces.length)];
+            parser.edit(offset, removed, inserted);
+            assertSameAsFullParse(parser);
+        }
+    }
+}
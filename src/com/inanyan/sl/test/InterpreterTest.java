@@ -2,12 +2,16 @@ package com.inanyan.sl.test;
 
 import com.inanyan.sl.ast.Expr;
 import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jfr.Recorder;
 import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Resolver;
 import com.inanyan.sl.parsing.Lexer;
 import com.inanyan.sl.parsing.Parser;
 import com.inanyan.sl.parsing.Token;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,12 +24,331 @@ class InterpreterTest {
         Parser parser = new Parser(errorListener, tokens);
         return parser.parse();
     }
+    private Expr parseExpr(String str) {
+        return ((Stmt.Expression) parse(str + ";").get(0)).expr;
+    }
     private Object evaluate(Expr expr) {
         Interpreter interpreter = new Interpreter(null);
         return interpreter.evaluate(expr);
     }
+    private String run(String str) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interpreter(new PrintStream(out)).run(parse(str));
+        return out.toString();
+    }
     @Test
     void intExpr() {
-        Object res = evaluate(parse("123").get(0));
+        Object res = evaluate(parseExpr("123"));
+        assertEquals(123, res);
+    }
+
+    @Test
+    void evaluateInt() {
+        Interpreter interpreter = new Interpreter(null);
+        assertEquals(5, interpreter.evaluateInt(parseExpr("- - 5")));
+        assertEquals(-8, interpreter.evaluateInt(parseExpr("~7")));
+        assertEquals(1, interpreter.evaluateInt(parseExpr("SL_VER_PATCH")));
+        assertEquals(-1, interpreter.evaluateInt(parseExpr("-SL_VER_PATCH")));
+    }
+
+    @Test
+    void evaluateDouble() {
+        Interpreter interpreter = new Interpreter(null);
+        assertEquals(-1.5, interpreter.evaluateDouble(parseExpr("-+1.5")));
+    }
+
+    @Test
+    void evaluateBoolean() {
+        Interpreter interpreter = new Interpreter(null);
+        assertFalse(interpreter.evaluateBoolean(parseExpr("!!!true")));
+    }
+
+    @Test
+    void evaluateWrongType() {
+        Interpreter interpreter = new Interpreter(null);
+        assertThrows(Interpreter.Error.class, () -> interpreter.evaluateInt(parseExpr("1.5")));
+        assertThrows(Interpreter.Error.class, () -> interpreter.evaluateBoolean(parseExpr("SL_VER_STR")));
+    }
+
+    @Test
+    void specializedPathKeepsErrors() {
+        Interpreter interpreter = new Interpreter(null);
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> interpreter.evaluateInt(parseExpr("-\n!5")));
+        assertEquals(1, error.line);
+        assertThrows(Interpreter.Error.class, () -> run("~1.5;"));
+    }
+
+    @Test
+    void unaryErrorsOnNil() {
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> run("print 1;\nprint -nil;"));
+        assertEquals(1, error.line);
+        assertEquals("can't negate 'nil'", error.getMessage());
+        assertThrows(Interpreter.Error.class, () -> runResolved("var x; print !x;"));
+        assertThrows(Interpreter.Error.class, () -> runResolved("var x; print ~x;"));
+        assertThrows(Interpreter.Error.class, () -> runResolved("fun f() {} print +f();"));
+    }
+
+    @Test
+    void errorsAreStackless() {
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> run("print 1;\n-\nSL_VER_STR;"));
+        assertEquals(0, error.getStackTrace().length);
+        assertEquals(List.of("<script> (line 1)"), error.getFrames());
+    }
+
+    @Test
+    void unboxedOperandsMixWithOthers() {
+        Interpreter interpreter = new Interpreter(null);
+        assertEquals(6.0, interpreter.evaluateDouble(parseExpr("1 + 2.5 * 2")));
+        assertEquals("3a12", evaluate(parseExpr("1 + 2 + \"a\" + 1 + 2")));
+        assertEquals(true, evaluate(parseExpr("1 + 1 == 2.0 && !(2 < 1.5)")));
+        assertEquals(false, evaluate(parseExpr("\"a\" + 1 == 1")));
+        assertThrows(Interpreter.Error.class, () -> evaluate(parseExpr("1.5 & 1")));
+        assertThrows(Interpreter.Error.class, () -> interpreter.evaluateInt(parseExpr("1 + 2 < 4")));
+        assertEquals("7\n2.5\ntrue\nab\n", run("print 3 + 4; print 5.0 / 2; print 1 < 2; print \"a\" + \"b\";"));
+    }
+
+    @Test
+    void printSpecialized() {
+        assertEquals("-100000\ntrue\n-1\n", run("print -100000; print !!true; print -SL_VER_PATCH;"));
+    }
+
+    private String runResolved(String str) {
+        return runResolved(str, true);
+    }
+
+    private String runResolved(String str, boolean compileLoops) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(new PrintStream(out));
+        interpreter.setCompileLoops(compileLoops);
+        List<Stmt> stmts = parse(str);
+        new Resolver(errorListener, interpreter.getEnvironment()).resolve(stmts);
+        interpreter.run(stmts);
+        return out.toString();
+    }
+
+    @Test
+    void functions() {
+        assertEquals("1\n-2\nnil\n<fun f>\n", runResolved(
+                "fun f(a, b) { print a; return -b; }\nprint f(1, 2);\nfun g() { return; }\nprint g();\nprint f;"));
+        assertEquals("inner\n", runResolved("fun f(a) { return a(); }\nfun g() { return \"inner\"; }\nprint f(g);"));
+    }
+
+    @Test
+    void closuresKeepTheirValues() {
+        assertEquals("1\n2\n1\n", runResolved("fun make(v) { fun get() { return v; } return get; }\n"
+                + "var one = make(1);\nvar two = make(2);\nprint one(); print two(); print one();"));
+        assertEquals("true\n", runResolved(
+                "fun f(x) { fun g() { fun h() { return x; } return h(); } return g(); }\nprint f(true);"));
+    }
+
+    @Test
+    void closuresShareAssignedVariables() {
+        assertEquals("1\n2\n1\n3\n", runResolved(
+                "fun counter() { var c = 0; fun inc() { c = c + 1; return c; } return inc; }\nvar a = counter();\n"
+                        + "var b = counter();\nprint a(); print a(); print b(); print a();"));
+        // Assigned after the closure is made, by the function itself, through a parameter and two levels down.
+        assertEquals("2\n5\n", runResolved(
+                "fun f() { var x = 1; fun g() { return x; } x = 2; return g(); }\nprint f();\n"
+                        + "fun h(p) { fun m() { fun n() { p = p + 1; } n(); } m(); m(); return p; }\nprint h(3);"));
+        assertEquals("3\n", runResolved("fun f() { fun g() { g = 3; } g(); return g; }\nprint f();"));
+    }
+
+    @Test
+    void ifAndRecursion() {
+        assertEquals("done\n", runResolved("fun loop(more) {\n  if (more) { return loop(false); }\n"
+                + "  else return \"done\";\n}\nprint loop(true);"));
+        assertEquals("x\n", runResolved("fun f() { fun g(b) { if (b) return g(false); return 'x'; } return g(true); }"
+                + "\nprint f();"));
+    }
+
+    @Test
+    void callErrors() {
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> runResolved("fun f(a) {\n  return -a;\n}\nfun g() { return f(\"s\"); }\n\ng();"));
+        assertEquals(1, error.line);
+        assertEquals(List.of("f (line 1)", "g (line 3)", "<script> (line 5)"), error.getFrames());
+
+        assertThrows(Interpreter.Error.class, () -> runResolved("fun f(a) { return a; } f();"));
+        assertThrows(Interpreter.Error.class, () -> runResolved("var x = 1; x();"));
+        error = assertThrows(Interpreter.Error.class, () -> runResolved("fun f() { return f(); } f();"));
+        assertTrue(error.msg.startsWith("stack overflow"));
+    }
+
+    @Test
+    void stackIsResetAfterErrors() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(new PrintStream(out));
+        List<Stmt> stmts = parse("fun f(a, b) { return -b; } fun id(x) { return x; }");
+        new Resolver(errorListener, interpreter.getEnvironment()).resolve(stmts);
+        interpreter.run(stmts);
+
+        List<Stmt> failing = parse("print id(f(1, \"s\"));");
+        new Resolver(errorListener, interpreter.getEnvironment()).resolve(failing);
+        assertThrows(Interpreter.Error.class, () -> interpreter.run(failing));
+
+        List<Stmt> next = parse("print id(f(1, 2));");
+        new Resolver(errorListener, interpreter.getEnvironment()).resolve(next);
+        interpreter.run(next);
+        assertEquals("-2\n", out.toString());
+    }
+
+    @Test
+    void arithmetic() {
+        assertEquals("5\n3\n-3\n-1\n2.5\n1.5\nInfinity\nNaN\n",
+                run("print 1 + 2 * 3 - 4 / 2 % 3; print 7 / 2; print -7 / 2; print -7 % 3; print 5 / 2.0;"
+                        + " print 3 * 0.5; print 1 / 0.0; print 5 % 0.0;"));
+        assertEquals("-2147483648\n2147483647\n0\n2\n-4\n11\n1\n",
+                run("print 2147483647 + 1; print -2147483647 - 2; print 65536 * 65536; print 1 << 33;"
+                        + " print -16 >> 2; print 6 & 3 | 8 ^ 1; print 7 % -3;"));
+        assertEquals("-2147483648\n", run("print (-2147483647 - 1) / -1;"));
+    }
+
+    @Test
+    void comparisonsAndEquality() {
+        assertEquals("true\nfalse\ntrue\ntrue\ntrue\ntrue\ntrue\ntrue\nfalse\ntrue\n",
+                run("print 1 < 2; print 2 <= 1; print 1.5 > 1; print 'a' < 'b'; print 1 == 1.0; print nil == nil;"
+                        + " print \"a\" == \"a\"; print \"a\" != 'a'; print 0.0 / 0.0 == 0.0 / 0.0; print 2 >= 2;"));
+    }
+
+    @Test
+    void stringConcatenation() {
+        assertEquals("n=1\n1.5true\nnil!\n", run("print \"n=\" + 1; print 1.5 + \"\" + true; print nil + \"!\";"));
+    }
+
+    @Test
+    void logicalOperatorsShortCircuit() {
+        assertEquals("true\nfalse\ntrue\n", run("print true && false || true; print false && undefined;"
+                + " print true || undefined;"));
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> run("print true &&\n1;"));
+        assertEquals(1, error.line);
+        assertThrows(Interpreter.Error.class, () -> run("print nil || true;"));
+    }
+
+    @Test
+    void binaryErrors() {
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> run("print 1;\nprint 1 / 0;"));
+        assertEquals("division by zero", error.msg);
+        assertEquals(1, error.line);
+        assertThrows(Interpreter.Error.class, () -> run("print 5 % 0;"));
+        assertThrows(Interpreter.Error.class, () -> run("print 1.5 << 1;"));
+        assertThrows(Interpreter.Error.class, () -> run("print true + 1;"));
+        assertThrows(Interpreter.Error.class, () -> run("print \"a\" < \"b\";"));
+        assertThrows(Interpreter.Error.class, () -> run("print nil - nil;"));
+    }
+
+    @Test
+    void specializedBinaryTrees() {
+        Interpreter interpreter = new Interpreter(null);
+        assertEquals(-7, interpreter.evaluateInt(parseExpr("1 - 2 * (3 + 1)")));
+        assertEquals(0.75, interpreter.evaluateDouble(parseExpr("1.5 / 2.0")));
+        assertTrue(interpreter.evaluateBoolean(parseExpr("1 < 2 && 2.5 >= 2.5 || 1 / 0 == 0")));
+        assertEquals("true\n-2147483648\n", run("print !(3 != 3); print 2147483647 + 1;"));
+    }
+
+    @Test
+    void fibonacci() {
+        assertEquals("6765\n", runResolved("fun fib(n) {\n  if (n < 2) return n;\n  return fib(n - 1) + fib(n - 2);\n}\n"
+                + "print fib(20);"));
+    }
+
+    @Test
+    void assignment() {
+        assertEquals("4\n8\n2\n", runResolved("var a; var b;\na = b = 2;\nprint a + b;\n"
+                + "fun f(x) { var y = x; y = y * 2; return y; }\nprint f(4);\nprint a;"));
+        assertEquals("1\n", runResolved("fun f() { g = 1; }\nvar g = 0;\nf();\nprint g;"));
+
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> run("print 1;\nundefined = 1;"));
+        assertEquals(1, error.line);
+        assertEquals("undefined reference to 'undefined'", error.msg);
+        assertThrows(Interpreter.Error.class, () -> runResolved("fun f() { later = 1; }\nf();\nvar later;"));
+    }
+
+    @Test
+    void loops() {
+        assertEquals("0\n1\n2\n3\n2\n1\n", runResolved("var i = 0;\nwhile (i < 3) { print i; i = i + 1; }\n"
+                + "for (var j = 3; j > 0; j = j - 1) print j;"));
+        assertEquals("120\n", runResolved("fun fact(n) { var r = 1; for (; n > 1; n = n - 1) r = r * n; return r; }\n"
+                + "print fact(5);"));
+        assertEquals("3\n", runResolved("fun find() { for (var i = 0;; i = i + 1) if (i * i > 5) return i; }\n"
+                + "print find();"));
+
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> runResolved("var i = 0;\nwhile (i) {}"));
+        assertEquals(1, error.line);
+    }
+
+    // Long enough for every loop to be compiled part way through.
+    private static final String[] HOT_LOOPS = {
+            "var s = 0;\nfor (var i = 0; i < 5000; i = i + 1) { s = s + i * i % 7; }\nprint s;",
+            "fun count(n) { var i = 0; while (i < n) i = i + 1; return i; }\nprint count(3000);\nprint count(5);",
+            "var x = 0;\nfor (var i = 0; i < 3000; i = i + 1) { if (i == 2000) x = x + 0.5; x = x + 1; }\nprint x;",
+            "var t = 0;\nfor (var i = 0; i < 100; i = i + 1)\n  for (var j = 0; j < 100; j = j + 1) t = t + (i ^ j);\n"
+                    + "print t;",
+            "var s = \"\";\nvar i = 0;\nwhile (i < 2000) { i = i + 1; if (i % 500 == 0) s = s + i + \",\"; }\nprint s;",
+            "fun first(limit) { var i = 0; while (true) { i = i + 1; if (i * 3 > limit) return i; } }\n"
+                    + "print first(10000);",
+            "fun twice(v) { return v * 2; }\nvar s = 0.0;\n"
+                    + "for (var i = 0; i < 2000; i = i + 1) { var v = twice(i); s = s + v / 4.0; fun f() {} }\nprint s;",
+            "fun make() { var k = 3; fun add(v) { var i = 0; while (i < 3000) { v = v + k; i = i + 1; } return v; }\n"
+                    + "return add; }\nprint make()(1);",
+            "for (var i = 0; i < 1500; i = i + 1) { var g = i; }\nprint g;\n"
+                    + "var b = true;\nvar n = 0;\nwhile (b && n < 1500 || n < 0) { n = n + 1; b = !(n >= 1200); }\nprint n;",
+            "fun f() { var c = 0; fun inc() { c = c + 1; } for (var i = 0; i < 2000; i = i + 1) { inc(); c = c + i; }\n"
+                    + "return c; }\nprint f();",
+    };
+
+    @Test
+    void compiledLoopsGiveTheSameResults() {
+        for (String src : HOT_LOOPS) {
+            assertEquals(runResolved(src, false), runResolved(src, true), src);
+        }
+        assertEquals("3334\n1001\n", runResolved(HOT_LOOPS[5] + "\nprint first(3000);"));
+    }
+
+    @Test
+    void hotLoopsAreCompiled() {
+        long tierUps = Recorder.getLoopTierUps();
+        runResolved(HOT_LOOPS[0], false);
+        assertEquals(tierUps, Recorder.getLoopTierUps());
+        runResolved("var i = 0;\nwhile (i < 500) i = i + 1;");
+        assertEquals(tierUps, Recorder.getLoopTierUps());
+
+        runResolved(HOT_LOOPS[0]);
+        assertEquals(tierUps + 1, Recorder.getLoopTierUps());
+        // Hot over all of its runs, not just one.
+        runResolved("fun count(n) { var i = 0; while (i < n) i = i + 1; return i; }\n"
+                + "for (var i = 0; i < 300; i = i + 1) count(5);");
+        assertEquals(tierUps + 2, Recorder.getLoopTierUps());
+    }
+
+    @Test
+    void compiledLoopsDeoptimize() {
+        long deoptimizations = Recorder.getLoopDeoptimizations();
+        assertEquals("3000.5\n", runResolved(HOT_LOOPS[2]));
+        assertEquals(deoptimizations + 1, Recorder.getLoopDeoptimizations());
+
+        // Past a few deoptimizations the loop stops speculating.
+        assertEquals("4000\n", runResolved("var x = 0;\nvar i = 0;\n"
+                + "while (i < 40000) { if (i % 1500 == 0) x = 0.5; else if (i % 1500 == 1) x = 0; x = x + 1;"
+                + " i = i + 1; }\nprint i / 10;"));
+        assertEquals(deoptimizations + 4, Recorder.getLoopDeoptimizations());
+    }
+
+    @Test
+    void compiledLoopsKeepErrors() {
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> runResolved("var i = 0;\nwhile (true) {\n"
+                + "  i = i + 1;\n  if (i == 5000) i = i + nil;\n}"));
+        assertEquals(3, error.line);
+        assertEquals("can't apply '+' to 'java.lang.Integer' and 'nil'", error.msg);
+
+        error = assertThrows(Interpreter.Error.class, () -> runResolved("fun f(n) {\n  var i = 0;\n"
+                + "  while (i < n) {\n    i = i + 1;\n    if (i == 4000) i = 1 / 0;\n  }\n}\nf(10000);"));
+        assertEquals(4, error.line);
+        assertEquals(List.of("f (line 4)", "<script> (line 7)"), error.getFrames());
+
+        error = assertThrows(Interpreter.Error.class, () -> runResolved("var i = 0;\nwhile (i < 5000) {\n"
+                + "  i = i + 1;\n  if (i == 4000) i = \"four thousand\";\n}"));
+        assertEquals(1, error.line);
+        assertEquals("can't apply '<' to 'java.lang.String' and 'java.lang.Integer'", error.msg);
     }
-}
\ No newline at end of file
+}
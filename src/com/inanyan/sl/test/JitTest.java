@@ -0,0 +1,157 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.jit.JitCompiler;
+import com.inanyan.sl.jit.JitScript;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JitTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+
+    private List<Stmt> parse(String src) {
+        errorListener.resetCounters();
+        Lexer lexer = new Lexer(errorListener, src);
+        List<Token> tokens = lexer.scanTokens();
+        Parser parser = new Parser(errorListener, tokens);
+        List<Stmt> stmts = parser.parse();
+        assertEquals(0, errorListener.getErrorsCount());
+        return stmts;
+    }
+
+    private String runTree(String src) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interpreter(new PrintStream(out)).run(parse(src));
+        return out.toString();
+    }
+
+    private String runJit(String src) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JitScript script = new JitCompiler().compile(parse(src));
+        script.run(new Environment(Builtins.createGlobalEnvironment()), new PrintStream(out));
+        return out.toString();
+    }
+
+    private void sameOutput(String src) {
+        assertEquals(runTree(src), runJit(src));
+    }
+
+    @Test
+    void empty() {
+        assertEquals("", runJit(""));
+    }
+
+    @Test
+    void printLiterals() {
+        sameOutput("print 123; print 100000; print -7; print true; print nil; print \"abc\"; print 'c';");
+    }
+
+    @Test
+    void unaryChains() {
+        sameOutput("print - - 5; print !!true; print ~~7; print +3; print -~-4; print !false; print ~-2147483647;");
+    }
+
+    @Test
+    void globals() {
+        sameOutput("print SL_VER_MAJOR; print SL_VER_STR; print -SL_VER_PATCH; print ~SL_VER_MINOR;");
+    }
+
+    @Test
+    void exprStmtsAreDiscarded() {
+        assertEquals("1\n", runJit("5; -5; 1.5; -1.5; true; print 1; 'a'; nil; SL_VER_STR;"));
+    }
+
+    @Test
+    void scriptIsHiddenClass() {
+        JitScript script = new JitCompiler().compile(parse("print 1;"));
+        assertTrue(script.getClass().isHidden());
+    }
+
+    @Test
+    void largeProgramIsSplit() {
+        StringBuilder src = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            src.append("print ").append(i).append(";\n");
+            expected.append(i).append('\n');
+        }
+        assertEquals(expected.toString(), runJit(src.toString()));
+    }
+
+    @Test
+    void longChains() {
+        sameOutput("print 0" + " + 1 - 2".repeat(2000) + ";\nprint true" + " && 1 < 2 || false".repeat(2000) + ";");
+        assertThrows(JitCompiler.Unsupported.class,
+                () -> new JitCompiler().compile(parse("print 0" + " + 1".repeat(100_000) + ";")));
+    }
+
+    @Test
+    void longStringIsUnsupported() {
+        String fits = "a".repeat(65535 - 3) + "\u20ac";
+        assertNotNull(new JitCompiler().compile(parse("print \"" + fits + "\";")));
+        assertThrows(JitCompiler.Unsupported.class,
+                () -> new JitCompiler().compile(parse("print \"" + fits + "a\";")));
+        assertThrows(JitCompiler.Unsupported.class,
+                () -> new JitCompiler().compile(parse("print \"" + "\u00e9".repeat(40000) + "\";")));
+    }
+
+    @Test
+    void runtimeErrorLine() {
+        JitScript script = new JitCompiler().compile(parse("print 1;\n\nprint -true;"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> script.run(new Environment(Builtins.createGlobalEnvironment()), new PrintStream(out)));
+        assertEquals(2, error.line);
+        assertEquals("1\n", out.toString());
+    }
+
+    @Test
+    void undefinedReference() {
+        JitScript script = new JitCompiler().compile(parse("\nprint unknown;"));
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> script.run(new Environment(Builtins.createGlobalEnvironment()), null));
+        assertEquals(1, error.line);
+    }
+
+    @Test
+    void binaryOperators() {
+        sameOutput("print 1 + 2 * 3 - 4 / 2 % 3; print -7 / 2; print 2147483647 + 1; print 1 << 33; print -16 >> 2;"
+                + " print 6 & 3 | 8 ^ 1; print 5 / 2.0; print 1.5 - 0.25 * 2; print 1 / 0.0; print 1 + 0.5;"
+                + " print 1 < 2; print 2.5 <= 1.5; print 0.0 / 0.0 < 1.0; print 0.0 / 0.0 >= 1.0;"
+                + " print 0.0 / 0.0 != 0.0 / 0.0; print 'a' < 'b'; print 1 == 1.0; print 1 < 2 == (2 > 1);"
+                + " print \"n=\" + SL_VER_MAJOR; print 2 + SL_VER_STR; print 1.5 + SL_VER_STR;"
+                + " print SL_VER_MAJOR * 1.5; print -SL_VER_PATCH >> 1;");
+    }
+
+    @Test
+    void logicalOperators() {
+        sameOutput("print true && false || true; print false && undefined; print true || undefined;"
+                + " print !false && 1 < 2; print SL_VER_MAJOR == 0 || SL_VER_PATCH > 0;");
+    }
+
+    @Test
+    void binaryErrorLines() {
+        JitScript script = new JitCompiler().compile(parse("print 1;\nprint 1 /\n0;"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> script.run(new Environment(Builtins.createGlobalEnvironment()), new PrintStream(out)));
+        assertEquals(1, error.line);
+        assertEquals("division by zero", error.msg);
+
+        JitScript logical = new JitCompiler().compile(parse("print true &&\n1;"));
+        error = assertThrows(Interpreter.Error.class,
+                () -> logical.run(new Environment(Builtins.createGlobalEnvironment()), new PrintStream(out)));
+        assertEquals(1, error.line);
+    }
+}
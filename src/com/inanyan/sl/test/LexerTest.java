@@ -2,6 +2,7 @@ package com.inanyan.sl.test;
 
 import com.inanyan.sl.parsing.Lexer;
 import com.inanyan.sl.parsing.Token;
+import com.inanyan.sl.parsing.TokenBuffer;
 import com.inanyan.sl.parsing.TokenType;
 import org.junit.jupiter.api.Test;
 
@@ -131,21 +132,21 @@ class LexerTest {
 
     @Test
     void illegalChars() {
-        generateTokens("^$");
+        generateTokens("@$");
         noWarnings();
         shouldBeErrors(2);
     }
 
     @Test
     void illegalCharsWithSpaces() {
-        generateTokens("  ^ ^\n\r   \n  \t$ \t  ");
+        generateTokens("  @ @\n\r   \n  \t$ \t  ");
         noWarnings();
         shouldBeErrors(3);
     }
 
     @Test
     void illegalCharsAndSemicolons() {
-        generateTokens("  ^\n;;;;;;;;;;\r ;;;;;;;;;;  \n  \t$;;;;;; \t  ");
+        generateTokens("  @\n;;;;;;;;;;\r ;;;;;;;;;;  \n  \t$;;;;;; \t  ");
         noWarnings();
         shouldBeErrors(2);
     }
@@ -328,6 +329,21 @@ class LexerTest {
         shouldBeErrors(1);
     }
 
+    @Test
+    void unterminatedAtEnd() {
+        generateTokens("print '");
+        shouldBeErrors(1);
+        generateTokens("print '\\");
+        shouldBeErrors(1);
+        generateTokens("print \"\\");
+        shouldBeErrors(1);
+
+        errorListener.resetCounters();
+        TokenBuffer buffer = new Lexer(errorListener, "'\\").scanTokenBuffer();
+        assertEquals('\\', buffer.charValue(0));
+        shouldBeErrors(1);
+    }
+
     @Test
     void characterBigTest() {
         generateTokensAndCheck("print 'c'; \n\t'\t'; \n'\\\\';", 8);
@@ -463,4 +479,143 @@ class LexerTest {
         assertType(1, TokenType.TRUE);
         assertLine(1, 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    void streamingMatchesScanTokens() {
+        String text = "print 1;\n# comment\n-x; 'c' \"str\" 2.5";
+        List<Token> all = new Lexer(errorListener, text).scanTokens();
+        Lexer lexer = new Lexer(errorListener, text);
+        for (Token expected : all) {
+            Token token = lexer.nextToken();
+            assertEquals(expected.type, token.type);
+            assertEquals(expected.text, token.text);
+            assertEquals(expected.line, token.line);
+        }
+        assertEquals(TokenType.EOF, lexer.nextToken().type);
+    }
+
+    @Test
+    void tokenBufferMatchesTokens() {
+        String text = "print 1;\n# comment\n-x_1; 'c' '\\n' \"s\\tr\\q\" 2.5 nil true false\n\"unterminated";
+        List<Token> all = new Lexer(errorListener, text).scanTokens();
+        TokenBuffer buffer = new Lexer(errorListener, text).scanTokenBuffer();
+        assertEquals(all.size(), buffer.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.get(i).type, buffer.type(i));
+            assertEquals(all.get(i).text, buffer.text(i));
+            assertEquals(all.get(i).line, buffer.line(i));
+        }
+    }
+
+    @Test
+    void tokenBufferValues() {
+        TokenBuffer buffer = new Lexer(errorListener, "12345 'x' '\\t' 0.25").scanTokenBuffer();
+        assertEquals(12345, buffer.intValue(0));
+        assertEquals('x', buffer.charValue(1));
+        assertEquals('\t', buffer.charValue(2));
+        assertEquals(0.25, buffer.doubleValue(3));
+        assertEquals(7, buffer.start(1));
+        assertEquals(1, buffer.length(1));
+    }
+
+    @Test
+    void keywordLookalikes() {
+        generateTokensAndCheck("printx prin nil_ nil1 tru truer fals falsey pRint print", 11);
+        noErrorsAndWarnings();
+        inRange(0, 8, TokenType.IDENTIFIER);
+        assertType(9, TokenType.PRINT);
+        assertText(0, "printx");
+        assertText(9, "print");
+    }
+
+    @Test
+    void unicodeIdentifiers() {
+        generateTokensAndCheck("\u00e9t\u00e9 _x\u0661 \u0661", 4);
+        assertType(0, TokenType.IDENTIFIER);
+        assertText(0, "\u00e9t\u00e9");
+        assertType(1, TokenType.IDENTIFIER);
+        assertText(1, "_x\u0661");
+        assertType(2, TokenType.INT_NUMBER);
+    }
+
+    @Test
+    void identifiersArePooled() {
+        generateTokensAndCheck("abc; x; abc; x; abc", 10);
+        noErrorsAndWarnings();
+        assertSame(result.get(0).text, result.get(4).text);
+        assertSame(result.get(0).text, result.get(8).text);
+        assertSame(result.get(2).text, result.get(6).text);
+
+        TokenBuffer buffer = new Lexer(errorListener, "abc abc").scanTokenBuffer();
+        assertSame(buffer.text(0), buffer.text(1));
+    }
+
+    @Test
+    void manyDistinctIdentifiers() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("name").append(i).append(' ');
+        }
+        generateTokensAndCheck(sb.toString() + sb, 2001);
+        for (int i = 0; i < 1000; i++) {
+            assertText(i, "name" + i);
+            assertSame(result.get(i).text, result.get(i + 1000).text);
+        }
+    }
+
+    @Test
+    void functionTokens() {
+        String text = "fun f(a, b) { var c = a; if (c) return b; else return nil; } iff funny";
+        generateTokensAndCheck(text, 28);
+        noErrorsAndWarnings();
+        assertType(0, TokenType.FUN);
+        assertType(2, TokenType.LEFT_PAREN);
+        assertType(4, TokenType.COMMA);
+        assertType(6, TokenType.RIGHT_PAREN);
+        assertType(7, TokenType.LEFT_BRACE);
+        assertType(8, TokenType.VAR);
+        assertType(10, TokenType.EQUAL);
+        assertType(13, TokenType.IF);
+        assertType(17, TokenType.RETURN);
+        assertType(20, TokenType.ELSE);
+        assertType(24, TokenType.RIGHT_BRACE);
+        assertType(25, TokenType.IDENTIFIER);
+        assertType(26, TokenType.IDENTIFIER);
+
+        List<Token> all = new Lexer(errorListener, text).scanTokens();
+        TokenBuffer buffer = new Lexer(errorListener, text).scanTokenBuffer();
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.get(i).text, buffer.text(i));
+        }
+    }
+
+    @Test
+    void operatorTokens() {
+        generateTokensAndCheck("* / % < <= << > >= >> == = != ! & && | || ^<<=", 21);
+        noErrorsAndWarnings();
+        TokenType[] expected = {
+                TokenType.STAR, TokenType.SLASH, TokenType.PERCENT, TokenType.LESS, TokenType.LESS_EQUAL,
+                TokenType.LESS_LESS, TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.GREATER_GREATER,
+                TokenType.EQUAL_EQUAL, TokenType.EQUAL, TokenType.BANG_EQUAL, TokenType.BANG, TokenType.AMPERSAND,
+                TokenType.AMPERSAND_AMPERSAND, TokenType.PIPE, TokenType.PIPE_PIPE, TokenType.CARET,
+                TokenType.LESS_LESS, TokenType.EQUAL, TokenType.EOF
+        };
+        for (int i = 0; i < expected.length; i++) {
+            assertType(i, expected[i]);
+        }
+    }
+
+    @Test
+    void loopTokens() {
+        generateTokensAndCheck("while (x) for (;;) whiles fore", 12);
+        noErrorsAndWarnings();
+        TokenType[] expected = {
+                TokenType.WHILE, TokenType.LEFT_PAREN, TokenType.IDENTIFIER, TokenType.RIGHT_PAREN, TokenType.FOR,
+                TokenType.LEFT_PAREN, TokenType.SEMICOLON, TokenType.SEMICOLON, TokenType.RIGHT_PAREN,
+                TokenType.IDENTIFIER, TokenType.IDENTIFIER, TokenType.EOF
+        };
+        for (int i = 0; i < expected.length; i++) {
+            assertType(i, expected[i]);
+        }
+    }
+}
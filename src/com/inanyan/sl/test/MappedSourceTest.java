@@ -0,0 +1,64 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.util.MappedSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSourceTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+
+    private CharSequence map(String content) throws IOException {
+        Path path = Files.createTempFile("sl-test", ".sl");
+        path.toFile().deleteOnExit();
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return MappedSource.open(path);
+    }
+
+    @Test
+    void asciiIsReadFromMapping() throws IOException {
+        CharSequence source = map("print 1;\nprint \"two\";");
+        assertTrue(source instanceof MappedSource);
+        assertEquals("print 1;\nprint \"two\";", source.toString());
+        assertEquals(';', source.charAt(7));
+        assertEquals("two", source.subSequence(16, 19).toString());
+    }
+
+    @Test
+    void utf8IsDecoded() throws IOException {
+        CharSequence source = map("print \"\u043f\u0440\u0438\u0432\u0456\u0442\";");
+        assertEquals("print \"\u043f\u0440\u0438\u0432\u0456\u0442\";", source.toString());
+    }
+
+    @Test
+    void bufferPositionIsIgnored() {
+        ByteBuffer bytes = ByteBuffer.wrap("print \"\u00e9\";".getBytes(StandardCharsets.UTF_8));
+        bytes.position(bytes.limit());
+        assertEquals("print \"\u00e9\";", MappedSource.of(bytes).toString());
+        assertEquals(bytes.limit(), bytes.position());
+        assertEquals("print 1;", MappedSource.of(ByteBuffer.wrap("print 1;".getBytes()).position(3)).toString());
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        assertEquals(0, map("").length());
+    }
+
+    @Test
+    void parsesFromMapping() throws IOException {
+        CharSequence source = map("print - - 5;\n# comment\nprint 'c';");
+        List<Stmt> stmts = new Parser(errorListener, new Lexer(errorListener, source)).parse();
+        assertEquals(0, errorListener.getErrorsCount());
+        assertEquals(2, stmts.size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.nodes.BinaryNode;
+import com.inanyan.sl.nodes.ExprNode;
+import com.inanyan.sl.nodes.LogicalNode;
+import com.inanyan.sl.nodes.NodeBuilder;
+import com.inanyan.sl.nodes.RootNode;
+import com.inanyan.sl.nodes.UnaryNode;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodesTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private List<Stmt> parse(String src) {
+        errorListener.resetCounters();
+        Lexer lexer = new Lexer(errorListener, src);
+        List<Token> tokens = lexer.scanTokens();
+        Parser parser = new Parser(errorListener, tokens);
+        List<Stmt> stmts = parser.parse();
+        assertEquals(0, errorListener.getErrorsCount());
+        return stmts;
+    }
+
+    private RootNode build(String src) {
+        return new NodeBuilder(new PrintStream(out)).build(parse(src));
+    }
+
+    private ExprNode exprAt(RootNode root, int index) {
+        return root.getStmt(index).getExpr();
+    }
+
+    @Test
+    void sameOutputAsTreeWalker() {
+        String src = "print - - 5; print !!true; print ~~7; print +3; print -~-4; print -SL_VER_PATCH; print 'c';";
+        ByteArrayOutputStream treeOut = new ByteArrayOutputStream();
+        new Interpreter(new PrintStream(treeOut)).run(parse(src));
+
+        RootNode root = build(src);
+        Environment environment = new Environment(Builtins.createGlobalEnvironment());
+        root.execute(environment);
+        root.execute(environment);
+        assertEquals(treeOut.toString() + treeOut, out.toString());
+    }
+
+    @Test
+    void specializesOnFirstExecution() {
+        RootNode root = build("-5; -1.5; !true; ~3;");
+        assertTrue(exprAt(root, 0) instanceof UnaryNode.Uninitialized);
+
+        root.execute(new Environment());
+        assertTrue(exprAt(root, 0) instanceof UnaryNode.IntNegate);
+        assertTrue(exprAt(root, 1) instanceof UnaryNode.DoubleNegate);
+        assertTrue(exprAt(root, 2) instanceof UnaryNode.BoolNot);
+        assertTrue(exprAt(root, 3) instanceof UnaryNode.Generic);
+    }
+
+    @Test
+    void nestedSpecialization() {
+        RootNode root = build("print - - 5;");
+        root.execute(new Environment());
+        UnaryNode outer = (UnaryNode) exprAt(root, 0);
+        assertTrue(outer instanceof UnaryNode.IntNegate);
+        assertTrue(outer.getChild() instanceof UnaryNode.IntNegate);
+        assertEquals("5\n", out.toString());
+    }
+
+    @Test
+    void deoptimizesWhenGuardFails() {
+        Environment environment = new Environment();
+        environment.define("x", 7);
+
+        RootNode root = build("-x;");
+        root.execute(environment);
+        assertTrue(exprAt(root, 0) instanceof UnaryNode.IntNegate);
+
+        environment.define("x", 2.5);
+        root.execute(environment);
+        assertTrue(exprAt(root, 0) instanceof UnaryNode.Generic);
+
+        environment.define("x", "str");
+        assertThrows(Interpreter.Error.class, () -> root.execute(environment));
+        assertTrue(exprAt(root, 0) instanceof UnaryNode.Generic);
+    }
+
+    @Test
+    void longChainsAreLeftToTheInterpreter() {
+        assertNotNull(build("print 0" + " + 1".repeat(1000) + ";"));
+        assertThrows(NodeBuilder.Unsupported.class, () -> build("print 0" + " + 1".repeat(1001) + ";"));
+        assertThrows(NodeBuilder.Unsupported.class, () -> build("print true" + " && true".repeat(1001) + ";"));
+    }
+
+    @Test
+    void runtimeErrorLine() {
+        RootNode root = build("print 1;\n\nprint -true;");
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> root.execute(new Environment()));
+        assertEquals(2, error.line);
+        assertEquals("1\n", out.toString());
+    }
+
+    @Test
+    void binarySpecialization() {
+        RootNode root = build("1 + 2; 1.5 * 2.0; 1 < 2; 1.5 < 2.5; 1 + 1.5; 1 << 2; \"s\" + 1; true && false;");
+        assertTrue(exprAt(root, 0) instanceof BinaryNode.Uninitialized);
+
+        root.execute(new Environment());
+        assertTrue(exprAt(root, 0) instanceof BinaryNode.IntArithmetic);
+        assertTrue(exprAt(root, 1) instanceof BinaryNode.DoubleArithmetic);
+        assertTrue(exprAt(root, 2) instanceof BinaryNode.IntCompare);
+        assertTrue(exprAt(root, 3) instanceof BinaryNode.DoubleCompare);
+        assertTrue(exprAt(root, 4) instanceof BinaryNode.Generic);
+        assertTrue(exprAt(root, 5) instanceof BinaryNode.IntArithmetic);
+        assertTrue(exprAt(root, 6) instanceof BinaryNode.Generic);
+        assertTrue(exprAt(root, 7) instanceof LogicalNode);
+    }
+
+    @Test
+    void binaryDeoptimizesWhenGuardFails() {
+        Environment environment = new Environment();
+        environment.define("x", 7);
+
+        RootNode root = build("print x * 2 + 1 < x * 3;");
+        root.execute(environment);
+        BinaryNode compare = (BinaryNode) exprAt(root, 0);
+        assertTrue(compare instanceof BinaryNode.IntCompare);
+        assertTrue(compare.getLeft() instanceof BinaryNode.IntArithmetic);
+
+        environment.define("x", 0.5);
+        root.execute(environment);
+        BinaryNode generic = (BinaryNode) exprAt(root, 0);
+        assertTrue(generic instanceof BinaryNode.Generic);
+        assertTrue(generic.getLeft() instanceof BinaryNode.Generic);
+        assertEquals("true\nfalse\n", out.toString());
+
+        environment.define("x", "s");
+        assertThrows(Interpreter.Error.class, () -> root.execute(environment));
+    }
+}
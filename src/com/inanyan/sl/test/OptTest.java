@@ -0,0 +1,124 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.opt.PassManager;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final Interpreter interpreter = new Interpreter(new PrintStream(out));
+    private final PassManager passManager = PassManager.createDefault();
+    private List<Stmt> stmts;
+
+    private void optimize(String src) {
+        errorListener.resetCounters();
+        Lexer lexer = new Lexer(errorListener, src);
+        List<Token> tokens = lexer.scanTokens();
+        Parser parser = new Parser(errorListener, tokens);
+        stmts = parser.parse();
+        new Resolver(errorListener, interpreter.getEnvironment()).resolve(stmts);
+        assertEquals(0, errorListener.getErrorsCount());
+        stmts = passManager.run(stmts);
+    }
+
+    private void assertNode(int index, Stmt node) {
+        assertTrue(stmts.get(index).fullyCompareTo(node));
+    }
+
+    @Test
+    void foldsUnaryChains() {
+        optimize("print - - 5; print !!true; print ~7; print -+1.5;");
+        assertNode(0, new Stmt.Print(0, new Expr.IntLiteral(0, 5)));
+        assertNode(1, new Stmt.Print(0, new Expr.BoolLiteral(0, true)));
+        assertNode(2, new Stmt.Print(0, new Expr.IntLiteral(0, -8)));
+        assertNode(3, new Stmt.Print(0, new Expr.FloatLiteral(0, -1.5)));
+    }
+
+    @Test
+    void keepsLinesOfFoldedNodes() {
+        optimize("print\n-\n-5;");
+        assertNode(0, new Stmt.Print(0, new Expr.IntLiteral(1, 5)));
+    }
+
+    @Test
+    void leavesFailingOperations() {
+        optimize("print 1;\n-!\n5;");
+        assertEquals(2, stmts.size());
+        assertNode(1, new Stmt.Expression(1, new Expr.Unary(1, Expr.Unary.Op.NEGATE,
+                new Expr.Unary(1, Expr.Unary.Op.NOT, new Expr.IntLiteral(2, 5)))));
+
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> interpreter.run(stmts));
+        assertEquals(1, error.line);
+        assertEquals("1\n", out.toString());
+    }
+
+    @Test
+    void removesPureStatements() {
+        optimize("5; - - 5; 'a'; \"str\"; nil; SL_VER_MAJOR; print 1; -true;");
+        assertEquals(2, stmts.size());
+        assertTrue(stmts.get(0) instanceof Stmt.Print);
+        assertTrue(stmts.get(1) instanceof Stmt.Expression);
+    }
+
+    @Test
+    void passesCanBeDisabled() {
+        assertTrue(passManager.setEnabled("dce", false));
+        assertFalse(passManager.setEnabled("unknown", false));
+        optimize("- - 5;");
+        assertNode(0, new Stmt.Expression(0, new Expr.IntLiteral(0, 5)));
+
+        passManager.setEnabled("fold", false);
+        optimize("- - 5;");
+        assertTrue(((Stmt.Expression) stmts.get(0)).expr instanceof Expr.Unary);
+    }
+
+    @Test
+    void foldsBinaryOperators() {
+        optimize("print 1 + 2 * 3; print 1.5 < 2; print \"a\" + 1; print false && SL_VER_MAJOR; print 1 < 2 || 1 / 0;");
+        assertNode(0, new Stmt.Print(0, new Expr.IntLiteral(0, 7)));
+        assertNode(1, new Stmt.Print(0, new Expr.BoolLiteral(0, true)));
+        assertNode(2, new Stmt.Print(0, new Expr.StringLiteral(0, "a1")));
+        assertNode(3, new Stmt.Print(0, new Expr.BoolLiteral(0, false)));
+        assertNode(4, new Stmt.Print(0, new Expr.BoolLiteral(0, true)));
+    }
+
+    @Test
+    void leavesFailingBinaryOperations() {
+        optimize("print 2 * 3;\nprint 1 / (2 - 2);\nprint true && 1;");
+        assertEquals(3, stmts.size());
+        assertNode(1, new Stmt.Print(1, new Expr.Binary(1, Expr.Binary.Op.DIVIDE, new Expr.IntLiteral(1, 1),
+                new Expr.IntLiteral(1, 0))));
+        assertNode(2, new Stmt.Print(2, new Expr.Logical(2, Expr.Logical.Op.AND, new Expr.BoolLiteral(2, true),
+                new Expr.IntLiteral(2, 1))));
+
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> interpreter.run(stmts));
+        assertEquals(1, error.line);
+        assertEquals("6\n", out.toString());
+    }
+
+    @Test
+    void foldsInsideLoopsAndKeepsAssignments() {
+        optimize("var i = 0;\nwhile (i < 2 * 3) i = i + (1 + 1);\ni = 5;\nprint i;");
+        assertEquals(4, stmts.size());
+        assertNode(1, new Stmt.While(1, new Expr.Binary(1, Expr.Binary.Op.LESS, new Expr.Var(1, "i"),
+                new Expr.IntLiteral(1, 6)), new Stmt.Expression(1, new Expr.Assign(1, new Expr.Var(1, "i"),
+                new Expr.Binary(1, Expr.Binary.Op.ADD, new Expr.Var(1, "i"), new Expr.IntLiteral(1, 2))))));
+        assertTrue(stmts.get(2) instanceof Stmt.Expression);
+
+        interpreter.run(stmts);
+        assertEquals("5\n", out.toString());
+    }
+}
@@ -0,0 +1,123 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.lang.OutputSink;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputSinkTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final String nl = System.lineSeparator();
+
+    private String text() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void formatsLikeStringify() {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.LINE);
+        sink.println(null);
+        sink.println(42);
+        sink.println('c');
+        sink.println(true);
+        sink.println("str");
+        sink.printlnBoolean(false);
+        assertEquals("nil" + nl + "42" + nl + "c" + nl + "true" + nl + "str" + nl + "false" + nl, text());
+    }
+
+    @Test
+    void ints() {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.SIZE);
+        int[] values = {0, 7, -7, 10, -10, 99, 100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE, -2147483647};
+        StringBuilder expected = new StringBuilder();
+        for (int value : values) {
+            sink.printlnInt(value);
+            expected.append(value).append(nl);
+        }
+        sink.flush();
+        assertEquals(expected.toString(), text());
+    }
+
+    @Test
+    void utf8() {
+        String str = "a\u00e9\u4e2d\ud83d\ude00 \ud800x";
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.LINE);
+        sink.println(str);
+        sink.println('\u00e9');
+        assertArrayEquals((str + nl + "\u00e9" + nl).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    void unsupportedTypeThrowsLikeStringify() {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.LINE);
+        assertThrows(RuntimeException.class, () -> sink.println(new Object()));
+    }
+
+    @Test
+    void linePolicyFlushesEveryLine() {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.LINE);
+        sink.printlnInt(1);
+        assertEquals("1" + nl, text());
+    }
+
+    @Test
+    void sizePolicyFlushesWhenFull() {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.SIZE, 16);
+        sink.println("abc");
+        assertEquals(0, out.size());
+
+        StringBuilder expected = new StringBuilder("abc" + nl);
+        for (int i = 0; i < 100; i++) {
+            sink.println("line " + i);
+            expected.append("line ").append(i).append(nl);
+        }
+        assertTrue(out.size() > 0);
+        sink.flush();
+        assertEquals(expected.toString(), text());
+    }
+
+    @Test
+    void longStringsLargerThanTheBuffer() {
+        String str = "\u00e9x".repeat(1000);
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.SIZE, 16);
+        sink.println(str);
+        sink.flush();
+        assertEquals(str + nl, text());
+    }
+
+    @Test
+    void flushFromAnotherThread() throws InterruptedException {
+        OutputSink sink = OutputSink.of(out, OutputSink.FlushPolicy.SIZE, 64);
+        Thread flusher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                sink.flush();
+            }
+        });
+        flusher.start();
+        for (int i = 0; i < 20000; i++) {
+            sink.printlnInt(123456);
+        }
+        flusher.interrupt();
+        flusher.join();
+        sink.flush();
+        assertEquals(("123456" + nl).repeat(20000), text());
+
+        assertThrows(IllegalArgumentException.class, () -> OutputSink.of(out, OutputSink.FlushPolicy.EXIT));
+    }
+
+    @Test
+    void channelTarget() {
+        OutputSink sink = OutputSink.of(Channels.newChannel(out), OutputSink.FlushPolicy.SIZE, 64);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sink.printlnInt(i);
+            expected.append(i).append(nl);
+        }
+        sink.flush();
+        assertEquals(expected.toString(), text());
+    }
+}
@@ -4,8 +4,10 @@ import com.inanyan.sl.ast.Expr;
 import com.inanyan.sl.ast.Node;
 import com.inanyan.sl.ast.Stmt;
 import com.inanyan.sl.parsing.*;
+import com.inanyan.sl.util.Diagnostic;
 import org.junit.jupiter.api.Test;
 
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -256,4 +258,200 @@ class ParserTest {
 
         assertThrows(RuntimeException.class, () -> Parser.tokenTypeToUnaryOp(TokenType.STRING));
     }
-}
\ No newline at end of file
+
+    @Test
+    void streamingStatements() {
+        errorListener.resetCounters();
+        Parser parser = new Parser(errorListener, new Lexer(errorListener, "1;; print 2;\n+;\n-3;"));
+        Iterator<Stmt> it = parser.statements();
+
+        assertTrue(it.hasNext());
+        assertTrue(it.next().fullyCompareTo(new Stmt.Expression(0, new Expr.IntLiteral(0, 1))));
+        assertTrue(it.next().fullyCompareTo(new Stmt.Print(0, new Expr.IntLiteral(0, 2))));
+        assertTrue(it.next().fullyCompareTo(new Stmt.Expression(2, new Expr.Unary(2, Expr.Unary.Op.NEGATE,
+                new Expr.IntLiteral(2, 3)))));
+        assertFalse(it.hasNext());
+        shouldBeErrors(1);
+    }
+
+    @Test
+    void tokenBufferParse() {
+        String src = "print 1;\n-x; 'c'; \"str\"; 2.5; !true;\n~nil; +; print";
+        generate(src);
+        List<Stmt> expected = stmts;
+        int errors = errorListener.getErrorsCount();
+
+        errorListener.resetCounters();
+        Parser parser = new Parser(errorListener, new Lexer(errorListener, src).scanTokenBuffer());
+        List<Stmt> actual = parser.parse();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).fullyCompareTo(actual.get(i)));
+        }
+        shouldBeErrors(errors);
+    }
+
+    @Test
+    void diagnosticsList() {
+        errorListener.resetCounters();
+        Parser parser = new Parser(errorListener, new Lexer(errorListener, "print 1\n! ;\nprint -!2;\n+"));
+        List<Stmt> result = parser.parse();
+        assertEquals(1, result.size());
+        shouldBeErrors(2);
+
+        // Recovery skips the rest of the first statement, so "! ;" reports nothing.
+        List<Diagnostic> diagnostics = parser.getDiagnostics();
+        assertEquals(2, diagnostics.size());
+        assertEquals(Diagnostic.Severity.ERROR, diagnostics.get(0).severity);
+        assertEquals(1, diagnostics.get(0).line);
+        assertEquals("expected ';' after print statement", diagnostics.get(0).msg);
+        assertEquals(3, diagnostics.get(1).line);
+        assertEquals("expected expression", diagnostics.get(1).msg);
+    }
+
+    @Test
+    void intLiteralOutOfRange() {
+        errorListener.resetCounters();
+        Parser parser = new Parser(errorListener, new Lexer(errorListener, "print 2147483647;\nprint 99999999999;\nprint 3;"));
+        List<Stmt> result = parser.parse();
+        assertEquals(2, result.size());
+        shouldBeErrors(1);
+        assertEquals(1, parser.getDiagnostics().get(0).line);
+        assertEquals("integer literal out of range", parser.getDiagnostics().get(0).msg);
+
+        generate("var x = 2147483648 + 1;");
+        shouldBeErrors(1);
+        assertEquals(0, stmts.size());
+    }
+
+    @Test
+    void functions() {
+        generateAndCheck("fun f(a, b) {\n  var c = a;\n  if (c) { return b; } else return;\n}\nprint f(1, g)();", 2);
+        noErrorsAndWarnings();
+        Stmt.Function function = (Stmt.Function) stmts.get(0);
+        assertEquals("f", function.name);
+        assertEquals(List.of("a", "b"), function.params);
+        assertEquals(2, function.body.size());
+        Stmt.If branch = (Stmt.If) function.body.get(1);
+        assertEquals(2, branch.line);
+        assertTrue(branch.thenBranch instanceof Stmt.Block);
+        assertNull(((Stmt.Return) branch.elseBranch).value);
+
+        Expr.Call outer = (Expr.Call) ((Stmt.Print) stmts.get(1)).expr;
+        assertEquals(0, outer.args.size());
+        assertEquals(2, ((Expr.Call) outer.callee).args.size());
+    }
+
+    @Test
+    void errorsInBlocksDontEscape() {
+        generate("fun f() {\n  print ;\n  return 1;\n}\nprint 2;\n}\nprint 3;");
+        shouldBeErrors(2);
+        assertEquals(3, stmts.size());
+        assertEquals(1, ((Stmt.Function) stmts.get(0)).body.size());
+    }
+
+    @Test
+    void binaryPrecedence() {
+        generateAndCheck("1 + 2 * 3 - 4;\nx & 1 == 0 || !y && z < 2;", 2);
+        noErrorsAndWarnings();
+        assertNode(0, new Stmt.Expression(0, new Expr.Binary(0, Expr.Binary.Op.SUBTRACT,
+                new Expr.Binary(0, Expr.Binary.Op.ADD, new Expr.IntLiteral(0, 1),
+                        new Expr.Binary(0, Expr.Binary.Op.MULTIPLY, new Expr.IntLiteral(0, 2), new Expr.IntLiteral(0, 3))),
+                new Expr.IntLiteral(0, 4))));
+        assertNode(1, new Stmt.Expression(1, new Expr.Logical(1, Expr.Logical.Op.OR,
+                new Expr.Binary(1, Expr.Binary.Op.EQUAL,
+                        new Expr.Binary(1, Expr.Binary.Op.BITWISE_AND, new Expr.Var(1, "x"), new Expr.IntLiteral(1, 1)),
+                        new Expr.IntLiteral(1, 0)),
+                new Expr.Logical(1, Expr.Logical.Op.AND, new Expr.Unary(1, Expr.Unary.Op.NOT, new Expr.Var(1, "y")),
+                        new Expr.Binary(1, Expr.Binary.Op.LESS, new Expr.Var(1, "z"), new Expr.IntLiteral(1, 2))))));
+    }
+
+    @Test
+    void groupingOverridesPrecedence() {
+        generateAndCheck("(1 + 2) * -(3);", 1);
+        noErrorsAndWarnings();
+        assertNode(0, new Stmt.Expression(0, new Expr.Binary(0, Expr.Binary.Op.MULTIPLY,
+                new Expr.Binary(0, Expr.Binary.Op.ADD, new Expr.IntLiteral(0, 1), new Expr.IntLiteral(0, 2)),
+                new Expr.Unary(0, Expr.Unary.Op.NEGATE, new Expr.IntLiteral(0, 3)))));
+    }
+
+    @Test
+    void longOperatorChainIsLeftAssociative() {
+        int count = 100000;
+        StringBuilder src = new StringBuilder("print 0");
+        for (int i = 1; i < count; i++) {
+            src.append(i % 2 == 0 ? " + " : " - ").append(i);
+        }
+        generateAndCheck(src.append(';').toString(), 1);
+        noErrorsAndWarnings();
+
+        Expr expr = ((Stmt.Print) stmts.get(0)).expr;
+        for (int i = count - 1; i > 0; i--) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            assertEquals(i, ((Expr.IntLiteral) binary.right).value);
+            expr = binary.left;
+        }
+        assertEquals(0, ((Expr.IntLiteral) expr).value);
+    }
+
+    @Test
+    void missingRightOperand() {
+        generate("print 1 +;\nprint 2 * * 3;\nprint 4;");
+        shouldBeErrors(2);
+        assertEquals(1, stmts.size());
+    }
+
+    @Test
+    void assignment() {
+        generateAndCheck("a = b = 1 + 2;\nprint c = d;", 2);
+        noErrorsAndWarnings();
+        assertNode(0, new Stmt.Expression(0, new Expr.Assign(0, new Expr.Var(0, "a"),
+                new Expr.Assign(0, new Expr.Var(0, "b"),
+                        new Expr.Binary(0, Expr.Binary.Op.ADD, new Expr.IntLiteral(0, 1), new Expr.IntLiteral(0, 2))))));
+        assertNode(1, new Stmt.Print(1, new Expr.Assign(1, new Expr.Var(1, "c"), new Expr.Var(1, "d"))));
+    }
+
+    @Test
+    void invalidAssignmentTarget() {
+        generate("a + b = 1;\nf() = 2;\nprint 3;");
+        shouldBeErrors(2);
+        assertEquals(1, stmts.size());
+    }
+
+    @Test
+    void whileLoop() {
+        generateAndCheck("while (i < 10)\n  i = i + 1;", 1);
+        noErrorsAndWarnings();
+        assertNode(0, new Stmt.While(0,
+                new Expr.Binary(0, Expr.Binary.Op.LESS, new Expr.Var(0, "i"), new Expr.IntLiteral(0, 10)),
+                new Stmt.Expression(1, new Expr.Assign(1, new Expr.Var(1, "i"),
+                        new Expr.Binary(1, Expr.Binary.Op.ADD, new Expr.Var(1, "i"), new Expr.IntLiteral(1, 1))))));
+    }
+
+    @Test
+    void forLoopIsParsedIntoWhile() {
+        generateAndCheck("for (var i = 0; i < 3; i = i + 1) print i;", 1);
+        noErrorsAndWarnings();
+        Expr.Assign increment = new Expr.Assign(0, new Expr.Var(0, "i"),
+                new Expr.Binary(0, Expr.Binary.Op.ADD, new Expr.Var(0, "i"), new Expr.IntLiteral(0, 1)));
+        assertNode(0, new Stmt.Block(0, List.of(
+                new Stmt.Var(0, "i", new Expr.IntLiteral(0, 0)),
+                new Stmt.While(0, new Expr.Binary(0, Expr.Binary.Op.LESS, new Expr.Var(0, "i"), new Expr.IntLiteral(0, 3)),
+                        new Stmt.Block(0, List.of(new Stmt.Print(0, new Expr.Var(0, "i")),
+                                new Stmt.Expression(0, increment)))))));
+
+        generateAndCheck("for (;;) { }", 1);
+        noErrorsAndWarnings();
+        assertNode(0, new Stmt.While(0, new Expr.BoolLiteral(0, true), new Stmt.Block(0, List.of())));
+    }
+
+    @Test
+    void loopErrorsRecover() {
+        generate("while (x print 1;\nfor (var i = 0; i < 3) print i;\nfor (i = 0; ; ) while (true) print 2;");
+        shouldBeErrors(2);
+        // Recovery stops before the 'print' of the second loop.
+        assertEquals(2, stmts.size());
+        assertTrue(stmts.get(0) instanceof Stmt.Print);
+        assertTrue(stmts.get(1) instanceof Stmt.Block);
+    }
+}
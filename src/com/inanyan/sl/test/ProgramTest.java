@@ -0,0 +1,212 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.jfr.Recorder;
+import com.inanyan.sl.lang.Budget;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.lang.Program;
+import com.inanyan.sl.opt.PassManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+
+    private Program compile(String src) {
+        errorListener.resetCounters();
+        return Program.compile(errorListener, src, PassManager.createDefault());
+    }
+
+    private String run(Program program) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        program.run(new PrintStream(out));
+        return out.toString();
+    }
+
+    @Test
+    void compileAndRun() {
+        Program program = compile("print -SL_VER_PATCH; print !false; print SL_VER_STR;");
+        assertNotNull(program);
+        assertEquals("-1\ntrue\n0.1.0\n", run(program));
+        assertEquals(run(program), run(program));
+    }
+
+    @Test
+    void errorsGiveNoProgram() {
+        assertNull(compile("print ;"));
+        assertEquals(1, errorListener.getErrorsCount());
+
+        assertNull(compile("print undefined;"));
+        assertEquals(1, errorListener.getErrorsCount());
+    }
+
+    @Test
+    void runtimeErrorIsThrown() {
+        Program program = compile("print -SL_VER_STR;");
+        assertNotNull(program);
+        assertThrows(Interpreter.Error.class, () -> run(program));
+    }
+
+    @Test
+    void runtimeErrorsAreCountedWhenReported() {
+        // Constant folding tries the negation and gives up, that must not count as an error.
+        long before = Recorder.getRuntimeErrors();
+        Program program = compile("print -\"a\";");
+        assertNotNull(program);
+        assertEquals(before, Recorder.getRuntimeErrors());
+
+        assertThrows(Interpreter.Error.class, () -> run(program));
+        assertEquals(before + 1, Recorder.getRuntimeErrors());
+    }
+
+    @Test
+    void statementsAreImmutable() {
+        Program program = compile("print 1;");
+        assertThrows(UnsupportedOperationException.class, () -> program.getStmts().clear());
+    }
+
+    @Test
+    void globalsAreFrozenAndShared() {
+        Environment globals = Builtins.globals();
+        assertTrue(globals.isFrozen());
+        assertSame(globals, Builtins.globals());
+        assertThrows(IllegalStateException.class, () -> globals.define("x", 1));
+
+        Environment locals = new Environment(globals);
+        assertTrue(locals.define("SL_VER_MAJOR", 42));
+        assertEquals(42, locals.lookup("SL_VER_MAJOR"));
+        assertEquals(0, globals.lookup("SL_VER_MAJOR"));
+    }
+
+    @Test
+    void runsConcurrently() throws Exception {
+        Program program = compile("print - - ~SL_VER_MINOR; print +SL_VER_MAJOR; print 'c'; print \"str\";");
+        assertNotNull(program);
+        String expected = run(program);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                results.add(executor.submit(() -> run(program)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void longOperatorChainsRun() {
+        int count = 100_000;
+        StringBuilder constants = new StringBuilder("print 0");
+        StringBuilder variables = new StringBuilder("var x = 1;\nprint x");
+        StringBuilder conditions = new StringBuilder("print x < 0");
+        int sum = 0;
+        for (int i = 1; i < count; i++) {
+            constants.append(" + ").append(i);
+            variables.append(" + x");
+            conditions.append(" || x < ").append(-i);
+            sum += i;
+        }
+        String source = constants + ";\n" + variables + ";\n" + conditions + ";";
+        String expected = sum + "\n" + count + "\nfalse\n";
+
+        Program folded = compile(source);
+        assertNotNull(folded);
+        assertEquals(expected, run(folded));
+        Program interpreted = Program.compile(errorListener, source);
+        assertNotNull(interpreted);
+        assertEquals(expected, run(interpreted));
+
+        // Too long for a compiled loop, the interpreter keeps running it.
+        StringBuilder loop = new StringBuilder("var s = 0;\nfor (var i = 0; i < 1100; i = i + 1) s = i");
+        loop.append(" + i".repeat(2000)).append(";\nprint s;");
+        Program hot = compile(loop.toString());
+        assertNotNull(hot);
+        assertEquals(1099 * 2001 + "\n", run(hot));
+    }
+
+    @Test
+    void fuelStopsBetweenStatements() {
+        Program program = compile("print 1;\nprint 2;\nprint 3;");
+        assertNotNull(program);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Budget.Exceeded e = assertThrows(Budget.Exceeded.class,
+                () -> program.run(new PrintStream(out), new Limits(2, Limits.UNLIMITED)));
+        assertEquals(Budget.Limit.FUEL, e.limit);
+        assertEquals(2, e.line);
+        assertEquals("1\n2\n", out.toString());
+
+        program.run(new PrintStream(new ByteArrayOutputStream()), new Limits(3, Limits.UNLIMITED));
+    }
+
+    @Test
+    void fuelStopsCompiledLoops() {
+        Program program = compile("var i = 0;\nwhile (true) {\n  i = i + 1;\n}");
+        assertNotNull(program);
+        Budget.Exceeded e = assertThrows(Budget.Exceeded.class,
+                () -> program.run(new PrintStream(new ByteArrayOutputStream()), new Limits(100_000, Limits.UNLIMITED)));
+        assertEquals(Budget.Limit.FUEL, e.limit);
+        // The body block: its statement is charged separately.
+        assertEquals(1, e.line);
+    }
+
+    @Test
+    void allocationIsLimited() {
+        Program doubling = compile("var s = \"a\";\nwhile (true) s = s + s;");
+        assertNotNull(doubling);
+        Budget.Exceeded e = assertThrows(Budget.Exceeded.class,
+                () -> doubling.run(new PrintStream(new ByteArrayOutputStream()), new Limits(1000, 2000, 1 << 20)));
+        assertEquals(Budget.Limit.ALLOCATION, e.limit);
+        assertEquals(1, e.line);
+
+        // Closures are charged too, one slot and one per capture: 1 for f, 2 for every g.
+        Program closures = compile("fun f(x) {\n  fun g() { return x; }\n  return g;\n}\n"
+                + "for (var i = 0; i < 10; i = i + 1) f(i);");
+        assertNotNull(closures);
+        closures.run(new PrintStream(new ByteArrayOutputStream()), new Limits(Limits.UNLIMITED, Limits.UNLIMITED, 21));
+        e = assertThrows(Budget.Exceeded.class, () -> closures.run(new PrintStream(new ByteArrayOutputStream()),
+                new Limits(Limits.UNLIMITED, Limits.UNLIMITED, 20)));
+        assertEquals(1, e.line);
+        assertThrows(IllegalArgumentException.class, () -> new Limits(1, 1, 0));
+    }
+
+    @Test
+    void deadlineIsChecked() throws InterruptedException {
+        Program program = compile("print 1;");
+        assertNotNull(program);
+        Interpreter interpreter = program.newInterpreter(new PrintStream(new ByteArrayOutputStream()));
+        Budget budget = new Limits(Limits.UNLIMITED, 1).newBudget();
+        interpreter.setBudget(budget);
+        Thread.sleep(5);
+
+        Budget.Exceeded e = assertThrows(Budget.Exceeded.class, () -> interpreter.run(program.getStmts()));
+        assertEquals(Budget.Limit.TIME, e.limit);
+        assertTrue(e.getFrames().size() == 1 && e.getStackTrace().length == 0);
+        assertThrows(Budget.Exceeded.class, () -> budget.tick(0));
+    }
+
+    @Test
+    void fuelIsCounted() {
+        Budget budget = new Limits(5000, Limits.UNLIMITED).newBudget();
+        for (int i = 0; i < 3000; i++) {
+            budget.tick(0);
+        }
+        assertEquals(3000, budget.getFuelUsed());
+        assertThrows(IllegalArgumentException.class, () -> new Limits(0, 1));
+    }
+}
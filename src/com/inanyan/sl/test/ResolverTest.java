@@ -0,0 +1,182 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Resolver;
+import com.inanyan.sl.lang.Symbols;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.Token;
+import com.inanyan.sl.vm.Compiler;
+import com.inanyan.sl.vm.VM;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResolverTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final Interpreter interpreter = new Interpreter(new PrintStream(out));
+    private List<Stmt> stmts;
+
+    private void resolve(String src) {
+        errorListener.resetCounters();
+        Lexer lexer = new Lexer(errorListener, src);
+        List<Token> tokens = lexer.scanTokens();
+        Parser parser = new Parser(errorListener, tokens);
+        stmts = parser.parse();
+        Resolver resolver = new Resolver(errorListener, interpreter.getEnvironment());
+        resolver.resolve(stmts);
+    }
+
+    private Expr.Var varAt(int index) {
+        Expr expr = ((Stmt.Print) stmts.get(index)).expr;
+        while (expr instanceof Expr.Unary unary) {
+            expr = unary.expr;
+        }
+        return (Expr.Var) expr;
+    }
+
+    @Test
+    void globalsAreResolved() {
+        resolve("print SL_VER_MAJOR; print SL_VER_STR;");
+        assertEquals(0, errorListener.getErrorsCount());
+        assertEquals(1, varAt(0).depth);
+        assertEquals(0, varAt(0).slot);
+        assertEquals(1, varAt(1).depth);
+        assertEquals(3, varAt(1).slot);
+    }
+
+    @Test
+    void nestedInUnary() {
+        resolve("print - - SL_VER_PATCH;");
+        assertEquals(0, errorListener.getErrorsCount());
+        assertTrue(varAt(0).isResolved());
+    }
+
+    @Test
+    void undefinedIsReportedOnce() {
+        resolve("print unknown;\nprint -other;\nprint SL_VER_MAJOR;");
+        assertEquals(2, errorListener.getErrorsCount());
+        assertFalse(varAt(0).isResolved());
+        assertFalse(varAt(1).isResolved());
+        assertTrue(varAt(2).isResolved());
+    }
+
+    @Test
+    void resolvedRunsOnInterpreter() {
+        resolve("print SL_VER_STR; print -SL_VER_PATCH;");
+        interpreter.run(stmts);
+        assertEquals("0.1.0\n-1\n", out.toString());
+    }
+
+    @Test
+    void resolvedRunsOnVM() {
+        resolve("print SL_VER_STR; print -SL_VER_PATCH;");
+        ByteArrayOutputStream vmOut = new ByteArrayOutputStream();
+        VM vm = new VM(new PrintStream(vmOut));
+        vm.run(new Compiler().compile(stmts));
+        assertEquals("0.1.0\n-1\n", vmOut.toString());
+    }
+
+    @Test
+    void functionsGetFrames() {
+        resolve("fun f(a, b) { var c = a; { var d = b; } return c; }");
+        assertEquals(0, errorListener.getErrorsCount());
+        Stmt.Function function = (Stmt.Function) stmts.get(0);
+        assertEquals(-1, function.slot);
+        assertEquals(4, function.frameSize);
+        assertEquals(0, function.captures.length);
+
+        Stmt.Var c = (Stmt.Var) function.body.get(0);
+        assertEquals(2, c.slot);
+        Expr.Var a = (Expr.Var) c.initializer;
+        assertEquals(Expr.Var.LOCAL, a.depth);
+        assertEquals(0, a.slot);
+        assertEquals(2, ((Expr.Var) ((Stmt.Return) function.body.get(2)).value).slot);
+    }
+
+    @Test
+    void closuresCaptureWhatTheyUse() {
+        resolve("fun outer(a, b) { fun middle() { fun inner() { return b; } return inner; } return middle; }");
+        assertEquals(0, errorListener.getErrorsCount());
+        Stmt.Function outer = (Stmt.Function) stmts.get(0);
+        Stmt.Function middle = (Stmt.Function) outer.body.get(0);
+        Stmt.Function inner = (Stmt.Function) middle.body.get(0);
+
+        assertEquals(2, middle.slot);
+        assertArrayEquals(new int[] {1}, middle.captures);
+        assertArrayEquals(new int[] {-1}, inner.captures);
+        Expr.Var b = (Expr.Var) ((Stmt.Return) inner.body.get(0)).value;
+        assertEquals(Expr.Var.CAPTURED, b.depth);
+        assertEquals(0, b.slot);
+    }
+
+    @Test
+    void globalDeclarations() {
+        resolve("var x = 1; print x; fun f() { return later; }");
+        assertEquals(0, errorListener.getErrorsCount());
+        assertEquals(0, varAt(1).depth);
+        assertNotEquals(-1, interpreter.getEnvironment().slotOf("f"));
+
+        resolve("return 1; fun g() { print unknown; }");
+        assertEquals(1, errorListener.getErrorsCount());
+    }
+
+    @Test
+    void undefinedNamesAreNotInterned() {
+        resolve("fun f() { return neverDefined1; }\nf();");
+        assertThrows(Interpreter.Error.class, () -> interpreter.run(stmts));
+        assertFalse(interpreter.getEnvironment().assign("neverDefined2", 1));
+        assertEquals(-1, interpreter.getEnvironment().slotOf("neverDefined3"));
+        assertEquals(-1, Symbols.find("neverDefined1"));
+        assertEquals(-1, Symbols.find("neverDefined2"));
+        assertEquals(-1, Symbols.find("neverDefined3"));
+    }
+
+    @Test
+    void assignmentsAreResolved() {
+        resolve("var x = 1; x = 2; fun f(a) { var b = a; b = a = 3; return b; }");
+        assertEquals(0, errorListener.getErrorsCount());
+        assertEquals(0, ((Expr.Assign) ((Stmt.Expression) stmts.get(1)).expr).target.depth);
+
+        Stmt.Function function = (Stmt.Function) stmts.get(2);
+        Expr.Assign outer = (Expr.Assign) ((Stmt.Expression) function.body.get(1)).expr;
+        assertEquals(Expr.Var.LOCAL, outer.target.depth);
+        assertEquals(1, outer.target.slot);
+        assertEquals(0, ((Expr.Assign) outer.value).target.slot);
+
+        resolve("SL_VER_MAJOR = 2;\nundefined = 1;");
+        assertEquals(2, errorListener.getErrorsCount());
+    }
+
+    @Test
+    void capturedAndAssignedLocalsAreCells() {
+        resolve("fun f(a, b) {\n  var x = a;\n  x = 2;\n  fun g() { b = x; return a; }\n  return x;\n}");
+        assertEquals(0, errorListener.getErrorsCount());
+        Stmt.Function f = (Stmt.Function) stmts.get(0);
+        Stmt.Function g = (Stmt.Function) f.body.get(2);
+        assertTrue(((Stmt.Var) f.body.get(0)).cell);
+        assertArrayEquals(new int[] {1}, f.cellParams);
+        assertEquals(Expr.Var.LOCAL_CELL, ((Expr.Assign) ((Stmt.Expression) f.body.get(1)).expr).target.depth);
+        assertEquals(Expr.Var.LOCAL_CELL, ((Expr.Var) ((Stmt.Return) f.body.get(3)).value).depth);
+
+        // Only captured, or only assigned, stays a plain slot.
+        Expr.Assign inner = (Expr.Assign) ((Stmt.Expression) g.body.get(0)).expr;
+        assertEquals(Expr.Var.CAPTURED_CELL, inner.target.depth);
+        assertEquals(Expr.Var.CAPTURED_CELL, ((Expr.Var) inner.value).depth);
+        assertEquals(Expr.Var.CAPTURED, ((Expr.Var) ((Stmt.Return) g.body.get(1)).value).depth);
+        assertFalse(g.cell);
+
+        resolve("fun f(x) { fun g() { var y = x; y = 2; return y; } return g; }");
+        assertEquals(0, errorListener.getErrorsCount());
+        Stmt.Function outer = (Stmt.Function) stmts.get(0);
+        assertEquals(0, outer.cellParams.length);
+        assertFalse(((Stmt.Var) ((Stmt.Function) outer.body.get(0)).body.get(0)).cell);
+    }
+}
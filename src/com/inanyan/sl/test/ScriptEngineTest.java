@@ -0,0 +1,143 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.script.SLScriptEngineFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptEngineTest {
+    private final ScriptEngine engine = new SLScriptEngineFactory().getScriptEngine();
+    private final StringWriter out = new StringWriter();
+
+    ScriptEngineTest() {
+        engine.getContext().setWriter(out);
+    }
+
+    @Test
+    void evalReturnsLastExpression() throws ScriptException {
+        assertEquals(-5, engine.eval("print 1; -5;"));
+        assertEquals("1\n", out.toString());
+        assertNull(engine.eval("print 2;"));
+        assertEquals(Boolean.TRUE, engine.eval("!false;"));
+    }
+
+    @Test
+    void bindings() throws ScriptException {
+        engine.put("x", 41);
+        engine.put("s", "str");
+        engine.eval("print -x; print s;");
+        assertEquals("-41\nstr\n", out.toString());
+        assertEquals(41, engine.get("x"));
+        assertEquals(2.5, engine.eval("y;", bindingsOf("y", 2.5f)));
+        assertThrows(IllegalArgumentException.class, () -> engine.put("big", Long.MAX_VALUE));
+    }
+
+    private static Bindings bindingsOf(String name, Object value) {
+        Bindings bindings = new SimpleBindings();
+        bindings.put(name, value);
+        return bindings;
+    }
+
+    @Test
+    void compiledScriptIsReused() throws ScriptException {
+        engine.put("x", 1);
+        CompiledScript script = ((Compilable) engine).compile("print x; -x;");
+        assertEquals(-1, script.eval());
+        engine.put("x", 2);
+        assertEquals(-2, script.eval());
+
+        Bindings other = engine.createBindings();
+        other.put("x", 3);
+        assertEquals(-3, script.eval(other));
+        assertEquals(-4, script.eval(bindingsOf("x", 4)));
+        assertEquals("1\n2\n3\n4\n", out.toString());
+    }
+
+    @Test
+    void errorsCarryLines() {
+        engine.put(ScriptEngine.FILENAME, "test.sl");
+        ScriptException parse = assertThrows(ScriptException.class, () -> engine.eval("print 1;\nprint ;"));
+        assertEquals(2, parse.getLineNumber());
+        assertEquals("test.sl", parse.getFileName());
+
+        ScriptException runtime = assertThrows(ScriptException.class, () -> engine.eval("print 1;\n\nprint -\"s\";"));
+        assertEquals(3, runtime.getLineNumber());
+        assertEquals("1\n", out.toString());
+    }
+
+    @Test
+    void failuresAreScriptExceptions() throws ScriptException {
+        ScriptException nil = assertThrows(ScriptException.class, () -> engine.eval("var x;\nprint -x;"));
+        assertEquals(2, nil.getLineNumber());
+        ScriptException deep = assertThrows(ScriptException.class,
+                () -> engine.eval("print " + "(".repeat(100_000) + "1" + ")".repeat(100_000) + ";"));
+        assertTrue(deep.getCause() instanceof StackOverflowError);
+        assertEquals(100_000, engine.eval("0" + " + 1".repeat(100_000) + ";"));
+    }
+
+    @Test
+    void compilingDefinesNothing() throws ScriptException {
+        Bindings bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+        int builtins = bindings.size();
+        CompiledScript script = ((Compilable) engine).compile("var x = 1;");
+        assertFalse(bindings.containsKey("x"));
+        assertNull(bindings.get("x"));
+        assertEquals(builtins, bindings.size());
+        assertEquals(builtins, bindings.entrySet().size());
+        assertFalse(bindings.keySet().contains("x"));
+
+        script.eval();
+        assertTrue(bindings.containsKey("x"));
+        assertEquals(builtins + 1, bindings.size());
+        engine.eval("var y;");
+        assertTrue(bindings.containsKey("y"));
+        assertNull(bindings.get("y"));
+    }
+
+    @Test
+    void factory() {
+        ScriptEngine byName = new javax.script.ScriptEngineManager().getEngineByName("sl");
+        assertNotNull(byName);
+        assertEquals("SL", byName.getFactory().getLanguageName());
+        assertEquals("print \"a\\\"b\\n\";", byName.getFactory().getOutputStatement("a\"b\n"));
+        assertNull(byName.getFactory().getParameter("THREADING"));
+        assertNotNull(engine.getContext().getBindings(ScriptContext.ENGINE_SCOPE));
+    }
+
+    public interface Math {
+        Object twice(Object x);
+    }
+
+    @Test
+    void invocable() throws Exception {
+        engine.eval("fun twice(x) { print x; return x; }\nfun fail() { return -\"s\"; }");
+        Invocable invocable = (Invocable) engine;
+        assertEquals(5, invocable.invokeFunction("twice", 5));
+        assertThrows(NoSuchMethodException.class, () -> invocable.invokeFunction("missing"));
+        assertThrows(ScriptException.class, () -> invocable.invokeFunction("fail"));
+        assertThrows(ScriptException.class, () -> invocable.invokeFunction("twice"));
+
+        Math math = invocable.getInterface(Math.class);
+        assertEquals("x", math.twice("x"));
+        assertNull(invocable.getInterface(Runnable.class));
+        assertEquals("5\nx\n", out.toString());
+    }
+
+    @Test
+    void functionsWorkOnForeignBindings() throws ScriptException {
+        Bindings bindings = new SimpleBindings();
+        engine.eval("fun f(x) { return x; } var y = f(3);", bindings);
+        assertEquals(3, bindings.get("y"));
+        assertEquals(3, engine.eval("f(y);", bindings));
+    }
+}
@@ -0,0 +1,171 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.jsl.Client;
+import com.inanyan.jsl.Server;
+import com.inanyan.jsl.Session;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.opt.PassManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTest {
+    private interface ServerBody {
+        void run(Path socket) throws IOException;
+    }
+
+    // Runs body against a server on a socket in a temporary directory, stopped afterwards by an interrupt.
+    private static void withServer(ServerBody body) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("sl-server");
+        Path socket = directory.resolve("sl.sock");
+        Server server = new Server(Session.Engine.TREE, PassManager.createDefault(), Limits.NONE);
+        Thread thread = new Thread(() -> {
+            try {
+                server.serve(socket);
+            } catch (IOException e) {
+                // Interrupted.
+            }
+        });
+        thread.start();
+        try {
+            waitUntilListening(socket);
+            body.run(socket);
+        } finally {
+            thread.interrupt();
+            thread.join();
+            Files.deleteIfExists(socket);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // The socket file appears at bind, a moment before the server listens on it.
+    private static void waitUntilListening(Path socket) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            try {
+                SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static class Connection implements AutoCloseable {
+        final SocketChannel channel;
+        final DataOutputStream request;
+        final DataInputStream answer;
+        String output;
+
+        Connection(Path socket) throws IOException {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+            request = new DataOutputStream(Channels.newOutputStream(channel));
+            answer = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        }
+
+        // Sends a request and reads its answer frame by frame: returns the status, the output is left in output.
+        int send(String name, String source) throws IOException {
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            request.writeUTF(name);
+            request.writeInt(bytes.length);
+            request.write(bytes);
+            return readAnswer();
+        }
+
+        int readAnswer() throws IOException {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            while (true) {
+                byte tag = answer.readByte();
+                int length = answer.readInt();
+                if (tag == Server.EXIT) {
+                    assertEquals(Integer.BYTES, length);
+                    output = text.toString(StandardCharsets.UTF_8);
+                    return answer.readInt();
+                }
+                assertEquals(Server.OUTPUT, tag);
+                assertTrue(length > 0);
+                text.write(answer.readNBytes(length));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Test
+    void clientRoundTrip() throws IOException, InterruptedException {
+        withServer(socket -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+            assertEquals(0, Client.run(socket, "a.sl", "print 1 + 2;\nprint \"\u00e9\";".getBytes(StandardCharsets.UTF_8),
+                    out));
+            assertEquals("3\n\u00e9\n", buffer.toString(StandardCharsets.UTF_8));
+
+            buffer.reset();
+            assertEquals(2, Client.run(socket, "b.sl", "print ;".getBytes(StandardCharsets.UTF_8), out));
+            assertTrue(buffer.toString().startsWith("b.sl:"));
+        });
+    }
+
+    @Test
+    void requestsShareTheSession() throws IOException, InterruptedException {
+        withServer(socket -> {
+            try (Connection connection = new Connection(socket)) {
+                assertEquals(0, connection.send("a.sl", "var x = 40;"));
+                assertEquals("", connection.output);
+                assertEquals(0, connection.send("b.sl", "print x + 2;"));
+                assertEquals("42\n", connection.output);
+            }
+            // Another connection is another session.
+            try (Connection connection = new Connection(socket)) {
+                assertEquals(2, connection.send("c.sl", "print x;"));
+                assertTrue(connection.output.startsWith("c.sl:"));
+            }
+        });
+    }
+
+    @Test
+    void sessionSurvivesFailingRequests() throws IOException, InterruptedException {
+        withServer(socket -> {
+            try (Connection connection = new Connection(socket)) {
+                assertEquals(0, connection.send("a.sl", "var x = 1;"));
+                assertEquals(2, connection.send("b.sl", "x = 2;\nprint -nil;"));
+                assertTrue(connection.output.startsWith("b.sl:"));
+                // Too deep for the parser: an internal error, which fails the request only.
+                assertEquals(2, connection.send("c.sl", "(".repeat(100_000) + "1" + ")".repeat(100_000) + ";"));
+                assertTrue(connection.output.startsWith("c.sl: error: internal error:"));
+                assertEquals(0, connection.send("d.sl", "print x;"));
+                assertEquals("2\n", connection.output);
+            }
+        });
+    }
+
+    @Test
+    void oversizedSourceIsRefused() throws IOException, InterruptedException {
+        withServer(socket -> {
+            try (Connection connection = new Connection(socket)) {
+                connection.request.writeUTF("big.sl");
+                connection.request.writeInt(Server.MAX_SOURCE_BYTES + 1);
+                assertEquals(2, connection.readAnswer());
+                assertEquals("big.sl: error: source is over " + Server.MAX_SOURCE_BYTES + " bytes.\n",
+                        connection.output);
+                assertThrows(EOFException.class, connection.answer::readByte);
+            }
+        });
+    }
+}
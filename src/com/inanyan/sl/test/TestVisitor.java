@@ -3,6 +3,8 @@ package com.inanyan.sl.test;
 import com.inanyan.sl.ast.Expr;
 import com.inanyan.sl.ast.Stmt;
 
+import java.util.List;
+
 public class TestVisitor implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
 
     public int visit(Expr expr) {
@@ -53,6 +55,16 @@ public class TestVisitor implements Expr.Visitor<Integer>, Stmt.Visitor<Integer>
         return 1 + visit(expr.expr);
     }
 
+    @Override
+    public Integer visitBinary(Expr.Binary expr) {
+        return 1 + visit(expr.left) + visit(expr.right);
+    }
+
+    @Override
+    public Integer visitLogical(Expr.Logical expr) {
+        return 1 + visit(expr.left) + visit(expr.right);
+    }
+
     @Override
     public Integer visitExpr(Stmt.Expression stmt) {
         return 1 + visit(stmt.expr);
@@ -62,4 +74,57 @@ public class TestVisitor implements Expr.Visitor<Integer>, Stmt.Visitor<Integer>
     public Integer visitPrint(Stmt.Print stmt) {
         return 1 + visit(stmt.expr);
     }
+
+    @Override
+    public Integer visitCall(Expr.Call expr) {
+        int count = 1 + visit(expr.callee);
+        for (Expr arg : expr.args) {
+            count += visit(arg);
+        }
+        return count;
+    }
+
+    @Override
+    public Integer visitVar(Stmt.Var stmt) {
+        return 1 + (stmt.initializer == null ? 0 : visit(stmt.initializer));
+    }
+
+    @Override
+    public Integer visitFunction(Stmt.Function stmt) {
+        return 1 + visitAll(stmt.body);
+    }
+
+    @Override
+    public Integer visitReturn(Stmt.Return stmt) {
+        return 1 + (stmt.value == null ? 0 : visit(stmt.value));
+    }
+
+    @Override
+    public Integer visitBlock(Stmt.Block stmt) {
+        return 1 + visitAll(stmt.stmts);
+    }
+
+    @Override
+    public Integer visitIf(Stmt.If stmt) {
+        return 1 + visit(stmt.condition) + visit(stmt.thenBranch)
+                + (stmt.elseBranch == null ? 0 : visit(stmt.elseBranch));
+    }
+
+    @Override
+    public Integer visitWhile(Stmt.While stmt) {
+        return 1 + visit(stmt.condition) + visit(stmt.body);
+    }
+
+    @Override
+    public Integer visitAssign(Expr.Assign expr) {
+        return 1 + visit(expr.target) + visit(expr.value);
+    }
+
+    private int visitAll(List<Stmt> stmts) {
+        int count = 0;
+        for (Stmt stmt : stmts) {
+            count += visit(stmt);
+        }
+        return count;
+    }
 }
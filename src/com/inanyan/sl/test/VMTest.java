@@ -0,0 +1,168 @@
+package com.inanyan.sl.test;
+
+import com.inanyan.sl.ast.Stmt;
+import com.inanyan.sl.lang.Budget;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.Limits;
+import com.inanyan.sl.parsing.Lexer;
+import com.inanyan.sl.parsing.Parser;
+import com.inanyan.sl.parsing.Token;
+import com.inanyan.sl.vm.Chunk;
+import com.inanyan.sl.vm.Compiler;
+import com.inanyan.sl.vm.VM;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VMTest {
+    private final TestsErrorListener errorListener = new TestsErrorListener();
+
+    private List<Stmt> parse(String src) {
+        errorListener.resetCounters();
+        Lexer lexer = new Lexer(errorListener, src);
+        List<Token> tokens = lexer.scanTokens();
+        Parser parser = new Parser(errorListener, tokens);
+        List<Stmt> stmts = parser.parse();
+        assertEquals(0, errorListener.getErrorsCount());
+        return stmts;
+    }
+
+    private String runTree(String src) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interpreter(new PrintStream(out)).run(parse(src));
+        return out.toString();
+    }
+
+    private String runVM(String src) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Chunk chunk = new Compiler().compile(parse(src));
+        new VM(new PrintStream(out)).run(chunk);
+        return out.toString();
+    }
+
+    private void sameOutput(String src) {
+        assertEquals(runTree(src), runVM(src));
+    }
+
+    @Test
+    void empty() {
+        assertEquals("", runVM(""));
+    }
+
+    @Test
+    void printLiterals() {
+        assertEquals("123\ntrue\nnil\nabc\nc\n", runVM("print 123; print true; print nil; print \"abc\"; print 'c';"));
+    }
+
+    @Test
+    void unaryChains() {
+        sameOutput("print - - 5; print !!true; print ~~7; print +3; print -~-4; print !false;");
+    }
+
+    @Test
+    void globals() {
+        sameOutput("print SL_VER_MAJOR; print SL_VER_STR; print -SL_VER_PATCH;");
+    }
+
+    @Test
+    void exprStmtsAreDiscarded() {
+        assertEquals("1\n", runVM("5; -5; true; print 1; 'a';"));
+    }
+
+    @Test
+    void constantsAreShared() {
+        Chunk chunk = new Compiler().compile(parse("print 5; print 5; print 5;"));
+        assertEquals(1, chunk.getConstants().length);
+        assertEquals(1, chunk.getMaxStack());
+    }
+
+    @Test
+    void runtimeErrorLine() {
+        Chunk chunk = new Compiler().compile(parse("print 1;\n\nprint -true;"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> new VM(new PrintStream(out)).run(chunk));
+        assertEquals(2, error.line);
+        assertEquals("1\n", out.toString());
+    }
+
+    @Test
+    void longChains() {
+        String src = "print 0" + " - 1".repeat(100_000) + ";\nprint false" + " || false && true".repeat(100_000) + ";";
+        assertEquals("-100000\nfalse\n", runVM(src));
+    }
+
+    @Test
+    void unaryErrorsOnNil() {
+        for (String src : List.of("print -nil;", "print !nil;", "print +nil;", "\nprint ~nil;")) {
+            Chunk chunk = new Compiler().compile(parse(src));
+            Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> new VM(null).run(chunk));
+            assertTrue(error.getMessage().endsWith("'nil'"));
+        }
+    }
+
+    @Test
+    void undefinedReference() {
+        Chunk chunk = new Compiler().compile(parse("\nprint unknown;"));
+        Interpreter.Error error = assertThrows(Interpreter.Error.class, () -> new VM(null).run(chunk));
+        assertEquals(1, error.line);
+    }
+
+    @Test
+    void budgetStopsWhereTheTreeStops() {
+        String src = "print 1;\n-2;\nprint 3;\nprint 4;";
+        for (int fuel = 1; fuel <= 4; fuel++) {
+            ByteArrayOutputStream treeOut = new ByteArrayOutputStream();
+            Interpreter interpreter = new Interpreter(new PrintStream(treeOut));
+            interpreter.setBudget(new Limits(fuel, Limits.UNLIMITED).newBudget());
+            ByteArrayOutputStream vmOut = new ByteArrayOutputStream();
+            VM vm = new VM(new PrintStream(vmOut));
+            vm.setBudget(new Limits(fuel, Limits.UNLIMITED).newBudget());
+
+            List<Stmt> stmts = parse(src);
+            Chunk chunk = new Compiler().compile(stmts);
+            if (fuel < 4) {
+                int line = assertThrows(Budget.Exceeded.class, () -> interpreter.run(stmts)).line;
+                assertEquals(line, assertThrows(Budget.Exceeded.class, () -> vm.run(chunk)).line);
+            } else {
+                interpreter.run(stmts);
+                vm.run(chunk);
+            }
+            assertEquals(treeOut.toString(), vmOut.toString());
+        }
+    }
+
+    @Test
+    void binaryOperators() {
+        sameOutput("print 1 + 2 * 3 - 4 / 2 % 3; print -7 / 2; print 2147483647 + 1; print 1 << 33; print -16 >> 2;"
+                + " print 6 & 3 | 8 ^ 1; print 5 / 2.0; print 1.5 - 0.25 * 2; print 1 / 0.0; print 1 + 0.5;"
+                + " print 1 < 2; print 2.5 <= 1.5; print 0.0 / 0.0 < 1.0; print 0.0 / 0.0 >= 1.0;"
+                + " print 0.0 / 0.0 != 0.0 / 0.0; print 'a' < 'b'; print 1 == 1.0; print 1 < 2 == (2 > 1);"
+                + " print \"n=\" + SL_VER_MAJOR; print 2 + SL_VER_STR; print 1.5 + SL_VER_STR;"
+                + " print SL_VER_MAJOR * 1.5; print -SL_VER_PATCH >> 1;");
+    }
+
+    @Test
+    void logicalOperators() {
+        sameOutput("print true && false || true; print false && undefined; print true || undefined;"
+                + " print !false && 1 < 2; print SL_VER_MAJOR == 0 || SL_VER_PATCH > 0;");
+    }
+
+    @Test
+    void binaryErrorLines() {
+        Chunk chunk = new Compiler().compile(parse("print 1;\nprint 1 /\n0;"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter.Error error = assertThrows(Interpreter.Error.class,
+                () -> new VM(new PrintStream(out)).run(chunk));
+        assertEquals(1, error.line);
+        assertEquals("division by zero", error.msg);
+
+        Chunk logical = new Compiler().compile(parse("print true &&\n1;"));
+        error = assertThrows(Interpreter.Error.class, () -> new VM(new PrintStream(out)).run(logical));
+        assertEquals(1, error.line);
+    }
+}
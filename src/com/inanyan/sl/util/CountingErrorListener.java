@@ -0,0 +1,33 @@
+package com.inanyan.sl.util;
+
+// Passes everything on to another listener and counts what went through, for callers that must stop after
+// a phase that reported errors.
+public class CountingErrorListener implements ErrorListener {
+    private final ErrorListener listener;
+    private int errorsCount = 0;
+    private int warningsCount = 0;
+
+    public CountingErrorListener(ErrorListener listener) {
+        this.listener = listener;
+    }
+
+    public int getErrorsCount() {
+        return errorsCount;
+    }
+
+    public int getWarningsCount() {
+        return warningsCount;
+    }
+
+    @Override
+    public void reportError(int line, String msg) {
+        errorsCount++;
+        listener.reportError(line, msg);
+    }
+
+    @Override
+    public void reportWarning(int line, String msg) {
+        warningsCount++;
+        listener.reportWarning(line, msg);
+    }
+}
@@ -0,0 +1,31 @@
+package com.inanyan.sl.util;
+
+// One reported problem, kept as data so that tools can sort, filter or count them without parsing text.
+public class Diagnostic {
+    public enum Severity {
+        ERROR,
+        WARNING
+    }
+
+    public final Severity severity;
+    public final int line;
+    public final String msg;
+
+    public Diagnostic(Severity severity, int line, String msg) {
+        this.severity = severity;
+        this.line = line;
+        this.msg = msg;
+    }
+
+    public void reportTo(ErrorListener listener) {
+        switch (severity) {
+            case ERROR -> listener.reportError(line, msg);
+            case WARNING -> listener.reportWarning(line, msg);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return line + ": " + severity.name().toLowerCase() + ": " + msg;
+    }
+}
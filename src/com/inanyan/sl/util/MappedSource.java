@@ -0,0 +1,92 @@
+package com.inanyan.sl.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Source text backed by a memory-mapped UTF-8 file. Pure ASCII files are read straight from the mapping,
+// one byte per char, without ever being copied onto the heap. Anything else is decoded once.
+public class MappedSource implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    private MappedSource(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static CharSequence open(Path path) throws IOException {
+        return of(map(path));
+    }
+
+    // The whole file, for callers that also need its bytes, such as ScriptCache to hash them.
+    public static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file is too large to map: " + path);
+            }
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    // The text of the UTF-8 bytes from index 0 to the limit. The position of the buffer isn't used or moved.
+    public static CharSequence of(ByteBuffer bytes) {
+        if (isAscii(bytes)) {
+            return new MappedSource(bytes, 0, bytes.limit());
+        }
+        return StandardCharsets.UTF_8.decode(bytes.duplicate().position(0));
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int i = 0;
+        // Eight bytes at a time: any byte with the high bit set makes the file non-ASCII.
+        for (; i + 8 <= limit; i += 8) {
+            if ((buffer.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) bytes.get(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+        }
+        return new MappedSource(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] chars = new byte[length];
+        bytes.get(offset, chars);
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+}
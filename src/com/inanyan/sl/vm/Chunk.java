@@ -0,0 +1,106 @@
+package com.inanyan.sl.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Chunk {
+    private byte[] code = new byte[64];
+    private int[] lines = new int[64];
+    private int count = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private Object[] constantPool;
+
+    int maxStack = 0;
+
+    public void write(byte b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+
+        code[count] = b;
+        lines[count] = line;
+        count++;
+    }
+
+    public void writeShort(int value, int line) {
+        write((byte) ((value >> 8) & 0xff), line);
+        write((byte) (value & 0xff), line);
+    }
+
+    // Overwrites the u16 written at offset, for jumps emitted before their target is known.
+    public void patchShort(int offset, int value) {
+        code[offset] = (byte) ((value >> 8) & 0xff);
+        code[offset + 1] = (byte) (value & 0xff);
+    }
+
+    public int addConstant(Object value) {
+        Integer index = constantIndices.get(value);
+        if (index != null) {
+            return index;
+        }
+
+        if (constants.size() > 0xffff) {
+            throw new RuntimeException("too many constants in one chunk");
+        }
+
+        constants.add(value);
+        constantIndices.put(value, constants.size() - 1);
+        constantPool = null;
+        return constants.size() - 1;
+    }
+
+    public byte[] getCode() {
+        return code;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getLine(int offset) {
+        return lines[offset];
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public Object[] getConstants() {
+        if (constantPool == null) {
+            constantPool = constants.toArray();
+        }
+        return constantPool;
+    }
+
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        int offset = 0;
+        while (offset < count) {
+            byte op = code[offset];
+            sb.append(String.format("%04d %4d %s", offset, lines[offset], OpCode.name(op)));
+            if (op == OpCode.CONSTANT || op == OpCode.GET_VAR) {
+                int index = ((code[offset + 1] & 0xff) << 8) | (code[offset + 2] & 0xff);
+                sb.append(' ').append(index).append(" '").append(constants.get(index)).append('\'');
+                offset += 3;
+            } else if (op == OpCode.GET_VAR_AT) {
+                int slot = ((code[offset + 2] & 0xff) << 8) | (code[offset + 3] & 0xff);
+                sb.append(' ').append(code[offset + 1] & 0xff).append(", ").append(slot);
+                offset += 4;
+            } else if (op == OpCode.JUMP_IF_FALSE || op == OpCode.JUMP_IF_TRUE) {
+                int jump = ((code[offset + 1] & 0xff) << 8) | (code[offset + 2] & 0xff);
+                sb.append(" -> ").append(String.format("%04d", offset + 3 + jump));
+                offset += 3;
+            } else {
+                offset++;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
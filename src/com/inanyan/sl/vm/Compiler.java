@@ -0,0 +1,217 @@
+package com.inanyan.sl.vm;
+
+import com.inanyan.sl.ast.Expr;
+import com.inanyan.sl.ast.Stmt;
+
+import java.util.List;
+
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    public static class Unsupported extends RuntimeException {
+        public Unsupported(String msg) {
+            super(msg);
+        }
+    }
+
+    private Chunk chunk;
+    private int stackDepth;
+
+    public Chunk compile(List<Stmt> stmts) {
+        chunk = new Chunk();
+        stackDepth = 0;
+
+        int lastLine = 0;
+        for (Stmt stmt : stmts) {
+            stmt.accept(this);
+            lastLine = stmt.line;
+        }
+
+        chunk.write(OpCode.RETURN, lastLine);
+        return chunk;
+    }
+
+    private void emit(byte op, int line) {
+        chunk.write(op, line);
+    }
+
+    private void emitWithIndex(byte op, int index, int line) {
+        chunk.write(op, line);
+        chunk.writeShort(index, line);
+    }
+
+    private void push() {
+        stackDepth++;
+        if (stackDepth > chunk.maxStack) {
+            chunk.maxStack = stackDepth;
+        }
+    }
+
+    private void pop() {
+        stackDepth--;
+    }
+
+    @Override
+    public Void visitIntLiteral(Expr.IntLiteral expr) {
+        emitWithIndex(OpCode.CONSTANT, chunk.addConstant(expr.value), expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitFloatLiteral(Expr.FloatLiteral expr) {
+        emitWithIndex(OpCode.CONSTANT, chunk.addConstant(expr.value), expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitBoolLiteral(Expr.BoolLiteral expr) {
+        emit(expr.value ? OpCode.TRUE : OpCode.FALSE, expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitStringLiteral(Expr.StringLiteral expr) {
+        emitWithIndex(OpCode.CONSTANT, chunk.addConstant(expr.value), expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitCharLiteral(Expr.CharLiteral expr) {
+        emitWithIndex(OpCode.CONSTANT, chunk.addConstant(expr.value), expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitNilLiteral(Expr.NilLiteral expr) {
+        emit(OpCode.NIL, expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitVar(Expr.Var expr) {
+        if (expr.isResolved() && expr.depth <= 0xff && expr.slot <= 0xffff) {
+            emit(OpCode.GET_VAR_AT, expr.line);
+            chunk.write((byte) expr.depth, expr.line);
+            chunk.writeShort(expr.slot, expr.line);
+            push();
+            return null;
+        }
+
+        emitWithIndex(OpCode.GET_VAR, chunk.addConstant(expr.text), expr.line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary expr) {
+        expr.expr.accept(this);
+
+        byte op = switch (expr.op) {
+            case NOT -> OpCode.NOT;
+            case NEGATE -> OpCode.NEGATE;
+            case PLUS -> OpCode.PLUS;
+            case BITWISE_NOT -> OpCode.BITWISE_NOT;
+        };
+        emit(op, expr.line);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary expr) {
+        // A chain is compiled from its innermost operator out, without recursing down its left side.
+        List<Expr.Binary> spine = expr.leftSpine();
+        spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Binary binary = spine.get(i);
+            binary.right.accept(this);
+            emit(OpCode.binary(binary.op), binary.line);
+            pop();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(Expr.Logical expr) {
+        List<Expr.Logical> spine = expr.leftSpine();
+        spine.get(spine.size() - 1).left.accept(this);
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Expr.Logical logical = spine.get(i);
+            byte jump = logical.op == Expr.Logical.Op.AND ? OpCode.JUMP_IF_FALSE : OpCode.JUMP_IF_TRUE;
+            emitWithIndex(jump, 0, logical.left.line);
+            int operand = chunk.getCount() - 2;
+            pop();
+
+            logical.right.accept(this);
+            emit(OpCode.CHECK_BOOL, logical.right.line);
+
+            int distance = chunk.getCount() - (operand + 2);
+            if (distance > 0xffff) {
+                throw new Unsupported("jumps over more than 65535 bytes");
+            }
+            chunk.patchShort(operand, distance);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpr(Stmt.Expression stmt) {
+        stmt.expr.accept(this);
+        emit(OpCode.POP, stmt.line);
+        pop();
+        return null;
+    }
+
+    @Override
+    public Void visitPrint(Stmt.Print stmt) {
+        stmt.expr.accept(this);
+        emit(OpCode.PRINT, stmt.line);
+        pop();
+        return null;
+    }
+
+    // Functions, loops and the statements that come with them are only run by the tree interpreter.
+
+    @Override
+    public Void visitCall(Expr.Call expr) {
+        throw new Unsupported("function calls");
+    }
+
+    @Override
+    public Void visitAssign(Expr.Assign expr) {
+        throw new Unsupported("assignments");
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var stmt) {
+        throw new Unsupported("variable declarations");
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function stmt) {
+        throw new Unsupported("functions");
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return stmt) {
+        throw new Unsupported("return statements");
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block stmt) {
+        throw new Unsupported("blocks");
+    }
+
+    @Override
+    public Void visitIf(Stmt.If stmt) {
+        throw new Unsupported("if statements");
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While stmt) {
+        throw new Unsupported("loops");
+    }
+}
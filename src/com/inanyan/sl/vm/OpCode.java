@@ -0,0 +1,86 @@
+package com.inanyan.sl.vm;
+
+import com.inanyan.sl.ast.Expr;
+
+public final class OpCode {
+    // Operand: u16 constant pool index.
+    public static final byte CONSTANT = 0;
+    public static final byte NIL = 1;
+    public static final byte TRUE = 2;
+    public static final byte FALSE = 3;
+
+    // Operand: u16 constant pool index of the variable name.
+    public static final byte GET_VAR = 4;
+
+    public static final byte NOT = 5;
+    public static final byte NEGATE = 6;
+    public static final byte PLUS = 7;
+    public static final byte BITWISE_NOT = 8;
+
+    public static final byte POP = 9;
+    public static final byte PRINT = 10;
+    public static final byte RETURN = 11;
+
+    // Operands: u8 depth, u16 slot (see Resolver).
+    public static final byte GET_VAR_AT = 12;
+
+    // One opcode for each binary operator, in the order of Expr.Binary.Op, from ADD to SHIFT_RIGHT.
+    public static final byte ADD = 13;
+    public static final byte SUBTRACT = 14;
+    public static final byte MULTIPLY = 15;
+    public static final byte DIVIDE = 16;
+    public static final byte REMAINDER = 17;
+    public static final byte LESS = 18;
+    public static final byte LESS_EQUAL = 19;
+    public static final byte GREATER = 20;
+    public static final byte GREATER_EQUAL = 21;
+    public static final byte EQUAL = 22;
+    public static final byte NOT_EQUAL = 23;
+    public static final byte BITWISE_AND = 24;
+    public static final byte BITWISE_OR = 25;
+    public static final byte BITWISE_XOR = 26;
+    public static final byte SHIFT_LEFT = 27;
+    public static final byte SHIFT_RIGHT = 28;
+
+    // Operand: u16 offset forward from the end of the operand. Both fail on a value that isn't a bool; when
+    // the value decides '&&' or '||' they jump and leave it on the stack, otherwise they pop it.
+    public static final byte JUMP_IF_FALSE = 29;
+    public static final byte JUMP_IF_TRUE = 30;
+    // Fails on a value that isn't a bool, the right operand of '&&' and '||'.
+    public static final byte CHECK_BOOL = 31;
+
+    private static final Expr.Binary.Op[] BINARY_OPS = Expr.Binary.Op.values();
+
+    private OpCode() {}
+
+    public static byte binary(Expr.Binary.Op op) {
+        return (byte) (ADD + op.ordinal());
+    }
+
+    // The operator of an opcode from ADD to SHIFT_RIGHT.
+    public static Expr.Binary.Op binaryOp(byte op) {
+        return BINARY_OPS[op - ADD];
+    }
+
+    public static String name(byte op) {
+        return switch (op) {
+            case CONSTANT -> "CONSTANT";
+            case NIL -> "NIL";
+            case TRUE -> "TRUE";
+            case FALSE -> "FALSE";
+            case GET_VAR -> "GET_VAR";
+            case NOT -> "NOT";
+            case NEGATE -> "NEGATE";
+            case PLUS -> "PLUS";
+            case BITWISE_NOT -> "BITWISE_NOT";
+            case POP -> "POP";
+            case PRINT -> "PRINT";
+            case RETURN -> "RETURN";
+            case GET_VAR_AT -> "GET_VAR_AT";
+            case JUMP_IF_FALSE -> "JUMP_IF_FALSE";
+            case JUMP_IF_TRUE -> "JUMP_IF_TRUE";
+            case CHECK_BOOL -> "CHECK_BOOL";
+            default -> op >= ADD && op <= SHIFT_RIGHT ? binaryOp(op).name() : "UNKNOWN(" + op + ")";
+        };
+    }
+}
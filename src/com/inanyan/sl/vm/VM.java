@@ -0,0 +1,128 @@
+package com.inanyan.sl.vm;
+
+import com.inanyan.sl.lang.Budget;
+import com.inanyan.sl.lang.Builtins;
+import com.inanyan.sl.lang.Environment;
+import com.inanyan.sl.lang.Interpreter;
+import com.inanyan.sl.lang.OutputSink;
+import com.inanyan.sl.lang.Rules;
+
+import java.io.PrintStream;
+
+public class VM {
+    private final OutputSink out;
+    private final Environment environment;
+    private Object[] stack = new Object[16];
+    private Budget budget;
+
+    public VM(OutputSink out, Environment environment) {
+        this.out = out;
+        this.environment = environment;
+    }
+
+    public VM(PrintStream out, Environment environment) {
+        this(OutputSink.of(out, OutputSink.FlushPolicy.LINE), environment);
+    }
+
+    public VM(PrintStream out) {
+        this(out, new Environment(Builtins.globals()));
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    // Bounds every later run, null for none. As in the tree interpreter, a statement is charged before it
+    // starts: here that is at the start of the chunk and after each POP or PRINT that isn't the last.
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    public void run(Chunk chunk) {
+        byte[] code = chunk.getCode();
+        Object[] constants = chunk.getConstants();
+        if (stack.length < chunk.getMaxStack()) {
+            stack = new Object[chunk.getMaxStack()];
+        }
+        Object[] stack = this.stack;
+        Budget budget = this.budget;
+        if (budget != null && code[0] != OpCode.RETURN) {
+            budget.tick(chunk.getLine(0));
+        }
+
+        int ip = 0;
+        int sp = 0;
+        while (true) {
+            int offset = ip;
+            switch (code[ip++]) {
+                case OpCode.CONSTANT -> {
+                    stack[sp++] = constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                }
+                case OpCode.NIL -> stack[sp++] = null;
+                case OpCode.TRUE -> stack[sp++] = Boolean.TRUE;
+                case OpCode.FALSE -> stack[sp++] = Boolean.FALSE;
+                case OpCode.GET_VAR -> {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Object obj = environment.lookup(name);
+                    if (obj == Environment.UNBOUND) {
+                        throw new Interpreter.Error(chunk.getLine(offset), "undefined reference to '" + name + "'");
+                    }
+                    stack[sp++] = obj;
+                }
+                case OpCode.GET_VAR_AT -> {
+                    int depth = code[ip] & 0xff;
+                    int slot = ((code[ip + 1] & 0xff) << 8) | (code[ip + 2] & 0xff);
+                    ip += 3;
+                    Object obj = environment.getAt(depth, slot);
+                    if (obj == Environment.UNBOUND) {
+                        throw new Interpreter.Error(chunk.getLine(offset), "undefined reference to '"
+                                + environment.nameAt(depth, slot) + "'");
+                    }
+                    stack[sp++] = obj;
+                }
+                case OpCode.NOT -> stack[sp - 1] = Rules.not(chunk.getLine(offset), stack[sp - 1]);
+                case OpCode.NEGATE -> stack[sp - 1] = Rules.negate(chunk.getLine(offset), stack[sp - 1]);
+                case OpCode.PLUS -> stack[sp - 1] = Rules.plus(chunk.getLine(offset), stack[sp - 1]);
+                case OpCode.BITWISE_NOT -> stack[sp - 1] = Rules.bitwiseNot(chunk.getLine(offset), stack[sp - 1]);
+                case OpCode.ADD, OpCode.SUBTRACT, OpCode.MULTIPLY, OpCode.DIVIDE, OpCode.REMAINDER,
+                        OpCode.LESS, OpCode.LESS_EQUAL, OpCode.GREATER, OpCode.GREATER_EQUAL, OpCode.EQUAL,
+                        OpCode.NOT_EQUAL, OpCode.BITWISE_AND, OpCode.BITWISE_OR, OpCode.BITWISE_XOR,
+                        OpCode.SHIFT_LEFT, OpCode.SHIFT_RIGHT -> {
+                    Object right = stack[--sp];
+                    stack[sp] = null;
+                    stack[sp - 1] = Rules.binary(chunk.getLine(offset), OpCode.binaryOp(code[offset]), stack[sp - 1],
+                            right);
+                }
+                case OpCode.JUMP_IF_FALSE, OpCode.JUMP_IF_TRUE -> {
+                    boolean value = Rules.condition(chunk.getLine(offset), stack[sp - 1]);
+                    if (value == (code[offset] == OpCode.JUMP_IF_TRUE)) {
+                        ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    } else {
+                        stack[--sp] = null;
+                        ip += 2;
+                    }
+                }
+                case OpCode.CHECK_BOOL -> Rules.condition(chunk.getLine(offset), stack[sp - 1]);
+                case OpCode.POP -> {
+                    stack[--sp] = null;
+                    if (budget != null && code[ip] != OpCode.RETURN) {
+                        budget.tick(chunk.getLine(ip));
+                    }
+                }
+                case OpCode.PRINT -> {
+                    out.println(stack[--sp]);
+                    stack[sp] = null;
+                    if (budget != null && code[ip] != OpCode.RETURN) {
+                        budget.tick(chunk.getLine(ip));
+                    }
+                }
+                case OpCode.RETURN -> {
+                    return;
+                }
+                default -> throw new RuntimeException("unknown opcode " + OpCode.name(code[offset]));
+            }
+        }
+    }
+}